@@ -0,0 +1,106 @@
+package searchengine;
+
+// JMH Imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+// Other Imports
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the query throughput of one {@code SearchEngine} shared by several threads, the way
+ * the web server shares it between its request threads. The same workload is run with 1, 2 and 4
+ * threads, and with one thread per core, so the results show how throughput scales with cores.
+ */
+public class ConcurrentSearchBenchmark {
+
+  /** The queries: the country names of the {@code IndexBenchmark}, plus a few longer queries. */
+  private static final String[] QUERIES = {"denmark", "sweden", "iceland", "germany", "england",
+      "norway", "france", "belgium", "poland", "italy", "spain", "greece", "austria", "latvia",
+      "estonia", "switzerland", "ireland", "netherlands", "scotland", "wales", "the denmark",
+      "united states", "war OR peace", "denmrk"};
+
+  /**
+   * The {@code SearchEngine} shared by all threads of a benchmark run.
+   */
+  @State(Scope.Benchmark)
+  public static class SharedState {
+    public SearchEngine searchengine;
+
+    public SharedState() {
+      Set<Website> sites = FileHelper.parseFile("data/enwiki-small.txt");
+      Properties config = new Properties();
+      config.setProperty("kmeans", "false");
+      searchengine = new SearchEngine(sites, config);
+    }
+  }
+
+  /**
+   * The position of each thread in the list of queries, so the threads do not run the same query
+   * at the same time.
+   */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private int next = (int) (Thread.currentThread().getId() % QUERIES.length);
+
+    public String nextQuery() {
+      next = (next + 1) % QUERIES.length;
+      return QUERIES[next];
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(1)
+  public List<Website> oneThread(SharedState shared, ThreadState thread) {
+    return shared.searchengine.search(thread.nextQuery());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(2)
+  public List<Website> twoThreads(SharedState shared, ThreadState thread) {
+    return shared.searchengine.search(thread.nextQuery());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(4)
+  public List<Website> fourThreads(SharedState shared, ThreadState thread) {
+    return shared.searchengine.search(thread.nextQuery());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(Threads.MAX)
+  public List<Website> allCores(SharedState shared, ThreadState thread) {
+    return shared.searchengine.search(thread.nextQuery());
+  }
+
+  /**
+   * JMH-magic. This {@code main} is not run by the jmh task, but allows running this benchmark on
+   * its own.
+   */
+  public static void main(String[] args) throws RunnerException {
+
+    Options opt = new OptionsBuilder().include(ConcurrentSearchBenchmark.class.getSimpleName())
+        .forks(1).build();
+
+    new Runner(opt).run();
+  }
+}
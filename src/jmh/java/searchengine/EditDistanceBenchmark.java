@@ -0,0 +1,128 @@
+package searchengine;
+
+// JMH Imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+// Other Imports
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares verifying the candidates of fuzzy searches with the full edit distance matrix of
+ * {@code Fuzzy.editDistance} and with the bounded, bit-parallel {@code EditDistance}. The
+ * candidates are those the 2-gram index of {@code data/enwiki-small.txt} finds for misspellings of
+ * words in the corpus, i.e. the words the {@code BiGramFuzzyEngine} checks the edit distance of.
+ */
+public class EditDistanceBenchmark {
+
+  /** Misspellings of the country names of the {@code IndexBenchmark}. */
+  private static final String[] MISSPELLINGS = {"denmrak", "swedn", "icelnd", "germny", "englnd",
+      "norwya", "frnace", "belgum", "polnad", "itlay", "spian", "grece", "austira", "latvai",
+      "estnoia", "switzerlnad", "irelnd", "netherlnds", "scotlnad", "wals"};
+
+  /**
+   * The misspelled words and their candidates, shared by all runs of the benchmark.
+   */
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    public List<String> queries = new ArrayList<>();
+    public List<List<String>> candidates = new ArrayList<>();
+    public int candidateCount;
+
+    public BenchmarkState() {
+      Corpus corpus = new Corpus(FileHelper.parseFile("data/enwiki-small.txt"));
+      corpus.build();
+      corpus.build2GramIndex();
+      BiGramFuzzyEngine engine = new BiGramFuzzyEngine(corpus.getBiGramIndex());
+
+      // the misspelled countries, and a change, deletion or insertion in words of the corpus.
+      List<String> words = corpus.getWordsInCorpus();
+      Random random = new Random(42);
+      for (String misspelling : MISSPELLINGS) {
+        queries.add(misspelling);
+      }
+      while (queries.size() < 100) {
+        StringBuilder word = new StringBuilder(words.get(random.nextInt(words.size())));
+        int position = random.nextInt(word.length());
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+          case 0:
+            word.setCharAt(position, c);
+            break;
+          case 1:
+            word.deleteCharAt(position);
+            break;
+          default:
+            word.insert(position, c);
+            break;
+        }
+        if (Fuzzy.maxDistance(word.toString()) > 0) {
+          queries.add(word.toString());
+        }
+      }
+      for (String query : queries) {
+        List<String> found = engine.candidates(query, Fuzzy.maxDistance(query));
+        candidates.add(found);
+        candidateCount += found.size();
+      }
+      System.out.println(queries.size() + " queries, " + candidateCount + " candidates");
+    }
+  }
+
+  /** Verifies every candidate by computing the full edit distance matrix. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int matrixEditDistance(BenchmarkState state) {
+    int accepted = 0;
+    for (int i = 0; i < state.queries.size(); i++) {
+      String query = state.queries.get(i);
+      int delta = Fuzzy.maxDistance(query);
+      for (String candidate : state.candidates.get(i)) {
+        if (Fuzzy.editDistance(query, candidate) <= delta) {
+          accepted++;
+        }
+      }
+    }
+    return accepted;
+  }
+
+  /** Verifies every candidate by computing the bounded edit distance bit-parallel. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int boundedEditDistance(BenchmarkState state) {
+    int accepted = 0;
+    for (int i = 0; i < state.queries.size(); i++) {
+      String query = state.queries.get(i);
+      int delta = Fuzzy.maxDistance(query);
+      EditDistance distance = new EditDistance(query);
+      for (String candidate : state.candidates.get(i)) {
+        if (distance.distance(candidate, delta) <= delta) {
+          accepted++;
+        }
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * JMH-magic. This {@code main} is not run by the jmh task, but allows running this benchmark on
+   * its own.
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(EditDistanceBenchmark.class.getSimpleName()).forks(1).build();
+    new Runner(opt).run();
+  }
+}
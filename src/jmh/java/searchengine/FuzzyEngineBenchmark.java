@@ -0,0 +1,98 @@
+package searchengine;
+
+// JMH Imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+// Other Imports
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code FuzzyEngine} types on misspellings of 2-, 3- and 8-letter words of
+ * {@code data/enwiki-small.txt}: the 2-gram index followed by the edit distance of the candidates,
+ * and the search of a BK-tree of the words. Short words are allowed fewer edits, but share few
+ * 2-grams with their misspellings, so the two engines do very different amounts of work for them.
+ */
+public class FuzzyEngineBenchmark {
+
+  /**
+   * The engines and the misspelled words of one length.
+   */
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    /** The length of the misspelled words. */
+    @Param({"2", "3", "8"})
+    public int length;
+
+    public FuzzyEngine biGram;
+    public FuzzyEngine bkTree;
+    public List<String> typos = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+      Corpus corpus = new Corpus(FileHelper.parseFile("data/enwiki-small.txt"));
+      corpus.build();
+      corpus.build2GramIndex();
+      biGram = FuzzyEngine.Type.BIGRAM.create(corpus.getBiGramIndex());
+      bkTree = FuzzyEngine.Type.BKTREE.create(corpus.getBiGramIndex());
+
+      // change one letter of words of the length, e.g. "war" into "wor".
+      List<String> words = new ArrayList<>();
+      for (String word : corpus.getWordsInCorpus()) {
+        if (word.length() == length) {
+          words.add(word);
+        }
+      }
+      Random random = new Random(42);
+      while (typos.size() < 50) {
+        char[] typo = words.get(random.nextInt(words.size())).toCharArray();
+        typo[random.nextInt(length)] = (char) ('a' + random.nextInt(26));
+        typos.add(new String(typo));
+      }
+    }
+  }
+
+  /** Expands every misspelled word with the 2-gram index and the bounded edit distance. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void biGramEngine(BenchmarkState state, Blackhole blackhole) {
+    for (String typo : state.typos) {
+      blackhole.consume(state.biGram.find(typo, Fuzzy.maxDistance(typo)));
+    }
+  }
+
+  /** Expands every misspelled word by searching the BK-tree. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void bkTreeEngine(BenchmarkState state, Blackhole blackhole) {
+    for (String typo : state.typos) {
+      blackhole.consume(state.bkTree.find(typo, Fuzzy.maxDistance(typo)));
+    }
+  }
+
+  /**
+   * JMH-magic. This {@code main} is not run by the jmh task, but allows running this benchmark on
+   * its own.
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(FuzzyEngineBenchmark.class.getSimpleName()).forks(1).build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,54 @@
+package searchengine;
+
+// JMH Imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+// Other Imports
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing {@code data/enwiki-small.txt} line by line with a {@code Scanner}, as
+ * {@code FileHelper.readFile} does, with parsing it in parallel from a memory-mapped file with a
+ * {@code MappedFileParser}. Both build the same set of websites.
+ */
+public class ParserBenchmark {
+
+  private static final String DATABASE = "data/enwiki-small.txt";
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Set<Website> scanner() throws IOException {
+    Set<Website> sites = new HashSet<>();
+    FileHelper.readFile(DATABASE, sites::add);
+    return sites;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Set<Website> mapped() throws IOException {
+    return new MappedFileParser().parse(DATABASE);
+  }
+
+  /**
+   * JMH-magic. This {@code main} is not run by the jmh task, but allows running this benchmark on
+   * its own.
+   */
+  public static void main(String[] args) throws RunnerException {
+
+    Options opt =
+        new OptionsBuilder().include(ParserBenchmark.class.getSimpleName()).forks(1).build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,101 @@
+package searchengine;
+
+// JMH Imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+// Other Imports
+import java.util.concurrent.TimeUnit;
+import java.util.Set;
+
+/**
+ * Compares looking up (and walking through) the results of a word in the {@code InvertedIndex}
+ * with reading the posting list of the same word from a {@code PostingListIndex} and a
+ * {@code CompressedPostingListIndex}. The indices are built from {@code data/enwiki-small.txt}.
+ */
+public class PostingListBenchmark {
+
+  /** The query words, the same as in the {@code IndexBenchmark}. */
+  private static final String[] SEARCH_WORDS = {"denmark", "sweden", "iceland", "germany",
+      "england", "norway", "france", "belgium", "poland", "italy", "spain", "greece", "austria",
+      "latvia", "estonia", "switzerland", "ireland", "netherlands", "scotland", "wales", "the"};
+
+  /**
+   * The state shared by all runs of the benchmark: one index of each kind, built from the same
+   * websites.
+   */
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    public InvertedIndex invertedIndex;
+    public PostingListIndex postingListIndex;
+    public PostingListIndex compressedIndex;
+
+    public BenchmarkState() {
+      Set<Website> sites = FileHelper.parseFile("data/enwiki-small.txt");
+      invertedIndex = new InvertedIndexTreeMap();
+      invertedIndex.build(sites);
+      postingListIndex = new PostingListIndex();
+      postingListIndex.build(sites);
+      compressedIndex = new CompressedPostingListIndex();
+      compressedIndex.build(sites);
+    }
+  }
+
+  /** Looks up every word in the {@code InvertedIndex}, and walks through the websites found. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void invertedIndexLookup(BenchmarkState state, Blackhole blackhole) {
+    for (String word : SEARCH_WORDS) {
+      for (Website site : state.invertedIndex.lookup(word)) {
+        blackhole.consume(site);
+      }
+    }
+  }
+
+  /** Walks through the uncompressed posting list of every word. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void postingListLookup(BenchmarkState state, Blackhole blackhole) {
+    readPostings(state.postingListIndex, blackhole);
+  }
+
+  /** Walks through the compressed posting list of every word, decoding it block by block. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void compressedLookup(BenchmarkState state, Blackhole blackhole) {
+    readPostings(state.compressedIndex, blackhole);
+  }
+
+  private void readPostings(PostingListIndex index, Blackhole blackhole) {
+    for (String word : SEARCH_WORDS) {
+      PostingIterator iterator = index.getPostings(word).iterator();
+      for (int docId = iterator.nextDoc(); docId != PostingIterator.NO_MORE_DOCS;
+          docId = iterator.nextDoc()) {
+        blackhole.consume(index.getWebsite(docId));
+      }
+    }
+  }
+
+  /**
+   * JMH-magic. This {@code main} is not run by the jmh task, but allows running this benchmark on
+   * its own.
+   */
+  public static void main(String[] args) throws RunnerException {
+
+    Options opt =
+        new OptionsBuilder().include(PostingListBenchmark.class.getSimpleName()).forks(1).build();
+
+    new Runner(opt).run();
+  }
+}
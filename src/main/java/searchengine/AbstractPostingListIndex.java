@@ -0,0 +1,273 @@
+package searchengine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code AbstractPostingListIndex} is the read side of an index which gives each
+ * {@code Website} a dense {@code int} document ID: the posting lists of the words, the document
+ * table resolving the IDs back to {@code Websites}, and the impacts and champion lists which can be
+ * precomputed once the posting lists are complete. How the posting lists and the document table
+ * are filled is left to the subclasses: the {@code PostingListIndex} builds them from a set of
+ * websites, and the index of an {@code IndexSegment} reads them from a file.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public abstract class AbstractPostingListIndex implements SearchableIndex {
+
+  /** An empty posting list, returned for words that are not in the index. */
+  private static final PostingList EMPTY_POSTINGS = new ArrayPostingList(new int[0]);
+
+  /** The map from a word to the posting list of the websites containing it. */
+  protected Map<String, PostingList> map;
+
+  /** The document table. The {@code Website} with document ID {@code i} is stored at index i. */
+  protected Website[] docTable;
+
+  /** The reverse of the document table, used to answer {@code contains} on lookup results. */
+  protected Map<Website, Integer> docIds;
+
+  /** The map from a word to its highest term frequency on any website. */
+  protected Map<String, Double> maxTermFrequencies;
+
+  /** The value of one step of the quantized impacts, or 0 if no impacts have been built. */
+  private double impactScale;
+
+  /** The map from a word to its best ranked document IDs, best first. */
+  private Map<String, int[]> champions;
+
+  /** The most document IDs of a champion list, or 0 if no champion lists have been built. */
+  private int championCount;
+
+  /* Creates an empty index. */
+  protected AbstractPostingListIndex() {
+    map = new HashMap<>();
+    docTable = new Website[0];
+    docIds = Collections.emptyMap();
+    maxTermFrequencies = new HashMap<>();
+    champions = Collections.emptyMap();
+  }
+
+  /**
+   * Drops the impacts and champion lists, e.g. before the posting lists are rebuilt.
+   */
+  protected void clearPrecomputed() {
+    impactScale = 0;
+    champions = Collections.emptyMap();
+    championCount = 0;
+  }
+
+  /**
+   * Precomputes the impact of every posting, i.e. the rank of the word on the website given by a
+   * {@code Score}, so ranking at query time becomes a sum of small integers. The impacts are
+   * quantized to 16 bits with one scale for the whole index, and the posting lists are replaced by
+   * {@code ImpactPostingLists}, which are not compressed. This must be called after
+   * {@code build}, with a {@code Corpus} built from the same websites.
+   *
+   * @param corpus the {@code Corpus} used by the {@code Score}.
+   * @param score the {@code Score} giving the impacts.
+   */
+  public void buildImpacts(Corpus corpus, Score score) {
+
+    // first pass: the highest impact decides the scale.
+    double maxImpact = 0;
+    for (Map.Entry<String, PostingList> entry : map.entrySet()) {
+      for (int docId : entry.getValue().toArray()) {
+        double impact = score.rankSingle(getWebsite(docId), corpus, entry.getKey());
+        maxImpact = Math.max(maxImpact, impact);
+      }
+    }
+    double scale = maxImpact > 0 ? maxImpact / ImpactPostingList.MAX_IMPACT : 1;
+
+    // second pass: quantize the impacts.
+    for (Map.Entry<String, PostingList> entry : map.entrySet()) {
+      int[] docIds = entry.getValue().toArray();
+      char[] impacts = new char[docIds.length];
+      for (int i = 0; i < docIds.length; i++) {
+        double impact = score.rankSingle(getWebsite(docIds[i]), corpus, entry.getKey());
+        impacts[i] = ImpactPostingList.quantize(impact, scale);
+      }
+      entry.setValue(new ImpactPostingList(docIds, impacts));
+    }
+    impactScale = scale;
+  }
+
+  /**
+   * Checks whether the impacts of the postings have been built.
+   *
+   * @return true, if every posting list is an {@code ImpactPostingList}.
+   */
+  @Override
+  public boolean hasImpacts() {
+    return impactScale > 0;
+  }
+
+  /**
+   * Returns the value of one step of the quantized impacts, i.e. the factor turning a sum of
+   * impacts back into a rank.
+   *
+   * @return the impact scale, or 0 if no impacts have been built.
+   */
+  @Override
+  public double getImpactScale() {
+    return impactScale;
+  }
+
+  /**
+   * Builds the champion list of every word: the document IDs of the {@code n} websites on which
+   * the word has the highest rank given by a {@code Score}, best first, with ties broken by
+   * document ID. The rank of a single word is the rank of a query of just that word, so the best
+   * websites of such a query are read from the start of its champion list. If impacts have been
+   * built, the websites are ranked by their impacts instead, as the {@code MaxScoreRetriever}
+   * ranks them. This must be called after {@code build}, and after {@code buildImpacts}, with a
+   * {@code Corpus} built from the same websites.
+   *
+   * @param corpus the {@code Corpus} used by the {@code Score}.
+   * @param score the {@code Score} giving the ranks.
+   * @param n the number of websites kept per word, at least 1.
+   */
+  public void buildChampions(Corpus corpus, Score score, int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("A champion list must hold at least one website");
+    }
+    Map<String, int[]> lists = new HashMap<>();
+    for (Map.Entry<String, PostingList> entry : map.entrySet()) {
+      PostingList postings = entry.getValue();
+      TopKCollector collector = new TopKCollector(Math.min(n, postings.size()));
+      PostingIterator iterator = postings.iterator();
+      for (int docId = iterator.nextDoc(); docId != PostingIterator.NO_MORE_DOCS;
+          docId = iterator.nextDoc()) {
+        collector.collect(docId, hasImpacts() ? ((ImpactPostingList.ImpactIterator) iterator)
+            .impact() : score.rankSingle(getWebsite(docId), corpus, entry.getKey()));
+      }
+      lists.put(entry.getKey(), collector.drainIds());
+    }
+    champions = lists;
+    championCount = n;
+  }
+
+  /**
+   * Returns the champion list of a word, i.e. the document IDs of the best ranked websites
+   * containing it, best first. The list holds every website containing the word if there are at
+   * most {@code getChampionCount()} of them.
+   *
+   * @param word the word to be looked up.
+   * @return the champion list, which must not be changed, or null if no champion lists have been
+   *     built. It is empty if the word is not in the index.
+   */
+  @Override
+  public int[] getChampions(String word) {
+    if (championCount == 0) {
+      return null;
+    }
+    int[] list = champions.get(word);
+    return list == null ? new int[0] : list;
+  }
+
+  /**
+   * Returns the number of websites kept in the champion list of a word.
+   *
+   * @return the most document IDs of a champion list, or 0 if no champion lists have been built.
+   */
+  @Override
+  public int getChampionCount() {
+    return championCount;
+  }
+
+  /**
+   * Returns the websites which contain the {@code query} word. The returned {@code Set} is a
+   * read-only view on the posting list, so no {@code Websites} are copied or hashed.
+   *
+   * @param query The query to be looked up.
+   * @return the {@code Set<Website>} that contain the query word.
+   */
+  @Override
+  public Set<Website> lookup(String query) {
+    PostingList postings = getPostings(query);
+    if (postings.size() == 0) {
+      return Collections.emptySet();
+    }
+    return new PostingSet(this, postings);
+  }
+
+  /**
+   * Returns the words of the index.
+   *
+   * @return a read-only view of the indexed words.
+   */
+  @Override
+  public Set<String> getWords() {
+    return Collections.unmodifiableSet(map.keySet());
+  }
+
+  /**
+   * Returns the posting list of a word, i.e. the sorted document IDs of the websites containing
+   * it.
+   *
+   * @param word The word to be looked up.
+   * @return the posting list, which is empty if the word is not in the index.
+   */
+  @Override
+  public PostingList getPostings(String word) {
+    PostingList postings = map.get(word);
+    return postings == null ? EMPTY_POSTINGS : postings;
+  }
+
+  /**
+   * Returns the highest term frequency of a word on any website, i.e. its number of occurrences on
+   * a website divided by the number of words on that website.
+   *
+   * @param word The word to be looked up.
+   * @return the highest term frequency, or 0 if the word is not in the index.
+   */
+  @Override
+  public double getMaxTermFrequency(String word) {
+    Double max = maxTermFrequencies.get(word);
+    return max == null ? 0 : max;
+  }
+
+  /**
+   * Resolves a document ID to its {@code Website}.
+   *
+   * @param docId The document ID.
+   * @return the {@code Website} with the given document ID.
+   */
+  @Override
+  public Website getWebsite(int docId) {
+    return docTable[docId];
+  }
+
+  /**
+   * Returns the document ID of a {@code Website}.
+   *
+   * @param site The {@code Website}.
+   * @return the document ID, or -1 if the website is not in the index.
+   */
+  @Override
+  public int getDocId(Website site) {
+    Integer docId = docIds.get(site);
+    return docId == null ? -1 : docId;
+  }
+
+  /**
+   * Returns the number of websites in the index. Document IDs range from 0 to this number
+   * (exclusive).
+   *
+   * @return the number of indexed websites.
+   */
+  @Override
+  public int getDocumentCount() {
+    return docTable.length;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + "words=" + map.size() + ", sites="
+        + getDocumentCount() + '}';
+  }
+}
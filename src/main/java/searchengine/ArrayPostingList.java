@@ -0,0 +1,98 @@
+package searchengine;
+
+import java.util.Arrays;
+
+/**
+ * An uncompressed {@code PostingList}, storing its document IDs in a sorted {@code int[]}.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class ArrayPostingList implements PostingList {
+
+  /** The sorted document IDs. */
+  private final int[] docIds;
+
+  /**
+   * Creates a {@code PostingList} from an array of document IDs. The array is not copied.
+   *
+   * @param docIds the document IDs, sorted in increasing order.
+   */
+  public ArrayPostingList(int[] docIds) {
+    this.docIds = docIds;
+  }
+
+  @Override
+  public int size() {
+    return docIds.length;
+  }
+
+  @Override
+  public int[] toArray() {
+    return docIds.clone();
+  }
+
+  @Override
+  public PostingIterator iterator() {
+    return new ArrayIterator();
+  }
+
+  /**
+   * An iterator over the document IDs of an {@code ArrayPostingList}.
+   */
+  class ArrayIterator implements PostingIterator {
+    /** The position of the current document ID in the array. */
+    private int position = -1;
+
+    /**
+     * Returns the position of the current document ID in the list.
+     *
+     * @return the position, which is only valid while the iterator is on a document.
+     */
+    int position() {
+      return position;
+    }
+
+    @Override
+    public int docId() {
+      if (position < 0) {
+        return -1;
+      }
+      return position < docIds.length ? docIds[position] : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (position < docIds.length) {
+        position++;
+      }
+      return docId();
+    }
+
+    /**
+     * Skips ahead with a galloping search: the step size doubles until a document ID
+     * {@code >= target} is passed, and the last step is then searched with a binary search.
+     * This takes O(log d) steps for a skip of d positions.
+     */
+    @Override
+    public int advance(int target) {
+      int low = position + 1;
+      int step = 1;
+      int high = low;
+      while (high < docIds.length && docIds[high] < target) {
+        low = high + 1;
+        high += step;
+        step <<= 1;
+      }
+      high = Math.min(high, docIds.length - 1);
+      int index = low > high ? low : Arrays.binarySearch(docIds, low, high + 1, target);
+      position = index < 0 ? -index - 1 : index;
+      if (position > docIds.length) {
+        position = docIds.length;
+      }
+      return docId();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package searchengine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code BiGramFuzzyEngine} finds the words close to a word in two steps. First the candidates
+ * are found in the {@code BiGramIndex}: the words having enough 2-grams in common with the word to
+ * be within the edit distance. Then the edit distance of every candidate is checked.
+ *
+ * <p>The bound on the 2-grams in common assumes the edits are far apart, so a few very short words
+ * within the edit distance are not found, e.g. "x" for "px".
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class BiGramFuzzyEngine implements FuzzyEngine {
+
+  /** The 2-gram index of the vocabulary. */
+  private final BiGramIndex biGramIndex;
+
+  /**
+   * Creates a {@code BiGramFuzzyEngine} for the vocabulary of a 2-gram index.
+   *
+   * @param biGramIndex the 2-gram index.
+   */
+  public BiGramFuzzyEngine(BiGramIndex biGramIndex) {
+    this.biGramIndex = biGramIndex;
+  }
+
+  @Override
+  public Set<String> find(String word, int delta) {
+    Set<String> found = new HashSet<>();
+
+    // only keep the approximate strings with edit distance less or equal to allowed.
+    EditDistance distance = new EditDistance(word);
+    for (String approxString : candidates(word, delta)) {
+      if (distance.distance(approxString, delta) <= delta) {
+        found.add(approxString);
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public FuzzyEngine withVocabulary(BiGramIndex vocabulary) {
+    return vocabulary == biGramIndex ? this : new BiGramFuzzyEngine(vocabulary);
+  }
+
+  /**
+   * Returns the words in the vocabulary that have enough 2-grams in common with a word to be within
+   * an edit distance of it. The edit distance of the words returned is not checked.
+   *
+   * @param unknownWord the word to be expanded.
+   * @param delta the maximum allowed edit distance, at least 1.
+   * @return the candidate words.
+   */
+  List<String> candidates(String unknownWord, int delta) {
+
+    // only looking at 2-grams for now
+    int gramSize = 2;
+
+    List<String> approximateStrings = new ArrayList<>();
+
+    // a word within the allowed edit distance has at least max(|x|, |y|) - 1 - (delta - 1) * 2
+    // grams in common with unknownWord, which is lowest for the words no longer than it.
+    int length = unknownWord.length();
+    int threshold = Math.max(1, length - 1 - (delta - 1) * gramSize);
+
+    // merge the posting lists of the bigrams of unknownWord, finding the words having enough
+    // grams in common with it, without looking at the rest of the corpus.
+    biGramIndex.candidates(BiGramIndex.biGrams(unknownWord), threshold, (wordId, commonGrams) -> {
+      String word = biGramIndex.getWord(wordId);
+
+      // words whose length differs by more than delta are too far away.
+      if (Math.abs(word.length() - length) > delta) {
+        return;
+      }
+      int commonGramsBound = Math.max(length, word.length()) - 1 - (delta - 1) * gramSize;
+      if (commonGrams >= commonGramsBound) {
+        // words that have sufficient grams, might be within allowed edit distance.
+        approximateStrings.add(word);
+      }
+    });
+    return approximateStrings;
+  }
+}
@@ -0,0 +1,419 @@
+package searchengine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code BiGramIndex} is the 2-gram index used for fuzzy search. Every word of the vocabulary
+ * gets a word ID, and every 2-gram is mapped to the sorted IDs of the words containing it. The
+ * 2-grams of a word are its pairs of neighbouring characters, plus "$" followed by its first
+ * character and its last character followed by "$", so e.g. "cat" has the 2-grams "$c", "ca",
+ * "at" and "t$". Any character may occur in a 2-gram.
+ *
+ * <p>The index is built in a single pass over the vocabulary, and only stores the words each 2-gram
+ * actually occurs in, instead of a row of the whole vocabulary per 2-gram. It is never changed
+ * once built: {@code withWords} returns a new index with more words, sharing the posting lists of
+ * the 2-grams the new words do not contain.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class BiGramIndex {
+
+  /** The posting list of a 2-gram which no word contains. */
+  private static final int[] NO_WORDS = new int[0];
+
+  /** The words, indexed by word ID. */
+  private final String[] words;
+
+  /** The number of words, from the first, which are sorted alphabetically. */
+  private final int sortedCount;
+
+  /** The words after the sorted ones, i.e. those added by {@code withWords}. */
+  private final Set<String> addedWords;
+
+  /** The map from a 2-gram to the sorted IDs of the words containing it. */
+  private final Map<String, int[]> postings;
+
+  /**
+   * Creates a {@code BiGramIndex} from its posting lists, e.g. as read from an
+   * {@code IndexSegment}.
+   *
+   * @param words the words, sorted alphabetically, indexed by word ID.
+   * @param postings the map from a 2-gram to the sorted IDs of the words containing it.
+   */
+  BiGramIndex(String[] words, Map<String, int[]> postings) {
+    this(words, words.length, Collections.<String>emptySet(), postings);
+  }
+
+  private BiGramIndex(String[] words, int sortedCount, Set<String> addedWords,
+      Map<String, int[]> postings) {
+    this.words = words;
+    this.sortedCount = sortedCount;
+    this.addedWords = addedWords;
+    this.postings = postings;
+  }
+
+  /**
+   * Builds the {@code BiGramIndex} of a vocabulary, giving the words IDs in alphabetical order.
+   *
+   * @param vocabulary the words, without duplicates.
+   * @return the built index.
+   */
+  public static BiGramIndex build(Collection<String> vocabulary) {
+    String[] words = vocabulary.toArray(new String[0]);
+    Arrays.sort(words);
+    Map<String, IdList> lists = new HashMap<>();
+    for (int wordId = 0; wordId < words.length; wordId++) {
+      addWord(lists, words[wordId], wordId);
+    }
+    return new BiGramIndex(words, toArrays(lists));
+  }
+
+  /**
+   * Returns an index which also holds some new words. The new words get the IDs after the existing
+   * ones, so the posting lists stay sorted; only the posting lists of the 2-grams of the new words
+   * are copied. Words which are already in the index are skipped.
+   *
+   * @param newWords the words to add.
+   * @return the new index, or this index if all words were already in it.
+   */
+  public BiGramIndex withWords(Collection<String> newWords) {
+    Set<String> added = new LinkedHashSet<>();
+    for (String word : newWords) {
+      if (!contains(word)) {
+        added.add(word);
+      }
+    }
+    if (added.isEmpty()) {
+      return this;
+    }
+
+    String[] grown = Arrays.copyOf(words, words.length + added.size());
+    Map<String, IdList> lists = new HashMap<>();
+    int wordId = words.length;
+    for (String word : added) {
+      grown[wordId] = word;
+      addWord(lists, word, wordId++);
+    }
+
+    // the new IDs are appended to copies of the existing lists.
+    Map<String, int[]> merged = new HashMap<>(postings);
+    for (Map.Entry<String, IdList> entry : lists.entrySet()) {
+      int[] existing = postings.getOrDefault(entry.getKey(), NO_WORDS);
+      IdList list = entry.getValue();
+      int[] ids = Arrays.copyOf(existing, existing.length + list.size);
+      System.arraycopy(list.ids, 0, ids, existing.length, list.size);
+      merged.put(entry.getKey(), ids);
+    }
+
+    Set<String> allAdded = new HashSet<>(addedWords);
+    allAdded.addAll(added);
+    return new BiGramIndex(grown, sortedCount, allAdded, merged);
+  }
+
+  /**
+   * Adds the 2-grams of a word to the lists being built. The word ID must be higher than those
+   * already in the lists.
+   */
+  private static void addWord(Map<String, IdList> lists, String word, int wordId) {
+    for (String biGram : biGrams(word)) {
+      IdList list = lists.get(biGram);
+      if (list == null) {
+        list = new IdList();
+        lists.put(biGram, list);
+      }
+      list.add(wordId);
+    }
+  }
+
+  /**
+   * Turns the lists being built into arrays of the exact size.
+   */
+  private static Map<String, int[]> toArrays(Map<String, IdList> lists) {
+    Map<String, int[]> map = new HashMap<>();
+    for (Map.Entry<String, IdList> entry : lists.entrySet()) {
+      map.put(entry.getKey(), Arrays.copyOf(entry.getValue().ids, entry.getValue().size));
+    }
+    return map;
+  }
+
+  /**
+   * Calculates the 2-grams of a word.
+   *
+   * @param word the word.
+   * @return the 2-grams of the word, without duplicates, including "$s1" and "sn$", where s1 is
+   *     the first and sn is the last character of the word. A word of one character only has
+   *     "$s1", and the empty word has no 2-grams.
+   */
+  public static Set<String> biGrams(String word) {
+    Set<String> biGrams = new LinkedHashSet<>();
+    if (word.isEmpty()) {
+      return biGrams;
+    }
+    biGrams.add("$" + word.charAt(0));
+    if (word.length() == 1) {
+      return biGrams;
+    }
+    for (int i = 0; i < word.length() - 1; i++) {
+      biGrams.add(word.substring(i, i + 2));
+    }
+    biGrams.add(word.charAt(word.length() - 1) + "$");
+    return biGrams;
+  }
+
+  /**
+   * Returns the IDs of the words containing a 2-gram.
+   *
+   * @param biGram the 2-gram.
+   * @return the sorted word IDs, which are empty if no word contains the 2-gram.
+   */
+  public PostingList getPostings(String biGram) {
+    return new ArrayPostingList(postings(biGram));
+  }
+
+  /**
+   * Returns the IDs of the words containing a 2-gram, without copying them. The array must not be
+   * changed.
+   *
+   * @param biGram the 2-gram.
+   * @return the sorted word IDs.
+   */
+  int[] postings(String biGram) {
+    return postings.getOrDefault(biGram, NO_WORDS);
+  }
+
+  /**
+   * Finds the words containing at least {@code threshold} of some 2-grams, i.e. solves the
+   * T-occurrence problem, by merging the posting lists of the 2-grams with the MergeSkip algorithm
+   * (C. Li, J. Lu and Y. Lu, "Efficient Merging and Filtering Algorithms for Approximate String
+   * Searches", ICDE 2008). The lists are merged through a heap of their current word IDs. When the
+   * smallest word ID is in fewer than {@code threshold} lists, the {@code threshold - 1} smallest
+   * lists are skipped ahead to the next smallest word ID, since none of the word IDs skipped can be
+   * in enough lists. The cost depends on the lengths of the lists of the 2-grams, not on the size
+   * of the vocabulary, and nothing of the size of the vocabulary is allocated.
+   *
+   * @param biGrams the 2-grams, without duplicates.
+   * @param threshold the least number of the 2-grams a word must contain, at least 1.
+   * @param collector the collector receiving the words found, in increasing word ID order.
+   */
+  void candidates(Collection<String> biGrams, int threshold, CandidateCollector collector) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("The threshold must be at least 1");
+    }
+    int[][] lists = new int[biGrams.size()][];
+    int listCount = 0;
+    for (String biGram : biGrams) {
+      int[] list = postings(biGram);
+      if (list.length > 0) {
+        lists[listCount++] = list;
+      }
+    }
+    if (listCount < threshold) {
+      return;
+    }
+
+    // a min-heap of the lists, ordered by the word ID at their current position.
+    int[] positions = new int[listCount];
+    int[] heap = new int[listCount];
+    int heapSize = 0;
+    for (int list = 0; list < listCount; list++) {
+      heapSize = push(heap, heapSize, list, lists, positions);
+    }
+
+    int[] popped = new int[listCount];
+    while (heapSize > 0) {
+      int wordId = lists[heap[0]][positions[heap[0]]];
+      int count = 0;
+      while (heapSize > 0 && lists[heap[0]][positions[heap[0]]] == wordId) {
+        popped[count++] = heap[0];
+        heapSize = pop(heap, heapSize, lists, positions);
+      }
+
+      if (count >= threshold) {
+        collector.collect(wordId, count);
+        for (int i = 0; i < count; i++) {
+          if (++positions[popped[i]] < lists[popped[i]].length) {
+            heapSize = push(heap, heapSize, popped[i], lists, positions);
+          }
+        }
+      } else {
+        // the word IDs before the next smallest one are in fewer than threshold lists.
+        int skipped = count;
+        while (skipped < threshold - 1 && heapSize > 0) {
+          popped[skipped++] = heap[0];
+          heapSize = pop(heap, heapSize, lists, positions);
+        }
+        if (heapSize == 0) {
+          return;
+        }
+        int next = lists[heap[0]][positions[heap[0]]];
+        for (int i = 0; i < skipped; i++) {
+          int list = popped[i];
+          positions[list] = advance(lists[list], positions[list], next);
+          if (positions[list] < lists[list].length) {
+            heapSize = push(heap, heapSize, list, lists, positions);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first position at or after {@code from} of a sorted list holding a value of at
+   * least {@code target}, searching exponentially and then binary.
+   */
+  private static int advance(int[] list, int from, int target) {
+    int step = 1;
+    int low = from;
+    int high = from;
+    while (high < list.length && list[high] < target) {
+      low = high + 1;
+      high += step;
+      step <<= 1;
+    }
+    high = Math.min(high, list.length);
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (list[middle] < target) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Adds a list to the heap, and returns the new size of the heap.
+   */
+  private static int push(int[] heap, int size, int list, int[][] lists, int[] positions) {
+    int value = lists[list][positions[list]];
+    int child = size;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (lists[heap[parent]][positions[heap[parent]]] <= value) {
+        break;
+      }
+      heap[child] = heap[parent];
+      child = parent;
+    }
+    heap[child] = list;
+    return size + 1;
+  }
+
+  /**
+   * Removes the list with the smallest word ID from the heap, and returns the new size of the
+   * heap.
+   */
+  private static int pop(int[] heap, int size, int[][] lists, int[] positions) {
+    int last = heap[--size];
+    int value = lists[last][positions[last]];
+    int parent = 0;
+    while (2 * parent + 1 < size) {
+      int child = 2 * parent + 1;
+      if (child + 1 < size && lists[heap[child + 1]][positions[heap[child + 1]]]
+          < lists[heap[child]][positions[heap[child]]]) {
+        child++;
+      }
+      if (value <= lists[heap[child]][positions[heap[child]]]) {
+        break;
+      }
+      heap[parent] = heap[child];
+      parent = child;
+    }
+    heap[parent] = last;
+    return size;
+  }
+
+  /**
+   * Returns the 2-grams which occur in at least one word.
+   *
+   * @return a read-only view of the 2-grams.
+   */
+  public Set<String> getBiGrams() {
+    return Collections.unmodifiableSet(postings.keySet());
+  }
+
+  /**
+   * Checks whether a word is in the index.
+   *
+   * @param word the word.
+   * @return true, if the word has a word ID.
+   */
+  public boolean contains(String word) {
+    return Arrays.binarySearch(words, 0, sortedCount, word) >= 0 || addedWords.contains(word);
+  }
+
+  /**
+   * Returns the word with a word ID.
+   *
+   * @param wordId the word ID.
+   * @return the word.
+   */
+  public String getWord(int wordId) {
+    return words[wordId];
+  }
+
+  /**
+   * Returns the words, indexed by word ID.
+   *
+   * @return a read-only list of the words.
+   */
+  public List<String> getWords() {
+    return Collections.unmodifiableList(Arrays.asList(words));
+  }
+
+  /**
+   * Returns the number of words, i.e. the highest word ID plus one.
+   *
+   * @return the number of words.
+   */
+  public int size() {
+    return words.length;
+  }
+
+  @Override
+  public String toString() {
+    return "BiGramIndex{" + "words=" + words.length + ", biGrams=" + postings.size() + '}';
+  }
+
+  /**
+   * A growable list of word IDs, in increasing order.
+   */
+  private static class IdList {
+
+    private int[] ids = new int[4];
+    private int size = 0;
+
+    void add(int wordId) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = wordId;
+    }
+  }
+
+  /**
+   * Receives the words found by {@code candidates}.
+   */
+  interface CandidateCollector {
+
+    /**
+     * Receives a word containing enough of the 2-grams.
+     *
+     * @param wordId the word ID.
+     * @param count the number of the 2-grams the word contains.
+     */
+    void collect(int wordId, int count);
+  }
+}
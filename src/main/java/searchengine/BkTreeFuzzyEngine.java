@@ -0,0 +1,173 @@
+package searchengine;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code BkTreeFuzzyEngine} finds the words close to a word by searching a BK-tree of the
+ * vocabulary (W. A. Burkhard and R. M. Keller, "Some approaches to best-match file searching",
+ * Comm. ACM 16, 1973). Every node of the tree is a word, and the child of a node along the edge
+ * {@code d} holds the words at edit distance {@code d} from it. Since the edit distance is a
+ * metric, a search at distance {@code delta} from a node at distance {@code d} only has to follow
+ * the edges from {@code d - delta} to {@code d + delta}, so most of the vocabulary is never
+ * visited.
+ *
+ * <p>Unlike the {@code BiGramFuzzyEngine}, every word within the edit distance is found. The tree
+ * is built when the engine is created, so searches never wait for it. When words are added to the
+ * corpus, the new engine copies the tree of the old one and only inserts the new words, which
+ * happens on the thread publishing the new corpus, not on the searching threads.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class BkTreeFuzzyEngine implements FuzzyEngine {
+
+  /** The 2-gram index, whose words are the vocabulary. */
+  private final BiGramIndex vocabulary;
+
+  /** The tree of the vocabulary. */
+  private final Tree tree;
+
+  /**
+   * Creates a {@code BkTreeFuzzyEngine} for the vocabulary of a 2-gram index, and builds its tree.
+   *
+   * @param vocabulary the 2-gram index.
+   */
+  public BkTreeFuzzyEngine(BiGramIndex vocabulary) {
+    this(vocabulary, new Tree(vocabulary.getWords(), null));
+  }
+
+  private BkTreeFuzzyEngine(BiGramIndex vocabulary, Tree tree) {
+    this.vocabulary = vocabulary;
+    this.tree = tree;
+  }
+
+  @Override
+  public Set<String> find(String word, int delta) {
+    Set<String> found = new HashSet<>();
+    if (tree.words.length == 0) {
+      return found;
+    }
+    EditDistance distance = new EditDistance(word);
+    int[] stack = new int[16];
+    int size = 0;
+    stack[size++] = 0;
+    while (size > 0) {
+      int node = stack[--size];
+      int d = distance.distance(tree.words[node]);
+      if (d <= delta) {
+        found.add(tree.words[node]);
+      }
+      for (int child = tree.firstChild[node]; child >= 0; child = tree.nextSibling[child]) {
+        if (Math.abs(tree.edge[child] - d) <= delta) {
+          if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+          }
+          stack[size++] = child;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns an engine for another vocabulary. If the other vocabulary starts with the words of
+   * this one, as it does after {@code BiGramIndex.withWords}, only the new words are inserted into
+   * a copy of the tree; else the tree is built from scratch.
+   *
+   * @param vocabulary the 2-gram index of the other vocabulary.
+   * @return this engine if the vocabulary is the same, or else a new engine.
+   */
+  @Override
+  public FuzzyEngine withVocabulary(BiGramIndex vocabulary) {
+    if (vocabulary == this.vocabulary) {
+      return this;
+    }
+    List<String> words = vocabulary.getWords();
+    return new BkTreeFuzzyEngine(vocabulary, new Tree(words, tree.isPrefixOf(words) ? tree : null));
+  }
+
+  /**
+   * The BK-tree, with the words as nodes. The root is node 0, and the children of a node are kept
+   * as a linked list of node numbers.
+   */
+  private static final class Tree {
+
+    /** The word of every node. */
+    private final String[] words;
+
+    /** The first child of every node, or -1 if it has none. */
+    private final int[] firstChild;
+
+    /** The next child of the parent of every node, or -1 if it is the last. */
+    private final int[] nextSibling;
+
+    /** The edit distance from the parent of every node. */
+    private final int[] edge;
+
+    /**
+     * Builds the tree of a vocabulary. If a tree of the first words of the vocabulary is given, it
+     * is copied, and only the remaining words are inserted; the given tree is not changed.
+     *
+     * @param vocabulary the words.
+     * @param base the tree of a prefix of the vocabulary, or null to build the whole tree.
+     */
+    Tree(List<String> vocabulary, Tree base) {
+      words = vocabulary.toArray(new String[0]);
+      int built = base == null ? 0 : base.words.length;
+      firstChild = base == null ? new int[words.length] : Arrays.copyOf(base.firstChild,
+          words.length);
+      nextSibling = base == null ? new int[words.length] : Arrays.copyOf(base.nextSibling,
+          words.length);
+      edge = base == null ? new int[words.length] : Arrays.copyOf(base.edge, words.length);
+      Arrays.fill(firstChild, built, words.length, -1);
+      Arrays.fill(nextSibling, built, words.length, -1);
+      for (int node = Math.max(built, 1); node < words.length; node++) {
+        insert(node);
+      }
+    }
+
+    /**
+     * Checks whether the words of this tree are the first words of a vocabulary, in the same
+     * order.
+     */
+    boolean isPrefixOf(List<String> vocabulary) {
+      if (vocabulary.size() < words.length) {
+        return false;
+      }
+      for (int node = 0; node < words.length; node++) {
+        if (!words[node].equals(vocabulary.get(node))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Inserts a node below the root, following the edges of its distances to the nodes on the way.
+     * The words are distinct, so the distances are never 0.
+     */
+    private void insert(int node) {
+      EditDistance distance = new EditDistance(words[node]);
+      int parent = 0;
+      while (true) {
+        int d = distance.distance(words[parent]);
+        int child = firstChild[parent];
+        while (child >= 0 && edge[child] != d) {
+          child = nextSibling[child];
+        }
+        if (child < 0) {
+          edge[node] = d;
+          nextSibling[node] = firstChild[parent];
+          firstChild[parent] = node;
+          return;
+        }
+        parent = child;
+      }
+    }
+  }
+}
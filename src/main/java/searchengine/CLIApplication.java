@@ -1,8 +1,8 @@
 package searchengine;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Scanner;
-import java.util.Set;
 
 /**
  * Turns our search engine into a command-line application. Queries are received on standard input,
@@ -24,11 +24,14 @@ public class CLIApplication {
   public static void main(String[] args) {
     System.out.println("Welcome to the SearchEngine!");
 
-    System.out.println("Reading database...");
-    Set<Website> sites = FileHelper.parseFile(args);
-
-    System.out.println("Building the search engine...");
-    searchengine = new SearchEngine(sites);
+    // the database is either a text file, or an index segment built by SegmentTool.
+    String database = FileHelper.getDatabase(args);
+    try {
+      searchengine = SearchEngine.load(database, FileHelper.readProperties());
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
 
     System.out.println("Search engine is ready to receive queries.");
     System.out.println("Starting command-line interface:");
@@ -44,6 +47,7 @@ public class CLIApplication {
         break;
       }
       System.out.println();
+      printExpansions(query);
       // List<Website> resultList = searchengine.search(query);
       List<Website> resultList = searchengine.search(query);
       System.out.println("Found " + resultList.size() + " websites matching the query.");
@@ -58,4 +62,24 @@ public class CLIApplication {
     // Close the Scanner object to prevent ressource leaks
     input.close();
   }
+
+  /**
+   * Prints the words of a query which are not in the corpus, and the words searched for instead.
+   * This is done here rather than by the fuzzy search, so queries from the Web print nothing.
+   *
+   * @param query the query entered by the user.
+   */
+  private static void printExpansions(String query) {
+    Snapshot snapshot = searchengine.getSnapshot();
+    for (String word : query.split("\\s+")) {
+      if (word.equals("OR") || word.contains(":")) {
+        continue;
+      }
+      word = word.toLowerCase().replaceFirst("^-", "");
+      if (!word.isEmpty() && !snapshot.getCorpus().containsWord(word)) {
+        System.out.println("Cannot find word: " + word + " Instead I'll try to search for:");
+        System.out.println(snapshot.getFuzzy().expand(word));
+      }
+    }
+  }
 }
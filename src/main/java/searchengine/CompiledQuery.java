@@ -0,0 +1,178 @@
+package searchengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@code CompiledQuery} is a query string after it has been parsed by the {@code QueryHandler}:
+ * the optional "site:" filter, and the subqueries with their words already lowercased and fuzzy
+ * expanded. A query is compiled once per request, and the same object is then used both for
+ * finding the matching {@code Websites} and for ranking them. A {@code CompiledQuery} is immutable.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class CompiledQuery {
+
+  /** The lowercased url prefix of the "site:" filter, or null if there is none. */
+  private final String siteFilter;
+
+  /** The subqueries; a website matches the query if it matches any of them. */
+  private final List<SubQuery> subQueries;
+
+  /** The structured query used for ranking, derived from the subqueries. */
+  private final List<List<String>> structuredQuery;
+
+  /**
+   * Creates a {@code CompiledQuery}.
+   *
+   * @param siteFilter the lowercased url prefix of the "site:" filter, or null.
+   * @param subQueries the subqueries of the query.
+   */
+  public CompiledQuery(String siteFilter, List<SubQuery> subQueries) {
+    this.siteFilter = siteFilter;
+    this.subQueries = Collections.unmodifiableList(new ArrayList<>(subQueries));
+
+    List<List<String>> structured = new ArrayList<>();
+    for (SubQuery subQuery : subQueries) {
+      Set<String> words = new LinkedHashSet<>();
+      for (Set<String> alternatives : subQuery.getWords()) {
+        words.addAll(alternatives);
+      }
+      structured.add(Collections.unmodifiableList(new ArrayList<>(words)));
+    }
+    this.structuredQuery = Collections.unmodifiableList(structured);
+  }
+
+  /**
+   * Returns the url prefix of the "site:" filter.
+   *
+   * @return the lowercased url prefix, or null if the query has no "site:" filter.
+   */
+  public String getSiteFilter() {
+    return siteFilter;
+  }
+
+  /**
+   * Returns the subqueries of the query.
+   *
+   * @return the subqueries.
+   */
+  public List<SubQuery> getSubQueries() {
+    return subQueries;
+  }
+
+  /**
+   * Returns the query in the structured format used for ranking: a list with, for every
+   * subquery, all the words (including fuzzed versions) that occur in it. Excluded words are not
+   * part of the structured query.
+   *
+   * @return the structured query.
+   */
+  public List<List<String>> getStructuredQuery() {
+    return structuredQuery;
+  }
+
+  /**
+   * Returns a key identifying the query up to the order and repetition of its parts, so queries
+   * with the same key match the same websites and rank them the same, e.g. "b a OR a b a". The
+   * words are already lowercased. The alternatives of every word, the words and excluded words of
+   * every subquery, and the subqueries are sorted and deduplicated, and every word is written
+   * after its length, so that different queries never get the same key.
+   *
+   * @return the normalized key.
+   */
+  public String getNormalizedKey() {
+    Set<String> normalized = new TreeSet<>();
+    for (SubQuery subQuery : subQueries) {
+      Set<String> words = new TreeSet<>();
+      for (Set<String> alternatives : subQuery.getWords()) {
+        words.add(normalize("[", new TreeSet<>(alternatives)));
+      }
+      normalized.add(normalize("(", words) + normalize("-", new TreeSet<>(subQuery.getExcluded())));
+    }
+    StringBuilder key = new StringBuilder();
+    if (siteFilter != null) {
+      key.append("site:").append(siteFilter.length()).append(':').append(siteFilter);
+    }
+    for (String subQuery : normalized) {
+      key.append(subQuery);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Writes sorted parts of a key after a prefix, each part after its length.
+   */
+  private static String normalize(String prefix, Set<String> parts) {
+    StringBuilder normalized = new StringBuilder(prefix);
+    for (String part : parts) {
+      normalized.append(part.length()).append(':').append(part);
+    }
+    return normalized.toString();
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledQuery{" + "siteFilter='" + siteFilter + '\'' + ", subQueries=" + subQueries
+        + '}';
+  }
+
+  /**
+   * A subquery matches the websites containing all of its words, but none of its excluded words.
+   * Each word is represented by the set of words that may stand in for it: the word itself, or
+   * its fuzzed versions if the word is not in the {@code Corpus}.
+   */
+  public static class SubQuery {
+
+    /** For every word of the subquery, the words that may stand in for it. */
+    private final List<Set<String>> words;
+
+    /** The excluded words of the subquery. */
+    private final Set<String> excluded;
+
+    /**
+     * Creates a {@code SubQuery}.
+     *
+     * @param words for every word of the subquery, the words that may stand in for it.
+     * @param excluded the excluded words of the subquery.
+     */
+    public SubQuery(List<Set<String>> words, Set<String> excluded) {
+      List<Set<String>> wordsCopy = new ArrayList<>();
+      for (Set<String> alternatives : words) {
+        wordsCopy.add(Collections.unmodifiableSet(new LinkedHashSet<>(alternatives)));
+      }
+      this.words = Collections.unmodifiableList(wordsCopy);
+      this.excluded = Collections.unmodifiableSet(new LinkedHashSet<>(excluded));
+    }
+
+    /**
+     * Returns, for every word of the subquery, the words that may stand in for it.
+     *
+     * @return the list of alternatives for each word.
+     */
+    public List<Set<String>> getWords() {
+      return words;
+    }
+
+    /**
+     * Returns the excluded words of the subquery.
+     *
+     * @return the excluded words.
+     */
+    public Set<String> getExcluded() {
+      return excluded;
+    }
+
+    @Override
+    public String toString() {
+      return "SubQuery{" + "words=" + words + ", excluded=" + excluded + '}';
+    }
+  }
+}
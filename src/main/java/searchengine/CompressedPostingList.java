@@ -0,0 +1,229 @@
+package searchengine;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@code PostingList} which stores its document IDs delta-encoded with variable-byte integers,
+ * in blocks of {@code BLOCK_SIZE} IDs. Each block starts with a small header holding the last
+ * document ID of the block and the number of bytes of the block, so an iterator can skip whole
+ * blocks without decoding them, and only ever keeps one decoded block in memory.
+ *
+ * <p>The layout of a list, starting at its offset in the buffer, is:
+ *
+ * <pre>
+ * size
+ * for each block: (lastDocId - previousLastDocId) byteLength delta1 delta2 ...
+ * </pre>
+ *
+ * where all numbers are variable-byte integers, and the first delta of a block is relative to the
+ * last document ID of the previous block (or -1 for the first block). Many lists can share one
+ * buffer, which keeps the per-word overhead down to a single small object.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class CompressedPostingList implements PostingList {
+
+  /** The number of document IDs in a (full) block. */
+  public static final int BLOCK_SIZE = 128;
+
+  /** The buffer holding the encoded list. */
+  private final ByteBuffer buffer;
+
+  /** The position of the first byte of the encoded list in the buffer. */
+  private final int offset;
+
+  /** The number of document IDs in the list. */
+  private final int size;
+
+  /**
+   * Creates a {@code PostingList} from a list that was encoded into {@code buffer} by
+   * {@code encode}.
+   *
+   * @param buffer the buffer holding the encoded list.
+   * @param offset the position of the encoded list in the buffer.
+   */
+  public CompressedPostingList(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.size = readVInt(buffer, offset);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public PostingIterator iterator() {
+    return new BlockIterator();
+  }
+
+  /**
+   * Encodes a sorted array of document IDs and appends it to {@code out}.
+   *
+   * @param out the stream the encoded list is written to.
+   * @param docIds the document IDs, sorted in increasing order.
+   */
+  public static void encode(ByteArrayOutputStream out, int[] docIds) {
+    writeVInt(out, docIds.length);
+
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    int previousLast = -1;
+    for (int start = 0; start < docIds.length; start += BLOCK_SIZE) {
+      int end = Math.min(start + BLOCK_SIZE, docIds.length);
+
+      // encode the gaps between the document IDs of the block.
+      block.reset();
+      int previous = previousLast;
+      for (int i = start; i < end; i++) {
+        writeVInt(block, docIds[i] - previous);
+        previous = docIds[i];
+      }
+
+      // write the block header followed by the gaps.
+      writeVInt(out, docIds[end - 1] - previousLast);
+      writeVInt(out, block.size());
+      out.write(block.toByteArray(), 0, block.size());
+      previousLast = docIds[end - 1];
+    }
+  }
+
+  /**
+   * Writes a non-negative {@code int} as a variable-byte integer, 7 bits per byte, with the high
+   * bit set on all but the last byte.
+   *
+   * @param out the stream to write to.
+   * @param value the value to write.
+   */
+  static void writeVInt(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Reads a variable-byte integer at a position in a buffer.
+   *
+   * @param buffer the buffer to read from.
+   * @param position the position of the first byte of the integer.
+   * @return the integer.
+   */
+  static int readVInt(ByteBuffer buffer, int position) {
+    byte b = buffer.get(position++);
+    int value = b & 0x7F;
+    for (int shift = 7; b < 0; shift += 7) {
+      b = buffer.get(position++);
+      value |= (b & 0x7F) << shift;
+    }
+    return value;
+  }
+
+  /**
+   * The iterator decodes one block at a time into a small array, and skips blocks using their
+   * headers when advancing.
+   */
+  private class BlockIterator implements PostingIterator {
+
+    /** The decoded document IDs of the current block. */
+    private final int[] block = new int[Math.min(size, BLOCK_SIZE)];
+
+    /** The number of document IDs in the current block. */
+    private int blockLength = 0;
+
+    /** The position of the current document ID in the current block. */
+    private int positionInBlock = -1;
+
+    /** The last document ID of the current block, or -1 before the first block. */
+    private int blockLast = -1;
+
+    /** The number of document IDs in the blocks after the current block. */
+    private int remaining = size;
+
+    /** The position in the buffer of the next byte to be read. */
+    private int readPosition;
+
+    /** The current document ID. */
+    private int docId = -1;
+
+    BlockIterator() {
+      readPosition = offset;
+      readVInt(); // skip the size
+    }
+
+    @Override
+    public int docId() {
+      return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (positionInBlock + 1 < blockLength) {
+        docId = block[++positionInBlock];
+      } else if (remaining > 0) {
+        decodeBlock();
+        docId = block[positionInBlock];
+      } else {
+        positionInBlock = blockLength;
+        docId = NO_MORE_DOCS;
+      }
+      return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+      if (blockLast < target) {
+        // none of the remaining document IDs of the current block can match.
+        positionInBlock = blockLength;
+
+        // skip the blocks that end before the target without decoding them.
+        while (remaining > 0) {
+          int headerPosition = readPosition;
+          int last = blockLast + readVInt();
+          if (last >= target) {
+            readPosition = headerPosition;
+            break;
+          }
+          int byteLength = readVInt();
+          readPosition += byteLength;
+          remaining -= Math.min(remaining, BLOCK_SIZE);
+          blockLast = last;
+        }
+      }
+      do {
+        nextDoc();
+      } while (docId < target);
+      return docId;
+    }
+
+    /** Decodes the next block, and positions the iterator at its first document ID. */
+    private void decodeBlock() {
+      int previous = blockLast;
+      blockLast += readVInt();
+      readVInt(); // the byte length is only needed for skipping
+      blockLength = Math.min(remaining, BLOCK_SIZE);
+      for (int i = 0; i < blockLength; i++) {
+        previous += readVInt();
+        block[i] = previous;
+      }
+      remaining -= blockLength;
+      positionInBlock = 0;
+    }
+
+    /** Reads a variable-byte integer at the read position, and moves the read position on. */
+    private int readVInt() {
+      byte b = buffer.get(readPosition++);
+      int value = b & 0x7F;
+      for (int shift = 7; b < 0; shift += 7) {
+        b = buffer.get(readPosition++);
+        value |= (b & 0x7F) << shift;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package searchengine;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code CompressedPostingListIndex} is a subclass of the {@code PostingListIndex}, which stores
+ * its posting lists as {@code CompressedPostingLists}. All lists are encoded into one shared
+ * buffer, so no raw {@code int[]} is kept per word once the index is built.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class CompressedPostingListIndex extends PostingListIndex {
+
+  /**
+   * Encodes all posting lists into a single buffer.
+   *
+   * @param postings the map from a word to its sorted document IDs.
+   */
+  @Override
+  protected void encode(Map<String, int[]> postings) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Map<String, Integer> offsets = new HashMap<>();
+    for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+      offsets.put(entry.getKey(), out.size());
+      CompressedPostingList.encode(out, entry.getValue());
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+    for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+      map.put(entry.getKey(), new CompressedPostingList(buffer, entry.getValue()));
+    }
+  }
+}
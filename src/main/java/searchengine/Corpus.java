@@ -1,8 +1,8 @@
 package searchengine;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -45,18 +45,19 @@ public class Corpus {
    */
   private Map<String, Integer> wordsToInSiteOccurences;
 
+  /* The read-only views of the maps, handed out since the corpus is shared between query threads.
+   * They are created once, since they are requested for every word of every query. */
+  private Map<String, Integer> readOnlyWordsToOccurences;
+  private Map<String, Integer> readOnlyWordsToInSiteOccurences;
 
   /* The total number of websites in the corpus. */
   private int totalNumberOfSites;
 
-  /* A list of all the unique words in the corpus/database. */
-  private ArrayList<String> wordsInCorpus;
+  /* The 2-gram index of the words in the corpus, used for fuzzy search. */
+  private BiGramIndex biGramIndex;
 
-  /**
-  * A map from a bigram (i.e aa, ab ,ac, and so on) to an int[] array of size wordInCorpus.size()
-  * int[] consists has only 0's or 1's. A 1 if the corresponding word in WordsInCorpus contains the bigram.
-  */
-  private  Map<String, int[]> biGramMap;
+  /* The words added to the corpus since the 2-gram index was built or extended. */
+  private final Set<String> newWords = new LinkedHashSet<>();
   /**
    * A constructor that instantiates the corpus.
    *
@@ -74,6 +75,116 @@ public class Corpus {
     wordsToInSiteOccurences = new TreeMap<>();
     allSites = sites;
     totalNumberOfSites = allSites.size();
+    createViews();
+  }
+
+  /**
+   * Creates an already built corpus from the statistics computed by a
+   * {@code ParallelIndexBuilder}, so {@code build} must not be invoked on it. The 2-gram index is
+   * not built.
+   *
+   * @param sites the sites that can be searched by the search engine.
+   * @param shard the shard of all the sites.
+   */
+  Corpus(Set<Website> sites, ParallelIndexBuilder.Shard shard) {
+    this(sites);
+    for (Map.Entry<String, ParallelIndexBuilder.TermStatistics> entry
+        : shard.getTerms().entrySet()) {
+      wordsToOccurences.put(entry.getKey(), entry.getValue().getCorpusFrequency());
+      wordsToInSiteOccurences.put(entry.getKey(), entry.getValue().getDocumentFrequency());
+    }
+    wordCountTotal = (int) shard.getWordCount();
+  }
+
+  /**
+   * Creates an already built corpus from its statistics, e.g. as read from an
+   * {@code IndexSegment}. The corpus holds no websites, so {@code build} must not be invoked on it.
+   *
+   * @param totalNumberOfSites the number of websites in the corpus.
+   * @param wordCountTotal the total number of words in the corpus.
+   * @param wordsToOccurences the number of times each word appears in the corpus.
+   * @param wordsToInSiteOccurences the number of websites each word appears on.
+   * @param biGramIndex the 2-gram index, or null if it is not built yet.
+   */
+  Corpus(int totalNumberOfSites, int wordCountTotal, Map<String, Integer> wordsToOccurences,
+      Map<String, Integer> wordsToInSiteOccurences, BiGramIndex biGramIndex) {
+    this.allSites = Collections.emptySet();
+    this.totalNumberOfSites = totalNumberOfSites;
+    this.wordCountTotal = wordCountTotal;
+    this.wordsToOccurences = wordsToOccurences;
+    this.wordsToInSiteOccurences = wordsToInSiteOccurences;
+    this.biGramIndex = biGramIndex;
+    createViews();
+  }
+
+  /**
+   * Creates a copy of a built corpus, which can be changed by {@code addDocument} and
+   * {@code deleteDocument} while the original is still being read. The maps share their counts
+   * with the original, as a {@code LayeredCountMap}, so copying takes time proportional to the
+   * changes since the original was copied itself, not to the vocabulary; the original must not be
+   * changed afterwards. The 2-gram index is shared, since it is never changed once built.
+   *
+   * @param other the corpus to copy.
+   */
+  Corpus(Corpus other) {
+    this.allSites = Collections.emptySet();
+    this.totalNumberOfSites = other.totalNumberOfSites;
+    this.wordCountTotal = other.wordCountTotal;
+    this.wordsToOccurences = LayeredCountMap.copyOf(other.wordsToOccurences);
+    this.wordsToInSiteOccurences = LayeredCountMap.copyOf(other.wordsToInSiteOccurences);
+    this.biGramIndex = other.biGramIndex;
+    this.newWords.addAll(other.newWords);
+    createViews();
+  }
+
+  /**
+   * Creates the read-only views of the maps of the corpus.
+   */
+  private void createViews() {
+    readOnlyWordsToOccurences = Collections.unmodifiableMap(wordsToOccurences);
+    readOnlyWordsToInSiteOccurences = Collections.unmodifiableMap(wordsToInSiteOccurences);
+  }
+
+  /**
+   * Adds the words of a website to the statistics of a built corpus. Words that are new to the
+   * corpus are only suggested by fuzzy search once {@code extend2GramIndex} has been invoked.
+   *
+   * @param site the website to add.
+   */
+  public void addDocument(Website site) {
+    for (Map.Entry<String, Integer> entry : site.getWordsToOccurences().entrySet()) {
+      if (biGramIndex != null && !wordsToOccurences.containsKey(entry.getKey())) {
+        newWords.add(entry.getKey());
+      }
+      wordsToOccurences.merge(entry.getKey(), entry.getValue(), Integer::sum);
+      wordsToInSiteOccurences.merge(entry.getKey(), 1, Integer::sum);
+    }
+    wordCountTotal += site.getWordCount();
+    totalNumberOfSites++;
+  }
+
+  /**
+   * Removes the words of a website from the statistics of a built corpus. The website must have
+   * been added to the corpus before, with the same words. Words which no longer appear on any
+   * website are removed from the corpus.
+   *
+   * @param site the website to remove.
+   */
+  public void deleteDocument(Website site) {
+    for (Map.Entry<String, Integer> entry : site.getWordsToOccurences().entrySet()) {
+      String word = entry.getKey();
+      int occurences = wordsToOccurences.getOrDefault(word, 0) - entry.getValue();
+      int inSiteOccurences = wordsToInSiteOccurences.getOrDefault(word, 0) - 1;
+      if (occurences <= 0 || inSiteOccurences <= 0) {
+        wordsToOccurences.remove(word);
+        wordsToInSiteOccurences.remove(word);
+      } else {
+        wordsToOccurences.put(word, occurences);
+        wordsToInSiteOccurences.put(word, inSiteOccurences);
+      }
+    }
+    wordCountTotal -= site.getWordCount();
+    totalNumberOfSites--;
   }
 
   public int getTotalNumberOfSites() {
@@ -81,11 +192,11 @@ public class Corpus {
   }
 
   public Map<String, Integer> getWordsToOccurences() {
-    return wordsToOccurences;
+    return readOnlyWordsToOccurences;
   }
 
   public Map<String, Integer> getWordsToInSiteOccurences() {
-    return wordsToInSiteOccurences;
+    return readOnlyWordsToInSiteOccurences;
   }
 
   public boolean containsWord(String word){
@@ -137,92 +248,43 @@ public class Corpus {
         (total, count) -> total + count); // sanity check, that wordSize is calculated correctly.
   }
 
-  public ArrayList<String> getWordsInCorpus() {
-    return wordsInCorpus;
+  /**
+   * Returns the words of the 2-gram index, indexed by their word ID. These are the words of the
+   * corpus when the 2-gram index was built, sorted alphabetically, followed by the words added by
+   * {@code extend2GramIndex}. Words deleted from the corpus are kept.
+   *
+   * @return the words of the 2-gram index, or null if it is not built.
+   */
+  public List<String> getWordsInCorpus() {
+    return biGramIndex == null ? null : biGramIndex.getWords();
   }
 
-  public Map<String, int[]> getBiGramMap() {
-    return biGramMap;
+  /**
+   * Returns the 2-gram index used for fuzzy search.
+   *
+   * @return the 2-gram index, or null if it is not built.
+   */
+  public BiGramIndex getBiGramIndex() {
+    return biGramIndex;
   }
 
   /**
-   * Build a map which maps bigrams to "boolean" vectors which indicate 
-   * whether a word contains a bigram or not.
-   * 
-   * NB: this method should preferably be the responsibility of the Fuzzy class,
-   * but to avoid last minute mistakes we decided to keep it here. 
-   * If this method was moved we would also avoid to have duplication of the method calculate2grams.  
+   * Builds the 2-gram index of the words in the corpus, for fuzzy search.
    */
   public void build2GramIndex() {
-    
-    // initialize map
-    biGramMap = new TreeMap<>();
-    
-    // get all the words in the corpus, put them in an ArrayList and sort them alphabetically.
-    wordsInCorpus = new ArrayList<>(wordsToOccurences.keySet()); 
-    Collections.sort(wordsInCorpus);
-    
-    // create a list of all bigrams
-    ArrayList<String> allBiGrams = new ArrayList<>();
-    String[] alphabet = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j",
-                         "k", "l", "m", "n", "o", "p", "q", "r", "s", "t",
-                         "u", "v", "w", "x", "y", "z", "$"};
-    
-    for (String letter1 : alphabet) {
-      for (String letter2 : alphabet) {
-        allBiGrams.add(letter1 + letter2);
-      }
-    }
-    // remove "$$" bigram.
-    allBiGrams.remove((alphabet.length * alphabet.length) -1);
-    
-    // build map from bigram to boolean vector, which tells if word has bigram or not.
-    int nrows = allBiGrams.size();
-    int ncols = wordsInCorpus.size();
-        
-    for (int i=0; i<nrows; i++) {
-      int[] rowVector = new int[ncols];
-      for (int j=0; j<ncols; j++) {
-        if (calculate2Gram(wordsInCorpus.get(j)).contains(allBiGrams.get(i))) { // inefficient, calculates grams to many times. But luckily the map is build only once
-          rowVector[j] = 1;
-        } else {
-          rowVector[j] = 0;
-        }
-      }
-      biGramMap.put(allBiGrams.get(i), rowVector);
-    }
+    biGramIndex = BiGramIndex.build(wordsToOccurences.keySet());
+    newWords.clear();
   }
-  
-  
+
   /**
-   * Calculate 2-grams for a word.
-   * 
-   * @param word for which 2-grams must be calculated.
-   * @return set of 2-grams that the word contains, including "$s1", and "$sn" where
-   * s1 is the first letter, and sn is the last letter in the word.  
+   * Adds the words added to the corpus since the 2-gram index was built or last extended to the
+   * 2-gram index. The 2-gram index is not changed but replaced, so a copy of this corpus can still
+   * use the old one.
    */
-  private Set<String> calculate2Gram(String word) {
-
-    Set<String> biGrams = new HashSet<>();
-
-    // If the word has < 1 character, return an empty set
-    if (word.length() < 1) {
-      return biGrams;
-    }
-    
-    // If the word has == 1 character
-    if (word.length() == 1) {
-      biGrams.add("$"+word);
-      return biGrams;
+  public void extend2GramIndex() {
+    if (biGramIndex != null && !newWords.isEmpty()) {
+      biGramIndex = biGramIndex.withWords(newWords);
+      newWords.clear();
     }
-
-    biGrams.add("$" + word.charAt(0));
-    for (int i = 0; i < word.length() - 1; i++) {
-      String biGram = word.substring(i, i + 2);
-      biGrams.add(biGram);
-    }
-    biGrams.add(word.charAt(word.length() - 1) + "$");
-    return biGrams;
   }
 }
-
@@ -0,0 +1,212 @@
+package searchengine;
+
+import java.util.Arrays;
+
+/**
+ * The {@code EditDistance} computes bounded Levenshtein distances from one word to many others, as
+ * when the candidates of a fuzzy search are verified. Only whether a distance is within the bound
+ * matters, so the computation stops as soon as the distance is known to exceed it.
+ *
+ * <p>Words of up to 64 characters are compared with the bit-parallel algorithm of G. Myers, "A
+ * fast bit-vector algorithm for approximate string matching based on dynamic programming" (J. ACM
+ * 46, 1999), in the form for edit distance given by H. Hyyrö, "Explaining and extending the
+ * bit-parallel approximate string matching algorithm of Myers" (2001). A column of the dynamic
+ * programming matrix is kept as the bits of two {@code long}s, so every character of the other
+ * word costs a handful of bit operations. Longer words are compared with the dynamic programming
+ * of Wagner and Fischer, restricted to the band of cells within the bound of the diagonal.
+ *
+ * <p>Everything depending on the word is computed by the constructor, and {@code distance} does
+ * not allocate. An {@code EditDistance} must not be shared between threads.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+final class EditDistance {
+
+  /** The longest word compared with the bit-parallel algorithm. */
+  static final int MAX_BIT_PARALLEL_LENGTH = 64;
+
+  /** The value of the cells outside the band, larger than any distance. */
+  private static final int OUTSIDE_BAND = Integer.MAX_VALUE / 2;
+
+  /** The word distances are computed from. */
+  private final String word;
+
+  /** The bit masks of the positions of the characters below 256 in the word. */
+  private final long[] latinMasks;
+
+  /** The other characters of the word, sorted, if the word is compared bit-parallel. */
+  private final char[] otherChars;
+
+  /** The bit masks of the positions of the other characters in the word. */
+  private final long[] otherMasks;
+
+  /** The rows of the banded dynamic programming, if the word is too long for bit-parallel. */
+  private final int[] previousRow;
+  private final int[] currentRow;
+
+  /**
+   * Creates an {@code EditDistance} computing distances from a word.
+   *
+   * @param word the word.
+   */
+  EditDistance(String word) {
+    this.word = word;
+    if (word.length() > MAX_BIT_PARALLEL_LENGTH) {
+      latinMasks = null;
+      otherChars = null;
+      otherMasks = null;
+      previousRow = new int[word.length() + 1];
+      currentRow = new int[word.length() + 1];
+      return;
+    }
+    previousRow = null;
+    currentRow = null;
+
+    latinMasks = new long[256];
+    char[] chars = new char[word.length()];
+    int otherCount = 0;
+    for (int i = 0; i < word.length(); i++) {
+      char c = word.charAt(i);
+      if (c < 256) {
+        latinMasks[c] |= 1L << i;
+      } else {
+        chars[otherCount++] = c;
+      }
+    }
+
+    // the distinct other characters, sorted for binary search.
+    Arrays.sort(chars, 0, otherCount);
+    int distinct = 0;
+    for (int i = 0; i < otherCount; i++) {
+      if (distinct == 0 || chars[distinct - 1] != chars[i]) {
+        chars[distinct++] = chars[i];
+      }
+    }
+    otherChars = Arrays.copyOf(chars, distinct);
+    otherMasks = new long[distinct];
+    for (int i = 0; i < word.length(); i++) {
+      char c = word.charAt(i);
+      if (c >= 256) {
+        otherMasks[Arrays.binarySearch(otherChars, c)] |= 1L << i;
+      }
+    }
+  }
+
+  /**
+   * Returns the edit distance from the word to another word, if it is at most a bound. All edit
+   * operations, i.e. delete, insert and change, cost 1.
+   *
+   * @param other the other word.
+   * @param bound the largest distance of interest, at least 0.
+   * @return the edit distance, or {@code bound + 1} if the distance is larger than the bound.
+   */
+  int distance(String other, int bound) {
+    if (Math.abs(word.length() - other.length()) > bound) {
+      return bound + 1;
+    }
+    if (word.isEmpty()) {
+      return other.length();
+    }
+    if (previousRow == null) {
+      return bitParallel(other, bound);
+    }
+    return banded(other, bound);
+  }
+
+  /**
+   * Returns the edit distance from the word to another word, without a bound.
+   *
+   * @param other the other word.
+   * @return the edit distance.
+   */
+  int distance(String other) {
+    return distance(other, Math.max(word.length(), other.length()));
+  }
+
+  /**
+   * Returns the bit mask of the positions of a character in the word.
+   */
+  private long mask(char c) {
+    if (c < 256) {
+      return latinMasks[c];
+    }
+    int i = Arrays.binarySearch(otherChars, c);
+    return i < 0 ? 0 : otherMasks[i];
+  }
+
+  /**
+   * Computes the distance column by column, one column per character of the other word. Bit i of
+   * {@code positive} and {@code negative} tells whether cell i + 1 of the column is one more or one
+   * less than cell i, and {@code score} is the last cell, i.e. the distance so far.
+   */
+  private int bitParallel(String other, int bound) {
+    int length = word.length();
+    long last = 1L << (length - 1);
+    long positive = length == 64 ? -1L : (1L << length) - 1;
+    long negative = 0;
+    int score = length;
+    for (int j = 0; j < other.length(); j++) {
+      long equal = mask(other.charAt(j));
+      long vertical = equal | negative;
+      long horizontal = (((equal & positive) + positive) ^ positive) | equal;
+      long horizontalPositive = negative | ~(horizontal | positive);
+      long horizontalNegative = positive & horizontal;
+      if ((horizontalPositive & last) != 0) {
+        score++;
+      } else if ((horizontalNegative & last) != 0) {
+        score--;
+      }
+
+      // each remaining character lowers the distance by at most 1.
+      if (score - (other.length() - j - 1) > bound) {
+        return bound + 1;
+      }
+
+      // the first row of the matrix grows by 1 per character.
+      horizontalPositive = (horizontalPositive << 1) | 1;
+      horizontalNegative <<= 1;
+      positive = horizontalNegative | ~(vertical | horizontalPositive);
+      negative = horizontalPositive & vertical;
+    }
+    return score <= bound ? score : bound + 1;
+  }
+
+  /**
+   * Computes the distance row by row, one row per character of the other word, leaving out the
+   * cells further than the bound from the diagonal, since no path through them is short enough.
+   */
+  private int banded(String other, int bound) {
+    int length = word.length();
+    int[] previous = previousRow;
+    int[] current = currentRow;
+    for (int i = 0; i <= length; i++) {
+      previous[i] = i;
+    }
+    for (int j = 1; j <= other.length(); j++) {
+      char c = other.charAt(j - 1);
+      int low = Math.max(1, j - bound);
+      int high = Math.min(length, j + bound);
+      current[low - 1] = low == 1 ? j : OUTSIDE_BAND;
+      int rowMinimum = current[low - 1];
+      for (int i = low; i <= high; i++) {
+        int cell = previous[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+        cell = Math.min(cell, Math.min(previous[i], current[i - 1]) + 1);
+        current[i] = cell;
+        rowMinimum = Math.min(rowMinimum, cell);
+      }
+      if (high < length) {
+        current[high + 1] = OUTSIDE_BAND;
+      }
+      if (rowMinimum > bound) {
+        return bound + 1;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[length] <= bound ? previous[length] : bound + 1;
+  }
+}
@@ -0,0 +1,446 @@
+package searchengine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The {@code ExternalIndexBuilder} builds an {@code IndexSegment} from websites that do not all
+ * fit in memory at once, in the manner of single-pass in-memory indexing (SPIMI). Websites are
+ * added one at a time, e.g. straight from {@code FileHelper.readFile}, into an in-memory partial
+ * index. When its estimated size reaches the memory budget, the partial index is written to a
+ * temporary file as a run of words in sorted order, each with its statistics and compressed
+ * posting list, and a new partial index is started. The websites themselves are written to a
+ * temporary file as they arrive.
+ *
+ * <p>{@code write} merges all runs with a k-way merge into the postings and dictionary of the
+ * segment, and then encodes the documents and the corpus. Runs hold increasing ranges of document
+ * IDs, so the posting lists of a word are merged by appending them in run order. Only the
+ * vocabulary, the document offsets and the posting list of one word are held in memory while
+ * merging.
+ *
+ * <p>Duplicate websites are skipped, like in the {@code Set<Website>} given to the other
+ * builders, and document IDs are handed out in the order the websites are added.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class ExternalIndexBuilder implements Closeable {
+
+  /** The estimated heap size of a word of the partial index, besides its postings. */
+  private static final long TERM_BYTES = 160;
+
+  /** The estimated heap size of a posting, including the slack of the growing arrays. */
+  private static final long POSTING_BYTES = 8;
+
+  /** The estimated heap size the partial index may reach before it is written to a run. */
+  private final long memoryBudget;
+
+  /** The directory of the temporary files, deleted on {@code close}. */
+  private final Path directory;
+
+  /** The runs written so far, in document ID order. */
+  private final List<Path> runs = new ArrayList<>();
+
+  /** The temporary file of the websites. */
+  private final Path documentsFile;
+  private final DataOutputStream documents;
+
+  /** The url and title of every website added, to skip duplicates. */
+  private final Set<String> keys = new HashSet<>();
+
+  /** The partial index, and its estimated heap size. */
+  private ParallelIndexBuilder.Shard shard = new ParallelIndexBuilder.Shard();
+  private long shardBytes = 0;
+
+  private int documentCount = 0;
+  private long wordCountTotal = 0;
+  private boolean written = false;
+
+  /**
+   * Creates an {@code ExternalIndexBuilder} with its temporary files in the default temporary
+   * directory.
+   *
+   * @param memoryBudget the estimated heap size, in bytes, of the partial index.
+   * @throws IOException if the temporary files cannot be created.
+   */
+  public ExternalIndexBuilder(long memoryBudget) throws IOException {
+    this(memoryBudget, null);
+  }
+
+  /**
+   * Creates an {@code ExternalIndexBuilder}.
+   *
+   * @param memoryBudget the estimated heap size, in bytes, of the partial index.
+   * @param temporaryDirectory the directory in which the temporary files are created, or null for
+   *     the default temporary directory.
+   * @throws IOException if the temporary files cannot be created.
+   */
+  public ExternalIndexBuilder(long memoryBudget, Path temporaryDirectory) throws IOException {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive");
+    }
+    this.memoryBudget = memoryBudget;
+    this.directory = temporaryDirectory == null
+        ? Files.createTempDirectory("index")
+        : Files.createTempDirectory(temporaryDirectory, "index");
+    this.documentsFile = directory.resolve("documents");
+    this.documents = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(documentsFile), 1 << 16));
+  }
+
+  /**
+   * Adds a website to the index, unless an equal website has already been added.
+   *
+   * @param site the website.
+   * @throws IOException if a temporary file cannot be written.
+   */
+  public void add(Website site) throws IOException {
+    if (written) {
+      throw new IllegalStateException("The segment has already been written");
+    }
+    if (!keys.add(site.getUrl() + '\n' + site.getTitle())) {
+      return;
+    }
+
+    writeString(documents, site.getUrl());
+    writeString(documents, site.getTitle());
+    documents.writeInt(site.getWordCount());
+    for (String word : site.getWords()) {
+      writeString(documents, word);
+    }
+
+    int newTerms = shard.add(documentCount++, site);
+    wordCountTotal += site.getWordCount();
+    shardBytes += newTerms * TERM_BYTES + site.getWordsToOccurences().size() * POSTING_BYTES;
+    if (shardBytes >= memoryBudget) {
+      writeRun();
+    }
+  }
+
+  /**
+   * Returns the number of websites added.
+   *
+   * @return the number of websites.
+   */
+  public int getDocumentCount() {
+    return documentCount;
+  }
+
+  /**
+   * Returns the number of runs written to temporary files so far.
+   *
+   * @return the number of runs.
+   */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /**
+   * Writes the partial index to a new run, and starts a new partial index.
+   *
+   * @throws IOException if the run cannot be written.
+   */
+  private void writeRun() throws IOException {
+    String[] terms = shard.getTerms().keySet().toArray(new String[0]);
+    Arrays.sort(terms);
+
+    Path run = directory.resolve("run" + runs.size());
+    ByteArrayOutputStream postings = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+      for (String term : terms) {
+        ParallelIndexBuilder.TermStatistics statistics = shard.getTerms().get(term);
+        postings.reset();
+        CompressedPostingList.encode(postings, statistics.getDocIds());
+
+        writeString(out, term);
+        out.writeInt(statistics.getCorpusFrequency());
+        out.writeDouble(statistics.getMaxTermFrequency());
+        out.writeInt(postings.size());
+        postings.writeTo(out);
+      }
+    }
+    runs.add(run);
+
+    shard = new ParallelIndexBuilder.Shard();
+    shardBytes = 0;
+  }
+
+  /**
+   * Writes the segment of all websites added. No websites can be added afterwards.
+   *
+   * @param segment the segment file.
+   * @throws IOException if a temporary file cannot be read, or the segment cannot be written.
+   */
+  public void write(Path segment) throws IOException {
+    if (written) {
+      throw new IllegalStateException("The segment has already been written");
+    }
+    written = true;
+    if (!shard.getTerms().isEmpty()) {
+      writeRun();
+    }
+    shard = null;
+    documents.close();
+
+    try (IndexSegment.Writer writer = new IndexSegment.Writer(segment)) {
+      ArrayList<String> terms = new ArrayList<>();
+      Map<String, Integer> wordsToOccurences = new TreeMap<>();
+      Map<String, Integer> wordsToInSiteOccurences = new TreeMap<>();
+      writePostings(writer, terms, wordsToOccurences, wordsToInSiteOccurences);
+
+      Map<String, Integer> termIds = new HashMap<>();
+      for (int termId = 0; termId < terms.size(); termId++) {
+        termIds.put(terms.get(termId), termId);
+      }
+      writeDocuments(writer, termIds);
+
+      Corpus corpus = new Corpus(documentCount, (int) wordCountTotal, wordsToOccurences,
+          wordsToInSiteOccurences, BiGramIndex.build(terms));
+      writer.beginSection(IndexSegment.CORPUS).write(IndexSegment.corpusSection(corpus, termIds));
+      writer.endSection();
+
+      writer.commit();
+    }
+  }
+
+  /**
+   * Merges the runs into the postings and the dictionary of the segment.
+   *
+   * @param writer the writer of the segment.
+   * @param terms the list the words are added to, in sorted order.
+   * @param wordsToOccurences the map the corpus frequencies are added to.
+   * @param wordsToInSiteOccurences the map the document frequencies are added to.
+   * @throws IOException if a run cannot be read, or the segment cannot be written.
+   */
+  private void writePostings(IndexSegment.Writer writer, List<String> terms,
+      Map<String, Integer> wordsToOccurences, Map<String, Integer> wordsToInSiteOccurences)
+      throws IOException {
+    // the readers are ordered by their current word, and then by run, i.e. by document IDs.
+    PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+        Comparator.comparing((RunReader reader) -> reader.term)
+            .thenComparingInt(reader -> reader.run));
+    List<RunReader> readers = new ArrayList<>();
+    try {
+      for (int run = 0; run < runs.size(); run++) {
+        RunReader reader = new RunReader(run, runs.get(run));
+        readers.add(reader);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+
+      ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+      DataOutputStream dictionary = new DataOutputStream(dictionaryBytes);
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      IndexSegment.Writer.SectionOutputStream postings =
+          writer.beginSection(IndexSegment.POSTINGS);
+      while (!queue.isEmpty()) {
+        String term = queue.peek().term;
+        int corpusFrequency = 0;
+        double maxTermFrequency = 0;
+        int[] docIds = new int[0];
+        while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+          RunReader reader = queue.poll();
+          corpusFrequency += reader.corpusFrequency;
+          maxTermFrequency = Math.max(maxTermFrequency, reader.maxTermFrequency);
+          int[] runDocIds = reader.docIds();
+          int size = docIds.length;
+          docIds = Arrays.copyOf(docIds, size + runDocIds.length);
+          System.arraycopy(runDocIds, 0, docIds, size, runDocIds.length);
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+
+        terms.add(term);
+        wordsToOccurences.put(term, corpusFrequency);
+        wordsToInSiteOccurences.put(term, docIds.length);
+        IndexSegment.writeString(dictionaryBytes, term);
+        dictionary.writeInt((int) postings.size());
+        CompressedPostingList.writeVInt(dictionaryBytes, docIds.length);
+        CompressedPostingList.writeVInt(dictionaryBytes, corpusFrequency);
+        dictionary.writeDouble(maxTermFrequency);
+
+        encoded.reset();
+        CompressedPostingList.encode(encoded, docIds);
+        encoded.writeTo(postings);
+        if (postings.size() > Integer.MAX_VALUE) {
+          throw new IOException("The index is too large for a single segment");
+        }
+      }
+      writer.endSection();
+
+      DataOutputStream out = new DataOutputStream(writer.beginSection(IndexSegment.DICTIONARY));
+      out.writeInt(terms.size());
+      dictionaryBytes.writeTo(out);
+      out.flush();
+      writer.endSection();
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Encodes the websites, with their words as positions in the dictionary, into the documents
+   * section of the segment.
+   *
+   * @param writer the writer of the segment.
+   * @param termIds the position of every word in the dictionary.
+   * @throws IOException if a temporary file cannot be read, or the segment cannot be written.
+   */
+  private void writeDocuments(IndexSegment.Writer writer, Map<String, Integer> termIds)
+      throws IOException {
+    // the websites are encoded into a second temporary file first, since the table of offsets
+    // comes before them.
+    int tableSize = 4 + 4 * documentCount;
+    int[] offsets = new int[documentCount];
+    Path encodedFile = directory.resolve("documents.encoded");
+    ByteArrayOutputStream website = new ByteArrayOutputStream();
+    long size = 0;
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(documentsFile), 1 << 16));
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(encodedFile), 1 << 16)) {
+      for (int docId = 0; docId < documentCount; docId++) {
+        if (tableSize + size > Integer.MAX_VALUE) {
+          throw new IOException("The index is too large for a single segment");
+        }
+        offsets[docId] = (int) (tableSize + size);
+        website.reset();
+        IndexSegment.writeString(website, readString(in));
+        IndexSegment.writeString(website, readString(in));
+        int wordCount = in.readInt();
+        CompressedPostingList.writeVInt(website, wordCount);
+        for (int i = 0; i < wordCount; i++) {
+          CompressedPostingList.writeVInt(website, termIds.get(readString(in)));
+        }
+        website.writeTo(out);
+        size += website.size();
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(writer.beginSection(IndexSegment.DOCUMENTS));
+    out.writeInt(documentCount);
+    for (int offset : offsets) {
+      out.writeInt(offset);
+    }
+    Files.copy(encodedFile, out);
+    out.flush();
+    writer.endSection();
+    Files.delete(encodedFile);
+  }
+
+  /**
+   * Deletes the temporary files.
+   *
+   * @throws IOException if a temporary file cannot be deleted.
+   */
+  @Override
+  public void close() throws IOException {
+    documents.close();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  /**
+   * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@code writeString}.
+   */
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the words of a run one after another.
+   */
+  private static class RunReader implements Closeable {
+
+    private final int run;
+    private final DataInputStream in;
+
+    /** The current word and its statistics. */
+    private String term;
+    private int corpusFrequency;
+    private double maxTermFrequency;
+    private byte[] postings;
+
+    RunReader(int run, Path file) throws IOException {
+      this.run = run;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    /**
+     * Moves to the next word of the run.
+     *
+     * @return false, if the run has no more words.
+     */
+    boolean next() throws IOException {
+      int length;
+      try {
+        length = in.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      term = new String(bytes, StandardCharsets.UTF_8);
+      corpusFrequency = in.readInt();
+      maxTermFrequency = in.readDouble();
+      postings = new byte[in.readInt()];
+      in.readFully(postings);
+      return true;
+    }
+
+    /**
+     * Decodes the posting list of the current word.
+     */
+    int[] docIds() {
+      return new CompressedPostingList(ByteBuffer.wrap(postings), 0).toArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -3,11 +3,19 @@ package searchengine;
 // For reading database file
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 // For reading configuration file
 import java.io.InputStream;
 import java.io.FileInputStream;
@@ -27,15 +35,157 @@ public class FileHelper {
    * the URL of the website. The next line represents the title of the website in natural language.
    * This line is followed by a list of words that occur on the page.
    *
+   * <p>A plain text file is memory-mapped and parsed in parallel by a {@code MappedFileParser}.
+   * The filename may also name a directory, a glob pattern, or a gzip-compressed file, as described
+   * in {@code listDatabaseFiles}; all their files are then read by an {@code IngestionPipeline}.
+   *
    * @param filename The filename of the file that we want to load. Needs to include the directory
    *        path as well.
    * @return The set of websites that contain all websites that were found in the file.
    */
   public static Set<Website> parseFile(String filename) {
-    // Will contain all the websites that we have found in the file
     Set<Website> sites = new HashSet<>();
+    try {
+      List<Path> files = listDatabaseFiles(filename);
+      if (files.size() == 1 && !isCompressed(files.get(0))) {
+        return new MappedFileParser().parse(files.get(0).toString());
+      }
+      sites.addAll(new IngestionPipeline().readAll(filename));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return sites;
+  }
+
+  /**
+   * Lists the database files named by a path, which is either
+   *
+   * <ul>
+   *   <li>a directory: all files in it ending in ".txt" or ".txt.gz".
+   *   <li>a glob pattern, such as {@code data/dump-*.txt.gz} or {@code data/**.txt}, as understood
+   *       by {@code FileSystem.getPathMatcher}: all files matching it.
+   *   <li>a file.
+   * </ul>
+   *
+   * <p>Files ending in ".gz" are gzip-compressed, and are decompressed while they are read.
+   *
+   * @param database the path of a directory, a glob pattern, or the path of a file.
+   * @return the files, sorted by path.
+   * @throws IOException if the directory cannot be listed, or holds no database files, or no file
+   *     matches the pattern.
+   */
+  public static List<Path> listDatabaseFiles(String database) throws IOException {
+    List<Path> files = new ArrayList<>();
+    int glob = firstGlobCharacter(database);
+    if (glob >= 0) {
+      // walk the directories below the part of the pattern without glob characters.
+      int separator =
+          Math.max(database.lastIndexOf('/', glob), database.lastIndexOf('\\', glob));
+      Path base = Paths.get(separator < 0 ? "." : database.substring(0, separator + 1));
+      PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + database);
+      try (Stream<Path> paths = Files.walk(base)) {
+        paths.filter(Files::isRegularFile)
+            .filter(path -> matcher.matches(separator < 0 ? base.relativize(path) : path))
+            .forEach(files::add);
+      }
+      if (files.isEmpty()) {
+        throw new FileNotFoundException("No database files match " + database);
+      }
+    } else if (Files.isDirectory(Paths.get(database))) {
+      try (Stream<Path> paths = Files.list(Paths.get(database))) {
+        paths.filter(Files::isRegularFile)
+            .filter(path -> path.toString().endsWith(".txt") || isCompressed(path))
+            .forEach(files::add);
+      }
+      if (files.isEmpty()) {
+        throw new FileNotFoundException("No database files in " + database);
+      }
+    } else {
+      files.add(Paths.get(database));
+    }
+    Collections.sort(files);
+    return files;
+  }
 
+  /**
+   * Returns the position of the first glob character in a path, or -1 if it has none.
+   */
+  private static int firstGlobCharacter(String path) {
+    for (int i = 0; i < path.length(); i++) {
+      if ("*?[{".indexOf(path.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
 
+  /**
+   * Checks whether a database file is gzip-compressed, i.e. ends in ".gz".
+   *
+   * @param file the path of the file.
+   * @return true, if the file is compressed.
+   */
+  public static boolean isCompressed(Path file) {
+    return file.toString().endsWith(".gz");
+  }
+
+  /**
+   * Receives the websites of a database file one at a time, as they are read.
+   */
+  public interface PageHandler {
+
+    /**
+     * Handles a website read from the file.
+     *
+     * @param site the website.
+     * @throws IOException if the website cannot be handled; this stops the reading.
+     */
+    void handle(Website site) throws IOException;
+  }
+
+  /**
+   * Receives the pages of a database file one at a time, as they are read, before their words are
+   * counted into a {@code Website}.
+   */
+  public interface RawPageHandler {
+
+    /**
+     * Handles a page read from the file.
+     *
+     * @param url the url of the page.
+     * @param title the title of the page.
+     * @param words the words of the page, in order.
+     * @throws IOException if the page cannot be handled; this stops the reading.
+     */
+    void handle(String url, String title, List<String> words) throws IOException;
+  }
+
+  /**
+   * Reads a file in the format described in {@code parseFile}, and hands every website to a
+   * {@code PageHandler} as soon as it has been read, in file order. Only one website is held in
+   * memory at a time, so files larger than the heap can be read. Duplicate websites are handed
+   * over as often as they appear.
+   *
+   * @param filename The filename of the file that we want to load. Needs to include the directory
+   *        path as well.
+   * @param handler the handler receiving the websites.
+   * @throws IOException if the file cannot be read, or the handler fails.
+   */
+  public static void readFile(String filename, PageHandler handler) throws IOException {
+    readPages(filename, (url, title, words) -> handler.handle(new Website(url, title, words)));
+  }
+
+  /**
+   * Reads a file like {@code readFile}, but hands over the pages before a {@code Website} is
+   * created from them, so that the words can be counted elsewhere, e.g. on another thread. A file
+   * ending in ".gz" is decompressed while it is read.
+   *
+   * @param filename The filename of the file that we want to load. Needs to include the directory
+   *        path as well.
+   * @param handler the handler receiving the pages.
+   * @throws IOException if the file cannot be read, or the handler fails.
+   */
+  public static void readPages(String filename, RawPageHandler handler) throws IOException {
     // We use these variables to store the url, title, and the
     // words that we find for a website in the file
     String url = null, title = null;
@@ -48,14 +198,11 @@ public class FileHelper {
     // set it to true after reading a line starting with *PAGE:, set it to false in the next line.
     boolean isNextLineTitle = false;
 
-    // Declare (and assign null to) the Scanner object outside the try block in order to access and
-    // close it in finally
-    Scanner sc = null;
-
-    try {
-      // load the file, will throw a FileNotFoundException if the
-      // filename doesn't point to an existing file.
-      sc = new Scanner(new File(filename), "UTF-8");
+    // load the file, will throw a FileNotFoundException if the
+    // filename doesn't point to an existing file.
+    try (Scanner sc = isCompressed(Paths.get(filename))
+        ? new Scanner(openCompressed(filename), "UTF-8")
+        : new Scanner(new File(filename), "UTF-8")) {
       // as long as we are not done with reading the file
       while (sc.hasNext()) {
         // get the next line from the file
@@ -67,7 +214,7 @@ public class FileHelper {
           // new website entry starts, so create previous website from data gathered
           // (if data is correct [Assignment 2])
           if (url != null && title != null && listOfWords != null) {
-            sites.add(new Website(url, title, listOfWords));
+            handler.handle(url, title, listOfWords);
           }
 
           // clear all variables to start new website entry
@@ -89,18 +236,28 @@ public class FileHelper {
           listOfWords.add(line);
         }
       }
+      // The Scanner hides read errors, so they are checked here.
+      if (sc.ioException() != null) {
+        throw sc.ioException();
+      }
       // When we have read the whole file, we have to create the very last website manually.
       if (url != null && title != null && listOfWords != null) {
-        sites.add(new Website(url, title, listOfWords));
-      }
-    } catch (FileNotFoundException e) {
-      e.printStackTrace();
-    } finally {
-      if (sc != null) {
-        sc.close();
+        handler.handle(url, title, listOfWords);
       }
     }
-    return sites;
+  }
+
+  /**
+   * Opens a gzip-compressed file for reading its decompressed content.
+   */
+  private static InputStream openCompressed(String filename) throws IOException {
+    InputStream in = new FileInputStream(filename);
+    try {
+      return new GZIPInputStream(in, 1 << 16);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
   }
 
   /**
@@ -110,20 +267,46 @@ public class FileHelper {
    * @return The path assigned to the {@code database} attribute in {@code config.properties}.
    */
   public static String readConfig() {
+    return readProperties().getProperty("database");
+  }
+
+  /**
+   * Reads all properties of the standard Java config file {@code config.properties}. Besides the
+   * {@code database} path, the file may hold the options of the {@code SearchEngine}.
+   *
+   * @return The properties in {@code config.properties}, or no properties if the file cannot be
+   *         read.
+   */
+  public static Properties readProperties() {
     String config = "config.properties";
     Properties prop = new Properties();
-    String database = null;
     try (InputStream inputStream = new FileInputStream(config)) {
       prop.load(inputStream);
-      database = prop.getProperty("database");
     } catch (IOException e) {
       e.printStackTrace();
     }
-    return database;
+    return prop;
   }
 
 
+  /**
+   * Parses the database file given as program argument, or in {@code config.properties}.
+   *
+   * @param args the program arguments; the first one, if any, is the path of the database.
+   * @return The set of websites that contain all websites that were found in the file.
+   */
   public static Set<Website> parseFile(String[] args) {
+    return parseFile(getDatabase(args));
+  }
+
+  /**
+   * Returns the path of the database: the first program argument, or else the {@code database}
+   * attribute in {@code config.properties}. Exits the program if neither is given.
+   *
+   * @param args the program arguments.
+   * @return the path of the database.
+   */
+  public static String getDatabase(String[] args) {
     String database;
     if (args.length < 1) {
       database = FileHelper.readConfig();
@@ -137,7 +320,6 @@ public class FileHelper {
       database = args[0];
       System.out.println("Path \"" + database + "\" as program argument.");
     }
-    return parseFile(database);
-
+    return database;
   }
 }
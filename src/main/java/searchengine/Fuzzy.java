@@ -1,6 +1,11 @@
 package searchengine;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -13,114 +18,154 @@ import java.util.Set;
  */
 public class Fuzzy {
 
+  /** The maximum number of expansions of a word used by the {@code SearchEngine}. */
+  public static final int DEFAULT_MAX_EXPANSIONS = 10;
+
+  /** The number of expanded words kept in the cache. */
+  static final int CACHE_SIZE = 1024;
+
   /** The Corpus used for fuzzy search. */
-  private Corpus corpus;
+  private final Corpus corpus;
+
+  /** The engine finding the words of the corpus close to a word. */
+  private final FuzzyEngine engine;
+
+  /** The maximum number of expansions of a word. */
+  private final int maxExpansions;
+
+  /** The expansions of the most recently expanded words. */
+  private final LruCache<String, Set<String>> expansions = new LruCache<>(CACHE_SIZE);
 
   /**
    * Creates a {@code Fuzzy} object that can be used for Fuzzy expansion of a word query.
    * @param corpus The {@code Corpus} used in the {@code SearchEngine}
    */
   public Fuzzy(Corpus corpus) {
+    this(corpus, FuzzyEngine.Type.BIGRAM, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a {@code Fuzzy} object that uses a given type of {@code FuzzyEngine}, and expands a
+   * word into at most a given number of words.
+   * @param corpus The {@code Corpus} used in the {@code SearchEngine}, with its 2-gram index built
+   * @param type The type of the {@code FuzzyEngine}
+   * @param maxExpansions The maximum number of expansions of a word, at least 1
+   */
+  public Fuzzy(Corpus corpus, FuzzyEngine.Type type, int maxExpansions) {
+    this(corpus, type.create(corpus.getBiGramIndex()), maxExpansions);
+  }
+
+  private Fuzzy(Corpus corpus, FuzzyEngine engine, int maxExpansions) {
+    if (maxExpansions < 1) {
+      throw new IllegalArgumentException("The maximum number of expansions must be at least 1");
+    }
     this.corpus = corpus;
+    this.engine = engine;
+    this.maxExpansions = maxExpansions;
+  }
+
+  /**
+   * Returns a {@code Fuzzy} object for another corpus, e.g. a newer version of the same corpus,
+   * using the same type of engine. The engine is reused if the 2-gram index is the same, but the
+   * cached expansions are not, since the frequencies of the words may have changed.
+   * @param other The other {@code Corpus}
+   * @return the {@code Fuzzy} object of the other corpus
+   */
+  Fuzzy withCorpus(Corpus other) {
+    return new Fuzzy(other, engine.withVocabulary(other.getBiGramIndex()), maxExpansions);
+  }
+
+  /**
+   * Returns the {@code FuzzyEngine} used for expansion.
+   * @return the engine
+   */
+  FuzzyEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Returns the cache of the expansions.
+   * @return the cache
+   */
+  LruCache<String, Set<String>> getExpansions() {
+    return expansions;
   }
 
   /**
    * If a word doesn't appear in the corpus, the expand method tries to find other
    * words in the corpus that are close to it. As a measure of the distance between words,
    * we use the Levenshtein distance.   
+   *
+   * <p>Only the most frequent of the words found in the corpus are kept, up to the maximum number
+   * of expansions, so a misspelled word does not turn into a long OR of rare words. The
+   * expansions of recently expanded words are cached, since the same misspellings are searched for
+   * again and again.
    * 
    * @param unknownWord an unknown word to be expanded by the fuzzy algorithm
-   * @return a set of strings with words that are close to the mispelled word.
+   * @return a read-only set of strings with words that are close to the mispelled word, the most
+   *     frequent first.
    */
   public Set<String> expand(String unknownWord) {
 
+    // maximum allowed edit distance.
+    int delta = maxDistance(unknownWord);
+    if (delta == 0) {
+      return Collections.singleton(unknownWord);
+    }
+
     // Set for storing the fuzzy strings
-    Set<String> fuzzyStrings = new HashSet<>();
+    Set<String> fuzzyStrings = expansions.computeIfAbsent(unknownWord, word -> {
+      // the words with edit distance less or equal to allowed, the most frequent first. The
+      // fuzzy search tables keep the words of deleted websites, so words no longer on any website
+      // are left out.
+      List<String> found = new ArrayList<>(engine.find(word, delta));
+      Map<String, Integer> documentFrequencies = corpus.getWordsToInSiteOccurences();
+      found.removeIf(w -> documentFrequencies.getOrDefault(w, 0) <= 0);
+      Map<String, Integer> frequencies = corpus.getWordsToOccurences();
+      found.sort(Comparator.comparing((String w) -> frequencies.getOrDefault(w, 0)).reversed()
+          .thenComparing(Comparator.naturalOrder()));
+      return Collections.unmodifiableSet(
+          new LinkedHashSet<>(found.subList(0, Math.min(maxExpansions, found.size()))));
+    });
+    return fuzzyStrings;
+  }
 
-    // maximum allowed edit distance.
-    int delta;
-    
-    // delta is assigned based on the length of the word
+  /**
+   * Returns the maximum allowed edit distance of the expansions of a word, which is based on the
+   * length of the word.
+   *
+   * @param unknownWord the word to be expanded.
+   * @return the maximum allowed edit distance, 0 if the word is not expanded.
+   */
+  static int maxDistance(String unknownWord) {
     switch (unknownWord.length()) {
       case 3:
-        delta = 1;
-        break;
+        return 1;
       case 2:
-        delta = 1;
-        break;
+        return 1;
       case 1:
-        fuzzyStrings.add(unknownWord);
-        return fuzzyStrings;
+        return 0;
       default:
-        delta = 2;
-        break;
-    }
-
-    // only looking at 2-grams for now
-    int gramSize = 2;
-    
-    // number of unique words in the corpus
-    int ncols = corpus.getWordCountUnique();
-
-    Set<String> approximateStrings = new HashSet<>();
-
-    // the summedRowVector keeps track of how many grams each 
-    // word in the corpus has in common with the unknownWord.
-    int[] summedRowVector = new int[ncols];
-    
-    // go through all bigrams for unknownWord
-    for (String bigram : calculate2Gram(unknownWord)) {
-      
-      // get "boolean" vector of all the words containing the bigram.
-      int[] rowVector = corpus.getBiGramMap().get(bigram);
-      for (int ncol = 0; ncol < ncols; ncol++) {
-        // add vector for bigram to the summed vector. 
-        summedRowVector[ncol] += rowVector[ncol];
-      }
-    }
-
-    // add approximate words
-    for (int i = 0; i < summedRowVector.length; i++) {
-      // words that have too few grams in common with unknownWord, are ignored.
-      int commonGramsBound =
-          Math.max(unknownWord.length(), corpus.getWordsInCorpus().get(i).length()) - 1
-              - (delta - 1) * gramSize;
-      if (summedRowVector[i] >= commonGramsBound) {
-        // words that have sufficient grams, might be within allowed edit distance. 
-        approximateStrings.add(corpus.getWordsInCorpus().get(i));
-      }
-    }
-
-    // only keep the approximate strings with edit distance less or equal to allowed.
-    for (String approxString : approximateStrings) {
-
-      // check if editDistance is smaller than delta
-      int editDistance = editDistance(unknownWord, approxString);
-      if (editDistance <= delta) {
-        fuzzyStrings.add(approxString);
-      } else {
-         // do nothing
-      }
+        return 2;
     }
-    System.out.println("Cannot find word: " + unknownWord + " Instead I'll try to search for:");
-    System.out.println(fuzzyStrings.toString());
-    return fuzzyStrings;
   }
 
-
   /**
    * Calculate edit distance for two strings x and y. Algorithm from reference: "The
    * String-to-string correction problem", R. A. Wagner and M. J. Fischer
    * 
    * Allowed edit operations are: delete, insert, change. 
    * The cost for all edit operations are chosen equal to 1.  
+   *
+   * <p>This computes the whole matrix, so the engines use the bounded {@code EditDistance}
+   * instead.
    * 
    * @param x {@code String} word, serving as first point in the distance measuring.
    * @param y {@code String} word, serving as the second point in the distance measuring.
    * 
    * @return the edit distance between the two input words.
    */
-  private int editDistance(String x, String y) {
+  static int editDistance(String x, String y) {
 
     // cost "function" for allowed edits. All edits have the same cost.
     int deleteCost = 1;
@@ -160,36 +205,4 @@ public class Fuzzy {
     // return the value from the lower right corner of the D-matrix.
     return D[x.length()][y.length()];
   }
-
-
-  /**
-   * Calculate 2-grams for a word.
-   * 
-   * @param word for which 2-grams is to be calculated.
-   * @return set of 2-grams that the word contains, including "$s1", and "$sn" where
-   * s1 is the first letter, and sn is the last letter in the word.  
-   */
-  private Set<String> calculate2Gram(String word) {
-
-    Set<String> biGrams = new HashSet<>();
-
-    // If the word has < 1 character, return an empty set
-    if (word.length() < 1) {
-      return biGrams;
-    }
-    
-    // If the word has == 1 character
-    if (word.length() == 1) {
-      biGrams.add("$"+word);
-      return biGrams;
-    }
-
-    biGrams.add("$" + word.charAt(0));
-    for (int i = 0; i < word.length() - 1; i++) {
-      String biGram = word.substring(i, i + 2);
-      biGrams.add(biGram);
-    }
-    biGrams.add(word.charAt(word.length() - 1) + "$");
-    return biGrams;
-  }
 }
@@ -0,0 +1,98 @@
+package searchengine;
+
+import java.util.Set;
+
+/**
+ * A {@code FuzzyEngine} finds the words of a vocabulary within an edit distance of a word, for the
+ * fuzzy expansion done by {@code Fuzzy}. The vocabulary is the words of a {@code BiGramIndex},
+ * and an engine is never changed once created, so it can be shared by concurrent searches.
+ *
+ * <p>The engine used by the search engine is chosen with the "fuzzy.engine" property, whose values
+ * are given by {@link Type}.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public interface FuzzyEngine {
+
+  /**
+   * Finds the words of the vocabulary within an edit distance of a word.
+   *
+   * @param word the word, which need not be in the vocabulary.
+   * @param delta the maximum allowed edit distance, at least 1.
+   * @return the words found.
+   */
+  Set<String> find(String word, int delta);
+
+  /**
+   * Returns an engine of the same type for another vocabulary, e.g. after words have been added
+   * to the corpus.
+   *
+   * @param vocabulary the 2-gram index of the other vocabulary.
+   * @return this engine if the vocabulary is the same, or else a new engine.
+   */
+  FuzzyEngine withVocabulary(BiGramIndex vocabulary);
+
+  /**
+   * The types of {@code FuzzyEngine}.
+   */
+  enum Type {
+
+    /**
+     * The {@code BiGramFuzzyEngine}, which filters the vocabulary by the 2-grams in common with the
+     * word, and may miss a few very short words. This is the default.
+     */
+    BIGRAM("bigram"),
+
+    /**
+     * The {@code BkTreeFuzzyEngine}, which searches a BK-tree of the vocabulary, and finds every
+     * word within the edit distance. The tree is built when the engine is created, and new words
+     * are inserted into a copy of it.
+     */
+    BKTREE("bktree");
+
+    private final String name;
+
+    Type(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Creates an engine of this type.
+     *
+     * @param vocabulary the 2-gram index of the vocabulary.
+     * @return the engine.
+     */
+    public FuzzyEngine create(BiGramIndex vocabulary) {
+      switch (this) {
+        case BKTREE:
+          return new BkTreeFuzzyEngine(vocabulary);
+        default:
+          return new BiGramFuzzyEngine(vocabulary);
+      }
+    }
+
+    /**
+     * Returns the type of a name, as given in the "fuzzy.engine" property.
+     *
+     * @param name the name, i.e. "bigram" or "bktree".
+     * @return the type.
+     * @throws IllegalArgumentException if there is no type of the name.
+     */
+    public static Type forName(String name) {
+      for (Type type : values()) {
+        if (type.name.equalsIgnoreCase(name.trim())) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("Unknown fuzzy engine: " + name);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package searchengine;
+
+/**
+ * An {@code ImpactPostingList} is an {@code ArrayPostingList} which stores, next to every document
+ * ID, the precomputed rank (impact) of the word on that website. Impacts are quantized to
+ * unsigned 16-bit integers with a scale shared by all the lists of an index, so the impacts of
+ * different words can be summed directly.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class ImpactPostingList extends ArrayPostingList {
+
+  /** The largest impact that can be stored. */
+  public static final int MAX_IMPACT = Character.MAX_VALUE;
+
+  /** The quantized impacts, at the same positions as the document IDs. */
+  private final char[] impacts;
+
+  /** The largest impact of the list. */
+  private final int maxImpact;
+
+  /**
+   * Creates an {@code ImpactPostingList}. The arrays are not copied.
+   *
+   * @param docIds the document IDs, sorted in increasing order.
+   * @param impacts the quantized impacts, at the same positions as the document IDs.
+   */
+  public ImpactPostingList(int[] docIds, char[] impacts) {
+    super(docIds);
+    if (docIds.length != impacts.length) {
+      throw new IllegalArgumentException("There must be one impact per document ID");
+    }
+    this.impacts = impacts;
+    int max = 0;
+    for (char impact : impacts) {
+      max = Math.max(max, impact);
+    }
+    this.maxImpact = max;
+  }
+
+  /**
+   * Returns the largest impact of the list, i.e. an upper bound on the impact of the word.
+   *
+   * @return the largest impact.
+   */
+  public int getMaxImpact() {
+    return maxImpact;
+  }
+
+  /**
+   * Quantizes an impact.
+   *
+   * @param impact the impact, which must be non-negative.
+   * @param scale the value of one step of the quantized impacts.
+   * @return the quantized impact; at least 1 if the impact is positive.
+   */
+  public static char quantize(double impact, double scale) {
+    long quantized = Math.round(impact / scale);
+    if (quantized == 0 && impact > 0) {
+      quantized = 1; // a word on the website always counts for something.
+    }
+    return (char) Math.min(quantized, MAX_IMPACT);
+  }
+
+  @Override
+  public ImpactIterator iterator() {
+    return new ImpactIterator();
+  }
+
+  /**
+   * An iterator over the document IDs of an {@code ImpactPostingList}, which also gives the
+   * impact of the current document.
+   */
+  public class ImpactIterator extends ArrayIterator {
+
+    /**
+     * Returns the quantized impact of the current document.
+     *
+     * @return the impact; only valid while the iterator is on a document.
+     */
+    public int impact() {
+      return impacts[position()];
+    }
+  }
+}
@@ -0,0 +1,709 @@
+package searchengine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * An {@code IndexSegment} is a built {@code PostingListIndex} and {@code Corpus} stored in a
+ * binary file. The file is opened with {@code FileChannel.map}, so the posting lists and websites
+ * are read straight from the page cache: opening a segment only decodes the term dictionary and the
+ * corpus statistics, and a {@code Website} is only decoded the first time it is needed. This makes
+ * a search engine query-ready without parsing the database or rebuilding any index.
+ *
+ * <p>The file starts with a header holding a magic number, the format version, and the offset,
+ * length and CRC32 checksum of each of its sections, followed by a checksum of the header itself.
+ * The sections follow the header, in any order:
+ *
+ * <ul>
+ *   <li>dictionary: the words in sorted order, each with the offset of its posting list, its
+ *       document frequency, its corpus frequency, and its highest term frequency.
+ *   <li>postings: the {@code CompressedPostingLists} of all words.
+ *   <li>documents: a table of offsets, followed by the url, title and words (as positions in the
+ *       dictionary) of every website, in document ID order.
+ *   <li>corpus: the corpus totals, and the 2-gram index as sorted lists of dictionary positions.
+ * </ul>
+ *
+ * <p>All numbers are big-endian, and are either fixed-size or variable-byte integers as written by
+ * {@code CompressedPostingList.writeVInt}. A segment is at most 2 GB. The header and the small
+ * sections are checked when a segment is opened; {@code verify} checks the whole file.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class IndexSegment {
+
+  /** The magic number at the start of every segment, "SEGS" in ASCII. */
+  public static final int MAGIC = 0x53454753;
+
+  /** The version of the format written by this class. */
+  public static final int VERSION = 1;
+
+  /** The file extension of segments. */
+  public static final String EXTENSION = ".seg";
+
+  /** The sections of a segment, in header order. */
+  static final int DICTIONARY = 0;
+  static final int POSTINGS = 1;
+  static final int DOCUMENTS = 2;
+  static final int CORPUS = 3;
+  private static final int SECTION_COUNT = 4;
+  private static final String[] SECTION_NAMES = {"dictionary", "postings", "documents", "corpus"};
+
+  /** The size of the header: magic, version, section count, sections, header checksum. */
+  private static final int HEADER_SIZE = 12 + SECTION_COUNT * 16 + 8;
+
+  /** The mapped file. */
+  private final ByteBuffer buffer;
+
+  /** The offset, length and checksum of every section. */
+  private final int[] sectionOffsets = new int[SECTION_COUNT];
+  private final int[] sectionLengths = new int[SECTION_COUNT];
+  private final long[] sectionChecksums = new long[SECTION_COUNT];
+
+  /** The index stored in the segment. */
+  private final SegmentIndex index;
+
+  /** The corpus stored in the segment. */
+  private final Corpus corpus;
+
+  /**
+   * Reads a segment from a mapped file.
+   *
+   * @param buffer the mapped file.
+   * @throws IOException if the file is not a valid segment.
+   */
+  private IndexSegment(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    readHeader();
+    checkSection(DICTIONARY);
+    checkSection(CORPUS);
+
+    // the dictionary: the posting lists and statistics of every word.
+    SectionReader dictionary = new SectionReader(section(DICTIONARY));
+    ByteBuffer postings = section(POSTINGS);
+    int termCount = dictionary.readInt();
+    String[] terms = new String[termCount];
+    Map<String, PostingList> postingLists = new HashMap<>();
+    Map<String, Double> maxTermFrequencies = new HashMap<>();
+    Map<String, Integer> wordsToOccurences = new TreeMap<>();
+    Map<String, Integer> wordsToInSiteOccurences = new TreeMap<>();
+    for (int termId = 0; termId < termCount; termId++) {
+      String term = dictionary.readString();
+      terms[termId] = term;
+      postingLists.put(term, new CompressedPostingList(postings, dictionary.readInt()));
+      wordsToInSiteOccurences.put(term, dictionary.readVInt());
+      wordsToOccurences.put(term, dictionary.readVInt());
+      maxTermFrequencies.put(term, dictionary.readDouble());
+    }
+
+    // the corpus: the totals and the 2-gram index.
+    SectionReader corpusReader = new SectionReader(section(CORPUS));
+    int totalNumberOfSites = corpusReader.readInt();
+    int wordCountTotal = corpusReader.readInt();
+    int biGramCount = corpusReader.readInt();
+    Map<String, int[]> biGramPostings = new HashMap<>();
+    for (int i = 0; i < biGramCount; i++) {
+      String biGram = corpusReader.readString();
+      int[] termIds = new int[corpusReader.readVInt()];
+      int termId = -1;
+      for (int j = 0; j < termIds.length; j++) {
+        termId += corpusReader.readVInt();
+        termIds[j] = termId;
+      }
+      biGramPostings.put(biGram, termIds);
+    }
+
+    index = new SegmentIndex(postingLists, maxTermFrequencies, section(DOCUMENTS), terms);
+    corpus = new Corpus(totalNumberOfSites, wordCountTotal, wordsToOccurences,
+        wordsToInSiteOccurences, new BiGramIndex(terms, biGramPostings));
+  }
+
+  /**
+   * Opens a segment written by {@code write}.
+   *
+   * @param file the segment file.
+   * @return the opened segment.
+   * @throws IOException if the file cannot be read, or is not a valid segment of this version.
+   */
+  public static IndexSegment open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too large to be an index segment");
+      }
+      // the mapping stays valid after the channel is closed.
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      try {
+        return new IndexSegment(buffer);
+      } catch (IndexOutOfBoundsException | BufferUnderflowException
+          | IllegalArgumentException e) {
+        throw new IOException(file + " is a corrupt index segment", e);
+      }
+    }
+  }
+
+  /**
+   * Checks whether a path names a segment, i.e. has the segment file extension.
+   *
+   * @param path the path of a database file.
+   * @return true, if the path ends with {@code EXTENSION}.
+   */
+  public static boolean isSegment(String path) {
+    return path.endsWith(EXTENSION);
+  }
+
+  /**
+   * Returns the index stored in the segment. The index cannot be built or changed, but impacts and
+   * champion lists can be precomputed for it.
+   *
+   * @return the index.
+   */
+  public AbstractPostingListIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the corpus stored in the segment, including its 2-gram index.
+   *
+   * @return the corpus.
+   */
+  public Corpus getCorpus() {
+    return corpus;
+  }
+
+  /**
+   * Checks the checksums of all sections of the segment. This reads the whole file.
+   *
+   * @throws IOException if a section does not match its checksum.
+   */
+  public void verify() throws IOException {
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      checkSection(section);
+    }
+  }
+
+  /**
+   * Writes an index and its corpus to a segment file. The file is first written under a temporary
+   * name and then moved into place, so a reader never sees a partially written segment. The
+   * postings and websites are streamed to the file one at a time; only the dictionary and the
+   * 2-gram index are encoded in memory.
+   *
+   * @param file the segment file.
+   * @param index the built index.
+   * @param corpus the corpus, built from the same websites, with its 2-gram index built.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(Path file, PostingListIndex index, Corpus corpus) throws IOException {
+    if (corpus.getBiGramIndex() == null) {
+      throw new IllegalArgumentException("The 2-gram index of the corpus must be built");
+    }
+
+    String[] terms = index.getWords().toArray(new String[0]);
+    Arrays.sort(terms);
+    Map<String, Integer> termIds = new HashMap<>();
+    for (int termId = 0; termId < terms.length; termId++) {
+      termIds.put(terms[termId], termId);
+    }
+
+    try (Writer writer = new Writer(file)) {
+      // the postings are streamed, and the dictionary pointing into them is written after them.
+      ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+      DataOutputStream dictionary = new DataOutputStream(dictionaryBytes);
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      Writer.SectionOutputStream postings = writer.beginSection(POSTINGS);
+      for (String term : terms) {
+        Integer documentFrequency = corpus.getWordsToInSiteOccurences().get(term);
+        Integer corpusFrequency = corpus.getWordsToOccurences().get(term);
+        if (documentFrequency == null || corpusFrequency == null) {
+          throw new IllegalArgumentException("The word \"" + term + "\" is not in the corpus");
+        }
+        writeString(dictionaryBytes, term);
+        dictionary.writeInt((int) postings.size());
+        CompressedPostingList.writeVInt(dictionaryBytes, documentFrequency);
+        CompressedPostingList.writeVInt(dictionaryBytes, corpusFrequency);
+        dictionary.writeDouble(index.getMaxTermFrequency(term));
+        encoded.reset();
+        CompressedPostingList.encode(encoded, index.getPostings(term).toArray());
+        encoded.writeTo(postings);
+      }
+      writer.endSection();
+
+      DataOutputStream dictionaryOut = new DataOutputStream(writer.beginSection(DICTIONARY));
+      dictionaryOut.writeInt(terms.length);
+      dictionaryBytes.writeTo(dictionaryOut);
+      dictionaryOut.flush();
+      writer.endSection();
+
+      // the documents: a table of offsets, followed by the websites. The table comes first, so
+      // the websites are encoded twice, once to compute their offsets and once to write them.
+      int documentCount = index.getDocumentCount();
+      DataOutputStream documents = new DataOutputStream(writer.beginSection(DOCUMENTS));
+      documents.writeInt(documentCount);
+      long offset = 4 + 4L * documentCount;
+      for (int docId = 0; docId < documentCount; docId++) {
+        if (offset > Integer.MAX_VALUE) {
+          throw new IOException("The index is too large for a single segment");
+        }
+        documents.writeInt((int) offset);
+        encoded.reset();
+        encodeWebsite(encoded, index.getWebsite(docId), termIds);
+        offset += encoded.size();
+      }
+      for (int docId = 0; docId < documentCount; docId++) {
+        encoded.reset();
+        encodeWebsite(encoded, index.getWebsite(docId), termIds);
+        encoded.writeTo(documents);
+      }
+      documents.flush();
+      writer.endSection();
+
+      writer.beginSection(CORPUS).write(corpusSection(corpus, termIds));
+      writer.endSection();
+
+      writer.commit();
+    }
+  }
+
+  /**
+   * Encodes a website into the documents section: its url, title and words, the words as their
+   * positions in the dictionary.
+   */
+  private static void encodeWebsite(ByteArrayOutputStream out, Website site,
+      Map<String, Integer> termIds) {
+    writeString(out, site.getUrl());
+    writeString(out, site.getTitle());
+    CompressedPostingList.writeVInt(out, site.getWordCount());
+    for (String word : site.getWords()) {
+      CompressedPostingList.writeVInt(out, termIds.get(word));
+    }
+  }
+
+  /**
+   * Encodes the corpus section: the totals, and the posting list of every 2-gram as a list of term
+   * IDs. Words of the 2-gram index which are not in the dictionary (i.e. which have been deleted
+   * from the corpus) are left out.
+   *
+   * @param corpus the corpus, with its 2-gram index built.
+   * @param termIds the position of every word in the dictionary.
+   * @return the encoded section.
+   * @throws IOException if the section cannot be encoded.
+   */
+  static byte[] corpusSection(Corpus corpus, Map<String, Integer> termIds) throws IOException {
+    ByteArrayOutputStream corpusBytes = new ByteArrayOutputStream();
+    DataOutputStream corpusOut = new DataOutputStream(corpusBytes);
+    corpusOut.writeInt(corpus.getTotalNumberOfSites());
+    corpusOut.writeInt(corpus.getWordCountTotal());
+    BiGramIndex biGramIndex = corpus.getBiGramIndex();
+    corpusOut.writeInt(biGramIndex.getBiGrams().size());
+    for (String biGram : new TreeSet<>(biGramIndex.getBiGrams())) {
+      // the word IDs of the 2-gram index may not be in dictionary order.
+      List<Integer> ids = new ArrayList<>();
+      for (int wordId : biGramIndex.postings(biGram)) {
+        Integer termId = termIds.get(biGramIndex.getWord(wordId));
+        if (termId != null) {
+          ids.add(termId);
+        }
+      }
+      Collections.sort(ids);
+      writeString(corpusBytes, biGram);
+      CompressedPostingList.writeVInt(corpusBytes, ids.size());
+      int previous = -1;
+      for (int id : ids) {
+        CompressedPostingList.writeVInt(corpusBytes, id - previous);
+        previous = id;
+      }
+    }
+    return corpusBytes.toByteArray();
+  }
+
+  /**
+   * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+   */
+  static void writeString(ByteArrayOutputStream out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    CompressedPostingList.writeVInt(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads and checks the header of the segment.
+   *
+   * @throws IOException if the header is invalid.
+   */
+  private void readHeader() throws IOException {
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an index segment");
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("Unsupported index segment version " + version + ", expected "
+          + VERSION);
+    }
+    if (buffer.getInt(8) != SECTION_COUNT) {
+      throw new IOException("Unexpected number of sections in index segment");
+    }
+    if (checksum(0, HEADER_SIZE - 8) != buffer.getLong(HEADER_SIZE - 8)) {
+      throw new IOException("Checksum mismatch in the header of the index segment");
+    }
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      int position = 12 + section * 16;
+      sectionOffsets[section] = buffer.getInt(position);
+      sectionLengths[section] = buffer.getInt(position + 4);
+      sectionChecksums[section] = buffer.getLong(position + 8);
+      if (sectionOffsets[section] < HEADER_SIZE || sectionLengths[section] < 0
+          || (long) sectionOffsets[section] + sectionLengths[section] > buffer.capacity()) {
+        throw new IOException("The " + SECTION_NAMES[section]
+            + " section of the index segment is truncated");
+      }
+    }
+  }
+
+  /**
+   * Checks a section against its checksum.
+   *
+   * @param section the section.
+   * @throws IOException if the section does not match its checksum.
+   */
+  private void checkSection(int section) throws IOException {
+    if (checksum(sectionOffsets[section], sectionLengths[section])
+        != sectionChecksums[section]) {
+      throw new IOException("Checksum mismatch in the " + SECTION_NAMES[section]
+          + " section of the index segment");
+    }
+  }
+
+  /**
+   * Computes the CRC32 checksum of a range of the file.
+   */
+  private long checksum(int offset, int length) {
+    ByteBuffer range = buffer.duplicate();
+    range.limit(offset + length);
+    range.position(offset);
+    CRC32 checksum = new CRC32();
+    checksum.update(range);
+    return checksum.getValue();
+  }
+
+  /**
+   * Returns a section of the file as a buffer of its own, starting at position 0.
+   */
+  private ByteBuffer section(int section) {
+    ByteBuffer range = buffer.duplicate();
+    range.limit(sectionOffsets[section] + sectionLengths[section]);
+    range.position(sectionOffsets[section]);
+    return range.slice();
+  }
+
+  @Override
+  public String toString() {
+    return "IndexSegment{" + "version=" + VERSION + ", index=" + index + '}';
+  }
+
+  /**
+   * Writes a segment file one section at a time. The sections are streamed to a temporary file
+   * after room for the header, so a segment never has to be held in memory; {@code commit} then
+   * writes the header and moves the file into place. Closing an uncommitted writer deletes the
+   * temporary file.
+   */
+  static class Writer implements Closeable {
+
+    /** The segment file. */
+    private final Path file;
+
+    /** The file written until the segment is committed. */
+    private final Path temporary;
+
+    /** The channel of the temporary file. */
+    private final FileChannel channel;
+
+    /** The buffered stream of the temporary file. */
+    private final OutputStream out;
+
+    /** The offset, length and checksum of every section. */
+    private final long[] offsets = new long[SECTION_COUNT];
+    private final long[] lengths = new long[SECTION_COUNT];
+    private final long[] checksums = new long[SECTION_COUNT];
+    private final boolean[] written = new boolean[SECTION_COUNT];
+
+    /** The section being written, or null. */
+    private SectionOutputStream current;
+
+    /** The number of bytes written to the file. */
+    private long position = HEADER_SIZE;
+
+    private boolean committed = false;
+
+    /**
+     * Creates a writer of a segment file.
+     *
+     * @param file the segment file.
+     * @throws IOException if the temporary file cannot be created.
+     */
+    Writer(Path file) throws IOException {
+      this.file = file.toAbsolutePath();
+      this.temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+      this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      channel.position(HEADER_SIZE);
+      this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+    }
+
+    /**
+     * Starts a section. Every section must be written exactly once, in any order.
+     *
+     * @param section the section.
+     * @return the stream the section is written to, which must not be closed.
+     */
+    SectionOutputStream beginSection(int section) {
+      if (current != null || written[section]) {
+        throw new IllegalStateException("The " + SECTION_NAMES[section]
+            + " section cannot be started");
+      }
+      offsets[section] = position;
+      written[section] = true;
+      current = new SectionOutputStream(section);
+      return current;
+    }
+
+    /**
+     * Ends the current section.
+     *
+     * @throws IOException if the section is too large.
+     */
+    void endSection() throws IOException {
+      lengths[current.section] = current.size;
+      checksums[current.section] = current.checksum.getValue();
+      position += current.size;
+      current = null;
+      if (position > Integer.MAX_VALUE) {
+        throw new IOException("The index is too large for a single segment");
+      }
+    }
+
+    /**
+     * Writes the header, and moves the segment into place.
+     *
+     * @throws IOException if the segment cannot be written.
+     */
+    void commit() throws IOException {
+      if (current != null) {
+        throw new IllegalStateException("The " + SECTION_NAMES[current.section]
+            + " section is not ended");
+      }
+      for (int section = 0; section < SECTION_COUNT; section++) {
+        if (!written[section]) {
+          throw new IllegalStateException("The " + SECTION_NAMES[section]
+              + " section is not written");
+        }
+      }
+      out.flush();
+
+      // the header, with the offsets and checksums of the sections.
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(SECTION_COUNT);
+      for (int section = 0; section < SECTION_COUNT; section++) {
+        header.putInt((int) offsets[section]);
+        header.putInt((int) lengths[section]);
+        header.putLong(checksums[section]);
+      }
+      CRC32 headerChecksum = new CRC32();
+      headerChecksum.update(header.array(), 0, HEADER_SIZE - 8);
+      header.putLong(headerChecksum.getValue());
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.close();
+
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!committed) {
+        channel.close();
+        Files.deleteIfExists(temporary);
+      }
+    }
+
+    /**
+     * The stream of a section, which counts and checksums the bytes written to it.
+     */
+    class SectionOutputStream extends OutputStream {
+
+      private final int section;
+      private final CRC32 checksum = new CRC32();
+      private long size = 0;
+
+      SectionOutputStream(int section) {
+        this.section = section;
+      }
+
+      /**
+       * Returns the number of bytes written to the section so far.
+       *
+       * @return the size of the section.
+       */
+      long size() {
+        return size;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        checksum.update(b);
+        size++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        checksum.update(b, off, len);
+        size += len;
+      }
+    }
+  }
+
+  /**
+   * Reads the numbers and strings of a section one after another.
+   */
+  private static class SectionReader {
+
+    private final ByteBuffer buffer;
+    private int position;
+
+    SectionReader(ByteBuffer buffer) {
+      this(buffer, 0);
+    }
+
+    SectionReader(ByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    int readInt() {
+      int value = buffer.getInt(position);
+      position += 4;
+      return value;
+    }
+
+    double readDouble() {
+      double value = buffer.getDouble(position);
+      position += 8;
+      return value;
+    }
+
+    int readVInt() {
+      byte b = buffer.get(position++);
+      int value = b & 0x7F;
+      for (int shift = 7; b < 0; shift += 7) {
+        b = buffer.get(position++);
+        value |= (b & 0x7F) << shift;
+      }
+      return value;
+    }
+
+    String readString() {
+      int length = readVInt();
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(position++);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * The read-only index of a segment. The websites are decoded from the documents section the
+   * first time they are requested, and then kept.
+   */
+  private static class SegmentIndex extends AbstractPostingListIndex {
+
+    /** The documents section. */
+    private final ByteBuffer documents;
+
+    /** The words of the dictionary, by term ID. */
+    private final String[] terms;
+
+    /** The websites decoded so far. */
+    private final AtomicReferenceArray<Website> websites;
+
+    /** The document IDs of the websites, built when first needed. */
+    private volatile Map<Website, Integer> decodedDocIds;
+
+    SegmentIndex(Map<String, PostingList> postings, Map<String, Double> maxTermFrequencies,
+        ByteBuffer documents, String[] terms) {
+      this.map = postings;
+      this.maxTermFrequencies = maxTermFrequencies;
+      this.documents = documents;
+      this.terms = terms;
+      this.websites = new AtomicReferenceArray<>(documents.getInt(0));
+    }
+
+    @Override
+    public Website getWebsite(int docId) {
+      Website site = websites.get(docId);
+      if (site == null) {
+        SectionReader reader = new SectionReader(documents, documents.getInt(4 + 4 * docId));
+        String url = reader.readString();
+        String title = reader.readString();
+        int wordCount = reader.readVInt();
+        List<String> words = new ArrayList<>(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+          words.add(terms[reader.readVInt()]);
+        }
+        // if another thread decoded the website first, its object is used.
+        websites.compareAndSet(docId, null, new Website(url, title, words));
+        site = websites.get(docId);
+      }
+      return site;
+    }
+
+    @Override
+    public int getDocumentCount() {
+      return websites.length();
+    }
+
+    @Override
+    public int getDocId(Website site) {
+      Map<Website, Integer> ids = decodedDocIds;
+      if (ids == null) {
+        ids = new HashMap<>();
+        for (int docId = 0; docId < getDocumentCount(); docId++) {
+          ids.put(getWebsite(docId), docId);
+        }
+        decodedDocIds = ids;
+      }
+      Integer docId = ids.get(site);
+      return docId == null ? -1 : docId;
+    }
+  }
+}
@@ -0,0 +1,447 @@
+package searchengine;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@code IngestionPipeline} reads a database and hands its websites to an indexer while the
+ * database is still being read, instead of parsing it into a {@code Set<Website>} first. The
+ * database may consist of several files, possibly gzip-compressed, as listed by
+ * {@code FileHelper.listDatabaseFiles}. The pipeline has three stages connected by bounded queues:
+ *
+ * <ol>
+ *   <li>reader threads, which each take the next unread file and read its pages with
+ *       {@code FileHelper.readPages}, so reading and decompressing several files overlap.
+ *   <li>worker threads, which count the words of every page into a {@code Website}.
+ *   <li>the indexer, a {@code PageHandler} run on the thread calling {@code run}.
+ * </ol>
+ *
+ * <p>An uncompressed file is instead memory-mapped and parsed in parallel by a
+ * {@code MappedFileParser}, which also counts the words, so its websites go from the reader
+ * straight to the indexer.
+ *
+ * <p>A stage blocks when the queue after it is full, so at most about twice the queue capacity of
+ * pages, and the few ranges being parsed by the {@code MappedFileParser}, are in memory at a
+ * time, however large the file is. The number of pages and words that
+ * passed every stage are counted, so the throughput of the stages can be compared while the
+ * pipeline is running. With one reader and one worker, the indexer receives the websites in file
+ * order; otherwise, the order is not defined. Every page is numbered by its position in the
+ * database, though, so {@code readAll} returns the websites in file order however many threads
+ * read them.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class IngestionPipeline {
+
+  /** The default capacity of each queue. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  /** The number of available processors, and the default number of readers. */
+  private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+  private static final int DEFAULT_READERS = Math.max(1, PROCESSORS / 4);
+
+  /** The marker put in the page queue after the last page, once per worker. */
+  private static final Page END_OF_PAGES = new Page(0, null, null, null);
+
+  /** The marker put in the website queue by a worker when it stops. */
+  private static final NumberedWebsite END_OF_WEBSITES =
+      new NumberedWebsite(0, new Website("", "", Collections.<String>emptyList()));
+
+  /** How long the indexer waits for a website before it checks for failures, in milliseconds. */
+  private static final long POLL_MILLIS = 100;
+
+  private final int readers;
+  private final int workers;
+  private final int queueCapacity;
+
+  /** The counters of the stages. */
+  private final AtomicLong filesRead = new AtomicLong();
+  private final AtomicLong pagesRead = new AtomicLong();
+  private final AtomicLong pagesTokenized = new AtomicLong();
+  private final AtomicLong wordsTokenized = new AtomicLong();
+  private final AtomicLong pagesIndexed = new AtomicLong();
+
+  /** The start and end of the current or last run, as {@code System.nanoTime}. */
+  private volatile long startTime;
+  private volatile long endTime;
+
+  /** The first failure of any stage. */
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /** The threads of the readers and the workers. */
+  private final List<Thread> threads = new ArrayList<>();
+
+  /** The parser of the uncompressed files. */
+  private final MappedFileParser parser = new MappedFileParser();
+
+  /**
+   * Creates an {@code IngestionPipeline} with a reader for every four available processors, a
+   * worker for every available processor not taken by the readers and the indexer, and the
+   * default queue capacity.
+   */
+  public IngestionPipeline() {
+    this(DEFAULT_READERS, Math.max(1, PROCESSORS - DEFAULT_READERS - 1), DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates an {@code IngestionPipeline} with one reader.
+   *
+   * @param workers the number of worker threads.
+   * @param queueCapacity the capacity of each queue.
+   */
+  public IngestionPipeline(int workers, int queueCapacity) {
+    this(1, workers, queueCapacity);
+  }
+
+  /**
+   * Creates an {@code IngestionPipeline}.
+   *
+   * @param readers the largest number of reader threads; no more readers than files are started.
+   * @param workers the number of worker threads.
+   * @param queueCapacity the capacity of each queue.
+   */
+  public IngestionPipeline(int readers, int workers, int queueCapacity) {
+    if (readers < 1 || workers < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(
+          "There must be at least one reader, one worker and one queue slot");
+    }
+    this.readers = readers;
+    this.workers = workers;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Reads a database, and hands its websites to an indexer. The indexer runs on the calling
+   * thread, and receives every page of the database once, duplicates included. If a stage fails,
+   * the other stages are stopped and the failure is thrown. A pipeline can only run one database
+   * at a time.
+   *
+   * @param database the path of the database file, a directory, or a glob pattern.
+   * @param indexer the handler receiving the websites.
+   * @throws IOException if the database cannot be read, or the indexer fails.
+   */
+  public synchronized void run(String database, FileHelper.PageHandler indexer)
+      throws IOException {
+    runNumbered(database, site -> indexer.handle(site.site));
+  }
+
+  /**
+   * Reads a database into a list of its websites in file order, i.e. in the order of the files
+   * given by {@code FileHelper.listDatabaseFiles}, and of the pages within each file, whatever
+   * the number of readers and workers. Duplicate websites are kept.
+   *
+   * @param database the path of the database file, a directory, or a glob pattern.
+   * @return the websites of the database.
+   * @throws IOException if the database cannot be read.
+   */
+  public synchronized List<Website> readAll(String database) throws IOException {
+    List<NumberedWebsite> numbered = new ArrayList<>();
+    runNumbered(database, numbered::add);
+    numbered.sort(Comparator.comparingLong(site -> site.number));
+    List<Website> sites = new ArrayList<>(numbered.size());
+    for (NumberedWebsite site : numbered) {
+      sites.add(site.site);
+    }
+    return sites;
+  }
+
+  /**
+   * Reads a database, and hands its websites to an indexer together with their numbers.
+   */
+  private void runNumbered(String database, NumberedHandler indexer) throws IOException {
+    List<Path> files = FileHelper.listDatabaseFiles(database);
+    if (files.isEmpty()) {
+      // without readers, nothing would mark the end of the pages.
+      throw new FileNotFoundException("No database files in " + database);
+    }
+    AtomicInteger nextFile = new AtomicInteger();
+    BlockingQueue<Page> pages = new ArrayBlockingQueue<>(queueCapacity);
+    BlockingQueue<NumberedWebsite> websites = new ArrayBlockingQueue<>(queueCapacity);
+    filesRead.set(0);
+    pagesRead.set(0);
+    pagesTokenized.set(0);
+    wordsTokenized.set(0);
+    pagesIndexed.set(0);
+    failure.set(null);
+    threads.clear();
+    startTime = System.nanoTime();
+    endTime = 0;
+
+    int readerCount = Math.min(readers, files.size());
+    AtomicInteger activeReaders = new AtomicInteger(readerCount);
+    for (int i = 0; i < readerCount; i++) {
+      threads.add(new Thread(() -> read(files, nextFile, pages, websites, activeReaders),
+          "ingestion-reader-" + i));
+    }
+    for (int i = 0; i < workers; i++) {
+      threads.add(new Thread(() -> tokenize(pages, websites), "ingestion-worker-" + i));
+    }
+    for (Thread thread : threads) {
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    try {
+      int stoppedWorkers = 0;
+      while (stoppedWorkers < workers && failure.get() == null) {
+        NumberedWebsite site = websites.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (site == END_OF_WEBSITES) {
+          stoppedWorkers++;
+        } else if (site != null) {
+          indexer.handle(site);
+          pagesIndexed.incrementAndGet();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(new InterruptedIOException("The ingestion was interrupted"));
+    } catch (IOException | RuntimeException | Error e) {
+      fail(e);
+    } finally {
+      join();
+      endTime = System.nanoTime();
+    }
+
+    Throwable cause = failure.get();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    } else if (cause != null) {
+      throw new IOException("The ingestion failed", cause);
+    }
+  }
+
+  /**
+   * The reader stage: reads the pages of the remaining files into the page queue, or, for an
+   * uncompressed file, parses its websites into the website queue. A page is numbered by the
+   * position of its file in the list of files (the high 32 bits) and its position in the file
+   * (the low 32 bits). The last reader to finish marks the end of the pages.
+   */
+  private void read(List<Path> files, AtomicInteger nextFile, BlockingQueue<Page> pages,
+      BlockingQueue<NumberedWebsite> websites, AtomicInteger activeReaders) {
+    try {
+      int file;
+      while ((file = nextFile.getAndIncrement()) < files.size()) {
+        long[] number = {(long) file << 32};
+        if (FileHelper.isCompressed(files.get(file))) {
+          FileHelper.readPages(files.get(file).toString(), (url, title, words) -> {
+            put(pages, new Page(number[0]++, url, title, words));
+            pagesRead.incrementAndGet();
+          });
+        } else {
+          parser.parse(files.get(file).toString(), site -> {
+            pagesRead.incrementAndGet();
+            pagesTokenized.incrementAndGet();
+            wordsTokenized.addAndGet(site.getWordCount());
+            put(websites, new NumberedWebsite(number[0]++, site));
+          });
+        }
+        filesRead.incrementAndGet();
+      }
+      if (activeReaders.decrementAndGet() == 0) {
+        for (int i = 0; i < workers; i++) {
+          put(pages, END_OF_PAGES);
+        }
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * The worker stage: counts the words of the pages into websites, until the end of the pages.
+   */
+  private void tokenize(BlockingQueue<Page> pages, BlockingQueue<NumberedWebsite> websites) {
+    try {
+      Page page;
+      while ((page = pages.take()) != END_OF_PAGES) {
+        Website site = new Website(page.url, page.title, page.words);
+        pagesTokenized.incrementAndGet();
+        wordsTokenized.addAndGet(site.getWordCount());
+        websites.put(new NumberedWebsite(page.number, site));
+      }
+      websites.put(END_OF_WEBSITES);
+    } catch (InterruptedException e) {
+      // the pipeline is being stopped.
+    } catch (RuntimeException | Error e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Puts an element in a queue, waiting for room.
+   */
+  private static <E> void put(BlockingQueue<E> queue, E element) throws InterruptedIOException {
+    try {
+      queue.put(element);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("The ingestion was interrupted");
+    }
+  }
+
+  /**
+   * Records the first failure, and stops the readers and the workers.
+   */
+  private void fail(Throwable cause) {
+    if (failure.compareAndSet(null, cause)) {
+      for (Thread thread : threads) {
+        if (thread != Thread.currentThread()) {
+          thread.interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for the readers and the workers to stop.
+   */
+  private void join() {
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (thread.isAlive()) {
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          fail(new InterruptedIOException("The ingestion was interrupted"));
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the number of files read completely so far.
+   *
+   * @return the number of files read.
+   */
+  public long getFilesRead() {
+    return filesRead.get();
+  }
+
+  /**
+   * Returns the number of pages read from the files so far.
+   *
+   * @return the number of pages read.
+   */
+  public long getPagesRead() {
+    return pagesRead.get();
+  }
+
+  /**
+   * Returns the number of pages whose words have been counted so far.
+   *
+   * @return the number of pages tokenized.
+   */
+  public long getPagesTokenized() {
+    return pagesTokenized.get();
+  }
+
+  /**
+   * Returns the number of words counted so far.
+   *
+   * @return the number of words tokenized.
+   */
+  public long getWordsTokenized() {
+    return wordsTokenized.get();
+  }
+
+  /**
+   * Returns the number of websites handed to the indexer so far.
+   *
+   * @return the number of websites indexed.
+   */
+  public long getPagesIndexed() {
+    return pagesIndexed.get();
+  }
+
+  /**
+   * Returns the time the current or last run has taken.
+   *
+   * @return the time in nanoseconds, or 0 if the pipeline has not run.
+   */
+  public long getElapsedNanos() {
+    if (startTime == 0) {
+      return 0;
+    }
+    return (endTime == 0 ? System.nanoTime() : endTime) - startTime;
+  }
+
+  /**
+   * Returns the number of items per second, over the time the current or last run has taken.
+   */
+  private long perSecond(long count) {
+    long elapsed = getElapsedNanos();
+    return elapsed == 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    return "IngestionPipeline{" + "files=" + getFilesRead() + ", read=" + getPagesRead() + " ("
+        + perSecond(getPagesRead()) + "/s), tokenized=" + getPagesTokenized() + " ("
+        + perSecond(getPagesTokenized()) + "/s, " + perSecond(getWordsTokenized())
+        + " words/s), indexed=" + getPagesIndexed()
+        + " (" + perSecond(getPagesIndexed()) + "/s), elapsed="
+        + TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()) + " ms}";
+  }
+
+  /**
+   * A page of the file whose words have not been counted yet.
+   */
+  private static class Page {
+
+    private final long number;
+    private final String url;
+    private final String title;
+    private final List<String> words;
+
+    Page(long number, String url, String title, List<String> words) {
+      this.number = number;
+      this.url = url;
+      this.title = title;
+      this.words = words;
+    }
+  }
+
+  /**
+   * A website, with the number of the page it was read from.
+   */
+  private static class NumberedWebsite {
+
+    private final long number;
+    private final Website site;
+
+    NumberedWebsite(long number, Website site) {
+      this.number = number;
+      this.site = site;
+    }
+  }
+
+  /**
+   * Receives the websites of the pipeline together with their numbers.
+   */
+  private interface NumberedHandler {
+
+    void handle(NumberedWebsite site) throws IOException;
+  }
+}
@@ -0,0 +1,233 @@
+package searchengine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code IntersectionCache} keeps the intersected posting lists of pairs of words that often
+ * occur together in queries, e.g. "new york", so that the queries "new york hotels" and "new york
+ * times" both start from the cached websites containing "new" and "york", instead of intersecting
+ * the two long posting lists again.
+ *
+ * <p>Only frequent pairs are cached: every pair of words in a subquery is counted in a small
+ * frequency sketch, and a pair is admitted once it has been seen a number of times, and only if
+ * both words are common enough for their intersection to be worth keeping. The sketch forgets
+ * slowly, by halving all counts at regular intervals, so pairs that were popular long ago are not
+ * admitted forever. The counters are updated without locking, since every query with several
+ * words counts its pairs; a count lost to a concurrent update or halving only delays an admission.
+ * The cache is bounded by the estimated size of the intersections in bytes, and evicts the least
+ * recently used ones. An intersection too large to be cached is remembered, so its pair is not
+ * admitted again.
+ *
+ * <p>The document IDs are only valid for the index the intersections were computed from, so every
+ * {@code QueryHandler} has its own cache, and a new {@code Snapshot} starts with an empty one.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+final class IntersectionCache {
+
+  /** The default bound of the estimated size of the cached intersections, 4 MB. */
+  static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+  /** The default number of times a pair must be seen before it is cached. */
+  static final int DEFAULT_ADMISSION_COUNT = 3;
+
+  /**
+   * The default smallest document frequency of the words of a cached pair. Intersecting rarer
+   * words is cheap anyway.
+   */
+  static final int DEFAULT_MIN_DOCUMENT_FREQUENCY = 64;
+
+  /** The number of hash functions, i.e. rows, of the frequency sketch. */
+  private static final int DEPTH = 4;
+
+  /** The number of counters in a row of the frequency sketch, a power of two. */
+  private static final int WIDTH = 4096;
+
+  /** The largest count of a counter; counts above it do not matter for admission. */
+  private static final int MAX_COUNT = 15;
+
+  /** The number of counted pairs after which all counts are halved. */
+  private static final int SAMPLE_SIZE = 10 * WIDTH;
+
+  /** The bound of the estimated size of the keys of the rejected pairs, 64 kB. */
+  private static final long REJECTED_MAX_BYTES = 64L * 1024;
+
+  private final LruCache<String, RoaringBitmap> cache;
+
+  /** The pairs whose intersections were too large to be cached. */
+  private final LruCache<String, Boolean> rejected =
+      new LruCache<>(REJECTED_MAX_BYTES, (key, value) -> 2 * key.length(), 0);
+  private final int admissionCount;
+  private final int minDocumentFrequency;
+
+  /** The counters of the frequency sketch, one array per row. */
+  private final AtomicIntegerArray[] counts = new AtomicIntegerArray[DEPTH];
+
+  /** The number of pairs counted since the counts were last halved. */
+  private final AtomicInteger sampled = new AtomicInteger();
+
+  private final LongAdder admissions = new LongAdder();
+
+  /**
+   * Creates an empty {@code IntersectionCache} with the default bound and admission policy.
+   */
+  IntersectionCache() {
+    this(DEFAULT_MAX_BYTES, DEFAULT_ADMISSION_COUNT, DEFAULT_MIN_DOCUMENT_FREQUENCY);
+  }
+
+  /**
+   * Creates an empty {@code IntersectionCache}.
+   *
+   * @param maxBytes the bound of the estimated size of the cached intersections in bytes.
+   * @param admissionCount the number of times a pair must be seen before it is cached, at least 1.
+   * @param minDocumentFrequency the smallest document frequency of the words of a cached pair.
+   */
+  IntersectionCache(long maxBytes, int admissionCount, int minDocumentFrequency) {
+    if (admissionCount < 1 || admissionCount > MAX_COUNT) {
+      throw new IllegalArgumentException("The admission count must be between 1 and " + MAX_COUNT);
+    }
+    cache = new LruCache<>(maxBytes,
+        (key, bitmap) -> (int) Math.min(2L * key.length() + bitmap.getSizeInBytes(),
+            Integer.MAX_VALUE), 0);
+    this.admissionCount = admissionCount;
+    this.minDocumentFrequency = minDocumentFrequency;
+    for (int row = 0; row < DEPTH; row++) {
+      counts[row] = new AtomicIntegerArray(WIDTH);
+    }
+  }
+
+  /**
+   * Returns the key of a pair of words, which is the same whichever order they are given in.
+   *
+   * @param first a word.
+   * @param second another word.
+   * @return the key.
+   */
+  static String key(String first, String second) {
+    return first.compareTo(second) <= 0 ? first + " " + second : second + " " + first;
+  }
+
+  /**
+   * Returns the cached intersection of a pair of words. The bitmap is shared, and must not be
+   * changed.
+   *
+   * @param key the key of the pair.
+   * @return the intersection, or null if it is not cached.
+   */
+  RoaringBitmap get(String key) {
+    return cache.get(key);
+  }
+
+  /**
+   * Counts a query containing a pair of words, and checks whether the intersection of the pair
+   * should be cached.
+   *
+   * @param key the key of the pair.
+   * @param firstFrequency the document frequency of one of the words.
+   * @param secondFrequency the document frequency of the other word.
+   * @return true, if the pair has been seen often enough, both words are common enough, and the
+   *     intersection of the pair has not been too large to be cached before.
+   */
+  boolean record(String key, long firstFrequency, long secondFrequency) {
+    int count = increment(key);
+    return count >= admissionCount && Math.min(firstFrequency, secondFrequency)
+        >= minDocumentFrequency && rejected.get(key) == null;
+  }
+
+  /**
+   * Caches the intersection of a pair of words. An intersection heavier than the cache can hold
+   * is not cached, and its pair is rejected by {@code record} from now on, instead of being
+   * intersected and admitted again by every query containing it.
+   *
+   * @param key the key of the pair.
+   * @param intersection the intersection, which must not be changed afterwards.
+   */
+  void put(String key, RoaringBitmap intersection) {
+    if (2L * key.length() + intersection.getSizeInBytes() > cache.getMaxEntryWeight()) {
+      rejected.put(key, Boolean.TRUE);
+      return;
+    }
+    cache.put(key, intersection);
+    admissions.increment();
+  }
+
+  /**
+   * Increments the counts of a key in the frequency sketch.
+   *
+   * @return the estimated number of times the key has been seen, at most {@code MAX_COUNT}.
+   */
+  private int increment(String key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    int count = MAX_COUNT;
+    for (int row = 0; row < DEPTH; row++) {
+      hash = Integer.rotateLeft(hash, 8) * 0x85EBCA6B;
+      int column = (hash ^ hash >>> 16) & (WIDTH - 1);
+      count = Math.min(count, counts[row].updateAndGet(column, c -> c < MAX_COUNT ? c + 1 : c));
+    }
+    // only the thread resetting the sample halves the counts.
+    if (sampled.incrementAndGet() >= SAMPLE_SIZE && sampled.getAndSet(0) >= SAMPLE_SIZE) {
+      for (AtomicIntegerArray row : counts) {
+        for (int column = 0; column < WIDTH; column++) {
+          row.updateAndGet(column, c -> c >> 1);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of lookups which found their pair in the cache.
+   *
+   * @return the hits.
+   */
+  long getHits() {
+    return cache.getHits();
+  }
+
+  /**
+   * Returns the number of lookups which did not find their pair in the cache.
+   *
+   * @return the misses.
+   */
+  long getMisses() {
+    return cache.getMisses();
+  }
+
+  /**
+   * Returns the number of intersections added to the cache.
+   *
+   * @return the admissions.
+   */
+  long getAdmissions() {
+    return admissions.sum();
+  }
+
+  /**
+   * Returns the number of cached intersections.
+   *
+   * @return the size.
+   */
+  int getSize() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the estimated size of the cached intersections in bytes.
+   *
+   * @return the bytes.
+   */
+  long getBytes() {
+    return cache.weight();
+  }
+
+  @Override
+  public String toString() {
+    return "IntersectionCache{" + "size=" + getSize() + ", bytes=" + getBytes() + ", hits="
+        + getHits() + ", misses=" + getMisses() + ", admissions=" + getAdmissions() + '}';
+  }
+}
@@ -3,6 +3,7 @@ package searchengine;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Set;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,12 @@ public abstract class InvertedIndex implements Index {
    */
   protected Map<String, Set<Website>> map;
 
+  /**
+   * The map from every indexed website to itself, used to find the words of the indexed website
+   * when an equal website is deleted, or null until a website is first added or deleted.
+   */
+  private Map<Website, Website> documents;
+
   /**
    * Builds an inverted index, mapping a word to the {@code Websites} containing it, given a {@code Set<Websites>}
    *
@@ -51,6 +58,8 @@ public abstract class InvertedIndex implements Index {
         }
       }
     }
+    // the indexed websites are collected again when they are needed.
+    documents = null;
   }
   /**
    * Returns the set of websites which match the {@code query}, returns an empty
@@ -67,4 +76,57 @@ public abstract class InvertedIndex implements Index {
       return Collections.emptySet();
     }
   }
+
+  /**
+   * Adds a website to the index, replacing an equal website (same url and title) already in it.
+   *
+   * @param site The website to be added.
+   */
+  public void addDocument(Website site) {
+    if (site == null) {
+      throw new IllegalArgumentException();
+    }
+    deleteDocument(site);
+    for (String word : site.getWords()) {
+      map.computeIfAbsent(word, w -> new HashSet<>()).add(site);
+    }
+    getDocuments().put(site, site);
+  }
+
+  /**
+   * Removes a website from the index. The website is only removed from the posting sets of the
+   * words of the indexed website, which may differ from those of {@code site}.
+   *
+   * @param site The website to be removed.
+   */
+  public void deleteDocument(Website site) {
+    Website indexed = getDocuments().remove(site);
+    if (indexed == null) {
+      return;
+    }
+    for (String word : indexed.getWords()) {
+      Set<Website> sites = map.get(word);
+      if (sites != null && sites.remove(site) && sites.isEmpty()) {
+        map.remove(word);
+      }
+    }
+  }
+
+  /**
+   * Returns the map from every indexed website to itself, collecting it from the posting sets the
+   * first time a website is added or deleted.
+   *
+   * @return the indexed websites.
+   */
+  private Map<Website, Website> getDocuments() {
+    if (documents == null) {
+      documents = new HashMap<>();
+      for (Set<Website> sites : map.values()) {
+        for (Website site : sites) {
+          documents.put(site, site);
+        }
+      }
+    }
+    return documents;
+  }
 }
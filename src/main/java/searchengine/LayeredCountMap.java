@@ -0,0 +1,221 @@
+package searchengine;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A {@code LayeredCountMap} maps words to positive counts, e.g. the number of websites a word
+ * appears on, and can be copied in time proportional to the changes since it was last copied,
+ * instead of the number of words. The counts are kept as a shared base map, and layers of
+ * differences to it, all of which are never changed once shared; a word is in the map if the sum
+ * of its counts is positive. Changes go to a layer of its own, which becomes a shared layer when
+ * the map is copied.
+ *
+ * <p>Every lookup reads the base and every layer, so the layers are kept few: when a map is
+ * copied, the newest layers are merged while a layer is at least half the size of the one before
+ * it, which keeps the number of layers logarithmic in the number of changes, and every change is
+ * only copied a logarithmic number of times. Once the layers hold as many words as the base, they
+ * are merged into a new base.
+ *
+ * <p>A map which has been copied must not be changed anymore, since its changes are shared with
+ * the copy. Reading it is still safe, also from several threads.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+final class LayeredCountMap extends AbstractMap<String, Integer> {
+
+  /** The counts the layers are differences to. */
+  private final Map<String, Integer> base;
+
+  /** The shared layers of differences, oldest first. */
+  private final List<Map<String, Integer>> layers;
+
+  /** The differences made to this map, not shared with any other map. */
+  private final Map<String, Integer> changes = new HashMap<>();
+
+  /** The number of words with a positive count. */
+  private int size;
+
+  /** Whether the map has been copied, after which it must not be changed. */
+  private boolean copied = false;
+
+  /**
+   * Creates a map with the counts of another map, which is shared, and must not be changed
+   * afterwards.
+   *
+   * @param base the counts, all positive.
+   */
+  LayeredCountMap(Map<String, Integer> base) {
+    this(base, Collections.<Map<String, Integer>>emptyList(), base.size());
+  }
+
+  private LayeredCountMap(Map<String, Integer> base, List<Map<String, Integer>> layers, int size) {
+    this.base = base;
+    this.layers = layers;
+    this.size = size;
+  }
+
+  /**
+   * Returns a copy of a map of counts, sharing the counts with it. The given map must not be
+   * changed afterwards.
+   *
+   * @param counts the map, whose counts are all positive.
+   * @return the copy, which can be changed.
+   */
+  static LayeredCountMap copyOf(Map<String, Integer> counts) {
+    return counts instanceof LayeredCountMap ? ((LayeredCountMap) counts).copy()
+        : new LayeredCountMap(counts);
+  }
+
+  /**
+   * Returns a copy of this map, which shares its base and layers with this map. This map must not
+   * be changed afterwards.
+   *
+   * @return the copy, which can be changed.
+   */
+  LayeredCountMap copy() {
+    copied = true;
+    List<Map<String, Integer>> next = new ArrayList<>(layers);
+    if (!changes.isEmpty()) {
+      next.add(changes);
+    }
+    int last = next.size() - 1;
+    while (last > 0 && next.get(last).size() * 2 >= next.get(last - 1).size()) {
+      Map<String, Integer> merged = new HashMap<>(next.get(last - 1));
+      for (Map.Entry<String, Integer> entry : next.get(last).entrySet()) {
+        merged.merge(entry.getKey(), entry.getValue(), LayeredCountMap::sumOrNull);
+      }
+      next.remove(last);
+      next.set(--last, merged);
+    }
+    if (!next.isEmpty() && next.get(0).size() >= base.size()) {
+      return new LayeredCountMap(flatten(base, next), Collections.emptyList(), size);
+    }
+    return new LayeredCountMap(base, Collections.unmodifiableList(next), size);
+  }
+
+  /**
+   * Returns the sum of two differences, or null if they cancel out, so the word is dropped from a
+   * merged layer.
+   */
+  private static Integer sumOrNull(Integer first, Integer second) {
+    int sum = first + second;
+    return sum == 0 ? null : sum;
+  }
+
+  /**
+   * Sums the counts of a base and its layers into a map of the words with a positive count.
+   */
+  private static Map<String, Integer> flatten(Map<String, Integer> base,
+      List<Map<String, Integer>> layers) {
+    Map<String, Integer> counts = new HashMap<>(base);
+    for (Map<String, Integer> layer : layers) {
+      for (Map.Entry<String, Integer> entry : layer.entrySet()) {
+        counts.merge(entry.getKey(), entry.getValue(), LayeredCountMap::sumOrNull);
+      }
+    }
+    counts.values().removeIf(count -> count <= 0);
+    return counts;
+  }
+
+  /**
+   * Returns the sum of the counts of a word in the base and the shared layers.
+   */
+  private int sharedCount(Object word) {
+    Integer count = base.get(word);
+    int sum = count == null ? 0 : count;
+    for (Map<String, Integer> layer : layers) {
+      Integer difference = layer.get(word);
+      if (difference != null) {
+        sum += difference;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the count of a word.
+   */
+  private int count(Object word) {
+    Integer difference = changes.get(word);
+    return sharedCount(word) + (difference == null ? 0 : difference);
+  }
+
+  @Override
+  public Integer get(Object word) {
+    int count = count(word);
+    return count > 0 ? count : null;
+  }
+
+  @Override
+  public boolean containsKey(Object word) {
+    return count(word) > 0;
+  }
+
+  /**
+   * Sets the count of a word.
+   *
+   * @param word the word.
+   * @param count the count, which must be positive.
+   * @return the previous count, or null if the word was not in the map.
+   * @throws IllegalStateException if the map has been copied.
+   */
+  @Override
+  public Integer put(String word, Integer count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("The count of \"" + word + "\" must be positive");
+    }
+    return set(word, count);
+  }
+
+  @Override
+  public Integer remove(Object word) {
+    return word instanceof String ? set((String) word, 0) : null;
+  }
+
+  /**
+   * Sets the count of a word, removing the word if the count is 0.
+   */
+  private Integer set(String word, int count) {
+    if (copied) {
+      throw new IllegalStateException("A copied map cannot be changed");
+    }
+    int shared = sharedCount(word);
+    Integer difference = changes.get(word);
+    int previous = shared + (difference == null ? 0 : difference);
+    if (count == shared) {
+      changes.remove(word);
+    } else {
+      changes.put(word, count - shared);
+    }
+    size += (count > 0 ? 1 : 0) - (previous > 0 ? 1 : 0);
+    return previous > 0 ? previous : null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the words and their counts, in alphabetical order. This sums the counts of every word,
+   * so it is only meant for exports and tests, not for lookups.
+   *
+   * @return a read-only snapshot of the entries.
+   */
+  @Override
+  public Set<Map.Entry<String, Integer>> entrySet() {
+    List<Map<String, Integer>> all = new ArrayList<>(layers);
+    all.add(changes);
+    return Collections.unmodifiableMap(new TreeMap<>(flatten(base, all))).entrySet();
+  }
+}
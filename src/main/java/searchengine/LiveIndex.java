@@ -0,0 +1,891 @@
+package searchengine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The {@code LiveIndex} is an {@code Index} which websites can be added to and deleted from after
+ * it has been built, while it is being searched. It consists of immutable segments, each an
+ * {@code AbstractPostingListIndex} with a tombstone {@code BitSet} marking its deleted documents,
+ * and a small in-memory buffer of added websites.
+ *
+ * <p>Added and deleted websites only become searchable when the index is refreshed: the deletes
+ * are applied to the tombstones (by copying the bitsets, never by changing published ones), the
+ * buffer is built into a new segment, and a new {@code View}, holding the index of all segments
+ * and the matching {@code Corpus}, is published. A search reads one {@code View} throughout, so
+ * it is never affected by a refresh running at the same time. Refreshes run periodically on a
+ * background thread, or whenever {@code refresh} is called.
+ *
+ * <p>Every refresh adds a segment, so when there are too many of them, the small ones are merged
+ * into one on another background thread, which also drops their deleted documents. The merged
+ * segment replaces the segments it was built from once it is done; documents deleted while it was
+ * being built are carried over to it.
+ *
+ * <p>If the initial index has impacts or champion lists, and the {@code Score} they were built
+ * with is set, every new segment gets them as well. The champion lists of the segments are
+ * combined when searching, so a single word is still answered from them after websites have been
+ * added or deleted.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class LiveIndex implements Index, Closeable {
+
+  /** The default time between two periodic refreshes, in milliseconds. */
+  public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+  /** The default number of segments above which segments are merged. */
+  public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+  /** The time between two periodic refreshes in milliseconds, or 0 to only refresh on demand. */
+  private final long refreshInterval;
+
+  /** The number of segments above which segments are merged. */
+  private final int maxSegments;
+
+  /** Whether the initial index has impacts, which are then built for every new segment. */
+  private final boolean impacts;
+
+  /** The length of the champion lists of the initial index and every new segment, or 0. */
+  private final int championCount;
+
+  /** The score the impacts and champion lists are built with, or null if they are not built. */
+  private volatile Score score;
+
+  /** The segments, oldest first. The list is replaced as a whole, never changed. */
+  private List<Segment> segments;
+
+  /** The websites added since the last refresh, in the order they were added. */
+  private final Map<Website, Website> buffer = new LinkedHashMap<>();
+
+  /** The websites deleted (or replaced) since the last refresh. */
+  private final Set<Website> deletes = new HashSet<>();
+
+  /** The searchable view of the last refresh. */
+  private volatile View view;
+
+  /** The listener receiving every newly published view. */
+  private volatile Consumer<View> listener = view -> { };
+
+  /** Held by a refresh or build from start to end, so they publish their changes in order. */
+  private final Object refreshLock = new Object();
+
+  /** Held while calling the listener, so it receives the views in the order they were published. */
+  private final Object listenerLock = new Object();
+
+  /** The last view passed to the listener. */
+  private View notified;
+
+  /** The thread running the periodic refreshes, started on the first change. */
+  private ScheduledExecutorService refresher;
+
+  /** The thread running the merges, started on the first merge. */
+  private ExecutorService merger;
+
+  /** Whether a merge is running. */
+  private boolean merging = false;
+
+  /** Whether the index has been closed. */
+  private boolean closed = false;
+
+  /**
+   * Creates a {@code LiveIndex} which is refreshed every {@code DEFAULT_REFRESH_INTERVAL}
+   * milliseconds, and merges segments when there are more than {@code DEFAULT_MAX_SEGMENTS}.
+   *
+   * @param index the built index of the websites to start with.
+   * @param corpus the built corpus of the same websites.
+   */
+  public LiveIndex(AbstractPostingListIndex index, Corpus corpus) {
+    this(index, corpus, DEFAULT_REFRESH_INTERVAL, DEFAULT_MAX_SEGMENTS);
+  }
+
+  /**
+   * Creates a {@code LiveIndex}. The index and corpus are not changed by the {@code LiveIndex}:
+   * the index becomes its first segment, and the corpus is copied on the first refresh. The copy
+   * shares the counts of the corpus, so the corpus must not be changed afterwards.
+   *
+   * @param index the built index of the websites to start with.
+   * @param corpus the built corpus of the same websites.
+   * @param refreshInterval the time between two periodic refreshes in milliseconds, or 0 to only
+   *     refresh when {@code refresh} is called.
+   * @param maxSegments the number of segments above which segments are merged.
+   */
+  public LiveIndex(AbstractPostingListIndex index, Corpus corpus, long refreshInterval,
+      int maxSegments) {
+    if (refreshInterval < 0 || maxSegments < 1) {
+      throw new IllegalArgumentException(
+          "The refresh interval must be non-negative, and at least one segment must be allowed");
+    }
+    this.refreshInterval = refreshInterval;
+    this.maxSegments = maxSegments;
+    impacts = index.hasImpacts();
+    championCount = index.getChampionCount();
+    segments = Collections.singletonList(new Segment(index, new BitSet()));
+    view = new View(index, corpus);
+    notified = view;
+  }
+
+  /**
+   * Builds the index of a set of websites from scratch, dropping all segments and all websites not
+   * yet refreshed. The corpus of the websites is built as well, including its 2-gram index.
+   *
+   * @param sites A set of websites to be indexed.
+   */
+  @Override
+  public void build(Set<Website> sites) {
+    if (sites == null || sites.contains(null)) {
+      throw new IllegalArgumentException();
+    }
+    ParallelIndexBuilder.Shard shard = SearchEngine.buildShard(sites);
+    PostingListIndex index = SearchEngine.buildIndex(shard);
+    Corpus corpus = SearchEngine.buildCorpus(sites, shard);
+    precompute(index, corpus);
+    synchronized (refreshLock) {
+      synchronized (this) {
+        buffer.clear();
+        deletes.clear();
+        segments = Collections.singletonList(new Segment(index, new BitSet()));
+        view = new View(index, corpus);
+      }
+    }
+    notifyListener();
+  }
+
+  /**
+   * Returns the websites which contain the {@code query} word, as of the last refresh.
+   *
+   * @param query The query to be looked up.
+   * @return the {@code Set<Website>} that contain the query word.
+   */
+  @Override
+  public Set<Website> lookup(String query) {
+    return view.getIndex().lookup(query);
+  }
+
+  /**
+   * Adds a website, replacing an equal website (same url and title) already in the index. The
+   * website becomes searchable on the next refresh.
+   *
+   * @param site The website to be added.
+   */
+  public synchronized void addDocument(Website site) {
+    if (site == null) {
+      throw new IllegalArgumentException();
+    }
+    // the website replaces an equal one, whether it is in a segment or in the buffer.
+    deletes.add(site);
+    buffer.remove(site);
+    buffer.put(site, site);
+    startRefresher();
+  }
+
+  /**
+   * Deletes a website, which stops being searchable on the next refresh. Nothing happens if the
+   * website is not in the index.
+   *
+   * @param site The website to be deleted.
+   */
+  public synchronized void deleteDocument(Website site) {
+    if (site == null) {
+      throw new IllegalArgumentException();
+    }
+    buffer.remove(site);
+    deletes.add(site);
+    startRefresher();
+  }
+
+  /**
+   * Makes the websites added and deleted since the last refresh searchable, by publishing a new
+   * {@code View}. Nothing happens if no website has been added or deleted.
+   *
+   * @return true, if a new view was published.
+   */
+  public boolean refresh() {
+    synchronized (refreshLock) {
+      List<Segment> current;
+      Website[] added;
+      Set<Website> deleted;
+      synchronized (this) {
+        if (buffer.isEmpty() && deletes.isEmpty()) {
+          return false;
+        }
+        current = segments;
+        added = buffer.values().toArray(new Website[0]);
+        deleted = new HashSet<>(deletes);
+        buffer.clear();
+        deletes.clear();
+      }
+
+      // the corpus and the new segment are built without holding the lock, so websites can be
+      // added and deleted meanwhile. A merge never changes which websites are live, so the
+      // deletes are applied to the corpus as of the segments the refresh started with.
+      Corpus corpus = new Corpus(view.getCorpus());
+      for (Website site : deleted) {
+        for (Segment segment : current) {
+          int docId = segment.index.getDocId(site);
+          if (docId >= 0 && !segment.deleted.get(docId)) {
+            corpus.deleteDocument(segment.index.getWebsite(docId));
+          }
+        }
+      }
+      Segment buffered = null;
+      if (added.length > 0) {
+        PostingListIndex index = new PostingListIndex();
+        index.build(new ParallelIndexBuilder().build(added));
+        for (Website site : added) {
+          corpus.addDocument(site);
+        }
+        corpus.extend2GramIndex();
+        precompute(index, corpus);
+        buffered = new Segment(index, new BitSet());
+      }
+
+      synchronized (this) {
+        // the tombstones of a segment are copied before the first delete applied to it. They are
+        // applied to the segments as they are now, which a merge may have replaced meanwhile.
+        BitSet[] tombstones = new BitSet[segments.size()];
+        for (Website site : deleted) {
+          for (int i = 0; i < tombstones.length; i++) {
+            Segment segment = segments.get(i);
+            int docId = segment.index.getDocId(site);
+            BitSet tombstone = tombstones[i] == null ? segment.deleted : tombstones[i];
+            if (docId >= 0 && !tombstone.get(docId)) {
+              if (tombstones[i] == null) {
+                tombstones[i] = (BitSet) segment.deleted.clone();
+              }
+              tombstones[i].set(docId);
+            }
+          }
+        }
+
+        List<Segment> next = new ArrayList<>(segments.size() + 1);
+        for (int i = 0; i < tombstones.length; i++) {
+          Segment segment = tombstones[i] == null ? segments.get(i)
+              : new Segment(segments.get(i).index, tombstones[i]);
+          if (segment.getLiveCount() > 0) {
+            next.add(segment);
+          }
+        }
+        if (buffered != null) {
+          next.add(buffered);
+        }
+        publish(next, corpus);
+        maybeMerge();
+      }
+    }
+    notifyListener();
+    return true;
+  }
+
+  /**
+   * Replaces the segments, and publishes a view of them. The listener is not called, since the
+   * index is locked; {@code notifyListener} must be called once the lock is released.
+   */
+  private void publish(List<Segment> next, Corpus corpus) {
+    segments = Collections.unmodifiableList(next);
+    if (next.size() == 1 && next.get(0).deleted.isEmpty()) {
+      view = new View(next.get(0).index, corpus);
+    } else {
+      view = new View(new SegmentedIndex(next, corpus, score, championCount), corpus);
+    }
+  }
+
+  /**
+   * Builds the impacts and champion lists of a new segment, if the initial index has them and the
+   * score is set.
+   */
+  private void precompute(PostingListIndex index, Corpus corpus) {
+    Score current = score;
+    if (current == null) {
+      return;
+    }
+    if (impacts) {
+      index.buildImpacts(corpus, current);
+    }
+    if (championCount > 0) {
+      index.buildChampions(corpus, current, championCount);
+    }
+  }
+
+  /**
+   * Sets the score the impacts and champion lists of the initial index were built with. They are
+   * built for every new segment from now on, with the corpus of the refresh or merge building it.
+   * Without a score, new segments have neither, and champion lists are only used until the first
+   * website is added or deleted.
+   *
+   * @param score the score.
+   */
+  public void setScore(Score score) {
+    this.score = score;
+  }
+
+  /**
+   * Passes the last published view to the listener, unless it has received it already. Views
+   * published by concurrent refreshes and merges are passed in order, and an older view is never
+   * passed after a newer one.
+   */
+  private void notifyListener() {
+    synchronized (listenerLock) {
+      View latest = view;
+      if (latest != notified) {
+        notified = latest;
+        listener.accept(latest);
+      }
+    }
+  }
+
+  /**
+   * Sets the listener receiving the views published from now on, by a refresh or a merge. The
+   * listener is called on the refreshing or merging thread once the index is unlocked, so websites
+   * can be added and deleted while it runs. Calls are never concurrent, and a view published while
+   * the listener runs may be skipped in favour of a newer one.
+   *
+   * @param listener the listener.
+   */
+  public void setListener(Consumer<View> listener) {
+    synchronized (listenerLock) {
+      this.listener = listener;
+    }
+  }
+
+  /**
+   * Starts merging segments in the background, if there are too many and no merge is running. If
+   * the oldest segment holds more websites than all others together (and there are at least two
+   * others), it is left out of the merge, so the large initial segment is not rebuilt for every
+   * few websites added.
+   */
+  private void maybeMerge() {
+    if (merging || closed || segments.size() <= maxSegments) {
+      return;
+    }
+    int rest = 0;
+    for (Segment segment : segments.subList(1, segments.size())) {
+      rest += segment.getLiveCount();
+    }
+    int from = segments.get(0).getLiveCount() > rest && segments.size() > 2 ? 1 : 0;
+    List<Segment> sources = new ArrayList<>(segments.subList(from, segments.size()));
+
+    if (merger == null) {
+      merger = Executors.newSingleThreadExecutor(daemon("live-index-merge"));
+    }
+    merging = true;
+    merger.execute(() -> merge(sources));
+  }
+
+  /**
+   * Merges segments into one, and replaces them by the merged segment.
+   *
+   * @param sources the segments to merge, which are neighbours in the list of segments.
+   */
+  private void merge(List<Segment> sources) {
+    try {
+      // the live websites are collected and indexed without holding the lock.
+      List<Website> sites = new ArrayList<>();
+      for (Segment segment : sources) {
+        for (int docId = 0; docId < segment.index.getDocumentCount(); docId++) {
+          if (!segment.deleted.get(docId)) {
+            sites.add(segment.index.getWebsite(docId));
+          }
+        }
+      }
+      PostingListIndex merged = new PostingListIndex();
+      merged.build(new ParallelIndexBuilder().build(sites.toArray(new Website[0])));
+      precompute(merged, view.getCorpus());
+      replace(sources, merged);
+      notifyListener();
+    } catch (RuntimeException | Error e) {
+      e.printStackTrace();
+    } finally {
+      synchronized (this) {
+        merging = false;
+        maybeMerge();
+      }
+    }
+  }
+
+  /**
+   * Replaces merged segments by the merged segment. Refreshes may have deleted documents of the
+   * merged segments, or dropped them altogether, in the meantime; those documents are deleted from
+   * the merged segment.
+   */
+  private synchronized void replace(List<Segment> sources, PostingListIndex merged) {
+    if (closed) {
+      return;
+    }
+    Map<AbstractPostingListIndex, Segment> current = new IdentityHashMap<>();
+    for (Segment segment : segments) {
+      current.put(segment.index, segment);
+    }
+
+    BitSet deleted = new BitSet();
+    for (Segment source : sources) {
+      Segment now = current.get(source.index);
+      for (int docId = 0; docId < source.index.getDocumentCount(); docId++) {
+        if (!source.deleted.get(docId) && (now == null || now.deleted.get(docId))) {
+          deleted.set(merged.getDocId(source.index.getWebsite(docId)));
+        }
+      }
+    }
+
+    // the merged segments still in the list are neighbours, and are replaced at the first one.
+    Set<AbstractPostingListIndex> replaced =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Segment source : sources) {
+      replaced.add(source.index);
+    }
+    Segment segment = new Segment(merged, deleted);
+    List<Segment> next = new ArrayList<>();
+    boolean added = false;
+    for (Segment existing : segments) {
+      if (!replaced.contains(existing.index)) {
+        next.add(existing);
+      } else if (!added) {
+        added = true;
+        if (segment.getLiveCount() > 0) {
+          next.add(segment);
+        }
+      }
+    }
+    if (added) {
+      publish(next, view.getCorpus());
+    }
+  }
+
+  /**
+   * Starts the periodic refreshes, unless they are disabled or already started.
+   */
+  private void startRefresher() {
+    if (refresher != null || refreshInterval == 0 || closed) {
+      return;
+    }
+    refresher = Executors.newSingleThreadScheduledExecutor(daemon("live-index-refresh"));
+    refresher.scheduleWithFixedDelay(() -> {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        // a failed refresh must not cancel the following ones.
+        e.printStackTrace();
+      }
+    }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns a factory for daemon threads, so the background threads never keep the JVM alive.
+   *
+   * @param name the name of the threads.
+   * @return the thread factory.
+   */
+  static ThreadFactory daemon(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Returns the searchable view of the last refresh.
+   *
+   * @return the current view.
+   */
+  public View getView() {
+    return view;
+  }
+
+  /**
+   * Returns the number of segments.
+   *
+   * @return the number of segments.
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Returns the number of websites added since the last refresh.
+   *
+   * @return the number of buffered websites.
+   */
+  public synchronized int getBufferedCount() {
+    return buffer.size();
+  }
+
+  /**
+   * Checks whether a merge is running.
+   *
+   * @return true, if segments are being merged.
+   */
+  public synchronized boolean isMerging() {
+    return merging;
+  }
+
+  /**
+   * Stops the periodic refreshes and the merges. Websites added or deleted since the last refresh
+   * are not refreshed, and a running merge is abandoned.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      merging = false;
+    }
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+    if (merger != null) {
+      merger.shutdownNow();
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LiveIndex{" + "segments=" + segments.size() + ", buffered=" + buffer.size()
+        + ", deletes=" + deletes.size() + ", index=" + view.getIndex() + '}';
+  }
+
+  /**
+   * The searchable state of a {@code LiveIndex} after a refresh: an index of all segments, and the
+   * corpus of the same websites. Neither is changed once published.
+   */
+  public static class View {
+
+    private final SearchableIndex index;
+    private final Corpus corpus;
+
+    View(SearchableIndex index, Corpus corpus) {
+      this.index = index;
+      this.corpus = corpus;
+    }
+
+    /**
+     * Returns the index of all segments, without the deleted websites.
+     *
+     * @return the index.
+     */
+    public SearchableIndex getIndex() {
+      return index;
+    }
+
+    /**
+     * Returns the corpus of the websites in the index.
+     *
+     * @return the corpus.
+     */
+    public Corpus getCorpus() {
+      return corpus;
+    }
+  }
+
+  /**
+   * An immutable segment: an index, and the tombstones of its deleted documents.
+   */
+  private static class Segment {
+
+    private final AbstractPostingListIndex index;
+    private final BitSet deleted;
+
+    Segment(AbstractPostingListIndex index, BitSet deleted) {
+      this.index = index;
+      this.deleted = deleted;
+    }
+
+    int getLiveCount() {
+      return index.getDocumentCount() - deleted.cardinality();
+    }
+  }
+
+  /**
+   * The index of several segments. The document IDs of a segment follow those of the segments
+   * before it, deleted documents included, so the posting lists of the segments are concatenated
+   * and stay sorted. Deleted documents are skipped by the posting lists, and are not found by
+   * {@code getDocId}. The quantized impacts of the segments have different scales, so it has no
+   * impacts, but the champion lists of the segments are combined, if every segment has them.
+   */
+  private static class SegmentedIndex implements SearchableIndex {
+
+    /** An empty posting list, returned for words that are in none of the segments. */
+    private static final PostingList EMPTY_POSTINGS = new ArrayPostingList(new int[0]);
+
+    private final AbstractPostingListIndex[] indices;
+    private final BitSet[] deleted;
+    private final int[] bases;
+    private final int documentCount;
+
+    /** The corpus and score ranking the champions of the segments, or null without champions. */
+    private final Corpus corpus;
+    private final Score score;
+
+    /** The length of the champion lists of the segments, or 0 if some segment has none. */
+    private final int championCount;
+
+    /** The union of the words of the segments, computed on first use. */
+    private volatile Set<String> words;
+
+    SegmentedIndex(List<Segment> segments, Corpus corpus, Score score, int championCount) {
+      indices = new AbstractPostingListIndex[segments.size()];
+      deleted = new BitSet[segments.size()];
+      bases = new int[segments.size()];
+      int base = 0;
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = segments.get(i).index;
+        deleted[i] = segments.get(i).deleted.isEmpty() ? null : segments.get(i).deleted;
+        bases[i] = base;
+        base += indices[i].getDocumentCount();
+      }
+      documentCount = base;
+      boolean champions = score != null && championCount > 0;
+      for (AbstractPostingListIndex index : indices) {
+        champions &= index.getChampionCount() == championCount;
+      }
+      this.corpus = champions ? corpus : null;
+      this.score = champions ? score : null;
+      this.championCount = champions ? championCount : 0;
+    }
+
+    @Override
+    public PostingList getPostings(String word) {
+      List<PostingList> lists = new ArrayList<>(indices.length);
+      List<Integer> segments = new ArrayList<>(indices.length);
+      for (int i = 0; i < indices.length; i++) {
+        PostingList postings = indices[i].getPostings(word);
+        if (postings.size() > 0) {
+          lists.add(postings);
+          segments.add(i);
+        }
+      }
+      if (lists.isEmpty()) {
+        return EMPTY_POSTINGS;
+      }
+      int[] listBases = new int[lists.size()];
+      BitSet[] listDeleted = new BitSet[lists.size()];
+      for (int i = 0; i < listBases.length; i++) {
+        listBases[i] = bases[segments.get(i)];
+        listDeleted[i] = deleted[segments.get(i)];
+      }
+      return new SegmentedPostingList(lists.toArray(new PostingList[0]), listBases, listDeleted);
+    }
+
+    @Override
+    public Set<String> getWords() {
+      if (words == null) {
+        Set<String> union = new HashSet<>();
+        for (AbstractPostingListIndex index : indices) {
+          union.addAll(index.getWords());
+        }
+        words = Collections.unmodifiableSet(union);
+      }
+      return words;
+    }
+
+    @Override
+    public double getMaxTermFrequency(String word) {
+      // deleted documents are included, so this stays an upper bound.
+      double max = 0;
+      for (AbstractPostingListIndex index : indices) {
+        max = Math.max(max, index.getMaxTermFrequency(word));
+      }
+      return max;
+    }
+
+    @Override
+    public Website getWebsite(int docId) {
+      int segment = Arrays.binarySearch(bases, docId);
+      if (segment < 0) {
+        segment = -segment - 2;
+      } else {
+        // segments without documents share the base of the next one.
+        while (segment + 1 < bases.length && bases[segment + 1] == docId) {
+          segment++;
+        }
+      }
+      return indices[segment].getWebsite(docId - bases[segment]);
+    }
+
+    @Override
+    public int getDocId(Website site) {
+      for (int i = 0; i < indices.length; i++) {
+        int docId = indices[i].getDocId(site);
+        if (docId >= 0 && (deleted[i] == null || !deleted[i].get(docId))) {
+          return bases[i] + docId;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the number of document IDs of the segments, deleted documents included.
+     *
+     * @return the number of document IDs.
+     */
+    @Override
+    public int getDocumentCount() {
+      return documentCount;
+    }
+
+    /**
+     * Returns the best ranked live websites among the champions of the segments, ranked with the
+     * corpus of the view. The websites of a segment beyond its champion list rank at most as high
+     * as its last champion, so only the champions ranking higher than the last champion of every
+     * segment with more websites are known to be the best, and the list stops before the others.
+     */
+    @Override
+    public int[] getChampions(String word) {
+      if (championCount == 0) {
+        return null;
+      }
+      TopKCollector collector = new TopKCollector(championCount);
+      int[][] lists = new int[indices.length][];
+      for (int i = 0; i < indices.length; i++) {
+        lists[i] = indices[i].getChampions(word);
+        for (int docId : lists[i]) {
+          if (deleted[i] == null || !deleted[i].get(docId)) {
+            collector.collect(bases[i] + docId,
+                score.rankSingle(indices[i].getWebsite(docId), corpus, word));
+          }
+        }
+      }
+      if (collector.size() == 0) {
+        return new int[0];
+      }
+      double floor = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < indices.length; i++) {
+        int[] list = lists[i];
+        if (list.length > 0 && indices[i].getPostings(word).size() > list.length) {
+          floor = Math.max(floor,
+              score.rankSingle(indices[i].getWebsite(list[list.length - 1]), corpus, word));
+        }
+      }
+      int[] docIds = new int[collector.size()];
+      double[] ranks = new double[docIds.length];
+      collector.drain(docIds, ranks);
+      int known = 0;
+      while (known < ranks.length && ranks[known] > floor) {
+        known++;
+      }
+      return Arrays.copyOf(docIds, known);
+    }
+
+    @Override
+    public int getChampionCount() {
+      return championCount;
+    }
+
+    @Override
+    public String toString() {
+      return "SegmentedIndex{" + "segments=" + indices.length + ", sites=" + documentCount + '}';
+    }
+  }
+
+  /**
+   * The concatenated posting lists of a word in several segments, without deleted documents.
+   */
+  private static class SegmentedPostingList implements PostingList {
+
+    private final PostingList[] lists;
+    private final int[] bases;
+    private final BitSet[] deleted;
+
+    /** The number of documents, counted on first use, or -1. */
+    private int size = -1;
+
+    SegmentedPostingList(PostingList[] lists, int[] bases, BitSet[] deleted) {
+      this.lists = lists;
+      this.bases = bases;
+      this.deleted = deleted;
+    }
+
+    @Override
+    public int size() {
+      if (size < 0) {
+        int count = 0;
+        for (int i = 0; i < lists.length; i++) {
+          if (deleted[i] == null) {
+            count += lists[i].size();
+          } else {
+            PostingIterator iterator = lists[i].iterator();
+            for (int docId = iterator.nextDoc(); docId != PostingIterator.NO_MORE_DOCS;
+                docId = iterator.nextDoc()) {
+              if (!deleted[i].get(docId)) {
+                count++;
+              }
+            }
+          }
+        }
+        size = count;
+      }
+      return size;
+    }
+
+    @Override
+    public PostingIterator iterator() {
+      return new PostingIterator() {
+
+        private int list = 0;
+        private PostingIterator current = lists.length > 0 ? lists[0].iterator() : null;
+        private int docId = -1;
+
+        @Override
+        public int docId() {
+          return docId;
+        }
+
+        @Override
+        public int nextDoc() {
+          if (current == null) {
+            return docId = NO_MORE_DOCS;
+          }
+          return skip(current.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) {
+          if (current == null) {
+            return docId = NO_MORE_DOCS;
+          }
+          while (list + 1 < lists.length && bases[list + 1] <= target) {
+            list++;
+            current = lists[list].iterator();
+          }
+          return skip(current.advance(Math.max(0, target - bases[list])));
+        }
+
+        /**
+         * Moves to the first live document at or after a document of the current list.
+         */
+        private int skip(int local) {
+          while (true) {
+            if (local == NO_MORE_DOCS) {
+              if (++list == lists.length) {
+                current = null;
+                return docId = NO_MORE_DOCS;
+              }
+              current = lists[list].iterator();
+              local = current.nextDoc();
+            } else if (deleted[list] != null && deleted[list].get(local)) {
+              local = current.nextDoc();
+            } else {
+              return docId = bases[list] + local;
+            }
+          }
+        }
+      };
+    }
+  }
+}
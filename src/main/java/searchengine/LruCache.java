@@ -0,0 +1,294 @@
+package searchengine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A {@code LruCache} is a bounded cache which can be used by many threads at once. The keys are
+ * spread over a fixed number of segments by their hash codes, and every segment is a map in
+ * least-recently-used order with its own lock, holding at most its share of the entries. When a
+ * segment is full, its least recently used entries are evicted, so the cache as a whole evicts
+ * approximately in least-recently-used order.
+ *
+ * <p>The cache is bounded either by its number of entries, or by the total weight of its entries,
+ * e.g. their estimated size in bytes. An entry heavier than the share of a segment is not cached.
+ * Entries may also expire a fixed time after they were added.
+ *
+ * <p>Values are computed outside the locks, so two threads missing the same key at the same time
+ * may both compute its value, and the last one computed is kept.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+final class LruCache<K, V> {
+
+  /** The largest number of segments. */
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+  private final ToIntBiFunction<? super K, ? super V> weigher;
+  private final long timeToLive;
+  private final LongSupplier ticker;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+
+  /**
+   * Creates an empty {@code LruCache} bounded by its number of entries, whose entries never expire.
+   *
+   * @param maximumSize the most entries the cache holds, at least 1.
+   */
+  LruCache(int maximumSize) {
+    this(maximumSize, (key, value) -> 1, 0, System::nanoTime);
+  }
+
+  /**
+   * Creates an empty {@code LruCache} bounded by the total weight of its entries.
+   *
+   * @param maximumWeight the largest total weight of the entries, at least 1.
+   * @param weigher the function computing the weight of an entry, at least 0.
+   * @param timeToLive the time in milliseconds after which an entry expires, or 0 if entries never
+   *     expire.
+   */
+  LruCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, long timeToLive) {
+    this(maximumWeight, weigher, timeToLive, System::nanoTime);
+  }
+
+  /**
+   * Creates an empty {@code LruCache} reading the time in nanoseconds from a ticker, for testing.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  LruCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, long timeToLive,
+      LongSupplier ticker) {
+    if (maximumWeight < 1) {
+      throw new IllegalArgumentException("The maximum weight must be at least 1");
+    }
+    if (timeToLive < 0) {
+      throw new IllegalArgumentException("The time to live must not be negative");
+    }
+    this.weigher = weigher;
+    this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    this.ticker = ticker;
+    int segmentCount = (int) Math.min(MAX_SEGMENTS, maximumWeight);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      // the first segments hold one more, if the weight is not divisible.
+      long capacity = maximumWeight / segmentCount + (i < maximumWeight % segmentCount ? 1 : 0);
+      segments[i] = new Segment<>(capacity);
+    }
+  }
+
+  /**
+   * Returns the value of a key, computing it and adding it to the cache if it is not cached.
+   *
+   * @param key the key.
+   * @param compute the function computing the value of the key, which must not return null.
+   * @return the value.
+   */
+  V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+    V value = get(key);
+    if (value == null) {
+      value = compute.apply(key);
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the cached value of a key.
+   *
+   * @param key the key.
+   * @return the value, or null if the key is not cached or has expired.
+   */
+  V get(K key) {
+    Segment<K, V> segment = segmentOf(key);
+    Entry<V> entry;
+    synchronized (segment) {
+      entry = segment.get(key);
+      if (entry != null && timeToLive > 0 && ticker.getAsLong() - entry.added >= timeToLive) {
+        segment.remove(key);
+        segment.weight -= entry.weight;
+        expirations.increment();
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /**
+   * Adds or replaces the value of a key, evicting the least recently used entries if the segment
+   * of the key gets too heavy.
+   *
+   * @param key the key.
+   * @param value the value, not null.
+   */
+  void put(K key, V value) {
+    Segment<K, V> segment = segmentOf(key);
+    int weight = weigher.applyAsInt(key, value);
+    synchronized (segment) {
+      Entry<V> replaced = segment.remove(key);
+      if (replaced != null) {
+        segment.weight -= replaced.weight;
+      }
+      if (weight > segment.capacity) {
+        return;
+      }
+      segment.put(key, new Entry<>(value, weight, ticker.getAsLong()));
+      segment.weight += weight;
+      Iterator<Entry<V>> eldest = segment.values().iterator();
+      while (segment.weight > segment.capacity || segment.size() > segment.capacity) {
+        segment.weight -= eldest.next().weight;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  void clear() {
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+        segment.weight = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the size.
+   */
+  int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the total weight of the entries in the cache.
+   *
+   * @return the weight.
+   */
+  long weight() {
+    long weight = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        weight += segment.weight;
+      }
+    }
+    return weight;
+  }
+
+  /**
+   * Returns the weight of the heaviest entry the cache can hold, i.e. the share of the lightest
+   * segment. A heavier entry is not cached by {@code put}.
+   *
+   * @return the largest weight of an entry.
+   */
+  long getMaxEntryWeight() {
+    return segments[segments.length - 1].capacity;
+  }
+
+  /**
+   * Returns the number of lookups which found their key in the cache.
+   *
+   * @return the hits.
+   */
+  long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups which did not find their key in the cache.
+   *
+   * @return the misses.
+   */
+  long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for others.
+   *
+   * @return the evictions.
+   */
+  long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the number of entries removed because they expired.
+   *
+   * @return the expirations.
+   */
+  long getExpirations() {
+    return expirations.sum();
+  }
+
+  private Segment<K, V> segmentOf(K key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  @Override
+  public String toString() {
+    return "LruCache{" + "size=" + size() + ", weight=" + weight() + ", hits=" + getHits()
+        + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", expirations="
+        + getExpirations() + '}';
+  }
+
+  /**
+   * A cached value, with its weight and the time it was added.
+   */
+  private static final class Entry<V> {
+    private final V value;
+    private final int weight;
+    private final long added;
+
+    Entry(V value, int weight, long added) {
+      this.value = value;
+      this.weight = weight;
+      this.added = added;
+    }
+  }
+
+  /**
+   * A segment of the cache: a map in access order, with the total weight of its entries.
+   */
+  private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long capacity;
+    private long weight;
+
+    Segment(long capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+  }
+}
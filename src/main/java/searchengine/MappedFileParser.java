@@ -0,0 +1,507 @@
+package searchengine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The {@code MappedFileParser} parses a database file in the format described in
+ * {@code FileHelper.parseFile}, but much faster than the {@code Scanner} used there. The file is
+ * memory-mapped and split into byte ranges which start at a line beginning with "*PAGE:", and the
+ * ranges are parsed in parallel on a {@code ForkJoinPool}. Since every "*PAGE:" line starts a new
+ * website, each range is parsed exactly as if the whole file were read from its start, so the
+ * result, including the handling of malformed entries, is the same as that of
+ * {@code FileHelper.readFile}.
+ *
+ * <p>Lines are found by scanning the bytes for line separators, so no {@code String} is created
+ * per line: the words of a range are interned in a table keyed by their UTF-8 bytes, and a word
+ * repeated in the range is stored as the same {@code String}. Like the {@code Scanner}, the parser
+ * splits lines at "\n", "\r\n", "\r", U+0085, U+2028 and U+2029, and ignores whitespace at the end
+ * of the file. Invalid UTF-8 is decoded as replacement characters.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class MappedFileParser {
+
+  /** The bytes starting a website. */
+  private static final byte[] PAGE = "*PAGE:".getBytes(StandardCharsets.US_ASCII);
+
+  /** The largest range; a mapping cannot exceed 2 GB. */
+  private static final long MAX_RANGE_SIZE = 1L << 30;
+
+  /** The largest range when a file is parsed as a stream, so few websites are held at once. */
+  private static final long STREAM_RANGE_SIZE = 1L << 22;
+
+  /** The number of bytes read at a time while looking for the start of a range. */
+  private static final int SEARCH_WINDOW = 1 << 16;
+
+  /** The pool running the tasks. */
+  private final ForkJoinPool pool;
+
+  /** The number of ranges to split a file into, or 0 to derive it from the parallelism. */
+  private final int ranges;
+
+  /**
+   * Creates a {@code MappedFileParser} running on the common {@code ForkJoinPool}.
+   */
+  public MappedFileParser() {
+    this(ForkJoinPool.commonPool(), 0);
+  }
+
+  /**
+   * Creates a {@code MappedFileParser}.
+   *
+   * @param pool the pool running the tasks.
+   * @param ranges the number of ranges to split a file into, or 0 for four ranges per thread of
+   *     the pool. Ranges are at most 1 GB, so a large file may be split into more ranges.
+   */
+  public MappedFileParser(ForkJoinPool pool, int ranges) {
+    if (ranges < 0) {
+      throw new IllegalArgumentException("The number of ranges must be non-negative");
+    }
+    this.pool = pool;
+    this.ranges = ranges;
+  }
+
+  /**
+   * Parses a file and extracts all the websites that are contained in the file.
+   *
+   * @param filename the path of the file.
+   * @return the set of websites found in the file.
+   * @throws IOException if the file cannot be read.
+   */
+  public Set<Website> parse(String filename) throws IOException {
+    Set<Website> sites = new HashSet<>();
+    for (List<Website> range : parseRanges(Paths.get(filename))) {
+      sites.addAll(range);
+    }
+    return sites;
+  }
+
+  /**
+   * Parses a file and extracts all the websites that are contained in the file, in file order.
+   * Duplicate websites are kept.
+   *
+   * @param filename the path of the file.
+   * @return the list of websites found in the file.
+   * @throws IOException if the file cannot be read.
+   */
+  public List<Website> parseList(String filename) throws IOException {
+    List<Website> sites = new ArrayList<>();
+    for (List<Website> range : parseRanges(Paths.get(filename))) {
+      sites.addAll(range);
+    }
+    return sites;
+  }
+
+  /**
+   * Parses a file, and hands its websites to a handler in file order, duplicates included. The
+   * file is split into ranges of at most 4 MB, which are parsed in parallel, but at most one range
+   * per thread of the pool is parsed ahead of the range being handed over. So only the websites of
+   * a few ranges are held in memory at a time, however large the file is.
+   *
+   * @param filename the path of the file.
+   * @param handler the handler receiving the websites.
+   * @throws IOException if the file cannot be read, or the handler fails.
+   */
+  public void parse(String filename, FileHelper.PageHandler handler) throws IOException {
+    Deque<ForkJoinTask<List<Website>>> tasks = new ArrayDeque<>();
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long end = contentEnd(channel);
+      long[] starts = splitPoints(channel, end, STREAM_RANGE_SIZE);
+      int next = 0;
+      while (next < starts.length || !tasks.isEmpty()) {
+        while (next < starts.length && tasks.size() <= pool.getParallelism()) {
+          long from = starts[next];
+          long to = ++next < starts.length ? starts[next] : end;
+          if (from < to) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            tasks.add(pool.submit(() -> new RangeParser(buffer).parse()));
+          }
+        }
+        if (!tasks.isEmpty()) {
+          for (Website site : tasks.poll().join()) {
+            handler.handle(site);
+          }
+        }
+      }
+    } finally {
+      for (ForkJoinTask<List<Website>> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Splits a file into ranges, and parses them in parallel.
+   *
+   * @return the websites of every range, in file order.
+   */
+  private List<List<Website>> parseRanges(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long end = contentEnd(channel);
+      long[] starts = splitPoints(channel, end, MAX_RANGE_SIZE);
+
+      List<ForkJoinTask<List<Website>>> tasks = new ArrayList<>();
+      for (int i = 0; i < starts.length; i++) {
+        long from = starts[i];
+        long to = i + 1 < starts.length ? starts[i + 1] : end;
+        if (from < to) {
+          // the mapping stays valid after the channel is closed.
+          MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+          tasks.add(pool.submit(() -> new RangeParser(buffer).parse()));
+        }
+      }
+      List<List<Website>> result = new ArrayList<>();
+      for (ForkJoinTask<List<Website>> task : tasks) {
+        result.add(task.join());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Finds the end of the content of a file: the end of the line holding its last character which
+   * is not whitespace. Like the {@code Scanner}, the lines after it are ignored.
+   */
+  private static long contentEnd(FileChannel channel) throws IOException {
+    long size = channel.size();
+    ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW);
+    long position = size;
+    while (position > 0) {
+      int length = (int) Math.min(SEARCH_WINDOW, position);
+      position -= length;
+      read(channel, window, position, length);
+      for (int i = length - 1; i >= 0; i--) {
+        if (!isWhitespace(window.get(i))) {
+          return endOfLine(channel, position + i + 1, size);
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Finds the first line separator at or after a position, or the end of the file.
+   */
+  private static long endOfLine(FileChannel channel, long position, long size)
+      throws IOException {
+    ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW);
+    while (position < size) {
+      int length = (int) Math.min(SEARCH_WINDOW, size - position);
+      read(channel, window, position, length);
+      for (int i = 0; i < length; i++) {
+        byte b = window.get(i);
+        if (b == '\n' || b == '\r') {
+          return position + i;
+        }
+      }
+      position += length;
+    }
+    return size;
+  }
+
+  /**
+   * Chooses the starts of the ranges of a file: the first is 0, and every other one is the start
+   * of a line beginning with "*PAGE:". There are enough ranges for none to be larger than the
+   * given size, unless a website is.
+   */
+  private long[] splitPoints(FileChannel channel, long end, long maxRangeSize)
+      throws IOException {
+    int count = ranges == 0 ? 4 * pool.getParallelism() : ranges;
+    count = (int) Math.max(count, (end + maxRangeSize - 1) / maxRangeSize);
+    long[] starts = new long[Math.max(1, count)];
+    int found = 1;
+    for (int i = 1; i < starts.length; i++) {
+      long target = Math.max(starts[found - 1] + 1, end / starts.length * i);
+      long start = nextPage(channel, target, end);
+      if (start < end) {
+        starts[found++] = start;
+      }
+    }
+    long[] result = Arrays.copyOf(starts, found);
+    for (int i = 1; i < result.length; i++) {
+      if (result[i] - result[i - 1] > Integer.MAX_VALUE) {
+        throw new IOException("A website of the file is larger than 2 GB");
+      }
+    }
+    if (end - result[result.length - 1] > Integer.MAX_VALUE) {
+      throw new IOException("A website of the file is larger than 2 GB");
+    }
+    return result;
+  }
+
+  /**
+   * Finds the start of the first line beginning with "*PAGE:" after a position, or {@code end}.
+   * A line starts after "\n" or "\r", which covers "\r\n"; the multi-byte separators do not need
+   * to be found here, since the range is only split less evenly if one is missed.
+   */
+  private static long nextPage(FileChannel channel, long position, long end) throws IOException {
+    ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW + PAGE.length);
+    while (position < end) {
+      int length = (int) Math.min(SEARCH_WINDOW + PAGE.length, end - position + 1);
+      read(channel, window, position - 1, length);
+      for (int i = 0; i + PAGE.length < length; i++) {
+        byte b = window.get(i);
+        if ((b == '\n' || b == '\r') && startsWithPage(window, i + 1, length)) {
+          return position + i;
+        }
+      }
+      position += SEARCH_WINDOW;
+    }
+    return end;
+  }
+
+  /**
+   * Reads a range of a file into the start of a buffer.
+   */
+  private static void read(FileChannel channel, ByteBuffer buffer, long position, int length)
+      throws IOException {
+    buffer.clear();
+    buffer.limit(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  /**
+   * Checks whether the bytes at a position of a buffer are "*PAGE:".
+   */
+  private static boolean startsWithPage(ByteBuffer buffer, int position, int limit) {
+    if (position + PAGE.length > limit) {
+      return false;
+    }
+    for (int i = 0; i < PAGE.length; i++) {
+      if (buffer.get(position + i) != PAGE[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a byte is ASCII whitespace, as matched by {@code Character.isWhitespace}.
+   */
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+  }
+
+  /**
+   * Parses one range of a file. The parsing follows {@code FileHelper.readPages} line by line.
+   */
+  private static class RangeParser {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final WordTable words = new WordTable();
+
+    /** The current position in the range. */
+    private int position = 0;
+
+    /** The start and end of the current line. */
+    private int lineStart;
+    private int lineEnd;
+
+    RangeParser(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.limit = buffer.limit();
+    }
+
+    List<Website> parse() {
+      List<Website> sites = new ArrayList<>();
+      String url = null, title = null;
+      List<String> listOfWords = null;
+      boolean foundFirstPage = false;
+      boolean isNextLineTitle = false;
+
+      while (nextLine()) {
+        if (lineStartsWithPage()) {
+          if (url != null && title != null && listOfWords != null) {
+            sites.add(new Website(url, title, listOfWords));
+          }
+          url = decode(lineStart + PAGE.length, lineEnd);
+          title = null;
+          listOfWords = null;
+          foundFirstPage = true;
+          isNextLineTitle = true;
+        } else if (foundFirstPage && isNextLineTitle) {
+          title = decode(lineStart, lineEnd);
+          isNextLineTitle = false;
+        } else if (foundFirstPage) {
+          if (listOfWords == null) {
+            listOfWords = new ArrayList<>();
+          }
+          listOfWords.add(words.intern(buffer, lineStart, lineEnd));
+        }
+      }
+      if (url != null && title != null && listOfWords != null) {
+        sites.add(new Website(url, title, listOfWords));
+      }
+      return sites;
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false, if the range has no more lines.
+     */
+    private boolean nextLine() {
+      if (position >= limit) {
+        return false;
+      }
+      lineStart = position;
+      while (position < limit) {
+        byte b = buffer.get(position);
+        if (b == '\n') {
+          lineEnd = position;
+          position++;
+          return true;
+        } else if (b == '\r') {
+          lineEnd = position;
+          position++;
+          if (position < limit && buffer.get(position) == '\n') {
+            position++;
+          }
+          return true;
+        } else if (b == (byte) 0xC2 && position + 1 < limit
+            && buffer.get(position + 1) == (byte) 0x85) {
+          lineEnd = position;
+          position += 2;
+          return true;
+        } else if (b == (byte) 0xE2 && position + 2 < limit
+            && buffer.get(position + 1) == (byte) 0x80
+            && (buffer.get(position + 2) == (byte) 0xA8
+                || buffer.get(position + 2) == (byte) 0xA9)) {
+          lineEnd = position;
+          position += 3;
+          return true;
+        }
+        position++;
+      }
+      lineEnd = limit;
+      return true;
+    }
+
+    private boolean lineStartsWithPage() {
+      return startsWithPage(buffer, lineStart, lineEnd);
+    }
+
+    private String decode(int from, int to) {
+      byte[] bytes = new byte[to - from];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(from + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * An open-addressing hash table from the UTF-8 bytes of a word to the word, so a word is only
+   * decoded into a {@code String} the first time it is seen.
+   */
+  static class WordTable {
+
+    private byte[][] keys = new byte[1024][];
+    private String[] values = new String[1024];
+    private int size = 0;
+
+    /**
+     * Returns the word of a range of a buffer, decoding it if it is not in the table yet.
+     *
+     * @param buffer the buffer.
+     * @param from the start of the word.
+     * @param to the end of the word, exclusive.
+     * @return the word.
+     */
+    String intern(ByteBuffer buffer, int from, int to) {
+      int hash = 1;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+      int mask = keys.length - 1;
+      int slot = mix(hash) & mask;
+      while (keys[slot] != null) {
+        if (equals(keys[slot], buffer, from, to)) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      byte[] key = new byte[to - from];
+      for (int i = 0; i < key.length; i++) {
+        key[i] = buffer.get(from + i);
+      }
+      String word = new String(key, StandardCharsets.UTF_8);
+      keys[slot] = key;
+      values[slot] = word;
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return word;
+    }
+
+    /**
+     * Returns the number of distinct words in the table.
+     *
+     * @return the number of words.
+     */
+    int size() {
+      return size;
+    }
+
+    private void grow() {
+      byte[][] oldKeys = keys;
+      String[] oldValues = values;
+      keys = new byte[oldKeys.length * 2][];
+      values = new String[oldKeys.length * 2];
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int slot = mix(Arrays.hashCode(oldKeys[i])) & mask;
+          while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+        }
+      }
+    }
+
+    /** Spreads the bits of a hash code, since the table size is a power of two. */
+    private static int mix(int hash) {
+      hash *= 0x9E3779B9;
+      return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buffer, int from, int to) {
+      if (key.length != to - from) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != buffer.get(from + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package searchengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code MaxScoreRetriever} finds the best ranked {@code Websites} for a query without ranking
+ * every matching website, using the MaxScore algorithm. It works for any
+ * {@code TermWeightedScore}, where the highest possible rank of each word (its upper bound) is
+ * the weight of the word times its highest term frequency in the {@code SearchableIndex}.
+ *
+ * <p>The posting lists of the query words are traversed together in document ID order. Once the
+ * top {@code k} websites have been found, a website whose words can at best reach the rank of the
+ * k-th website can be skipped. The words are sorted by upper bound, and the longest prefix of
+ * words whose upper bounds cannot reach that rank, neither alone nor together within any
+ * subquery, become "non-essential": only websites containing at least one of the remaining,
+ * essential words are considered, and the non-essential words are only looked up for the
+ * websites which could still make it into the top {@code k}. As the rank of the k-th website
+ * grows, more words become non-essential, which for long OR queries (e.g. after fuzzy expansion)
+ * leaves most of the matching websites unranked.
+ *
+ * <p>The rank of a website is the highest sum of the ranks of the words of a subquery, exactly as
+ * computed by {@code Score.rank}, and ties are broken by document ID, so the result is the same as
+ * ranking every matching website. If the index has precomputed impacts, the ranks of the words
+ * are their quantized impacts instead, and ranking a website needs no map lookups at all. A
+ * {@code MaxScoreRetriever} keeps no state between calls, and can be used from several threads at
+ * once.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class MaxScoreRetriever {
+
+  /** The {@code QueryHandler} used to find the matching websites. */
+  private final QueryHandler queryHandler;
+  /** The {@code SearchableIndex} holding the posting lists of the words. */
+  private final SearchableIndex index;
+  /** The {@code Corpus} used by the {@code Score}. */
+  private final Corpus corpus;
+  /** The {@code Score} used to rank the websites. */
+  private final TermWeightedScore score;
+
+  /**
+   * Creates a {@code MaxScoreRetriever}.
+   *
+   * @param queryHandler the {@code QueryHandler} used to find the matching websites.
+   * @param index the index holding the posting lists of the words.
+   * @param corpus the {@code Corpus} used by the {@code Score}.
+   * @param score the {@code Score} used to rank the websites.
+   */
+  public MaxScoreRetriever(QueryHandler queryHandler, SearchableIndex index, Corpus corpus,
+      TermWeightedScore score) {
+    this.queryHandler = queryHandler;
+    this.index = index;
+    this.corpus = corpus;
+    this.score = score;
+  }
+
+  /**
+   * Returns the {@code k} best ranked websites matching a query, best ranked first.
+   *
+   * @param query the compiled query.
+   * @param k the maximum number of websites to return.
+   * @return the best ranked websites matching the query.
+   */
+  public List<Website> search(CompiledQuery query, int k) {
+    if (k == 0 || query.getSubQueries().isEmpty()) {
+      return new ArrayList<>();
+    }
+    RoaringBitmap matches = queryHandler.getMatchingDocuments(query, index);
+    if (matches.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    // The distinct words of the query which occur in the index. Each subquery refers to its words
+    // by their position, in the order of the structured query, so the sums are computed in the
+    // same order as by Score.rank.
+    Map<String, Integer> termIds = new HashMap<>();
+    List<String> words = new ArrayList<>();
+    List<List<String>> structuredQuery = query.getStructuredQuery();
+    int[][] subQueryTerms = new int[structuredQuery.size()][];
+    for (int s = 0; s < subQueryTerms.length; s++) {
+      List<Integer> terms = new ArrayList<>();
+      for (String word : structuredQuery.get(s)) {
+        if (index.getPostings(word).size() == 0) {
+          continue; // a word that is not on any website adds nothing to the rank.
+        }
+        Integer termId = termIds.get(word);
+        if (termId == null) {
+          termId = words.size();
+          termIds.put(word, termId);
+          words.add(word);
+        }
+        terms.add(termId);
+      }
+      subQueryTerms[s] = terms.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // With precomputed impacts, a rank is a sum of integers, and the upper bound of a word is its
+    // largest impact.
+    boolean useImpacts = index.hasImpacts();
+    int n = words.size();
+    PostingIterator[] iterators = new PostingIterator[n];
+    double[] weights = new double[n];
+    double[] upperBounds = new double[n];
+    for (int t = 0; t < n; t++) {
+      String word = words.get(t);
+      PostingList postings = index.getPostings(word);
+      if (useImpacts) {
+        upperBounds[t] = ((ImpactPostingList) postings).getMaxImpact();
+      } else {
+        weights[t] = score.termWeight(corpus, word);
+        upperBounds[t] = index.getMaxTermFrequency(word) * weights[t];
+      }
+      iterators[t] = postings.iterator();
+      iterators[t].nextDoc();
+    }
+
+    // the words in order of increasing upper bound; the first nonEssential of them are
+    // non-essential.
+    Integer[] byUpperBound = new Integer[n];
+    for (int t = 0; t < n; t++) {
+      byUpperBound[t] = t;
+    }
+    Arrays.sort(byUpperBound, Comparator.comparingDouble(t -> upperBounds[t]));
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = byUpperBound[i];
+    }
+    boolean[] isNonEssential = new boolean[n];
+    int nonEssential = 0;
+
+    TopKCollector collector = new TopKCollector(Math.min(k, matches.getCardinality()));
+    double threshold = Double.NEGATIVE_INFINITY;
+    boolean[] present = new boolean[n];
+    double[] contributions = new double[n];
+    boolean[] noneUnknown = new boolean[n];
+    PostingIterator matchIterator = matches.iterator();
+
+    while (true) {
+      // the next candidate is the smallest document ID on the essential words' lists.
+      int docId = PostingIterator.NO_MORE_DOCS;
+      for (int i = nonEssential; i < n; i++) {
+        docId = Math.min(docId, iterators[order[i]].docId());
+      }
+      if (docId == PostingIterator.NO_MORE_DOCS) {
+        break;
+      }
+
+      // skip the candidates which do not match the query.
+      int match = matchIterator.docId() < docId ? matchIterator.advance(docId)
+          : matchIterator.docId();
+      if (match == PostingIterator.NO_MORE_DOCS) {
+        break;
+      }
+      if (match != docId) {
+        for (int i = nonEssential; i < n; i++) {
+          PostingIterator iterator = iterators[order[i]];
+          if (iterator.docId() < match) {
+            iterator.advance(match);
+          }
+        }
+        continue;
+      }
+
+      Website site = index.getWebsite(docId);
+      if (query.getSiteFilter() == null || QueryHandler.matchesSite(site, query.getSiteFilter())) {
+        for (int i = 0; i < n; i++) {
+          int t = order[i];
+          present[t] = !isNonEssential[t] && iterators[t].docId() == docId;
+          if (present[t]) {
+            contributions[t] = useImpacts ? impact(iterators[t])
+                : contribution(site, words.get(t), weights[t]);
+          }
+        }
+
+        // Documents are visited in increasing order, so a website whose rank can at best equal
+        // the threshold loses the tie against the websites already collected.
+        if (threshold == Double.NEGATIVE_INFINITY
+            || maxSum(subQueryTerms, present, contributions, isNonEssential, upperBounds)
+                > threshold) {
+          for (int i = 0; i < nonEssential; i++) {
+            int t = order[i];
+            PostingIterator iterator = iterators[t];
+            if (iterator.docId() < docId) {
+              iterator.advance(docId);
+            }
+            present[t] = iterator.docId() == docId;
+            if (present[t]) {
+              contributions[t] = useImpacts ? impact(iterators[t])
+                  : contribution(site, words.get(t), weights[t]);
+            }
+          }
+          collector.collect(docId,
+              maxSum(subQueryTerms, present, contributions, noneUnknown, upperBounds));
+
+          if (collector.threshold() > threshold) {
+            threshold = collector.threshold();
+            nonEssential = updateNonEssential(order, nonEssential, isNonEssential, subQueryTerms,
+                upperBounds, threshold);
+          }
+        }
+      }
+
+      for (int i = nonEssential; i < n; i++) {
+        PostingIterator iterator = iterators[order[i]];
+        if (iterator.docId() == docId) {
+          iterator.nextDoc();
+        }
+      }
+    }
+
+    int[] best = collector.drainIds();
+    List<Website> results = new ArrayList<>(best.length);
+    for (int docId : best) {
+      results.add(index.getWebsite(docId));
+    }
+    return results;
+  }
+
+  /**
+   * Computes the rank of a word on a website, in the same way as the {@code Score}.
+   *
+   * @param site the website.
+   * @param word the word, which occurs on the website.
+   * @param weight the weight of the word.
+   * @return the rank of the word on the website.
+   */
+  private static double contribution(Website site, String word, double weight) {
+    double wordCount = (double) site.getWordsToOccurences().get(word);
+    return (wordCount / site.getWordCount()) * weight;
+  }
+
+  /**
+   * Returns the precomputed impact of the current document of an iterator.
+   *
+   * @param iterator an iterator over an {@code ImpactPostingList}.
+   * @return the impact of the word on the current document.
+   */
+  private static double impact(PostingIterator iterator) {
+    return ((ImpactPostingList.ImpactIterator) iterator).impact();
+  }
+
+  /**
+   * Computes the highest sum over the subqueries of the ranks of their words. A word counts with
+   * its upper bound if it is marked as unknown, with its rank if it is present, and otherwise not
+   * at all. As every sum is computed in the same order, a sum with upper bounds is never smaller
+   * than the same sum with ranks.
+   */
+  private static double maxSum(int[][] subQueryTerms, boolean[] present, double[] contributions,
+      boolean[] unknown, double[] upperBounds) {
+    double max = 0;
+    for (int[] terms : subQueryTerms) {
+      double sum = 0;
+      for (int t : terms) {
+        if (unknown[t]) {
+          sum += upperBounds[t];
+        } else if (present[t]) {
+          sum += contributions[t];
+        }
+      }
+      if (sum > max) {
+        max = sum;
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Moves words from the essential to the non-essential words, as long as no website containing
+   * only non-essential words can rank above the threshold.
+   *
+   * @return the new number of non-essential words.
+   */
+  private static int updateNonEssential(int[] order, int nonEssential, boolean[] isNonEssential,
+      int[][] subQueryTerms, double[] upperBounds, double threshold) {
+    boolean[] nonePresent = new boolean[order.length];
+    while (nonEssential < order.length) {
+      int t = order[nonEssential];
+      isNonEssential[t] = true;
+      double bound = maxSum(subQueryTerms, nonePresent, upperBounds, isNonEssential, upperBounds);
+      if (bound > threshold) {
+        isNonEssential[t] = false;
+        break;
+      }
+      nonEssential++;
+    }
+    return nonEssential;
+  }
+}
@@ -0,0 +1,277 @@
+package searchengine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code ParallelIndexBuilder} computes, in a single pass over the websites, everything the
+ * {@code PostingListIndex} and the {@code Corpus} need: the posting list, the corpus frequency and
+ * the highest term frequency of every word, and the total number of words.
+ *
+ * <p>The websites are split into ranges of document IDs, which are processed as tasks on a
+ * {@code ForkJoinPool}. Each task builds a partial result (a {@code Shard}) for its range, and two
+ * neighbouring shards are merged by appending the posting lists of the higher range to those of
+ * the lower one, so the merged posting lists stay sorted.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class ParallelIndexBuilder {
+
+  /** The smallest number of websites processed by one task. */
+  private static final int MIN_CHUNK_SIZE = 64;
+
+  /** The pool running the tasks. */
+  private final ForkJoinPool pool;
+
+  /** The number of websites processed by one task, or 0 to derive it from the parallelism. */
+  private final int chunkSize;
+
+  /**
+   * Creates a {@code ParallelIndexBuilder} running on the common {@code ForkJoinPool}.
+   */
+  public ParallelIndexBuilder() {
+    this(ForkJoinPool.commonPool(), 0);
+  }
+
+  /**
+   * Creates a {@code ParallelIndexBuilder}.
+   *
+   * @param pool the pool running the tasks.
+   * @param chunkSize the number of websites processed by one task, or 0 to split the websites into
+   *     about four chunks per thread of the pool.
+   */
+  public ParallelIndexBuilder(ForkJoinPool pool, int chunkSize) {
+    if (chunkSize < 0) {
+      throw new IllegalArgumentException("The chunk size must be non-negative");
+    }
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Builds the shard of an array of websites, where the website at index i gets document ID i.
+   *
+   * @param sites the websites.
+   * @return the shard of all the websites.
+   */
+  public Shard build(Website[] sites) {
+    int chunk = chunkSize;
+    if (chunk == 0) {
+      chunk = Math.max(MIN_CHUNK_SIZE, sites.length / (4 * pool.getParallelism()));
+    }
+    Shard shard = pool.invoke(new BuildTask(sites, 0, sites.length, chunk));
+    shard.setSites(sites);
+    return shard;
+  }
+
+  /**
+   * The task building the shard of a range of document IDs.
+   */
+  private static class BuildTask extends RecursiveTask<Shard> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Website[] sites;
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+
+    BuildTask(Website[] sites, int from, int to, int chunkSize) {
+      this.sites = sites;
+      this.from = from;
+      this.to = to;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected Shard compute() {
+      if (to - from <= chunkSize) {
+        Shard shard = new Shard();
+        for (int docId = from; docId < to; docId++) {
+          shard.add(docId, sites[docId]);
+        }
+        return shard;
+      }
+      int middle = (from + to) >>> 1;
+      BuildTask high = new BuildTask(sites, middle, to, chunkSize);
+      high.fork();
+      Shard low = new BuildTask(sites, from, middle, chunkSize).compute();
+      return Shard.merge(low, high.join());
+    }
+  }
+
+  /**
+   * The statistics of the websites in a range of document IDs.
+   */
+  public static class Shard {
+
+    /** The statistics of every word in the range. */
+    private final Map<String, TermStatistics> terms = new HashMap<>();
+
+    /** The total number of words on the websites of the range. */
+    private long wordCount = 0;
+
+    /** The websites indexed by document ID, once all ranges are merged. */
+    private Website[] sites;
+
+    /**
+     * Adds a website to the shard. Websites must be added in increasing document ID order.
+     *
+     * @param docId the document ID of the website.
+     * @param site the website.
+     * @return the number of words of the website that were not yet in the shard.
+     */
+    int add(int docId, Website site) {
+      int newTerms = 0;
+      wordCount += site.getWordCount();
+      for (Map.Entry<String, Integer> entry : site.getWordsToOccurences().entrySet()) {
+        TermStatistics statistics = terms.get(entry.getKey());
+        if (statistics == null) {
+          statistics = new TermStatistics();
+          terms.put(entry.getKey(), statistics);
+          newTerms++;
+        }
+        statistics.add(docId, entry.getValue(), site.getWordCount());
+      }
+      return newTerms;
+    }
+
+    /**
+     * Merges two shards of neighbouring ranges. The smaller map of terms is merged into the larger
+     * one.
+     *
+     * @param low the shard of the lower range.
+     * @param high the shard of the higher range.
+     * @return the merged shard.
+     */
+    private static Shard merge(Shard low, Shard high) {
+      Shard merged = low.terms.size() >= high.terms.size() ? low : high;
+      Shard other = merged == low ? high : low;
+      for (Map.Entry<String, TermStatistics> entry : other.terms.entrySet()) {
+        TermStatistics statistics = merged.terms.get(entry.getKey());
+        if (statistics == null) {
+          merged.terms.put(entry.getKey(), entry.getValue());
+        } else if (merged == low) {
+          statistics.append(entry.getValue());
+        } else {
+          entry.getValue().append(statistics);
+          merged.terms.put(entry.getKey(), entry.getValue());
+        }
+      }
+      merged.wordCount = low.wordCount + high.wordCount;
+      return merged;
+    }
+
+    /**
+     * Returns the statistics of every word.
+     *
+     * @return the map from a word to its statistics.
+     */
+    public Map<String, TermStatistics> getTerms() {
+      return terms;
+    }
+
+    /**
+     * Sets the websites of a shard holding all document IDs, e.g. once all websites have been
+     * added.
+     *
+     * @param sites the websites, where the website at index i has document ID i.
+     */
+    void setSites(Website[] sites) {
+      this.sites = sites;
+    }
+
+    /**
+     * Returns the websites, where the website at index i has document ID i.
+     *
+     * @return the websites.
+     */
+    public Website[] getSites() {
+      return sites;
+    }
+
+    /**
+     * Returns the total number of words on the websites, duplicates included.
+     *
+     * @return the number of words.
+     */
+    public long getWordCount() {
+      return wordCount;
+    }
+  }
+
+  /**
+   * The statistics of a word: the sorted document IDs of the websites it appears on, the total
+   * number of times it appears, and its highest term frequency on a website.
+   */
+  public static class TermStatistics {
+
+    private int[] docIds = new int[4];
+    private int size = 0;
+    private int corpusFrequency = 0;
+    private double maxTermFrequency = 0;
+
+    private void add(int docId, int occurrences, int wordCount) {
+      if (size == docIds.length) {
+        docIds = Arrays.copyOf(docIds, size * 2);
+      }
+      docIds[size++] = docId;
+      corpusFrequency += occurrences;
+      maxTermFrequency = Math.max(maxTermFrequency, (double) occurrences / wordCount);
+    }
+
+    /** Appends the statistics of the same word in a higher range. */
+    private void append(TermStatistics other) {
+      if (size + other.size > docIds.length) {
+        docIds = Arrays.copyOf(docIds, Math.max(size + other.size, docIds.length * 2));
+      }
+      System.arraycopy(other.docIds, 0, docIds, size, other.size);
+      size += other.size;
+      corpusFrequency += other.corpusFrequency;
+      maxTermFrequency = Math.max(maxTermFrequency, other.maxTermFrequency);
+    }
+
+    /**
+     * Returns the sorted document IDs of the websites the word appears on.
+     *
+     * @return a new array of the document IDs.
+     */
+    public int[] getDocIds() {
+      return Arrays.copyOf(docIds, size);
+    }
+
+    /**
+     * Returns the number of websites the word appears on.
+     *
+     * @return the document frequency.
+     */
+    public int getDocumentFrequency() {
+      return size;
+    }
+
+    /**
+     * Returns the number of times the word appears on all websites.
+     *
+     * @return the corpus frequency.
+     */
+    public int getCorpusFrequency() {
+      return corpusFrequency;
+    }
+
+    /**
+     * Returns the highest term frequency of the word on a website, i.e. its number of occurrences
+     * divided by the number of words on the website.
+     *
+     * @return the highest term frequency.
+     */
+    public double getMaxTermFrequency() {
+      return maxTermFrequency;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package searchengine;
+
+/**
+ * A {@code PostingIterator} walks through the document IDs of a {@code PostingList} in increasing
+ * order. Besides stepping to the next document ID it can skip ahead to a target document ID, which
+ * lets implementations avoid decoding parts of the list that cannot match.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public interface PostingIterator {
+
+  /** The document ID returned once the iterator is exhausted. */
+  int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  /**
+   * Returns the current document ID: -1 before the first call to {@code nextDoc} or
+   * {@code advance}, and {@code NO_MORE_DOCS} once the iterator is exhausted.
+   *
+   * @return the current document ID.
+   */
+  int docId();
+
+  /**
+   * Moves to the next document ID of the list.
+   *
+   * @return the next document ID, or {@code NO_MORE_DOCS} if there is none.
+   */
+  int nextDoc();
+
+  /**
+   * Moves to the first document ID which is greater than or equal to {@code target}. The target
+   * must be greater than the current document ID.
+   *
+   * @param target the document ID to skip to.
+   * @return the first document ID {@code >= target}, or {@code NO_MORE_DOCS} if there is none.
+   */
+  int advance(int target);
+}
@@ -0,0 +1,42 @@
+package searchengine;
+
+/**
+ * A {@code PostingList} is the list of document IDs of the websites that contain a word, sorted in
+ * increasing order. It is read through a {@code PostingIterator}, so implementations are free to
+ * store the document IDs in a compressed form.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public interface PostingList {
+
+  /**
+   * Returns the number of document IDs in the list, i.e. the document frequency of the word.
+   *
+   * @return the length of the posting list.
+   */
+  int size();
+
+  /**
+   * Returns a new iterator, positioned before the first document ID of the list.
+   *
+   * @return an iterator over the document IDs of the list.
+   */
+  PostingIterator iterator();
+
+  /**
+   * Decodes the whole posting list into an array.
+   *
+   * @return the sorted document IDs of the list.
+   */
+  default int[] toArray() {
+    int[] docIds = new int[size()];
+    PostingIterator iterator = iterator();
+    for (int i = 0; i < docIds.length; i++) {
+      docIds[i] = iterator.nextDoc();
+    }
+    return docIds;
+  }
+}
@@ -0,0 +1,81 @@
+package searchengine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code PostingListIndex} is an inverted index which gives each {@code Website} a dense
+ * {@code int} document ID. Instead of a {@code Set<Website>} per word, each word is mapped to a
+ * {@code PostingList} of sorted document IDs, and a document table resolves the IDs back to
+ * {@code Websites}. This avoids the per-posting object overhead of a {@code HashSet}, and hashing a
+ * {@code Website} is no longer needed to build or intersect postings. This class keeps every
+ * posting list as a plain {@code int[]}; subclasses may store them differently by overriding
+ * {@code encode}.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class PostingListIndex extends AbstractPostingListIndex implements Index {
+
+  /* Creates an empty {@code PostingListIndex}. */
+  public PostingListIndex() {
+  }
+
+  /**
+   * Builds the index. Document IDs are handed out in the iteration order of {@code sites}, and the
+   * posting lists are built in parallel by a {@code ParallelIndexBuilder}.
+   *
+   * @param sites A set of websites to be indexed.
+   */
+  @Override
+  public void build(Set<Website> sites) {
+
+    if (sites == null) {
+      throw new IllegalArgumentException();
+    }
+
+    if (sites.contains(null)) {
+      throw new IllegalArgumentException();
+    }
+
+    build(new ParallelIndexBuilder().build(sites.toArray(new Website[0])));
+  }
+
+  /**
+   * Builds the index from the statistics computed by a {@code ParallelIndexBuilder}.
+   *
+   * @param shard the shard of all the websites.
+   */
+  void build(ParallelIndexBuilder.Shard shard) {
+    map.clear();
+    maxTermFrequencies.clear();
+    clearPrecomputed();
+    docTable = shard.getSites();
+    docIds = new HashMap<>();
+    for (int docId = 0; docId < docTable.length; docId++) {
+      docIds.put(docTable[docId], docId);
+    }
+
+    Map<String, int[]> postings = new HashMap<>();
+    for (Map.Entry<String, ParallelIndexBuilder.TermStatistics> entry
+        : shard.getTerms().entrySet()) {
+      postings.put(entry.getKey(), entry.getValue().getDocIds());
+      maxTermFrequencies.put(entry.getKey(), entry.getValue().getMaxTermFrequency());
+    }
+    encode(postings);
+  }
+
+  /**
+   * Turns the sorted document IDs of every word into the posting lists stored in the map.
+   *
+   * @param postings the map from a word to its sorted document IDs.
+   */
+  protected void encode(Map<String, int[]> postings) {
+    for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+      map.put(entry.getKey(), new ArrayPostingList(entry.getValue()));
+    }
+  }
+}
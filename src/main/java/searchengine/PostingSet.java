@@ -0,0 +1,64 @@
+package searchengine;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only {@code Set<Website>} view on a posting list of a {@code SearchableIndex}. The
+ * websites are resolved through the document table of the index while iterating.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+class PostingSet extends AbstractSet<Website> {
+
+  /** The index resolving the document IDs. */
+  private final SearchableIndex index;
+
+  /** The posting list of this set. */
+  private final PostingList postings;
+
+  PostingSet(SearchableIndex index, PostingList postings) {
+    this.index = index;
+    this.postings = postings;
+  }
+
+  @Override
+  public Iterator<Website> iterator() {
+    PostingIterator postingIterator = postings.iterator();
+    postingIterator.nextDoc();
+    return new Iterator<Website>() {
+      @Override
+      public boolean hasNext() {
+        return postingIterator.docId() != PostingIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Website next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Website site = index.getWebsite(postingIterator.docId());
+        postingIterator.nextDoc();
+        return site;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return postings.size();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof Website)) {
+      return false;
+    }
+    int docId = index.getDocId((Website) o);
+    return docId >= 0 && postings.iterator().advance(docId) == docId;
+  }
+}
@@ -1,6 +1,7 @@
 package searchengine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -10,9 +11,20 @@ import java.util.regex.Pattern;
 
 /**
  * This class is responsible for answering queries to our search engine. It deciphers query strings
- * parsed by the {@code SearchEngine} using regular expressions. Furthermore it generates both a
- * structuredQuery, usable for ranking, as well as getting matching {@code Websites} for a given
- * query string.
+ * parsed by the {@code SearchEngine} using regular expressions, and compiles them into a
+ * {@code CompiledQuery}. The {@code CompiledQuery} is used both for getting the matching
+ * {@code Websites}, and (through its structuredQuery) for ranking them, so a query is only parsed
+ * and fuzzy expanded once.
+ *
+ * <p>A {@code QueryHandler} is safe to use from several threads at once: all the state of a query
+ * is kept in local variables, and the {@code Index}, {@code Corpus} and {@code Fuzzy} objects are
+ * only read after they have been built.
+ *
+ * <p>When the index is a {@code SearchableIndex}, the boolean structure of a query is
+ * evaluated on {@code RoaringBitmaps} of document IDs, and only the final result is turned into
+ * {@code Websites}. Other indices are evaluated on {@code Sets} of {@code Websites}. The
+ * intersections of pairs of words that often occur together in queries are then kept in an
+ * {@code IntersectionCache}, and reused by later queries containing both words.
  *
  * @author André Mortensen Kobæk
  * @author Domenico Villani
@@ -21,23 +33,30 @@ import java.util.regex.Pattern;
  */
 public class QueryHandler {
 
-  /** The Index the QueryHandler uses for answering queries. */
-  private Index idx;
+  /** The Index the QueryHandler uses for answering queries, or null if it is searchable. */
+  private final Index idx;
+  /** The index the QueryHandler evaluates queries on as bitmaps, or null if there is none. */
+  private final SearchableIndex searchableIndex;
   /** The Corpus the QueryHandler used to check whether a fuzzy search should be carried out */
-  private Corpus corpus;
+  private final Corpus corpus;
   /** The Fuzzy object used for fuzzy search */
-  private Fuzzy fuzzy;
+  private final Fuzzy fuzzy;
+  /** The cache of intersections of frequent pairs of words, or null if they are not cached */
+  private final IntersectionCache intersectionCache;
+
+  /** The most words of a subquery whose pairs are looked up in the intersection cache. */
+  private static final int MAX_PAIRED_WORDS = 8;
 
   /**
-   * The regex used to validate queries - and the corresponding {@code Pattern} and {@code Matcher}
-   * objects.
+   * The regex used to validate queries - and the corresponding {@code Pattern} objects. The first
+   * group is "-" if the word is excluded (e.g. "-word"), the second group is the word itself. A
+   * {@code Pattern} can be shared between threads, whereas each query creates its own
+   * {@code Matcher}.
    */
-  private final String REGEX = "\\b([-\\w]+)\\b";
-  private final String URLREGEX = "^\\s*site:(\\S+)";
-  private Pattern pattern;
-  private Matcher matcher;
-  private Pattern urlPattern;
-  private Matcher urlMatcher;
+  private static final String REGEX = "(-?)\\b([-\\w]+)\\b";
+  private static final String URLREGEX = "^\\s*site:(\\S+)";
+  private static final Pattern QUERY_PATTERN = Pattern.compile(REGEX);
+  private static final Pattern URL_PATTERN = Pattern.compile(URLREGEX);
 
   /**
    * Creates a {@code QueryHandler} object from an {@code Index}, {@code Corpus} and a {@code Fuzzy}
@@ -48,71 +67,155 @@ public class QueryHandler {
    * @param fuzzy  The {@code Fuzzy} is necessary for the fuzzy search functionality.
    */
   public QueryHandler(Index idx, Corpus corpus, Fuzzy fuzzy) {
-    this.idx = idx;
+    if (idx instanceof SearchableIndex) {
+      this.idx = null;
+      this.searchableIndex = (SearchableIndex) idx;
+      this.intersectionCache = new IntersectionCache();
+    } else {
+      this.idx = idx;
+      this.searchableIndex = null;
+      this.intersectionCache = null;
+    }
     this.corpus = corpus;
     this.fuzzy = fuzzy;
-    pattern = Pattern.compile(REGEX);
-    urlPattern = Pattern.compile(URLREGEX);
   }
 
   /**
-   * getMachingWebsites answers queries of the type "subquery1 OR subquery2 OR subquery3 ...". A
-   * "subquery" has the form "word1 word2 word3 ...". A website matches a subquery if all the words
-   * occur on the website. A website matches the whole query, if it matches at least one subquery.
+   * Creates a {@code QueryHandler} object evaluating queries on the posting lists of a
+   * {@code SearchableIndex}, with its own {@code IntersectionCache}.
    *
-   * @param query the query string
-   * @return the set of websites that matches the query
+   * @param index the index used to perform website lookups.
+   * @param corpus the {@code Corpus} is necessary for the fuzzy search functionality.
+   * @param fuzzy the {@code Fuzzy} is necessary for the fuzzy search functionality.
+   * @param intersectionCache the cache of intersections of frequent pairs of words, or null to not
+   *     cache them.
    */
-  public List<Website> getMatchingWebsites(String query) {
+  QueryHandler(SearchableIndex index, Corpus corpus, Fuzzy fuzzy,
+      IntersectionCache intersectionCache) {
+    this.idx = null;
+    this.searchableIndex = index;
+    this.corpus = corpus;
+    this.fuzzy = fuzzy;
+    this.intersectionCache = intersectionCache;
+  }
 
-    // Set for storing the combined results
-    Set<Website> results = new HashSet<>();
+  /**
+   * Compiles a query string of the type "site:url subquery1 OR subquery2 OR subquery3 ...". A
+   * "subquery" has the form "word1 word2 -word3 ...". The query is lowercased, split into words,
+   * and every word that is not in the {@code Corpus} is replaced by its fuzzed versions. Words
+   * prefixed by "-" are excluded, and are not fuzzy expanded.
+   *
+   * @param query the query string
+   * @return the compiled query
+   */
+  public CompiledQuery compile(String query) {
 
     // check if input string starts with "site:", if so the following string until the next white
     // space
     // is saved for later, and the matched part is removed from the input string.
     String siteUrl = null;
-    urlMatcher = urlPattern.matcher(query);
+    Matcher urlMatcher = URL_PATTERN.matcher(query);
     if (urlMatcher.find()) {
       siteUrl = urlMatcher.group(1).toLowerCase();
       query = query.replace(urlMatcher.group(), "");
     }
 
+    List<CompiledQuery.SubQuery> compiledSubQueries = new ArrayList<>();
+
     // The search query is split into sub queries by the keyword 'OR'
     String[] subQueries = query.split("\\bOR\\b");
 
-    // Go through each of the sub queries and get the results
+    // Go through each of the sub queries and collect its words
     for (String subQuery : subQueries) {
 
-      // Set for storing the results for this sub query
-      Set<Website> subResults = new HashSet<>();
-
-      // Boolean to define whether the lookups should be added or retained
-      boolean firstSubQueryDone = false;
-
       // If the query consists of only 'OR' the split method returns 'OR',
       // therefore there are no queries and the loop should be terminated
       if (subQuery.equals("OR")) {
         break;
       }
 
+      // The words (with their fuzzed versions) and the excluded words of this sub query
+      List<Set<String>> words = new ArrayList<>();
+      Set<String> excluded = new HashSet<>();
+
       // The query string is converted to lowercase to match the case of the data
       subQuery = subQuery.toLowerCase();
-      matcher = pattern.matcher(subQuery);
+      Matcher matcher = QUERY_PATTERN.matcher(subQuery);
 
       while (matcher.find()) {
-
-        // Set for storing the match or the fuzzed versions of a match
-        Set<String> wordSet = new HashSet<>();
-
-        // If the Corpus contains the match, add it (and nothing else) to the querySet
-        if (corpus.containsWord(matcher.group())) {
-          wordSet.add(matcher.group());
+        // Excluded words are not expanded; a misspelled exclusion excludes nothing.
+        if (isExcluded(matcher)) {
+          excluded.add(matcher.group(2));
         } else {
-          // If the Corpus doesn't contain the match, add the fuzzed versions of the match to the
-          // querySet
-          wordSet = fuzzy.expand(matcher.group());
+          words.add(expandWord(matcher.group(2)));
         }
+      }
+
+      // A sub query without any (non-excluded) words matches nothing
+      if (!words.isEmpty()) {
+        compiledSubQueries.add(new CompiledQuery.SubQuery(words, excluded));
+      }
+    }
+
+    return new CompiledQuery(siteUrl, compiledSubQueries);
+  }
+
+  /**
+   * getMachingWebsites answers queries of the type "subquery1 OR subquery2 OR subquery3 ...". A
+   * "subquery" has the form "word1 word2 -word3 ...". A website matches a subquery if all the words
+   * occur on the website, and none of the words prefixed by "-" do. A website matches the whole
+   * query, if it matches at least one subquery.
+   *
+   * @param query the query string
+   * @return the set of websites that matches the query
+   */
+  public List<Website> getMatchingWebsites(String query) {
+    return getMatchingWebsites(compile(query));
+  }
+
+  /**
+   * Returns the websites matching a compiled query.
+   *
+   * @param query the compiled query
+   * @return the list of websites that matches the query
+   */
+  public List<Website> getMatchingWebsites(CompiledQuery query) {
+
+    List<Website> resultsAsList;
+    if (searchableIndex != null) {
+      resultsAsList = getMatchingWebsitesBitmap(query, searchableIndex);
+    } else {
+      resultsAsList = getMatchingWebsitesSet(query);
+    }
+
+    if (query.getSiteFilter() != null) {
+      checkListForUrl(resultsAsList, query.getSiteFilter());
+    }
+
+    return resultsAsList;
+  }
+
+  /**
+   * Evaluates a compiled query (without its "site:" filter) on {@code Sets} of {@code Websites}.
+   *
+   * @param query the compiled query
+   * @return the list of websites that matches the query
+   */
+  private List<Website> getMatchingWebsitesSet(CompiledQuery query) {
+
+    // Set for storing the combined results
+    Set<Website> results = new HashSet<>();
+
+    // Go through each of the sub queries and get the results
+    for (CompiledQuery.SubQuery subQuery : query.getSubQueries()) {
+
+      // Set for storing the results for this sub query
+      Set<Website> subResults = new HashSet<>();
+
+      // Boolean to define whether the lookups should be added or retained
+      boolean firstSubQueryDone = false;
+
+      for (Set<String> wordSet : subQuery.getWords()) {
 
         if (!firstSubQueryDone) {
           for (String word : wordSet) {
@@ -130,6 +233,9 @@ public class QueryHandler {
 
       }
 
+      for (String word : subQuery.getExcluded()) {
+        subResults.removeAll(idx.lookup(word));
+      }
       results.addAll(subResults);
     }
 
@@ -137,14 +243,225 @@ public class QueryHandler {
     // now (at least)))
     List<Website> resultsAsList = new ArrayList<>();
     resultsAsList.addAll(results);
+    return resultsAsList;
+  }
 
-    if (siteUrl != null) {
-      checkListForUrl(resultsAsList, siteUrl);
+  /**
+   * Evaluates a compiled query (without its "site:" filter) on {@code RoaringBitmaps} of document
+   * IDs, through a {@code QueryPlan}. No {@code Website} is touched until the final bitmap is
+   * turned into a list.
+   *
+   * @param query the compiled query
+   * @param index the index holding the posting lists
+   * @return the list of websites that matches the query
+   */
+  private List<Website> getMatchingWebsitesBitmap(CompiledQuery query, SearchableIndex index) {
+    RoaringBitmap results = getMatchingDocuments(query, index);
+
+    List<Website> resultsAsList = new ArrayList<>(results.getCardinality());
+    PostingIterator iterator = results.iterator();
+    for (int docId = iterator.nextDoc(); docId != PostingIterator.NO_MORE_DOCS;
+        docId = iterator.nextDoc()) {
+      resultsAsList.add(index.getWebsite(docId));
     }
-
     return resultsAsList;
   }
 
+  /**
+   * Returns the document IDs of the websites matching a compiled query, without applying its
+   * "site:" filter.
+   *
+   * @param query the compiled query
+   * @param index the index holding the posting lists
+   * @return the document IDs of the matching websites
+   */
+  RoaringBitmap getMatchingDocuments(CompiledQuery query, SearchableIndex index) {
+    return getQueryPlan(query, index).evaluate();
+  }
+
+  /**
+   * Turns a compiled query (without its "site:" filter) into a {@code QueryPlan}. The subqueries
+   * are united, the words of a subquery are intersected, the fuzzed versions of a word are united,
+   * and excluded words are subtracted. The cost of a word is its document frequency in the
+   * {@code Corpus}, so the intersection of "the denmark" starts from the few websites containing
+   * "denmark". Pairs of words whose intersection is cached are replaced by the cached websites.
+   *
+   * @param query the compiled query
+   * @param index the index holding the posting lists
+   * @return the plan for the query
+   */
+  QueryPlan getQueryPlan(CompiledQuery query, SearchableIndex index) {
+
+    // Plans for the sub queries
+    List<QueryPlan> subPlans = new ArrayList<>();
+
+    for (CompiledQuery.SubQuery subQuery : query.getSubQueries()) {
+
+      // a word matches the websites containing the word or any of its fuzzed versions
+      List<QueryPlan> wordPlans = new ArrayList<>();
+      Set<String> paired = new HashSet<>();
+      if (intersectionCache != null) {
+        wordPlans.addAll(pairPlans(subQuery, index, paired));
+      }
+      for (Set<String> wordSet : subQuery.getWords()) {
+        if (wordSet.size() == 1 && paired.contains(wordSet.iterator().next())) {
+          continue;
+        }
+        List<QueryPlan> alternatives = new ArrayList<>();
+        for (String word : wordSet) {
+          alternatives.add(termPlan(word, index));
+        }
+        wordPlans.add(QueryPlan.union(alternatives));
+      }
+
+      QueryPlan subPlan = QueryPlan.intersection(wordPlans);
+      if (!subQuery.getExcluded().isEmpty()) {
+        List<QueryPlan> excludedPlans = new ArrayList<>();
+        for (String word : subQuery.getExcluded()) {
+          excludedPlans.add(termPlan(word, index));
+        }
+        subPlan = QueryPlan.difference(subPlan, QueryPlan.union(excludedPlans));
+      }
+      subPlans.add(subPlan);
+    }
+
+    return QueryPlan.union(subPlans);
+  }
+
+  /**
+   * Creates the leaves of a {@code QueryPlan} for the pairs of words of a subquery whose
+   * intersections are cached, the smallest intersections first, and no word in two pairs. Then the
+   * first pair of the remaining words which is frequent enough to be admitted to the cache is
+   * intersected and cached, so a query computes at most one new intersection. Only words without
+   * fuzzed versions are paired.
+   *
+   * @param subQuery the subquery.
+   * @param index the index holding the posting lists.
+   * @param paired the set the words of the pairs are added to.
+   * @return the plans for the pairs.
+   */
+  private List<QueryPlan> pairPlans(CompiledQuery.SubQuery subQuery, SearchableIndex index,
+      Set<String> paired) {
+    List<String> words = new ArrayList<>();
+    for (Set<String> wordSet : subQuery.getWords()) {
+      if (wordSet.size() == 1 && words.size() < MAX_PAIRED_WORDS
+          && !words.contains(wordSet.iterator().next())) {
+        words.add(wordSet.iterator().next());
+      }
+    }
+
+    List<QueryPlan> plans = new ArrayList<>();
+    if (words.size() < 2) {
+      return plans;
+    }
+
+    // look up every pair, counting the pairs that are not cached.
+    List<String[]> cached = new ArrayList<>();
+    List<RoaringBitmap> intersections = new ArrayList<>();
+    List<String[]> admitted = new ArrayList<>();
+    for (int i = 0; i < words.size(); i++) {
+      for (int j = i + 1; j < words.size(); j++) {
+        String key = IntersectionCache.key(words.get(i), words.get(j));
+        RoaringBitmap intersection = intersectionCache.get(key);
+        if (intersection != null) {
+          cached.add(new String[] {words.get(i), words.get(j), key});
+          intersections.add(intersection);
+        } else if (intersectionCache.record(key, documentFrequency(words.get(i)),
+            documentFrequency(words.get(j)))) {
+          admitted.add(new String[] {words.get(i), words.get(j), key});
+        }
+      }
+    }
+
+    // use the smallest cached intersections first.
+    while (!cached.isEmpty()) {
+      int smallest = 0;
+      for (int i = 1; i < cached.size(); i++) {
+        if (intersections.get(i).getCardinality()
+            < intersections.get(smallest).getCardinality()) {
+          smallest = i;
+        }
+      }
+      String[] pair = cached.remove(smallest);
+      RoaringBitmap intersection = intersections.remove(smallest);
+      if (!paired.contains(pair[0]) && !paired.contains(pair[1])) {
+        paired.add(pair[0]);
+        paired.add(pair[1]);
+        plans.add(QueryPlan.precomputed(pair[2], intersection));
+      }
+    }
+
+    for (String[] pair : admitted) {
+      if (!paired.contains(pair[0]) && !paired.contains(pair[1])) {
+        RoaringBitmap intersection = QueryPlan.intersection(Arrays.asList(
+            termPlan(pair[0], index), termPlan(pair[1], index))).evaluate();
+        intersectionCache.put(pair[2], intersection);
+        paired.add(pair[0]);
+        paired.add(pair[1]);
+        plans.add(QueryPlan.precomputed(pair[2], intersection));
+        break;
+      }
+    }
+    return plans;
+  }
+
+  /**
+   * Returns the number of websites a word appears on.
+   *
+   * @param word the word.
+   * @return the document frequency of the word in the {@code Corpus}.
+   */
+  private long documentFrequency(String word) {
+    Integer documentFrequency = corpus.getWordsToInSiteOccurences().get(word);
+    return documentFrequency == null ? 0 : documentFrequency;
+  }
+
+  /**
+   * Returns the cache of intersections of frequent pairs of words, e.g. to read its hit counts.
+   *
+   * @return the intersection cache, or null if intersections are not cached.
+   */
+  IntersectionCache getIntersectionCache() {
+    return intersectionCache;
+  }
+
+  /**
+   * Creates the leaf of a {@code QueryPlan} for a word.
+   *
+   * @param word the word.
+   * @param index the index holding the posting lists.
+   * @return the plan for the word, with its document frequency as cost.
+   */
+  private QueryPlan termPlan(String word, SearchableIndex index) {
+    return QueryPlan.term(word, index.getPostings(word), documentFrequency(word));
+  }
+
+  /**
+   * Checks whether the current match of a query matcher is an excluded word, i.e. prefixed by "-".
+   *
+   * @param matcher a matcher for the query pattern, positioned at a match.
+   * @return true, if the matched word is excluded.
+   */
+  private boolean isExcluded(Matcher matcher) {
+    return !matcher.group(1).isEmpty();
+  }
+
+  /**
+   * Returns the words to search for in place of a query word: the word itself if the
+   * {@code Corpus} contains it, and otherwise its fuzzed versions.
+   *
+   * @param word the query word.
+   * @return the set of words to search for.
+   */
+  private Set<String> expandWord(String word) {
+    if (corpus.containsWord(word)) {
+      Set<String> wordSet = new HashSet<>();
+      wordSet.add(word);
+      return wordSet;
+    }
+    return fuzzy.expand(word);
+  }
+
   /**
    * Removes the {@code Websites} from the list of current results, that does not match the site url
    * or a substring of it.
@@ -155,16 +472,27 @@ public class QueryHandler {
   private void checkListForUrl(List<Website> currentResults, String siteURL) {
     Iterator<Website> websiteIterator = currentResults.iterator();
     while (websiteIterator.hasNext()) {
-      String websiteUrl = websiteIterator.next().getUrl().toLowerCase();
-      // If the url of the website of a substring of it is not equal to the search site url the
-      // website is removed.
-      if (websiteUrl.length() < siteURL.length()
-          || !websiteUrl.substring(0, siteURL.length()).equals(siteURL)) {
+      if (!matchesSite(websiteIterator.next(), siteURL)) {
         websiteIterator.remove();
       }
     }
   }
 
+  /**
+   * Checks whether a {@code Website} matches the "site:" filter of a query.
+   *
+   * @param site    the {@code Website}.
+   * @param siteURL {@code String} containing the lowercased site url.
+   * @return true, if the url of the website starts with the site url.
+   */
+  static boolean matchesSite(Website site, String siteURL) {
+    String websiteUrl = site.getUrl().toLowerCase();
+    // If the url of the website of a substring of it is not equal to the search site url the
+    // website does not match.
+    return websiteUrl.length() >= siteURL.length()
+        && websiteUrl.substring(0, siteURL.length()).equals(siteURL);
+  }
+
   /**
    * Restructure a raw string query. A raw query is translated into a structured format as follows:
    * 
@@ -175,56 +503,6 @@ public class QueryHandler {
    * @return a list of list of strings
    */
   public List<List<String>> getStructuredQuery(String query) {
-
-    // Array for processed/expanded subqueries.
-    List<List<String>> structuredQuery = new ArrayList<>();
-
-    // The search query is split into sub queries by the keyword 'OR'
-    String[] subQueries = query.split("\\bOR\\b");
-
-    // Go through each of the sub queries to get the innermost component of the structured query
-    for (String subQuery : subQueries) {
-
-      // Set for storing the individual words of this sub query
-      Set<String> structuredSubQuery = new HashSet<>();
-
-      // Boolean to define whether the lookups should be added or retained
-      // boolean firstSubQueryDone = false;
-
-      // If the query consists of only 'OR' the split method returns 'OR',
-      // therefore there are no queries and the loop should be terminated
-      if (subQuery.equals("OR")) {
-        break;
-      }
-
-      // The query string is converted to lowercase to match the case of the data
-      subQuery = subQuery.toLowerCase();
-      matcher = pattern.matcher(subQuery);
-
-      while (matcher.find()) {
-
-        // Set for storing the match or the fuzzed versions of a match
-        Set<String> wordSet = new HashSet<>();
-
-        // If the Corpus contains the match, add it (and nothing else) to the querySet
-        if (corpus.containsWord(matcher.group())) {
-          wordSet.add(matcher.group());
-        } else {
-          // If the Corpus doesn't contain the match, add the fuzzed versions of the match to the
-          // querySet
-          wordSet = fuzzy.expand(matcher.group());
-        }
-
-        // Add all the possible versions of a word to the structured sub query
-        structuredSubQuery.addAll(wordSet);
-
-      }
-
-      List<String> structuredSubQueryList = new ArrayList<>();
-      structuredSubQueryList.addAll(structuredSubQuery);
-      structuredQuery.add(structuredSubQueryList);
-    }
-
-    return structuredQuery;
+    return compile(query).getStructuredQuery();
   }
 }
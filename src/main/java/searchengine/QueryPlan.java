@@ -0,0 +1,299 @@
+package searchengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@code QueryPlan} is a node in the tree a query is compiled into before it is evaluated. The
+ * leaves are the posting lists of single words, and the inner nodes unite, intersect or subtract
+ * the results of their children. Every node knows an estimate of the number of websites it
+ * matches (its cost), which is used to evaluate the cheapest parts of a query first. A leaf may
+ * also be a precomputed result, e.g. the cached intersection of two words.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public abstract class QueryPlan {
+
+  /**
+   * Returns the estimated number of websites matched by this node.
+   *
+   * @return the estimated cost of this node.
+   */
+  public abstract long cost();
+
+  /**
+   * Evaluates this node.
+   *
+   * @return the document IDs of the websites matched by this node.
+   */
+  public abstract RoaringBitmap evaluate();
+
+  /**
+   * Creates a leaf node for a word.
+   *
+   * @param word the word.
+   * @param postings the posting list of the word.
+   * @param documentFrequency the number of websites the word appears on.
+   * @return the leaf node.
+   */
+  public static QueryPlan term(String word, PostingList postings, long documentFrequency) {
+    return new Term(word, postings, documentFrequency);
+  }
+
+  /**
+   * Creates a leaf node for an already computed set of websites.
+   *
+   * @param label the description of the websites, e.g. the words they were intersected from.
+   * @param documents the document IDs of the websites, which must not be changed.
+   * @return the leaf node, with the number of websites as cost.
+   */
+  public static QueryPlan precomputed(String label, RoaringBitmap documents) {
+    return new Precomputed(label, documents);
+  }
+
+  /**
+   * Creates a node matching the websites matched by any of its children.
+   *
+   * @param children the nodes to unite.
+   * @return the union node, or the only child if there is just one.
+   */
+  public static QueryPlan union(List<QueryPlan> children) {
+    return children.size() == 1 ? children.get(0) : new Union(children);
+  }
+
+  /**
+   * Creates a node matching the websites matched by all of its children. The children are
+   * evaluated in order of increasing cost.
+   *
+   * @param children the nodes to intersect, at least one.
+   * @return the intersection node, or the only child if there is just one.
+   * @throws IllegalArgumentException if there are no children.
+   */
+  public static QueryPlan intersection(List<QueryPlan> children) {
+    return children.size() == 1 ? children.get(0) : new Intersection(children);
+  }
+
+  /**
+   * Creates a node matching the websites matched by {@code include}, but not by {@code exclude}.
+   *
+   * @param include the node to subtract from.
+   * @param exclude the node to subtract.
+   * @return the difference node.
+   */
+  public static QueryPlan difference(QueryPlan include, QueryPlan exclude) {
+    return new Difference(include, exclude);
+  }
+
+  /**
+   * A leaf: the posting list of a single word.
+   */
+  static class Term extends QueryPlan {
+
+    private final String word;
+    private final PostingList postings;
+    private final long documentFrequency;
+
+    Term(String word, PostingList postings, long documentFrequency) {
+      this.word = word;
+      this.postings = postings;
+      this.documentFrequency = documentFrequency;
+    }
+
+    @Override
+    public long cost() {
+      return documentFrequency;
+    }
+
+    @Override
+    public RoaringBitmap evaluate() {
+      return RoaringBitmap.of(postings);
+    }
+
+    /**
+     * Intersects the posting list of the word with a (smaller) set of candidates. Instead of
+     * decoding the whole posting list, the iterator skips ahead to each candidate in turn.
+     *
+     * @param candidates the document IDs to intersect with.
+     * @return the candidates that are also in the posting list.
+     */
+    RoaringBitmap intersect(RoaringBitmap candidates) {
+      RoaringBitmap result = new RoaringBitmap();
+      PostingIterator candidateIterator = candidates.iterator();
+      PostingIterator postingIterator = postings.iterator();
+      int candidate = candidateIterator.nextDoc();
+      while (candidate != PostingIterator.NO_MORE_DOCS) {
+        int docId = postingIterator.advance(candidate);
+        if (docId == PostingIterator.NO_MORE_DOCS) {
+          break;
+        }
+        if (docId == candidate) {
+          result.add(docId);
+          candidate = candidateIterator.nextDoc();
+        } else {
+          // leapfrog: skip the candidates which are not in the posting list either.
+          candidate = candidateIterator.advance(docId);
+          if (candidate == docId) {
+            result.add(docId);
+            candidate = candidateIterator.nextDoc();
+          }
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return word + ":" + documentFrequency;
+    }
+  }
+
+  /**
+   * A leaf: an already computed set of websites, which is shared and so never changed.
+   */
+  static class Precomputed extends QueryPlan {
+
+    private final String label;
+    private final RoaringBitmap documents;
+    private final int cardinality;
+
+    Precomputed(String label, RoaringBitmap documents) {
+      this.label = label;
+      this.documents = documents;
+      cardinality = documents.getCardinality();
+    }
+
+    @Override
+    public long cost() {
+      return cardinality;
+    }
+
+    @Override
+    public RoaringBitmap evaluate() {
+      return documents;
+    }
+
+    @Override
+    public String toString() {
+      return "(" + label + "):" + cardinality;
+    }
+  }
+
+  /**
+   * An inner node matching the websites matched by any of its children.
+   */
+  static class Union extends QueryPlan {
+
+    private final List<QueryPlan> children;
+
+    Union(List<QueryPlan> children) {
+      this.children = new ArrayList<>(children);
+    }
+
+    @Override
+    public long cost() {
+      long cost = 0;
+      for (QueryPlan child : children) {
+        cost += child.cost();
+      }
+      return cost;
+    }
+
+    @Override
+    public RoaringBitmap evaluate() {
+      RoaringBitmap result = new RoaringBitmap();
+      for (QueryPlan child : children) {
+        result = RoaringBitmap.or(result, child.evaluate());
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "OR" + children;
+    }
+  }
+
+  /**
+   * An inner node matching the websites matched by all of its children. The children are sorted
+   * by cost, so the smallest result is computed first and the larger children only have to be
+   * checked against it. Evaluation stops as soon as the intermediate result is empty.
+   */
+  static class Intersection extends QueryPlan {
+
+    private final List<QueryPlan> children;
+
+    Intersection(List<QueryPlan> children) {
+      if (children.isEmpty()) {
+        throw new IllegalArgumentException("An intersection needs at least one child");
+      }
+      this.children = new ArrayList<>(children);
+      Collections.sort(this.children, Comparator.comparingLong(QueryPlan::cost));
+    }
+
+    @Override
+    public long cost() {
+      return children.get(0).cost();
+    }
+
+    @Override
+    public RoaringBitmap evaluate() {
+      RoaringBitmap result = null;
+      for (QueryPlan child : children) {
+        if (result == null) {
+          result = child.evaluate();
+        } else if (child instanceof Term) {
+          result = ((Term) child).intersect(result);
+        } else {
+          result = RoaringBitmap.and(result, child.evaluate());
+        }
+        if (result.isEmpty()) {
+          break;
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "AND" + children;
+    }
+  }
+
+  /**
+   * An inner node matching the websites matched by one child but not by the other.
+   */
+  static class Difference extends QueryPlan {
+
+    private final QueryPlan include;
+    private final QueryPlan exclude;
+
+    Difference(QueryPlan include, QueryPlan exclude) {
+      this.include = include;
+      this.exclude = exclude;
+    }
+
+    @Override
+    public long cost() {
+      return include.cost();
+    }
+
+    @Override
+    public RoaringBitmap evaluate() {
+      RoaringBitmap result = include.evaluate();
+      if (result.isEmpty()) {
+        return result;
+      }
+      return RoaringBitmap.andNot(result, exclude.evaluate());
+    }
+
+    @Override
+    public String toString() {
+      return "NOT[" + include + ", " + exclude + "]";
+    }
+  }
+}
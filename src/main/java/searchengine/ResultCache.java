@@ -0,0 +1,232 @@
+package searchengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code ResultCache} keeps the best ranked websites of recent queries, so that popular queries
+ * are answered without matching and ranking them again. A query is cached under its
+ * {@link CompiledQuery#getNormalizedKey normalized key}, so e.g. "b a" and "a b" share an entry,
+ * together with the generation of the {@code Snapshot} it was answered from.
+ *
+ * <p>An entry holds the best {@code k} websites of a query, where {@code k} is the
+ * {@code offset + limit} of the search that added it, and answers any later search of the query
+ * needing at most {@code k} websites, or all of them if fewer than {@code k} matched. At most
+ * {@code MAX_CACHED_WEBSITES} websites are kept per entry, so a search for every matching website
+ * of a broad query does not take up the space of many pages of other queries. The cache
+ * is bounded by the estimated size of its entries in bytes, and entries expire a fixed time after
+ * they were added. When a search sees a newer generation, the whole cache is cleared, since
+ * websites may have been added, deleted or ranked differently.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class ResultCache {
+
+  /** The default bound of the estimated size of the cached results, 16 MB. */
+  public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+  /** The default time in milliseconds after which a cached result expires. */
+  public static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+  /** The most websites kept in an entry; a result with more websites is cut to its best ones. */
+  public static final int MAX_CACHED_WEBSITES = 1000;
+
+  /** The estimated size of an entry besides its key and websites. */
+  private static final int ENTRY_BYTES = 128;
+
+  /** The estimated size of a website in an entry: the reference, and its share of the list. */
+  private static final int WEBSITE_BYTES = 8;
+
+  private final LruCache<String, Result> cache;
+
+  /** The newest generation seen; the entries of older generations have been cleared. */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  /**
+   * Creates an empty {@code ResultCache}.
+   *
+   * @param maxBytes the bound of the estimated size of the cached results in bytes.
+   * @param timeToLive the time in milliseconds after which a cached result expires, or 0 if they
+   *     never expire.
+   */
+  public ResultCache(long maxBytes, long timeToLive) {
+    this(maxBytes, timeToLive, System::nanoTime);
+  }
+
+  /**
+   * Creates an empty {@code ResultCache} reading the time in nanoseconds from a ticker, for
+   * testing.
+   */
+  ResultCache(long maxBytes, long timeToLive, LongSupplier ticker) {
+    cache = new LruCache<>(maxBytes, (key, result) -> result.bytes(key), timeToLive, ticker);
+  }
+
+  /**
+   * Returns a page of the cached result of a query.
+   *
+   * @param generation the generation of the snapshot the query is answered from.
+   * @param query the compiled query.
+   * @param offset the number of best ranked websites to skip.
+   * @param limit the maximum number of websites to return.
+   * @return the page, or null if the result is not cached, or does not hold the whole page.
+   */
+  public List<Website> get(long generation, CompiledQuery query, int offset, int limit) {
+    if (!isCurrent(generation)) {
+      misses.increment();
+      return null;
+    }
+    Result result = cache.get(key(generation, query));
+    int k = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    if (result == null || (result.websites.size() < k && !result.complete)) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    int size = result.websites.size();
+    return new ArrayList<>(result.websites.subList(Math.min(offset, size), Math.min(k, size)));
+  }
+
+  /**
+   * Caches the result of a query. Only its best {@code MAX_CACHED_WEBSITES} websites are kept,
+   * which answer the searches of the pages within them.
+   *
+   * @param generation the generation of the snapshot the query was answered from.
+   * @param query the compiled query.
+   * @param k the number of best ranked websites asked for.
+   * @param best the best ranked websites, best first: {@code k} of them, or all the matching
+   *     websites if fewer matched.
+   */
+  public void put(long generation, CompiledQuery query, int k, List<Website> best) {
+    if (isCurrent(generation)) {
+      boolean complete = best.size() < k && best.size() <= MAX_CACHED_WEBSITES;
+      List<Website> kept = best.subList(0, Math.min(best.size(), MAX_CACHED_WEBSITES));
+      cache.put(key(generation, query), new Result(kept, complete));
+    }
+  }
+
+  /**
+   * Checks whether a generation is the newest seen, clearing the cache if it is newer.
+   */
+  private boolean isCurrent(long generation) {
+    long newest = this.generation.get();
+    while (generation > newest) {
+      if (this.generation.compareAndSet(newest, generation)) {
+        cache.clear();
+        if (newest > 0) {
+          invalidations.increment();
+        }
+        return true;
+      }
+      newest = this.generation.get();
+    }
+    return generation == newest;
+  }
+
+  private static String key(long generation, CompiledQuery query) {
+    return generation + "@" + query.getNormalizedKey();
+  }
+
+  /**
+   * Returns the number of searches answered from the cache.
+   *
+   * @return the hits.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of searches which were not answered from the cache.
+   *
+   * @return the misses.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of results evicted to keep the cache within its size.
+   *
+   * @return the evictions.
+   */
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  /**
+   * Returns the number of results removed because they expired.
+   *
+   * @return the expirations.
+   */
+  public long getExpirations() {
+    return cache.getExpirations();
+  }
+
+  /**
+   * Returns the number of times the cache was cleared because of a new generation.
+   *
+   * @return the invalidations.
+   */
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  /**
+   * Returns the number of cached results.
+   *
+   * @return the size.
+   */
+  public int getSize() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the estimated size of the cached results in bytes.
+   *
+   * @return the bytes.
+   */
+  public long getBytes() {
+    return cache.weight();
+  }
+
+  @Override
+  public String toString() {
+    return "ResultCache{" + "size=" + getSize() + ", bytes=" + getBytes() + ", hits=" + getHits()
+        + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", expirations="
+        + getExpirations() + ", invalidations=" + getInvalidations() + '}';
+  }
+
+  /**
+   * The cached result of a query.
+   */
+  private static final class Result {
+
+    /** The best ranked websites, best first. */
+    private final List<Website> websites;
+
+    /** Whether the websites are all the websites matching the query. */
+    private final boolean complete;
+
+    Result(List<Website> websites, boolean complete) {
+      this.websites = Collections.unmodifiableList(new ArrayList<>(websites));
+      this.complete = complete;
+    }
+
+    /** Returns the estimated size of the result in bytes, with the key it is cached under. */
+    int bytes(String key) {
+      long bytes = ENTRY_BYTES + 2L * key.length() + (long) WEBSITE_BYTES * websites.size();
+      return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+  }
+}
@@ -0,0 +1,606 @@
+package searchengine;
+
+import java.util.Arrays;
+
+/**
+ * A compressed bitmap of document IDs, following the layout of Roaring bitmaps (Chambi, Lemire,
+ * Kaser and Godin, "Better bitmap performance with Roaring bitmaps"). The 32-bit document IDs are
+ * split on their 16 high bits into chunks, and each non-empty chunk is stored in a container: a
+ * sorted array of the 16 low bits when the chunk holds at most {@code ARRAY_LIMIT} values, and a
+ * plain bitmap of 2^16 bits otherwise. Sparse sets therefore cost about two bytes per value, dense
+ * sets about one bit per possible value, and the boolean operations work container by container.
+ *
+ * <p>A {@code RoaringBitmap} is also a {@code PostingList}, so its document IDs can be read with a
+ * {@code PostingIterator} like any other posting list.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class RoaringBitmap implements PostingList {
+
+  /** The largest number of values stored in an array container. */
+  static final int ARRAY_LIMIT = 4096;
+
+  /** The number of {@code long} words in a bitmap container (2^16 bits). */
+  private static final int BITMAP_WORDS = 1024;
+
+  /** The sorted 16 high bits of the chunks in this bitmap. */
+  private char[] keys = new char[4];
+
+  /** The containers holding the 16 low bits of each chunk, in the same order as the keys. */
+  private Container[] containers = new Container[4];
+
+  /** The number of chunks in this bitmap. */
+  private int chunks = 0;
+
+  /** Creates an empty {@code RoaringBitmap}. */
+  public RoaringBitmap() {}
+
+  /**
+   * Creates a {@code RoaringBitmap} holding the document IDs of a posting list.
+   *
+   * @param postings the posting list.
+   * @return a bitmap with the same document IDs as the posting list.
+   */
+  public static RoaringBitmap of(PostingList postings) {
+    if (postings instanceof RoaringBitmap) {
+      return (RoaringBitmap) postings;
+    }
+    RoaringBitmap bitmap = new RoaringBitmap();
+    PostingIterator iterator = postings.iterator();
+    for (int docId = iterator.nextDoc(); docId != PostingIterator.NO_MORE_DOCS;
+        docId = iterator.nextDoc()) {
+      bitmap.add(docId);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Adds a document ID to the bitmap. Adding the document IDs in increasing order is the fastest.
+   *
+   * @param docId a non-negative document ID.
+   */
+  public void add(int docId) {
+    char key = (char) (docId >>> 16);
+    char low = (char) docId;
+    int index = (chunks > 0 && keys[chunks - 1] == key) ? chunks - 1 : findKey(key);
+    if (index < 0) {
+      index = -index - 1;
+      insertChunk(index, key, new ArrayContainer());
+    }
+    containers[index] = containers[index].add(low);
+  }
+
+  /**
+   * Checks whether a document ID is in the bitmap.
+   *
+   * @param docId the document ID.
+   * @return true, if the bitmap contains the document ID.
+   */
+  public boolean contains(int docId) {
+    int index = findKey((char) (docId >>> 16));
+    return index >= 0 && containers[index].contains((char) docId);
+  }
+
+  /**
+   * Returns the number of document IDs in the bitmap.
+   *
+   * @return the cardinality of the bitmap.
+   */
+  public int getCardinality() {
+    int cardinality = 0;
+    for (int i = 0; i < chunks; i++) {
+      cardinality += containers[i].cardinality();
+    }
+    return cardinality;
+  }
+
+  /**
+   * Checks whether the bitmap is empty.
+   *
+   * @return true, if the bitmap contains no document IDs.
+   */
+  public boolean isEmpty() {
+    return chunks == 0;
+  }
+
+  @Override
+  public int size() {
+    return getCardinality();
+  }
+
+  @Override
+  public PostingIterator iterator() {
+    return new BitmapIterator();
+  }
+
+  /**
+   * Computes the intersection of two bitmaps. Neither bitmap is modified.
+   *
+   * @param a the first bitmap.
+   * @param b the second bitmap.
+   * @return a new bitmap holding the document IDs that are in both bitmaps.
+   */
+  public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.chunks && j < b.chunks) {
+      if (a.keys[i] < b.keys[j]) {
+        i++;
+      } else if (a.keys[i] > b.keys[j]) {
+        j++;
+      } else {
+        Container container = a.containers[i].and(b.containers[j]);
+        if (container.cardinality() > 0) {
+          result.appendChunk(a.keys[i], container);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the union of two bitmaps. Neither bitmap is modified.
+   *
+   * @param a the first bitmap.
+   * @param b the second bitmap.
+   * @return a new bitmap holding the document IDs that are in at least one of the bitmaps.
+   */
+  public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.chunks || j < b.chunks) {
+      if (j == b.chunks || (i < a.chunks && a.keys[i] < b.keys[j])) {
+        result.appendChunk(a.keys[i], a.containers[i].copy());
+        i++;
+      } else if (i == a.chunks || a.keys[i] > b.keys[j]) {
+        result.appendChunk(b.keys[j], b.containers[j].copy());
+        j++;
+      } else {
+        result.appendChunk(a.keys[i], a.containers[i].or(b.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the difference of two bitmaps. Neither bitmap is modified.
+   *
+   * @param a the bitmap to remove document IDs from.
+   * @param b the bitmap of document IDs to remove.
+   * @return a new bitmap holding the document IDs that are in {@code a} but not in {@code b}.
+   */
+  public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+    RoaringBitmap result = new RoaringBitmap();
+    int j = 0;
+    for (int i = 0; i < a.chunks; i++) {
+      while (j < b.chunks && b.keys[j] < a.keys[i]) {
+        j++;
+      }
+      if (j < b.chunks && b.keys[j] == a.keys[i]) {
+        Container container = a.containers[i].andNot(b.containers[j]);
+        if (container.cardinality() > 0) {
+          result.appendChunk(a.keys[i], container);
+        }
+      } else {
+        result.appendChunk(a.keys[i], a.containers[i].copy());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the estimated size of the bitmap in bytes, e.g. for bounding the size of a cache.
+   *
+   * @return the estimated size.
+   */
+  public long getSizeInBytes() {
+    long bytes = 48 + 2L * keys.length + 8L * containers.length;
+    for (int i = 0; i < chunks; i++) {
+      bytes += containers[i].sizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "RoaringBitmap{" + "chunks=" + chunks + ", cardinality=" + getCardinality() + '}';
+  }
+
+  /**
+   * Finds the position of a key with a binary search.
+   *
+   * @return the position of the key, or (-(insertion point) - 1) if the key is not present.
+   */
+  private int findKey(char key) {
+    return Arrays.binarySearch(keys, 0, chunks, key);
+  }
+
+  /** Inserts a new chunk at the given position. */
+  private void insertChunk(int index, char key, Container container) {
+    if (chunks == keys.length) {
+      keys = Arrays.copyOf(keys, chunks * 2);
+      containers = Arrays.copyOf(containers, chunks * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, chunks - index);
+    System.arraycopy(containers, index, containers, index + 1, chunks - index);
+    keys[index] = key;
+    containers[index] = container;
+    chunks++;
+  }
+
+  /** Appends a chunk with a key larger than all current keys. */
+  private void appendChunk(char key, Container container) {
+    insertChunk(chunks, key, container);
+  }
+
+  /**
+   * A {@code PostingIterator} over the bitmap, which moves from container to container.
+   */
+  private class BitmapIterator implements PostingIterator {
+
+    /** The position of the current chunk. */
+    private int chunk = 0;
+
+    /** The current document ID. */
+    private int docId = -1;
+
+    @Override
+    public int docId() {
+      return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+      return docId == NO_MORE_DOCS ? docId : advance(docId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      char key = (char) (target >>> 16);
+      while (chunk < chunks && keys[chunk] < key) {
+        chunk++;
+      }
+      int low = keys[chunk < chunks ? chunk : 0] == key ? (char) target : 0;
+      while (chunk < chunks) {
+        int next = containers[chunk].nextValue(low);
+        if (next >= 0) {
+          docId = (keys[chunk] << 16) | next;
+          return docId;
+        }
+        chunk++;
+        low = 0;
+      }
+      docId = NO_MORE_DOCS;
+      return docId;
+    }
+  }
+
+  /**
+   * A container holds the 16 low bits of the document IDs of one chunk. The boolean operations
+   * always return new containers.
+   */
+  private abstract static class Container {
+
+    /** Adds a value, and returns the container holding the result (possibly a new one). */
+    abstract Container add(char value);
+
+    abstract Container copy();
+
+    abstract boolean contains(char value);
+
+    abstract int cardinality();
+
+    /** Returns the estimated size of the container in bytes. */
+    abstract int sizeInBytes();
+
+    /** Returns the smallest value {@code >= from}, or -1 if there is none. */
+    abstract int nextValue(int from);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container andNot(Container other);
+  }
+
+  /**
+   * A container for sparse chunks: a sorted array of the values.
+   */
+  private static final class ArrayContainer extends Container {
+
+    private char[] values;
+
+    private int cardinality;
+
+    ArrayContainer() {
+      this(new char[4], 0);
+    }
+
+    ArrayContainer(char[] values, int cardinality) {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      int index;
+      if (cardinality == 0 || values[cardinality - 1] < value) {
+        index = cardinality;
+      } else {
+        index = Arrays.binarySearch(values, 0, cardinality, value);
+        if (index >= 0) {
+          return this;
+        }
+        index = -index - 1;
+      }
+      if (cardinality == ARRAY_LIMIT) {
+        return toBitmap().add(value);
+      }
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+      }
+      System.arraycopy(values, index, values, index + 1, cardinality - index);
+      values[index] = value;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+    }
+
+    @Override
+    boolean contains(char value) {
+      return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 32 + 2 * values.length;
+    }
+
+    @Override
+    int nextValue(int from) {
+      int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      return index < cardinality ? values[index] : -1;
+    }
+
+    @Override
+    Container and(Container other) {
+      char[] result = new char[Math.min(cardinality, other.cardinality())];
+      int size = 0;
+      if (other instanceof ArrayContainer) {
+        ArrayContainer array = (ArrayContainer) other;
+        int i = 0;
+        int j = 0;
+        while (i < cardinality && j < array.cardinality) {
+          if (values[i] < array.values[j]) {
+            i++;
+          } else if (values[i] > array.values[j]) {
+            j++;
+          } else {
+            result[size++] = values[i];
+            i++;
+            j++;
+          }
+        }
+      } else {
+        for (int i = 0; i < cardinality; i++) {
+          if (other.contains(values[i])) {
+            result[size++] = values[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, size);
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof BitmapContainer) {
+        return other.or(this);
+      }
+      ArrayContainer array = (ArrayContainer) other;
+      char[] result = new char[cardinality + array.cardinality];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < cardinality || j < array.cardinality) {
+        if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+          result[size++] = values[i++];
+        } else if (i == cardinality || values[i] > array.values[j]) {
+          result[size++] = array.values[j++];
+        } else {
+          result[size++] = values[i];
+          i++;
+          j++;
+        }
+      }
+      ArrayContainer union = new ArrayContainer(result, size);
+      return size > ARRAY_LIMIT ? union.toBitmap() : union;
+    }
+
+    @Override
+    Container andNot(Container other) {
+      char[] result = new char[cardinality];
+      int size = 0;
+      for (int i = 0; i < cardinality; i++) {
+        if (!other.contains(values[i])) {
+          result[size++] = values[i];
+        }
+      }
+      return new ArrayContainer(result, size);
+    }
+
+    BitmapContainer toBitmap() {
+      BitmapContainer bitmap = new BitmapContainer();
+      for (int i = 0; i < cardinality; i++) {
+        bitmap.add(values[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  /**
+   * A container for dense chunks: one bit for each of the 2^16 possible values.
+   */
+  private static final class BitmapContainer extends Container {
+
+    private final long[] words;
+
+    private int cardinality;
+
+    BitmapContainer() {
+      this(new long[BITMAP_WORDS], 0);
+    }
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      long before = words[value >>> 6];
+      long after = before | (1L << value);
+      if (before != after) {
+        words[value >>> 6] = after;
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(words.clone(), cardinality);
+    }
+
+    @Override
+    boolean contains(char value) {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    int sizeInBytes() {
+      return 32 + 8 * words.length;
+    }
+
+    @Override
+    int nextValue(int from) {
+      int index = from >>> 6;
+      if (index >= BITMAP_WORDS) {
+        return -1;
+      }
+      long word = words[index] & (-1L << from);
+      while (word == 0) {
+        if (++index == BITMAP_WORDS) {
+          return -1;
+        }
+        word = words[index];
+      }
+      return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    Container and(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+      long[] otherWords = ((BitmapContainer) other).words;
+      long[] result = new long[BITMAP_WORDS];
+      int size = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = words[i] & otherWords[i];
+        size += Long.bitCount(result[i]);
+      }
+      return shrink(result, size);
+    }
+
+    @Override
+    Container or(Container other) {
+      long[] result = words.clone();
+      int size = cardinality;
+      if (other instanceof ArrayContainer) {
+        ArrayContainer array = (ArrayContainer) other;
+        for (int i = 0; i < array.cardinality; i++) {
+          char value = array.values[i];
+          if ((result[value >>> 6] & (1L << value)) == 0) {
+            result[value >>> 6] |= 1L << value;
+            size++;
+          }
+        }
+      } else {
+        long[] otherWords = ((BitmapContainer) other).words;
+        size = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          result[i] |= otherWords[i];
+          size += Long.bitCount(result[i]);
+        }
+      }
+      return new BitmapContainer(result, size);
+    }
+
+    @Override
+    Container andNot(Container other) {
+      long[] result = words.clone();
+      int size = cardinality;
+      if (other instanceof ArrayContainer) {
+        ArrayContainer array = (ArrayContainer) other;
+        for (int i = 0; i < array.cardinality; i++) {
+          char value = array.values[i];
+          if ((result[value >>> 6] & (1L << value)) != 0) {
+            result[value >>> 6] &= ~(1L << value);
+            size--;
+          }
+        }
+      } else {
+        long[] otherWords = ((BitmapContainer) other).words;
+        size = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          result[i] &= ~otherWords[i];
+          size += Long.bitCount(result[i]);
+        }
+      }
+      return shrink(result, size);
+    }
+
+    /** Turns the result of an operation into an array container if it has become sparse. */
+    private static Container shrink(long[] words, int cardinality) {
+      if (cardinality > ARRAY_LIMIT) {
+        return new BitmapContainer(words, cardinality);
+      }
+      char[] values = new char[cardinality];
+      int size = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+  }
+}
@@ -25,6 +25,20 @@ public interface Score {
    */
   Double rank(Website site, Corpus corpus, List<List<String>> structuredQuery);
 
+  /**
+   * Calculates the rank of the {@code Website}, given a {@code Corpus}, and a {@code CompiledQuery}.
+   * The words of the query have already been fuzzy expanded, so the ranking reuses them through the
+   * structuredQuery of the {@code CompiledQuery}.
+   *
+   * @param site {@code Website} that is to be ranked.
+   * @param corpus {@code Corpus} is a collection of all {@code Websites} in the {@code SearchEngine}.
+   * @param query The {@code CompiledQuery} the {@code Website} matched.
+   * @return the rank of the {@code Website}.
+   */
+  default Double rank(Website site, Corpus corpus, CompiledQuery query) {
+    return rank(site, corpus, query.getStructuredQuery());
+  }
+
   /**
    * Calculates the rank of a given {@code Website}, given a {@code Corpus}, and a single word.
    *
@@ -1,67 +1,393 @@
 package searchengine;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import searchengine.ParallelIndexBuilder.Shard;
 
 /**
  * The search engine. Upon receiving a list of websites, it performs the necessary configuration
  * (i.e. building an {@code Index} and a {@code QueryHandler}) to then be ready to receive search
  * queries.
  *
+ * <p>Once built, a {@code SearchEngine} only reads its index structures, and {@code search} keeps
+ * all per-query state local, so one instance can serve many threads (e.g. the web server's request
+ * threads) at the same time.
+ *
+ * <p>All index structures are held by one immutable {@code Snapshot} behind an atomic reference,
+ * and each search reads the snapshot that is current when it starts. Websites can be added and
+ * deleted while searching, through the {@code LiveIndex} of the snapshot, and every refresh of it
+ * publishes a new snapshot generation. The whole search engine can also be reloaded from a new
+ * database in the background, without stopping the searches.
+ *
  * @author André Mortensen Kobæk
  * @author Domenico Villani
  * @author Flemming Westberg
  * @author Mikkel Buch Smedemand
  */
 public class SearchEngine {
-  /** The {@code Index} used by the {@code SearchEngine} */
-  private Index idx;
-  /** The {@code Corpus} used by the {@code SearchEngine} */
-  private Corpus corpus;
   /** The {@code Score} used by the {@code SearchEngine} */
-  private Score score;
-  /** The {@code QueryHandler} used by the {@code SearchEngine} */
-  private QueryHandler queryHandler;
-  private KMeansMap kMeans;
+  private final Score score;
+  /** The configuration properties of the {@code SearchEngine} */
+  private final Properties config;
+  /** The type of {@code FuzzyEngine} used for fuzzy search */
+  private final FuzzyEngine.Type fuzzyEngine;
+  /** The maximum number of expansions of an unknown word */
+  private final int maxExpansions;
+  /** The cache of search results, or null if they are not cached */
+  private final ResultCache resultCache;
+  /** The current {@code Snapshot}, replaced on every refresh and reload */
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+  /** The thread running the reloads, started on the first reload */
+  private ExecutorService reloader;
 
   /**
-   * Creates a {@code SearchEngine} object from a list of {@code websites}.
+   * Creates a {@code SearchEngine} object from a list of {@code websites}. The user is asked on
+   * standard input whether the k-means algorithm should be run.
    *
    * @param sites the set of websites
    */
   public SearchEngine(Set<Website> sites) {
-    idx = new InvertedIndexTreeMap();
-    System.out.println("Building index...");
-    idx.build(sites);
+    this(sites, new Properties());
+  }
 
-    corpus = new Corpus(sites);
-    System.out.println("Building corpus...");
-    corpus.build(); // corpus is kept in SearchEngine since this is where ranking is done.
+  /**
+   * Creates a {@code SearchEngine} object from a list of {@code websites}, configured by a set of
+   * properties (e.g. read from {@code config.properties} by {@code FileHelper.readProperties}).
+   * The following properties are used:
+   *
+   * <ul>
+   *   <li>{@code kmeans}: "true" to run the k-means algorithm, "false" to skip it. If it is not
+   *       set, the user is asked on standard input.
+   *   <li>{@code impacts}: "true" to precompute the quantized rank of every posting in the index,
+   *       which makes ranking faster but slightly less precise. Defaults to "false". They are
+   *       built for every new index segment as well, but only used while there is one segment.
+   *   <li>{@code champions}: the number of best ranked websites kept for every word, so the first
+   *       pages of single-word queries are answered without ranking every website containing the
+   *       word, or 0 to not keep them. Defaults to 0. They are built for every new index segment
+   *       as well, and combined when searching.
+   *   <li>{@code refresh.interval}: the time in milliseconds within which added and deleted
+   *       websites become searchable, or 0 to only make them searchable on {@code refresh}.
+   *       Defaults to 1000.
+   *   <li>{@code segments.max}: the number of index segments above which segments are merged in
+   *       the background. Defaults to 8.
+   *   <li>{@code fuzzy.engine}: the {@code FuzzyEngine} expanding unknown words, "bigram" for the
+   *       2-gram index or "bktree" for a BK-tree of the words. Defaults to "bigram".
+   *   <li>{@code fuzzy.expansions.max}: the maximum number of words an unknown word is expanded
+   *       into, keeping the most frequent. Defaults to 10.
+   *   <li>{@code cache.results.bytes}: the bound of the estimated size in bytes of the cached
+   *       search results, or 0 to not cache them. Defaults to 16 MB.
+   *   <li>{@code cache.results.ttl}: the time in milliseconds after which a cached search result
+   *       expires, or 0 to keep it until the index changes. Defaults to 60000.
+   * </ul>
+   *
+   * @param sites the set of websites
+   * @param config the configuration properties
+   */
+  public SearchEngine(Set<Website> sites, Properties config) {
+    this(sites, buildShard(sites), config);
+  }
 
-    System.out.println("Building 2-gram index, this may take a while...(~30 secs for medium database.)");
-    corpus.build2GramIndex(); // build 2gram inverse index, for fuzzy matching.
+  /**
+   * Creates a {@code SearchEngine} object from a list of {@code websites} and the statistics
+   * computed from them by a {@code ParallelIndexBuilder}.
+   *
+   * @param sites the set of websites
+   * @param shard the shard of all the websites
+   * @param config the configuration properties
+   */
+  private SearchEngine(Set<Website> sites, Shard shard, Properties config) {
+    this(buildIndex(shard), buildCorpus(sites, shard), config);
+  }
 
+  /**
+   * Creates a {@code SearchEngine} object from an {@code IndexSegment}, configured by a set of
+   * properties as described for {@link #SearchEngine(Set, Properties)}. Nothing has to be built,
+   * so the search engine is ready right away, unless the k-means algorithm is run.
+   *
+   * @param segment the opened segment
+   * @param config the configuration properties
+   */
+  public SearchEngine(IndexSegment segment, Properties config) {
+    this(segment.getIndex(), segment.getCorpus(), config);
+  }
+
+  /**
+   * Creates a {@code SearchEngine} object from a built index and corpus.
+   *
+   * @param postingIndex the built index
+   * @param corpus the built corpus, including its 2-gram index
+   * @param config the configuration properties
+   */
+  private SearchEngine(AbstractPostingListIndex postingIndex, Corpus corpus, Properties config) {
     score = new TFIDFScore(); // choose the scoring algorithm to use.
-    queryHandler = new QueryHandler(idx, corpus, new Fuzzy(corpus));
+    this.config = config;
+    fuzzyEngine = FuzzyEngine.Type.forName(config.getProperty("fuzzy.engine", "bigram"));
+    maxExpansions = Integer.parseInt(config.getProperty("fuzzy.expansions.max",
+        String.valueOf(Fuzzy.DEFAULT_MAX_EXPANSIONS)));
+    long cacheBytes = Long.parseLong(config.getProperty("cache.results.bytes",
+        String.valueOf(ResultCache.DEFAULT_MAX_BYTES)));
+    resultCache = cacheBytes == 0 ? null : new ResultCache(cacheBytes, Long.parseLong(
+        config.getProperty("cache.results.ttl", String.valueOf(ResultCache.DEFAULT_TIME_TO_LIVE))));
 
     // Activate k-means or not
-    Scanner input = new Scanner(System.in);
-    System.out.println("Do you want to run the k-means algorithm (it will take a very long time for medium/large datasets)? [Y/N]");
-      if (input.next().equals("Y")) {
-        kMeans = new KMeansMap(new ArrayList<Website>(sites), corpus, score);
-        System.out.println("Building the k-means index, this may take even longer...");
-        kMeans.startKMeans(200);
-        System.out.println("Assigning similar websites based on the k-means index, this might make everything crash...");
-        kMeans.assignSimilarWebsites();
-        System.out.println("Success");
-      }
+    String runKMeans = config.getProperty("kmeans");
+    if (runKMeans == null) {
+      Scanner input = new Scanner(System.in);
+      System.out.println("Do you want to run the k-means algorithm (it will take a very long time for medium/large datasets)? [Y/N]");
+      runKMeans = String.valueOf(input.next().equals("Y"));
       input.close();
+    }
+    publish(postingIndex, corpus, Boolean.parseBoolean(runKMeans));
+  }
+
+  /**
+   * Publishes the snapshot of a newly loaded index and corpus as the next generation, with a new
+   * {@code LiveIndex}. The {@code LiveIndex} of the replaced snapshot is closed, but searches still
+   * reading the replaced snapshot are not affected.
+   *
+   * @param postingIndex the built index
+   * @param corpus the built corpus, including its 2-gram index
+   * @param runKMeans whether the k-means algorithm is run
+   * @return the published snapshot
+   */
+  private Snapshot publish(AbstractPostingListIndex postingIndex, Corpus corpus,
+      boolean runKMeans) {
+    if (Boolean.parseBoolean(config.getProperty("impacts", "false"))) {
+      System.out.println("Precomputing impacts...");
+      postingIndex.buildImpacts(corpus, score);
+    }
+    int champions = Integer.parseInt(config.getProperty("champions", "0"));
+    if (champions > 0) {
+      System.out.println("Building champion lists...");
+      postingIndex.buildChampions(corpus, score, champions);
+    }
+    KMeansMap clusters = runKMeans ? buildClusters(postingIndex, corpus) : null;
+
+    LiveIndex liveIndex = new LiveIndex(postingIndex, corpus,
+        Long.parseLong(config.getProperty("refresh.interval",
+            String.valueOf(LiveIndex.DEFAULT_REFRESH_INTERVAL))),
+        Integer.parseInt(config.getProperty("segments.max",
+            String.valueOf(LiveIndex.DEFAULT_MAX_SEGMENTS))));
+    liveIndex.setScore(score);
+    // every refresh publishes the next generation, unless the live index has been replaced. The
+    // listener runs on the refreshing thread after the live index is unlocked, and never twice at
+    // once, so the snapshot is built exactly once; if the compare-and-set fails, a reload has
+    // replaced the live index in the meantime, and the view is dropped.
+    liveIndex.setListener(view -> {
+      Snapshot current = snapshot.get();
+      if (current != null && current.getLiveIndex() == liveIndex) {
+        snapshot.compareAndSet(current, current.next(view, score));
+      }
+    });
+
+    LiveIndex.View view = liveIndex.getView();
+    Fuzzy fuzzy = new Fuzzy(view.getCorpus(), fuzzyEngine, maxExpansions);
+    while (true) {
+      Snapshot current = snapshot.get();
+      long generation = current == null ? 1 : current.getGeneration() + 1;
+      Snapshot next = new Snapshot(generation, liveIndex, view, fuzzy, clusters, score);
+      if (snapshot.compareAndSet(current, next)) {
+        if (current != null) {
+          current.getLiveIndex().close();
+        }
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Runs the k-means algorithm on the websites of an index, and assigns similar websites to them.
+   *
+   * @param postingIndex the built index
+   * @param corpus the built corpus
+   * @return the clusters
+   */
+  private KMeansMap buildClusters(AbstractPostingListIndex postingIndex, Corpus corpus) {
+    List<Website> sites = new ArrayList<>();
+    for (int docId = 0; docId < postingIndex.getDocumentCount(); docId++) {
+      sites.add(postingIndex.getWebsite(docId));
+    }
+    KMeansMap kMeans = new KMeansMap(sites, corpus, score);
+    System.out.println("Building the k-means index, this may take even longer...");
+    kMeans.startKMeans(200);
+    System.out.println("Assigning similar websites based on the k-means index, this might make everything crash...");
+    kMeans.assignSimilarWebsites();
+    System.out.println("Success");
+    return kMeans;
+  }
+
+  /**
+   * Creates a {@code SearchEngine} from a database, which is either an {@code IndexSegment} (a file
+   * ending in ".seg"), or text files to be read by an {@code IngestionPipeline}: a file, a
+   * directory or a glob pattern, as listed by {@code FileHelper.listDatabaseFiles}.
+   *
+   * @param database the path of the database
+   * @param config the configuration properties
+   * @return the search engine
+   * @throws IOException if the database cannot be read, or is a segment which cannot be opened
+   */
+  public static SearchEngine load(String database, Properties config) throws IOException {
+    Database loaded = read(database);
+    return new SearchEngine(loaded.getIndex(), loaded.getCorpus(), config);
+  }
+
+  /**
+   * Reloads the search engine from a database, as described for {@link #load}, on a background
+   * thread. Until the new snapshot is published, searches are answered from the current one, and
+   * searches running when it is published finish on the snapshot they started with. Websites
+   * added or deleted since the current database was loaded are dropped. The k-means algorithm is
+   * only run if the "kmeans" property is "true", since the user cannot be asked. Reloads run one
+   * at a time, in the order they were requested.
+   *
+   * @param database the path of the database
+   * @return a future completed with the new snapshot, or with an {@code UncheckedIOException} if
+   *     the database cannot be read
+   */
+  public CompletableFuture<Snapshot> reload(String database) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        Database loaded = read(database);
+        return publish(loaded.getIndex(), loaded.getCorpus(),
+            Boolean.parseBoolean(config.getProperty("kmeans", "false")));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, getReloader());
+  }
+
+  /**
+   * Returns the thread running the reloads, starting it on first use.
+   *
+   * @return the reload executor
+   */
+  private synchronized ExecutorService getReloader() {
+    if (reloader == null) {
+      reloader = Executors.newSingleThreadExecutor(LiveIndex.daemon("search-engine-reload"));
+    }
+    return reloader;
+  }
+
+  /**
+   * Reads a database into a built index and corpus.
+   *
+   * @param database the path of the database
+   * @return the index and corpus of the database
+   * @throws IOException if the database cannot be read, or is a segment which cannot be opened
+   */
+  private static Database read(String database) throws IOException {
+    if (IndexSegment.isSegment(database)) {
+      System.out.println("Opening index segment...");
+      IndexSegment segment = IndexSegment.open(Paths.get(database));
+      return new Database(segment.getIndex(), segment.getCorpus());
+    }
+    // the pipeline returns the websites in file order, so the first copy of a duplicate is kept
+    // and the document IDs are the same on every run.
+    System.out.println("Reading database...");
+    IngestionPipeline pipeline = new IngestionPipeline();
+    Set<Website> sites = new LinkedHashSet<>(pipeline.readAll(database));
+    System.out.println(pipeline);
+    Shard shard = buildShard(sites);
+    return new Database(buildIndex(shard), buildCorpus(sites, shard));
+  }
+
+  /**
+   * Computes the statistics of a set of websites needed by both the index and the corpus, in
+   * parallel and in a single pass. Document IDs are handed out in the iteration order of the set.
+   *
+   * @param sites the set of websites
+   * @return the shard of all the websites
+   */
+  static Shard buildShard(Set<Website> sites) {
+    System.out.println("Building index and corpus...");
+    return new ParallelIndexBuilder().build(sites.toArray(new Website[0]));
+  }
 
+  /**
+   * Builds the index of a set of websites.
+   *
+   * @param shard the shard of all the websites
+   * @return the built index
+   */
+  static PostingListIndex buildIndex(Shard shard) {
+    PostingListIndex postingIndex = new PostingListIndex();
+    postingIndex.build(shard);
+    return postingIndex;
   }
 
+  /**
+   * Builds the corpus of a set of websites, including its 2-gram index.
+   *
+   * @param sites the set of websites
+   * @param shard the shard of all the websites
+   * @return the built corpus
+   */
+  static Corpus buildCorpus(Set<Website> sites, Shard shard) {
+    // corpus is kept in SearchEngine since this is where ranking is done.
+    Corpus corpus = new Corpus(sites, shard);
+
+    System.out.println("Building 2-gram index, this may take a while...(~30 secs for medium database.)");
+    corpus.build2GramIndex(); // build 2gram inverse index, for fuzzy matching.
+    return corpus;
+  }
+
+
+  /**
+   * Adds a website to the search engine, replacing an equal website (same url and title). The
+   * website becomes searchable on the next refresh, i.e. within the refresh interval.
+   *
+   * @param site the website to add
+   */
+  public void addDocument(Website site) {
+    snapshot.get().getLiveIndex().addDocument(site);
+  }
+
+  /**
+   * Deletes a website from the search engine. The website is still found until the next refresh,
+   * i.e. within the refresh interval.
+   *
+   * @param site the website to delete
+   */
+  public void deleteDocument(Website site) {
+    snapshot.get().getLiveIndex().deleteDocument(site);
+  }
+
+  /**
+   * Makes the websites added and deleted since the last refresh searchable right away.
+   *
+   * @return true, if any website had been added or deleted
+   */
+  public boolean refresh() {
+    return snapshot.get().getLiveIndex().refresh();
+  }
+
+  /**
+   * Returns the current snapshot, i.e. the one the next search will read.
+   *
+   * @return the current snapshot
+   */
+  public Snapshot getSnapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Returns the cache of search results, e.g. to read its hit and miss counts.
+   *
+   * @return the result cache, or null if search results are not cached
+   */
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
 
   /**
    * Returns a {@code SearchResult} matching the query.
@@ -71,39 +397,154 @@ public class SearchEngine {
    * @return a {@code SearchResult matching the query}
    */
   public List<Website> search(String query) {
+    return search(query, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns one page of the websites matching the query, ordered by rank: the best
+   * {@code offset + limit} websites are selected, and the first {@code offset} of them skipped.
+   * Each matching website is scored once, and only the selected ones are sorted. A single word
+   * is answered from its champion list instead, if the index has them and the page is within
+   * them. The best of the selected websites, up to {@code ResultCache.MAX_CACHED_WEBSITES}, are
+   * cached, so the same query, or a shallower page of it, is answered from the cache until the
+   * index changes.
+   *
+   * @param query the query
+   * @param offset the number of best ranked websites to skip
+   * @param limit the maximum number of websites to return
+   * @return at most {@code limit} websites matching the query, best ranked first
+   */
+  public List<Website> search(String query, int offset, int limit) {
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("offset and limit must be non-negative");
+    }
     if (query == null || query.isEmpty()) {
       return new ArrayList<>();
     }
 
-    List<Website> results = queryHandler.getMatchingWebsites(query);
-    List<List<String>> structuredQuery = queryHandler.getStructuredQuery(query);
+    // The whole query is answered from one snapshot, however many are published meanwhile.
+    Snapshot current = snapshot.get();
+
+    // The query is parsed and fuzzy expanded once, and used for both matching and ranking.
+    CompiledQuery compiledQuery = current.getQueryHandler().compile(query);
 
-    // The websites are ordered according to rank and returned as a {@code SearchResult}.
-    return orderWebsites(results, structuredQuery);
+    if (resultCache != null) {
+      List<Website> cached = resultCache.get(current.getGeneration(), compiledQuery, offset, limit);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    // A single word is read from its champion list if the list holds the requested page. Else,
+    // with a term weighted score, only the websites which can make it into the page are ranked.
+    int k = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    List<Website> best = searchChampions(current.getIndex(), compiledQuery, k);
+    if (best == null) {
+      if (current.getRetriever() != null) {
+        best = current.getRetriever().search(compiledQuery, k);
+      } else {
+        List<Website> results = current.getQueryHandler().getMatchingWebsites(compiledQuery);
+        best = orderWebsites(results, current.getCorpus(), compiledQuery, 0, k);
+      }
+    }
+    if (resultCache != null) {
+      resultCache.put(current.getGeneration(), compiledQuery, k, best);
+    }
+
+    // The requested page of the best ranked websites is returned as a {@code SearchResult}.
+    return new ArrayList<>(best.subList(Math.min(offset, best.size()), best.size()));
   }
 
 
+  /**
+   * Returns the best ranked websites of a query of a single word, read from the champion list of
+   * the word. The champion list is the answer if it holds at least {@code k} websites, or every
+   * website containing the word. Queries of several words, fuzzy expanded words, excluded words
+   * and "site:" filters, and pages beyond the champion lists, are evaluated in full instead.
+   *
+   * @param index the index of the snapshot the query is answered from.
+   * @param query the compiled query.
+   * @param k the number of best ranked websites asked for.
+   * @return the best ranked websites, or null if the query is not answered by a champion list.
+   */
+  private static List<Website> searchChampions(SearchableIndex index, CompiledQuery query,
+      int k) {
+    if (index.getChampionCount() == 0 || query.getSiteFilter() != null
+        || query.getSubQueries().size() != 1) {
+      return null;
+    }
+    CompiledQuery.SubQuery subQuery = query.getSubQueries().get(0);
+    if (subQuery.getWords().size() != 1 || subQuery.getWords().get(0).size() != 1
+        || !subQuery.getExcluded().isEmpty()) {
+      return null;
+    }
+    String word = subQuery.getWords().get(0).iterator().next();
+    int[] champions = index.getChampions(word);
+    if (champions.length < k && index.getPostings(word).size() > champions.length) {
+      return null;
+    }
+    List<Website> best = new ArrayList<>(Math.min(k, champions.length));
+    for (int i = 0; i < champions.length && i < k; i++) {
+      best.add(index.getWebsite(champions[i]));
+    }
+    return best;
+  }
+
   /**
    * Rank a list of websites, according to the query, also using information about the whole
-   * database from corpus object.
+   * database from corpus object. Every website is scored once into a primitive array, and a
+   * bounded heap keeps the best {@code offset + limit} of them, so the websites beyond the
+   * requested page are never sorted.
    *
-   * @param list            List of {@code websites} to be ordered according to rank.
-   * @param structuredQuery The search query.
-   * @return Returns the list of {@code websites} reordered according to rank.
+   * @param list  List of {@code websites} to be ordered according to rank.
+   * @param corpus The corpus of the snapshot the websites were found in.
+   * @param query The compiled search query.
+   * @param offset the number of best ranked websites to skip.
+   * @param limit the maximum number of websites to return.
+   * @return Returns the requested page of {@code websites}, ordered according to rank.
    */
-  private List<Website> orderWebsites(List<Website> list, List<List<String>> structuredQuery) {
+  private List<Website> orderWebsites(List<Website> list, Corpus corpus, CompiledQuery query,
+      int offset, int limit) {
+    int size = list.size();
+    double[] scores = new double[size];
+    for (int i = 0; i < size; i++) {
+      scores[i] = score.rank(list.get(i), corpus, query);
+    }
 
-    // create a nested Comparator class
-    class RankComparator implements Comparator<Website> {
-      public int compare(Website site, Website otherSite) {
-        return score.rank(site, corpus, structuredQuery)
-            .compareTo(score.rank(otherSite, corpus, structuredQuery));
-      }
+    // the collector refers to the websites by their position in the list.
+    int k = (int) Math.min((long) offset + limit, size);
+    TopKCollector collector = new TopKCollector(k);
+    for (int i = 0; i < size; i++) {
+      collector.collect(i, scores[i]);
     }
 
-    // sort the websites according to their rank.
-    list.sort(new RankComparator().reversed()); // why do we need to reverse?
-    return list;
+    int[] best = collector.drainIds();
+    List<Website> page = new ArrayList<>(Math.max(0, best.length - offset));
+    for (int i = offset; i < best.length; i++) {
+      page.add(list.get(best[i]));
+    }
+    return page;
   }
 
+  /**
+   * The built index and corpus of a database, before they are published.
+   */
+  private static class Database {
+
+    private final AbstractPostingListIndex index;
+    private final Corpus corpus;
+
+    Database(AbstractPostingListIndex index, Corpus corpus) {
+      this.index = index;
+      this.corpus = corpus;
+    }
+
+    AbstractPostingListIndex getIndex() {
+      return index;
+    }
+
+    Corpus getCorpus() {
+      return corpus;
+    }
+  }
 }
@@ -0,0 +1,124 @@
+package searchengine;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A {@code SearchableIndex} is the read-only side of an index with document IDs: the posting lists
+ * of the words, the document table resolving the IDs to {@code Websites}, and the statistics used
+ * when ranking. It is all a query needs, so an index made of other indices, which can neither be
+ * built nor changed, can be searched like a {@code PostingListIndex}.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public interface SearchableIndex {
+
+  /**
+   * Returns the websites which contain the {@code query} word. The returned {@code Set} is a
+   * read-only view on the posting list, so no {@code Websites} are copied or hashed.
+   *
+   * @param query The query to be looked up.
+   * @return the {@code Set<Website>} that contain the query word.
+   */
+  default Set<Website> lookup(String query) {
+    PostingList postings = getPostings(query);
+    if (postings.size() == 0) {
+      return Collections.emptySet();
+    }
+    return new PostingSet(this, postings);
+  }
+
+  /**
+   * Returns the words of the index.
+   *
+   * @return a read-only view of the indexed words.
+   */
+  Set<String> getWords();
+
+  /**
+   * Returns the posting list of a word, i.e. the sorted document IDs of the websites containing
+   * it.
+   *
+   * @param word The word to be looked up.
+   * @return the posting list, which is empty if the word is not in the index.
+   */
+  PostingList getPostings(String word);
+
+  /**
+   * Returns the highest term frequency of a word on any website, i.e. its number of occurrences on
+   * a website divided by the number of words on that website.
+   *
+   * @param word The word to be looked up.
+   * @return the highest term frequency, or 0 if the word is not in the index.
+   */
+  double getMaxTermFrequency(String word);
+
+  /**
+   * Resolves a document ID to its {@code Website}.
+   *
+   * @param docId The document ID.
+   * @return the {@code Website} with the given document ID.
+   */
+  Website getWebsite(int docId);
+
+  /**
+   * Returns the document ID of a {@code Website}.
+   *
+   * @param site The {@code Website}.
+   * @return the document ID, or -1 if the website is not in the index.
+   */
+  int getDocId(Website site);
+
+  /**
+   * Returns the number of websites in the index. Document IDs range from 0 to this number
+   * (exclusive).
+   *
+   * @return the number of indexed websites.
+   */
+  int getDocumentCount();
+
+  /**
+   * Checks whether the impacts of the postings have been built.
+   *
+   * @return true, if every posting list is an {@code ImpactPostingList}.
+   */
+  default boolean hasImpacts() {
+    return getImpactScale() > 0;
+  }
+
+  /**
+   * Returns the value of one step of the quantized impacts, i.e. the factor turning a sum of
+   * impacts back into a rank.
+   *
+   * @return the impact scale, or 0 if no impacts have been built.
+   */
+  default double getImpactScale() {
+    return 0;
+  }
+
+  /**
+   * Returns the champion list of a word, i.e. the document IDs of the best ranked websites
+   * containing it, best first. The list holds every website containing the word if there are at
+   * most {@code getChampionCount()} of them. An index made of segments may return fewer websites,
+   * when the best ones beyond them are not known; then the list is shorter than the postings.
+   *
+   * @param word the word to be looked up.
+   * @return the champion list, which must not be changed, or null if no champion lists have been
+   *     built. It is empty if the word is not in the index.
+   */
+  default int[] getChampions(String word) {
+    return null;
+  }
+
+  /**
+   * Returns the number of websites kept in the champion list of a word.
+   *
+   * @return the most document IDs of a champion list, or 0 if no champion lists have been built.
+   */
+  default int getChampionCount() {
+    return 0;
+  }
+}
@@ -0,0 +1,109 @@
+package searchengine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+/**
+ * A command-line tool for {@code IndexSegments}. It understands two commands:
+ *
+ * <pre>
+ *   build database.txt index.seg      parses a database file, builds the index and the corpus,
+ *                                     and writes them to a segment
+ *   build database.txt index.seg MB   streams a database file into a segment, holding a partial
+ *                                     index of about MB megabytes in memory at a time
+ *   verify index.seg                  opens a segment and checks all its checksums
+ * </pre>
+ *
+ * <p>A segment can then be given to the {@code WebApplication} or the {@code CLIApplication} in
+ * place of the database file.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class SegmentTool {
+
+  /**
+   * Runs a command.
+   *
+   * @param args the command and its arguments.
+   */
+  public static void main(String[] args) {
+    try {
+      if (args.length == 3 && args[0].equals("build")) {
+        build(args[1], Paths.get(args[2]));
+      } else if (args.length == 4 && args[0].equals("build")) {
+        build(args[1], Paths.get(args[2]), Long.parseLong(args[3]) << 20);
+      } else if (args.length == 2 && args[0].equals("verify")) {
+        verify(Paths.get(args[1]));
+      } else {
+        System.out.println("Usage: build <database> <segment" + IndexSegment.EXTENSION
+            + "> [<memory MB>]");
+        System.out.println("       verify <segment" + IndexSegment.EXTENSION + ">");
+        System.exit(1);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Builds a segment from a database file.
+   *
+   * @param database the path of the database file.
+   * @param segment the path of the segment to write.
+   * @throws IOException if the segment cannot be written.
+   */
+  static void build(String database, Path segment) throws IOException {
+    System.out.println("Reading database...");
+    Set<Website> sites = FileHelper.parseFile(database);
+
+    ParallelIndexBuilder.Shard shard = SearchEngine.buildShard(sites);
+    PostingListIndex index = SearchEngine.buildIndex(shard);
+    Corpus corpus = SearchEngine.buildCorpus(sites, shard);
+
+    System.out.println("Writing index segment...");
+    IndexSegment.write(segment, index, corpus);
+    System.out.println("Wrote " + index + " to " + segment);
+  }
+
+  /**
+   * Builds a segment from a database file larger than the heap, with an
+   * {@code ExternalIndexBuilder}.
+   *
+   * @param database the path of the database file.
+   * @param segment the path of the segment to write.
+   * @param memoryBudget the estimated heap size, in bytes, of the partial index.
+   * @throws IOException if the database cannot be read, or the segment cannot be written.
+   */
+  static void build(String database, Path segment, long memoryBudget) throws IOException {
+    System.out.println("Indexing database...");
+    try (ExternalIndexBuilder builder = new ExternalIndexBuilder(memoryBudget)) {
+      IngestionPipeline pipeline = new IngestionPipeline();
+      pipeline.run(database, builder::add);
+      System.out.println(pipeline);
+      System.out.println("Merging " + builder.getRunCount() + " runs of "
+          + builder.getDocumentCount() + " websites...");
+      builder.write(segment);
+    }
+    System.out.println("Wrote " + segment);
+  }
+
+  /**
+   * Verifies a segment.
+   *
+   * @param segment the path of the segment.
+   * @throws IOException if the segment cannot be opened, or is corrupt.
+   */
+  static void verify(Path segment) throws IOException {
+    long start = System.nanoTime();
+    IndexSegment opened = IndexSegment.open(segment);
+    long opening = System.nanoTime() - start;
+    opened.verify();
+    System.out.println("Opened " + opened + " in " + opening / 1000000 + " ms; checksums are OK.");
+  }
+}
@@ -0,0 +1,148 @@
+package searchengine;
+
+/**
+ * A {@code Snapshot} is everything a {@code SearchEngine} needs to answer a query: the index, the
+ * corpus, the fuzzy search tables and the k-means clusters, together with the objects answering
+ * queries on them. None of it is changed once the snapshot is published, so a query reads one
+ * snapshot from start to end, while newer snapshots are published behind it.
+ *
+ * <p>Every published snapshot has a generation number one higher than the one it replaced. A new
+ * generation is published whenever the {@code LiveIndex} is refreshed, and whenever the search
+ * engine is reloaded from a database, in which case the snapshot also gets a new
+ * {@code LiveIndex}.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class Snapshot {
+
+  private final long generation;
+  private final LiveIndex liveIndex;
+  private final LiveIndex.View view;
+  private final Fuzzy fuzzy;
+  private final KMeansMap clusters;
+  private final QueryHandler queryHandler;
+  private final MaxScoreRetriever retriever;
+
+  /**
+   * Creates a {@code Snapshot} of a view of a {@code LiveIndex}.
+   *
+   * @param generation the generation number.
+   * @param liveIndex the live index the view belongs to, which receives added and deleted
+   *     websites.
+   * @param view the view of the live index.
+   * @param fuzzy the fuzzy search of the corpus of the view.
+   * @param clusters the k-means clusters, or null if the k-means algorithm was not run.
+   * @param score the {@code Score} used for ranking.
+   */
+  Snapshot(long generation, LiveIndex liveIndex, LiveIndex.View view, Fuzzy fuzzy,
+      KMeansMap clusters, Score score) {
+    this.generation = generation;
+    this.liveIndex = liveIndex;
+    this.view = view;
+    this.fuzzy = fuzzy;
+    this.clusters = clusters;
+    queryHandler = new QueryHandler(view.getIndex(), view.getCorpus(), fuzzy,
+        new IntersectionCache());
+    if (score instanceof TermWeightedScore) {
+      retriever = new MaxScoreRetriever(queryHandler, view.getIndex(), view.getCorpus(),
+          (TermWeightedScore) score);
+    } else {
+      retriever = null;
+    }
+  }
+
+  /**
+   * Creates the snapshot of the next generation, for a new view of the same {@code LiveIndex}. The
+   * fuzzy search uses the same type of engine, and the same engine if no words were added. This
+   * extends the fuzzy search tables, so it is called on the refreshing thread, not while the
+   * {@code LiveIndex} is locked.
+   *
+   * @param next the new view.
+   * @param score the {@code Score} used for ranking.
+   * @return the next snapshot.
+   */
+  Snapshot next(LiveIndex.View next, Score score) {
+    return new Snapshot(generation + 1, liveIndex, next, fuzzy.withCorpus(next.getCorpus()),
+        clusters, score);
+  }
+
+  /**
+   * Returns the generation number, which is higher for every newer snapshot.
+   *
+   * @return the generation.
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the index of the snapshot.
+   *
+   * @return the index.
+   */
+  public SearchableIndex getIndex() {
+    return view.getIndex();
+  }
+
+  /**
+   * Returns the corpus of the websites in the index.
+   *
+   * @return the corpus.
+   */
+  public Corpus getCorpus() {
+    return view.getCorpus();
+  }
+
+  /**
+   * Returns the fuzzy search of the corpus.
+   *
+   * @return the fuzzy search.
+   */
+  public Fuzzy getFuzzy() {
+    return fuzzy;
+  }
+
+  /**
+   * Returns the k-means clusters of the websites the snapshot was loaded with.
+   *
+   * @return the clusters, or null if the k-means algorithm was not run.
+   */
+  public KMeansMap getClusters() {
+    return clusters;
+  }
+
+  /**
+   * Returns the {@code QueryHandler} of the snapshot.
+   *
+   * @return the query handler.
+   */
+  public QueryHandler getQueryHandler() {
+    return queryHandler;
+  }
+
+  /**
+   * Returns the {@code MaxScoreRetriever} of the snapshot.
+   *
+   * @return the retriever, or null if the score is not term weighted.
+   */
+  MaxScoreRetriever getRetriever() {
+    return retriever;
+  }
+
+  /**
+   * Returns the live index the snapshot is a view of.
+   *
+   * @return the live index.
+   */
+  LiveIndex getLiveIndex() {
+    return liveIndex;
+  }
+
+  @Override
+  public String toString() {
+    return "Snapshot{" + "generation=" + generation + ", index=" + getIndex() + '}';
+  }
+}
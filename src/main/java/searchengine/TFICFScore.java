@@ -12,7 +12,7 @@ import java.util.List;
  * @author Mikkel Buch Smedemand
  */
 
-public class TFICFScore implements Score {
+public class TFICFScore implements TermWeightedScore {
 
   /**
    * Calculates the rank of the {@code Website}, given a {@code Corpus}, and a {@code structuredQuery} using the TFICF ranking algorithm.
@@ -62,13 +62,7 @@ public class TFICFScore implements Score {
     // number of times word appear on website, i.e the term site count.
     double wordCount = (double) site.getWordsToOccurences().get(word);
 
-    // number of times word appear in the corpus, i.e the corpus count.
-    double corpusCount = (double) corpus.getWordsToOccurences().get(word);
-
-    // total number of words in the corpus.
-    int corpusSize = corpus.getWordCountTotal();
-
-    return (wordCount / wordSize) * Math.log(corpusSize / corpusCount);
+    return (wordCount / wordSize) * termWeight(corpus, word);
   }
 
 
@@ -105,4 +99,24 @@ public class TFICFScore implements Score {
     }
     return maxScoreSubQuery;
   }
+
+  /**
+   * Returns the inverse corpus frequency of a word, i.e. the logarithm of the number of words in
+   * the {@code Corpus} divided by the number of times the word appears in it.
+   *
+   * @param corpus The {@code Corpus} of the {@code SearchEngine}.
+   * @param word The query word.
+   * @return The weight of the word.
+   */
+  @Override
+  public double termWeight(Corpus corpus, String word) {
+
+    // number of times word appear in the corpus, i.e the corpus count.
+    double corpusCount = (double) corpus.getWordsToOccurences().get(word);
+
+    // total number of words in the corpus.
+    int corpusSize = corpus.getWordCountTotal();
+
+    return Math.log(corpusSize / corpusCount);
+  }
 }
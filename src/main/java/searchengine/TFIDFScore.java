@@ -12,7 +12,7 @@ import java.util.List;
  * @author Mikkel Buch Smedemand
  */
 
-public class TFIDFScore implements Score{
+public class TFIDFScore implements TermWeightedScore {
 
   /**
    * Calculates the rank of the {@code Website}, given a {@code Corpus}, and a {@code structuredQuery} using the TFIDF ranking algorithm.
@@ -60,11 +60,8 @@ public class TFIDFScore implements Score{
     // number of times word appear on website, i.e the term site count.
     double wordCount = (double) site.getWordsToOccurences().get(word);
 
-    // number of times word appear on a website in the corpus, i.e the site/document count.
-    double siteCount = (double) corpus.getWordsToInSiteOccurences().get(word);
-
     // site frequency times logarithm to inverse corpus site/document frequency.
-    return (wordCount / wordSize) * Math.log(corpus.getTotalNumberOfSites() / siteCount);
+    return (wordCount / wordSize) * termWeight(corpus, word);
   }
 
 
@@ -99,4 +96,22 @@ public class TFIDFScore implements Score{
     }
     return maxScoreSubQuery;
   }
+
+  /**
+   * Returns the inverse document frequency of a word, i.e. the logarithm of the number of
+   * {@code Websites} in the {@code Corpus} divided by the number of {@code Websites} the word
+   * appears on.
+   *
+   * @param corpus The {@code Corpus} of the {@code SearchEngine}.
+   * @param word The query word.
+   * @return The weight of the word.
+   */
+  @Override
+  public double termWeight(Corpus corpus, String word) {
+
+    // number of times word appear on a website in the corpus, i.e the site/document count.
+    double siteCount = (double) corpus.getWordsToInSiteOccurences().get(word);
+
+    return Math.log(corpus.getTotalNumberOfSites() / siteCount);
+  }
 }
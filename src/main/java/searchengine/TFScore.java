@@ -12,7 +12,7 @@ import java.util.List;
  * @author Mikkel Buch Smedemand
  */
 
-public class TFScore implements Score {
+public class TFScore implements TermWeightedScore {
 
   /**
    * Calculates the rank of the {@code Website}, given a {@code Corpus}, and a {@code structuredQuery} using the TF ranking algorithm.
@@ -97,4 +97,17 @@ public class TFScore implements Score {
     }
     return maxScoreSubQuery;
   }
+
+  /**
+   * Returns the weight of a word, which is 1 for every word since the TF ranking algorithm only
+   * uses the term frequency.
+   *
+   * @param corpus The {@code Corpus} of the {@code SearchEngine}. Which is not used for anything.
+   * @param word The query word.
+   * @return The weight of the word, i.e. 1.
+   */
+  @Override
+  public double termWeight(Corpus corpus, String word) {
+    return 1;
+  }
 }
@@ -0,0 +1,33 @@
+package searchengine;
+
+/**
+ * A {@code TermWeightedScore} is a {@code Score} where the rank of a {@code Website} for a single
+ * word is the term frequency of the word on the website (its number of occurrences divided by the
+ * number of words on the website) times a weight that only depends on the word:
+ *
+ * <pre>
+ *   rankSingle(site, corpus, word) == tf(word, site) / wordCount(site) * termWeight(corpus, word)
+ * </pre>
+ *
+ * <p>The rank for a {@code structuredQuery} must be the highest sum of {@code rankSingle} over the
+ * words of a subquery that occur on the website. Knowing this, the highest possible rank of a word
+ * is its weight times its highest term frequency on any website, which lets the
+ * {@code MaxScoreRetriever} skip the websites that cannot make it into the top results.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public interface TermWeightedScore extends Score {
+
+  /**
+   * Returns the weight of a word. The weight must be non-negative.
+   *
+   * @param corpus {@code Corpus} is a collection of all {@code Websites} in the
+   *     {@code SearchEngine}.
+   * @param word A query word, which occurs in the {@code Corpus}.
+   * @return the weight of the word.
+   */
+  double termWeight(Corpus corpus, String word);
+}
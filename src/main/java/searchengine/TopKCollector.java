@@ -0,0 +1,166 @@
+package searchengine;
+
+/**
+ * A {@code TopKCollector} keeps the {@code k} best scored items out of a stream of (id, score)
+ * pairs, using a bounded min-heap on primitive arrays. Collecting n items costs O(n log k) time
+ * and O(k) memory, instead of sorting all n items. Items with equal scores are ordered by
+ * increasing id, so the result does not depend on the order in which items are collected.
+ *
+ * @author André Mortensen Kobæk
+ * @author Domenico Villani
+ * @author Flemming Westberg
+ * @author Mikkel Buch Smedemand
+ */
+public class TopKCollector {
+
+  /** The ids of the heap; the worst item is at position 0. */
+  private final int[] ids;
+
+  /** The scores of the heap, at the same positions as the ids. */
+  private final double[] scores;
+
+  /** The number of items in the heap. */
+  private int size = 0;
+
+  /**
+   * Creates a {@code TopKCollector} keeping the {@code k} best items.
+   *
+   * @param k the number of items to keep.
+   */
+  public TopKCollector(int k) {
+    if (k < 0) {
+      throw new IllegalArgumentException("k must be non-negative");
+    }
+    ids = new int[k];
+    scores = new double[k];
+  }
+
+  /**
+   * Offers an item to the collector. It is kept if fewer than {@code k} items have been kept so
+   * far, or if it is better than the worst kept item.
+   *
+   * @param id the id of the item.
+   * @param score the score of the item.
+   */
+  public void collect(int id, double score) {
+    if (size < ids.length) {
+      ids[size] = id;
+      scores[size] = score;
+      siftUp(size++);
+    } else if (size > 0 && isWorse(ids[0], scores[0], id, score)) {
+      ids[0] = id;
+      scores[0] = score;
+      siftDown(0);
+    }
+  }
+
+  /**
+   * Returns the score an item must beat to be kept: the score of the worst kept item once
+   * {@code k} items are kept, and negative infinity before that.
+   *
+   * @return the current threshold score.
+   */
+  public double threshold() {
+    if (size < ids.length || size == 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return scores[0];
+  }
+
+  /**
+   * Returns the number of kept items.
+   *
+   * @return the number of kept items, at most {@code k}.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the ids of the kept items, best first. This empties the collector.
+   *
+   * @return the ids, ordered by decreasing score.
+   */
+  public int[] drainIds() {
+    int[] result = new int[size];
+    for (int i = size - 1; i >= 0; i--) {
+      result[i] = ids[0];
+      removeWorst();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the kept items as parallel arrays of ids and scores, best first. This empties the
+   * collector.
+   *
+   * @param resultIds the array receiving the ids; must hold at least {@code size()} items.
+   * @param resultScores the array receiving the scores; must hold at least {@code size()} items.
+   */
+  public void drain(int[] resultIds, double[] resultScores) {
+    for (int i = size - 1; i >= 0; i--) {
+      resultIds[i] = ids[0];
+      resultScores[i] = scores[0];
+      removeWorst();
+    }
+  }
+
+  /** Removes the worst item from the heap. */
+  private void removeWorst() {
+    size--;
+    ids[0] = ids[size];
+    scores[0] = scores[size];
+    siftDown(0);
+  }
+
+  /**
+   * Checks whether an item is worse than another item: it has a lower score, or the same score
+   * and a higher id.
+   */
+  private static boolean isWorse(int id, double score, int otherId, double otherScore) {
+    return score < otherScore || (score == otherScore && id > otherId);
+  }
+
+  private boolean isWorse(int position, int otherPosition) {
+    return isWorse(ids[position], scores[position], ids[otherPosition], scores[otherPosition]);
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (!isWorse(position, parent)) {
+        break;
+      }
+      swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      int worst = position;
+      int left = 2 * position + 1;
+      int right = left + 1;
+      if (left < size && isWorse(left, worst)) {
+        worst = left;
+      }
+      if (right < size && isWorse(right, worst)) {
+        worst = right;
+      }
+      if (worst == position) {
+        return;
+      }
+      swap(position, worst);
+      position = worst;
+    }
+  }
+
+  private void swap(int a, int b) {
+    int id = ids[a];
+    ids[a] = ids[b];
+    ids[b] = id;
+    double score = scores[a];
+    scores[a] = scores[b];
+    scores[b] = score;
+  }
+}
@@ -3,13 +3,19 @@ package searchengine;
 // Spring Imports (first Application, then Controller)
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import java.util.List;
 // Other Imports
-import java.util.Set;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Turns our search engine into a Web application, using Spring Boot. Web requests are received and
@@ -25,22 +31,27 @@ import java.util.Set;
 public class WebApplication {
   // Search Engine instance
   public static SearchEngine searchengine;
+  // The database the search engine was loaded from, and is reloaded from
+  public static String database;
 
   /**
    * Starts a web server that serves our search engine to the Web. It reads the list of websites
-   * from the input file given as argument, constructs an instance of {@code SearchEngine} using
-   * that, and finally, starts a web server.
+   * from the input file given as argument (or opens the index segment given as argument),
+   * constructs an instance of {@code SearchEngine} using that, and finally, starts a web server.
    *
    * @param args command-line arguments.
    */
   public static void main(String[] args) {
     System.out.println("Welcome to the SearchEngine!");
 
-    System.out.println("Reading database...");
-    Set<Website> sites = FileHelper.parseFile(args);
-
-    System.out.println("Building the search engine...");
-    searchengine = new SearchEngine(sites);
+    // the database is either a text file, or an index segment built by SegmentTool.
+    database = FileHelper.getDatabase(args);
+    try {
+      searchengine = SearchEngine.load(database, FileHelper.readProperties());
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
 
     System.out.println("Search engine is ready to receive queries.");
     System.out.println("Starting web server:");
@@ -69,17 +80,63 @@ public class WebApplication {
   //   return resultList;
   // }
 
+  /**
+   * Uses the search engine to search for one page of the websites matching the given query, best
+   * ranked first. This method is invoked by the web server whenever it receives an HTTP request to
+   * "/search". Negative values of {@code offset} and {@code limit} are treated as 0.
+   *
+   * @param query the query string
+   * @param offset the number of best ranked websites to skip
+   * @param limit the maximum number of websites to return
+   * @return the requested page of the websites that match the query
+   */
   @CrossOrigin(origins = "*")
   @RequestMapping("/search")
-  public List<Website> search(@RequestParam(value = "query", defaultValue = "") String query) {
+  public List<Website> search(@RequestParam(value = "query", defaultValue = "") String query,
+      @RequestParam(value = "offset", defaultValue = "0") int offset,
+      @RequestParam(value = "limit", defaultValue = "100") int limit) {
 
     System.out.println("Handling request for query word \"" + query + "\"");
 
-    List<Website> searchResult = searchengine.search(query);
+    List<Website> searchResult =
+        searchengine.search(query, Math.max(0, offset), Math.max(0, limit));
 
     System.out.println("Found " + searchResult.size() + " websites.");
 
     return searchResult;
   }
-  
+
+  /**
+   * Starts reloading the search engine from its database, e.g. after the database file has been
+   * replaced. The search engine keeps answering queries from the old database until the new one
+   * is ready. This method is invoked by the web server whenever it receives an HTTP POST request
+   * to "/reload", which is only accepted from the machine the server runs on.
+   *
+   * @param request the HTTP request
+   * @return the status of the request
+   */
+  @RequestMapping(value = "/reload", method = RequestMethod.POST)
+  public ResponseEntity<String> reload(HttpServletRequest request) {
+    try {
+      if (!InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress()) {
+        return new ResponseEntity<>("Reloads are only accepted from localhost",
+            HttpStatus.FORBIDDEN);
+      }
+    } catch (UnknownHostException e) {
+      return new ResponseEntity<>("Unknown remote address", HttpStatus.FORBIDDEN);
+    }
+
+    long generation = searchengine.getSnapshot().getGeneration();
+    System.out.println("Reloading " + database + " (generation " + generation + ")...");
+    searchengine.reload(database).whenComplete((snapshot, failure) -> {
+      if (failure != null) {
+        System.out.println("Reloading " + database + " failed:");
+        failure.printStackTrace();
+      } else {
+        System.out.println("Reloaded " + database + " as generation "
+            + snapshot.getGeneration());
+      }
+    });
+    return new ResponseEntity<>("Reloading " + database, HttpStatus.ACCEPTED);
+  }
 }
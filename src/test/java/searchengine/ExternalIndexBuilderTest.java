@@ -0,0 +1,107 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExternalIndexBuilderTest {
+
+  private List<Website> sites;
+  private Path directory;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    sites = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      List<String> words = new ArrayList<>();
+      for (int j = 0; j <= i % 5; j++) {
+        words.add("word" + (i * j % 13));
+      }
+      sites.add(new Website(i + ".com", "example" + i, words));
+    }
+    directory = Files.createTempDirectory("test");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    for (Path file : files()) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  private List<Path> files() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  void sameAsInMemory() throws IOException {
+    Path external = directory.resolve("external" + IndexSegment.EXTENSION);
+    try (ExternalIndexBuilder builder = new ExternalIndexBuilder(500, directory)) {
+      for (Website site : sites) {
+        builder.add(site);
+      }
+      builder.add(sites.get(0)); // duplicates are skipped
+      assertTrue(builder.getRunCount() > 1);
+      assertEquals(sites.size(), builder.getDocumentCount());
+      builder.write(external);
+    }
+    assertEquals(1, files().size()); // the temporary files are deleted
+
+    Set<Website> set = new HashSet<>(sites);
+    PostingListIndex idx = new PostingListIndex();
+    idx.build(set);
+    Corpus corpus = new Corpus(set);
+    corpus.build();
+    corpus.build2GramIndex();
+
+    IndexSegment segment = IndexSegment.open(external);
+    segment.verify();
+    AbstractPostingListIndex index = segment.getIndex();
+    assertEquals(idx.getDocumentCount(), index.getDocumentCount());
+    assertEquals(idx.getWords(), index.getWords());
+    for (int docId = 0; docId < sites.size(); docId++) {
+      assertEquals(sites.get(docId), index.getWebsite(docId));
+      assertEquals(sites.get(docId).getWords(), index.getWebsite(docId).getWords());
+    }
+    for (String word : idx.getWords()) {
+      assertEquals(idx.lookup(word), index.lookup(word));
+      assertEquals(idx.getMaxTermFrequency(word), index.getMaxTermFrequency(word));
+    }
+
+    Corpus loaded = segment.getCorpus();
+    assertEquals(corpus.getTotalNumberOfSites(), loaded.getTotalNumberOfSites());
+    assertEquals(corpus.getWordCountTotal(), loaded.getWordCountTotal());
+    assertEquals(corpus.getWordsToOccurences(), loaded.getWordsToOccurences());
+    assertEquals(corpus.getWordsToInSiteOccurences(), loaded.getWordsToInSiteOccurences());
+    assertEquals(corpus.getWordsInCorpus(), loaded.getWordsInCorpus());
+    BiGramIndex biGrams = corpus.getBiGramIndex();
+    assertEquals(biGrams.getBiGrams(), loaded.getBiGramIndex().getBiGrams());
+    for (String biGram : biGrams.getBiGrams()) {
+      assertArrayEquals(biGrams.getPostings(biGram).toArray(),
+          loaded.getBiGramIndex().getPostings(biGram).toArray());
+    }
+  }
+
+  @Test
+  void closeWithoutWriting() throws IOException {
+    ExternalIndexBuilder builder = new ExternalIndexBuilder(500, directory);
+    for (Website site : sites) {
+      builder.add(site);
+    }
+    builder.close();
+    assertTrue(files().isEmpty());
+  }
+}
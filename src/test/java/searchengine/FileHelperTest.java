@@ -1,6 +1,9 @@
 package searchengine;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.Disabled;
@@ -32,4 +35,31 @@ class FileHelperTest {
     assertTrue(sitesList.get(0).containsWord("word1"));
     assertFalse(sitesList.get(0).containsWord("word3"));
   }
+
+  @Test
+  void readFileInOrder() throws IOException {
+    List<Website> sitesList = new ArrayList<>();
+    FileHelper.readFile("data/test-file-errors.txt", sitesList::add);
+    assertEquals(2, sitesList.size());
+    assertEquals("title1", sitesList.get(0).getTitle());
+    assertEquals("title2", sitesList.get(1).getTitle());
+    assertTrue(sitesList.get(0).containsWord("word1"));
+    assertFalse(sitesList.get(0).containsWord("word3"));
+  }
+
+  @Test
+  void readMissingFile() {
+    assertThrows(IOException.class, () -> FileHelper.readFile("data/no-such-file.txt", site -> {
+    }));
+  }
+
+  @Test
+  void listDatabaseFiles() throws IOException {
+    assertEquals(Arrays.asList(Paths.get("data/test-file.txt")),
+        FileHelper.listDatabaseFiles("data/test-file.txt"));
+    assertEquals(Arrays.asList(Paths.get("data/test-file-errors.txt"),
+        Paths.get("data/test-file.txt")), FileHelper.listDatabaseFiles("data/test-file*.txt"));
+    assertTrue(FileHelper.listDatabaseFiles("data").contains(Paths.get("data/enwiki-tiny.txt")));
+    assertThrows(IOException.class, () -> FileHelper.listDatabaseFiles("data/*.none"));
+  }
 }
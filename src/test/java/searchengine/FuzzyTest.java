@@ -0,0 +1,293 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FuzzyTest {
+
+  private Corpus corpus;
+  private Fuzzy fuzzy;
+
+  @BeforeEach
+  void setUp() {
+    Set<Website> sites = new HashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("denmark", "copenhagen")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("danmark", "københavn", "c++")));
+    sites.add(new Website("3.com", "example3", Arrays.asList("sweden", "a")));
+    corpus = new Corpus(sites);
+    corpus.build();
+    corpus.build2GramIndex();
+    fuzzy = new Fuzzy(corpus);
+  }
+
+  @Test
+  void biGrams() {
+    assertEquals(new HashSet<>(Arrays.asList("$c", "ca", "at", "t$")), BiGramIndex.biGrams("cat"));
+    assertEquals(new HashSet<>(Arrays.asList("$ø", "øl", "l$")), BiGramIndex.biGrams("øl"));
+    assertEquals(new HashSet<>(Arrays.asList("$a")), BiGramIndex.biGrams("a"));
+    assertEquals(new HashSet<>(Arrays.asList("$a", "aa", "a$")), BiGramIndex.biGrams("aaa"));
+    assertTrue(BiGramIndex.biGrams("").isEmpty());
+  }
+
+  @Test
+  void biGramPostings() {
+    BiGramIndex index = corpus.getBiGramIndex();
+    List<String> words = corpus.getWordsInCorpus();
+    assertEquals(7, index.size());
+    assertEquals(words, index.getWords());
+    for (int i = 1; i < words.size(); i++) {
+      assertTrue(words.get(i - 1).compareTo(words.get(i)) < 0, "words must be sorted");
+    }
+
+    // every 2-gram maps to exactly the sorted IDs of the words containing it.
+    for (String biGram : index.getBiGrams()) {
+      int[] wordIds = index.getPostings(biGram).toArray();
+      for (int i = 1; i < wordIds.length; i++) {
+        assertTrue(wordIds[i - 1] < wordIds[i], "posting lists must be sorted");
+      }
+      for (int wordId = 0; wordId < index.size(); wordId++) {
+        assertEquals(BiGramIndex.biGrams(words.get(wordId)).contains(biGram),
+            Arrays.binarySearch(wordIds, wordId) >= 0);
+      }
+    }
+    assertEquals(1, index.getPostings("øb").size());
+    assertEquals(1, index.getPostings("++").size());
+    assertEquals(0, index.getPostings("zz").size());
+  }
+
+  @Test
+  void withWords() {
+    BiGramIndex index = corpus.getBiGramIndex();
+    BiGramIndex grown = index.withWords(Arrays.asList("norway", "denmark", "sweden"));
+    assertEquals(index.size() + 1, grown.size());
+    assertEquals("norway", grown.getWord(index.size()));
+    assertTrue(grown.contains("norway"));
+    assertTrue(grown.contains("denmark"));
+    assertFalse(index.contains("norway"));
+    assertEquals(0, index.getPostings("$n").size());
+    assertArrayEquals(new int[] {index.size()}, grown.getPostings("$n").toArray());
+    assertSame(grown, grown.withWords(Arrays.asList("norway")));
+  }
+
+  @Test
+  void expandAnyCharacter() {
+    assertEquals(new HashSet<>(Arrays.asList("denmark", "danmark")), fuzzy.expand("dänmark"));
+    assertEquals(new HashSet<>(Arrays.asList("københavn")), fuzzy.expand("kobenhavn"));
+    assertEquals(new HashSet<>(Arrays.asList("c++")), fuzzy.expand("c+"));
+    assertTrue(fuzzy.expand("東京都").isEmpty());
+  }
+
+  @Test
+  void expandNewWords() {
+    Corpus copy = new Corpus(corpus);
+    copy.addDocument(new Website("4.com", "example4", Arrays.asList("norway", "sweden")));
+    assertTrue(new Fuzzy(copy).expand("norwey").isEmpty());
+
+    copy.extend2GramIndex();
+    assertEquals(new HashSet<>(Arrays.asList("norway")), new Fuzzy(copy).expand("norwey"));
+    assertFalse(corpus.getBiGramIndex().contains("norway"));
+  }
+
+  @Test
+  void candidatesMatchScanCount() {
+    Random random = new Random(42);
+    Set<String> vocabulary = new HashSet<>();
+    while (vocabulary.size() < 2000) {
+      vocabulary.add(randomWord(random));
+    }
+    BiGramIndex index = BiGramIndex.build(vocabulary);
+
+    for (int query = 0; query < 200; query++) {
+      Set<String> biGrams = BiGramIndex.biGrams(randomWord(random));
+      for (int threshold = 1; threshold <= biGrams.size() + 1; threshold++) {
+        // count the common 2-grams of every word, and keep those having enough.
+        List<Integer> expected = new ArrayList<>();
+        for (int wordId = 0; wordId < index.size(); wordId++) {
+          Set<String> common = new HashSet<>(BiGramIndex.biGrams(index.getWord(wordId)));
+          common.retainAll(biGrams);
+          if (common.size() >= threshold) {
+            expected.add(wordId);
+            expected.add(common.size());
+          }
+        }
+        List<Integer> actual = new ArrayList<>();
+        index.candidates(biGrams, threshold, (wordId, count) -> {
+          actual.add(wordId);
+          actual.add(count);
+        });
+        assertEquals(expected, actual, biGrams + " " + threshold);
+      }
+    }
+  }
+
+  @Test
+  void boundedEditDistance() {
+    assertEquals(2, new EditDistance("denmrak").distance("denmark", 2));
+    assertEquals(3, new EditDistance("denmrak").distance("sweden", 2));
+    assertEquals(1, new EditDistance("kobenhavn").distance("københavn", 1));
+    assertEquals(0, new EditDistance("東京都").distance("東京都", 0));
+    assertEquals(2, new EditDistance("").distance("ab", 2));
+
+    // the bounded distances must match the full matrix, also for words too long for bit-parallel.
+    Random random = new Random(7);
+    for (int i = 0; i < 5000; i++) {
+      String x = randomWord(random, 1 + random.nextInt(i % 10 == 0 ? 100 : 12));
+      String y = mutate(random, x);
+      int full = Fuzzy.editDistance(x, y);
+      for (int bound = 0; bound <= 4; bound++) {
+        int bounded = new EditDistance(x).distance(y, bound);
+        assertEquals(Math.min(full, bound + 1), bounded, x + " " + y);
+      }
+    }
+  }
+
+  @Test
+  void bkTreeFindsAllWithinDistance() {
+    Random random = new Random(11);
+    Set<String> vocabulary = new HashSet<>();
+    while (vocabulary.size() < 2000) {
+      vocabulary.add(randomWord(random));
+    }
+    BiGramIndex index = BiGramIndex.build(vocabulary);
+    FuzzyEngine bkTree = FuzzyEngine.Type.BKTREE.create(index);
+    FuzzyEngine biGram = FuzzyEngine.Type.BIGRAM.create(index);
+
+    for (int query = 0; query < 200; query++) {
+      String word = mutate(random, randomWord(random));
+      int delta = 1 + query % 2;
+      Set<String> expected = new HashSet<>();
+      for (String other : vocabulary) {
+        if (Fuzzy.editDistance(word, other) <= delta) {
+          expected.add(other);
+        }
+      }
+      assertEquals(expected, bkTree.find(word, delta), word);
+      assertTrue(expected.containsAll(biGram.find(word, delta)), word);
+    }
+    assertTrue(FuzzyEngine.Type.BKTREE.create(BiGramIndex.build(new HashSet<>()))
+        .find("word", 2).isEmpty());
+  }
+
+  @Test
+  void bkTreeGrowsWithVocabulary() {
+    Random random = new Random(13);
+    Set<String> vocabulary = new HashSet<>();
+    while (vocabulary.size() < 1000) {
+      vocabulary.add(randomWord(random));
+    }
+    BiGramIndex index = BiGramIndex.build(vocabulary);
+    FuzzyEngine bkTree = FuzzyEngine.Type.BKTREE.create(index);
+    List<String> added = new ArrayList<>();
+    while (added.size() < 500) {
+      added.add(randomWord(random));
+    }
+    BiGramIndex grown = index.withWords(added);
+    FuzzyEngine extended = bkTree.withVocabulary(grown);
+    FuzzyEngine rebuilt = FuzzyEngine.Type.BKTREE.create(grown);
+
+    for (int query = 0; query < 100; query++) {
+      String word = mutate(random, randomWord(random));
+      int delta = 1 + query % 2;
+      assertEquals(rebuilt.find(word, delta), extended.find(word, delta), word);
+    }
+    // the old engine still searches the old vocabulary.
+    for (String word : added) {
+      if (!vocabulary.contains(word)) {
+        assertFalse(bkTree.find(word, 1).contains(word), word);
+        assertTrue(extended.find(word, 1).contains(word), word);
+      }
+    }
+  }
+
+  @Test
+  void engineTypes() {
+    assertEquals(FuzzyEngine.Type.BKTREE, FuzzyEngine.Type.forName("bktree"));
+    assertEquals(FuzzyEngine.Type.BIGRAM, FuzzyEngine.Type.forName(" BiGram"));
+    assertThrows(IllegalArgumentException.class, () -> FuzzyEngine.Type.forName("trie"));
+
+    Fuzzy bkTree = new Fuzzy(corpus, FuzzyEngine.Type.BKTREE, 10);
+    assertTrue(bkTree.getEngine() instanceof BkTreeFuzzyEngine);
+    assertEquals(new HashSet<>(Arrays.asList("denmark", "danmark")), bkTree.expand("dänmark"));
+
+    // the engine is kept until words are added.
+    Corpus copy = new Corpus(corpus);
+    assertSame(bkTree.getEngine(), bkTree.withCorpus(copy).getEngine());
+    copy.addDocument(new Website("4.com", "example4", Arrays.asList("norway")));
+    copy.extend2GramIndex();
+    Fuzzy extended = bkTree.withCorpus(copy);
+    assertTrue(extended.getEngine() instanceof BkTreeFuzzyEngine);
+    assertEquals(new HashSet<>(Arrays.asList("norway")), extended.expand("norwey"));
+  }
+
+  @Test
+  void expansionsRankedAndCapped() {
+    Set<Website> sites = new HashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("denmark", "denmark", "danmark")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("denmark", "denmarks", "danmark")));
+    sites.add(new Website("3.com", "example3", Arrays.asList("denmar", "danmark")));
+    Corpus frequencies = new Corpus(sites);
+    frequencies.build();
+    frequencies.build2GramIndex();
+
+    // the most frequent first, and equally frequent ones alphabetically.
+    Fuzzy unlimited = new Fuzzy(frequencies);
+    assertEquals(Arrays.asList("danmark", "denmark", "denmar", "denmarks"),
+        new ArrayList<>(unlimited.expand("dinmark")));
+    Fuzzy capped = new Fuzzy(frequencies, FuzzyEngine.Type.BIGRAM, 2);
+    assertEquals(Arrays.asList("danmark", "denmark"), new ArrayList<>(capped.expand("dinmark")));
+    assertThrows(IllegalArgumentException.class,
+        () -> new Fuzzy(frequencies, FuzzyEngine.Type.BIGRAM, 0));
+  }
+
+  @Test
+  void expansionsCached() {
+    Set<String> expansion = fuzzy.expand("dänmark");
+    assertSame(expansion, fuzzy.expand("dänmark"));
+    assertEquals(1, fuzzy.getExpansions().getHits());
+    assertEquals(1, fuzzy.getExpansions().getMisses());
+    assertThrows(UnsupportedOperationException.class, () -> expansion.add("sweden"));
+
+    // a newer corpus gets a new cache.
+    Fuzzy next = fuzzy.withCorpus(new Corpus(corpus));
+    assertEquals(expansion, next.expand("dänmark"));
+    assertEquals(0, next.getExpansions().getHits());
+  }
+
+  /** Makes a few random edits of a word, some of them with characters above 255. */
+  private static String mutate(Random random, String word) {
+    StringBuilder builder = new StringBuilder(word);
+    for (int edits = random.nextInt(5); edits > 0; edits--) {
+      int position = random.nextInt(builder.length() + 1);
+      char c = random.nextInt(4) == 0 ? 'ø' : random.nextInt(4) == 0 ? '京' : 'a';
+      c += random.nextInt(3);
+      if (position < builder.length() && random.nextBoolean()) {
+        builder.deleteCharAt(position);
+      } else if (position < builder.length() && random.nextBoolean()) {
+        builder.setCharAt(position, c);
+      } else {
+        builder.insert(position, c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /** Creates a random word from a small alphabet, so that words share many 2-grams. */
+  private static String randomWord(Random random) {
+    return randomWord(random, 2 + random.nextInt(8));
+  }
+
+  private static String randomWord(Random random, int length) {
+    char[] word = new char[length];
+    for (int i = 0; i < word.length; i++) {
+      word[i] = (char) ('a' + random.nextInt(6));
+    }
+    return new String(word);
+  }
+}
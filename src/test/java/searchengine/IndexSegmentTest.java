@@ -0,0 +1,106 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndexSegmentTest {
+
+  private Set<Website> sites;
+  private PostingListIndex idx;
+  private Corpus corpus;
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    sites = new HashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("word1", "word2")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("word2", "word3", "word2")));
+    sites.add(new Website("3.com", "exämple3", Arrays.asList("word3", "wörd4", "word5")));
+
+    idx = new PostingListIndex();
+    idx.build(sites);
+    corpus = new Corpus(sites);
+    corpus.build();
+    corpus.build2GramIndex();
+
+    file = Files.createTempFile("index", IndexSegment.EXTENSION);
+    IndexSegment.write(file, idx, corpus);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  void roundTrip() throws IOException {
+    IndexSegment segment = IndexSegment.open(file);
+    segment.verify();
+    AbstractPostingListIndex index = segment.getIndex();
+
+    assertEquals(idx.getDocumentCount(), index.getDocumentCount());
+    assertEquals(idx.getWords(), index.getWords());
+    for (String word : idx.getWords()) {
+      assertArrayEquals(idx.getPostings(word).toArray(), index.getPostings(word).toArray());
+      assertEquals(idx.getMaxTermFrequency(word), index.getMaxTermFrequency(word));
+      assertEquals(idx.lookup(word), index.lookup(word));
+    }
+    for (int docId = 0; docId < idx.getDocumentCount(); docId++) {
+      Website expected = idx.getWebsite(docId);
+      Website actual = index.getWebsite(docId);
+      assertEquals(expected, actual);
+      assertEquals(expected.getWords(), actual.getWords());
+      assertSame(actual, index.getWebsite(docId));
+    }
+    assertFalse(index instanceof Index);
+  }
+
+  @Test
+  void corpusRoundTrip() throws IOException {
+    Corpus loaded = IndexSegment.open(file).getCorpus();
+    assertEquals(corpus.getTotalNumberOfSites(), loaded.getTotalNumberOfSites());
+    assertEquals(corpus.getWordCountTotal(), loaded.getWordCountTotal());
+    assertEquals(corpus.getWordsToOccurences(), loaded.getWordsToOccurences());
+    assertEquals(corpus.getWordsToInSiteOccurences(), loaded.getWordsToInSiteOccurences());
+    assertEquals(corpus.getWordsInCorpus(), loaded.getWordsInCorpus());
+    BiGramIndex biGrams = corpus.getBiGramIndex();
+    assertEquals(biGrams.getBiGrams(), loaded.getBiGramIndex().getBiGrams());
+    for (String biGram : biGrams.getBiGrams()) {
+      assertArrayEquals(biGrams.getPostings(biGram).toArray(),
+          loaded.getBiGramIndex().getPostings(biGram).toArray());
+    }
+  }
+
+  @Test
+  void corruptSegment() throws IOException {
+    // flip a byte in the postings, which are only checked by verify.
+    IndexSegment.open(file).verify();
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      long position = raf.length() / 2;
+      raf.seek(position);
+      int b = raf.read();
+      raf.seek(position);
+      raf.write(b ^ 0xFF);
+    }
+    assertThrows(IOException.class, () -> IndexSegment.open(file).verify());
+  }
+
+  @Test
+  void wrongVersion() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.seek(4);
+      raf.writeInt(IndexSegment.VERSION + 1);
+    }
+    IOException e = assertThrows(IOException.class, () -> IndexSegment.open(file));
+    assertTrue(e.getMessage().contains("version"));
+  }
+}
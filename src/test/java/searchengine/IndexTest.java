@@ -13,12 +13,16 @@ class IndexTest {
   private Index simpleIndex = null;
   private InvertedIndex treeIndex = null;
   private InvertedIndex hashIndex = null;
+  private PostingListIndex postingIndex = null;
+  private PostingListIndex compressedIndex = null;
 
   @BeforeEach
   void setUp() {
     simpleIndex = new SimpleIndex();
     hashIndex = new InvertedIndexHashMap();
     treeIndex = new InvertedIndexTreeMap();
+    postingIndex = new PostingListIndex();
+    compressedIndex = new CompressedPostingListIndex();
   }
 
   @AfterEach
@@ -26,6 +30,8 @@ class IndexTest {
     simpleIndex = null;
     hashIndex = null;
     treeIndex = null;
+    postingIndex = null;
+    compressedIndex = null;
   }
 
 
@@ -138,6 +144,16 @@ class IndexTest {
     lookupInEmptyIndex(treeIndex);
   }
 
+  @Test
+  void lookupInEmptyPostingIndex() {
+    lookupInEmptyIndex(postingIndex);
+  }
+
+  @Test
+  void lookupInEmptyCompressedIndex() {
+    lookupInEmptyIndex(compressedIndex);
+  }
+
   @Disabled("We decided that this is currently not a requirement.")
   @Test // currently gives an ERROR because of a NullPointerException
   void lookupInEmptySimpleIndex() {
@@ -188,4 +204,94 @@ class IndexTest {
     lookup(hashIndex);
   }
 
+  @Test
+  void lookupPostingIndex() {
+    lookup(postingIndex);
+  }
+
+  @Test
+  void lookupCompressedIndex() {
+    lookup(compressedIndex);
+  }
+
+  @Test
+  void buildNullPosting() {
+    buildNull(postingIndex);
+  }
+
+  /**
+   * Test that the posting lists are sorted, and that the document IDs resolve to the websites
+   * containing the word.
+   */
+  private void postingListsAreSorted(PostingListIndex index) {
+    Set<Website> sites = new HashSet<>();
+    for (int i = 0; i < 300; i++) {
+      sites.add(new Website("example" + i + ".com", "example" + i,
+          Arrays.asList("common", i % 2 == 0 ? "even" : "odd")));
+    }
+    index.build(sites);
+
+    assertEquals(300, index.getDocumentCount());
+    int[] postings = index.getPostings("even").toArray();
+    assertEquals(150, postings.length);
+    for (int i = 1; i < postings.length; i++) {
+      assertTrue(postings[i - 1] < postings[i], "posting lists must be sorted");
+    }
+    for (int docId : postings) {
+      assertTrue(index.getWebsite(docId).containsWord("even"));
+    }
+    assertEquals(0, index.getPostings("missing").size());
+  }
+
+  @Test
+  void postingListsAreSortedPosting() {
+    postingListsAreSorted(postingIndex);
+  }
+
+  @Test
+  void postingListsAreSortedCompressed() {
+    postingListsAreSorted(compressedIndex);
+  }
+
+  @Test
+  void lookupViewContains() {
+    Website site1 = new Website("example1.com", "example1", Arrays.asList("word1", "word2"));
+    Website site2 = new Website("example2.com", "example2", Arrays.asList("word2"));
+    postingIndex.build(new HashSet<>(Arrays.asList(site1, site2)));
+
+    assertTrue(postingIndex.lookup("word1").contains(site1));
+    assertFalse(postingIndex.lookup("word1").contains(site2));
+    assertEquals(new HashSet<>(Arrays.asList(site1, site2)), postingIndex.lookup("word2"));
+  }
+
+  /**
+   * Test that websites can be added to and deleted from a built inverted index, and that adding an
+   * equal website replaces the words of the old one.
+   */
+  private void addAndDelete(InvertedIndex index) {
+    Website site1 = new Website("example1.com", "example1", Arrays.asList("word1", "word2"));
+    Website site2 = new Website("example2.com", "example2", Arrays.asList("word2"));
+    index.build(new HashSet<>(Arrays.asList(site1)));
+
+    index.addDocument(site2);
+    assertEquals(new HashSet<>(Arrays.asList(site1, site2)), index.lookup("word2"));
+
+    index.addDocument(new Website("example1.com", "example1", Arrays.asList("word3")));
+    assertEquals(0, index.lookup("word1").size());
+    assertEquals(1, index.lookup("word2").size());
+    assertEquals(1, index.lookup("word3").size());
+
+    index.deleteDocument(site2);
+    assertEquals(0, index.lookup("word2").size());
+  }
+
+  @Test
+  void addAndDeleteHashIndex() {
+    addAndDelete(hashIndex);
+  }
+
+  @Test
+  void addAndDeleteTreeIndex() {
+    addAndDelete(treeIndex);
+  }
 }
@@ -0,0 +1,138 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+class IngestionPipelineTest {
+
+  @Test
+  void sameAsParseFile() throws IOException {
+    IngestionPipeline pipeline = new IngestionPipeline(3, 1);
+    Set<Website> sites = new HashSet<>();
+    pipeline.run("data/test-file.txt", sites::add);
+
+    Set<Website> expected = FileHelper.parseFile("data/test-file.txt");
+    assertEquals(expected, sites);
+    assertEquals(2, pipeline.getPagesRead());
+    assertEquals(2, pipeline.getPagesTokenized());
+    assertEquals(2, pipeline.getPagesIndexed());
+    assertEquals(4, pipeline.getWordsTokenized());
+  }
+
+  @Test
+  void orderWithOneWorker() throws IOException {
+    List<Website> sites = new ArrayList<>();
+    new IngestionPipeline(1, 1).run("data/test-file-errors.txt", sites::add);
+    assertEquals(2, sites.size());
+    assertEquals("title1", sites.get(0).getTitle());
+    assertEquals("title2", sites.get(1).getTitle());
+  }
+
+  @Test
+  void readAllInFileOrder() throws IOException {
+    Path directory = Files.createTempDirectory("test");
+    try {
+      Files.copy(Paths.get("data/enwiki-tiny.txt"), directory.resolve("a.txt"));
+      try (OutputStream out =
+          new GZIPOutputStream(Files.newOutputStream(directory.resolve("b.txt.gz")))) {
+        Files.copy(Paths.get("data/test-file.txt"), out);
+      }
+
+      List<Website> expected = new ArrayList<>();
+      FileHelper.readFile("data/enwiki-tiny.txt", expected::add);
+      FileHelper.readFile("data/test-file.txt", expected::add);
+
+      // many threads and small queues, so the websites reach the indexer out of order.
+      for (int run = 0; run < 5; run++) {
+        List<Website> sites = new IngestionPipeline(2, 4, 2).readAll(directory.toString());
+        assertEquals(expected.size(), sites.size());
+        for (int i = 0; i < sites.size(); i++) {
+          assertEquals(expected.get(i).getUrl(), sites.get(i).getUrl(), "page " + i);
+          assertEquals(expected.get(i).getTitle(), sites.get(i).getTitle(), "page " + i);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(directory.resolve("a.txt"));
+      Files.deleteIfExists(directory.resolve("b.txt.gz"));
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  void indexerFailure() {
+    IngestionPipeline pipeline = new IngestionPipeline(2, 1);
+    IOException e = assertThrows(IOException.class, () -> pipeline.run("data/test-file.txt",
+        site -> {
+          throw new IOException("full");
+        }));
+    assertEquals("full", e.getMessage());
+    assertEquals(0, pipeline.getPagesIndexed());
+  }
+
+  @Test
+  void missingFile() {
+    assertThrows(IOException.class,
+        () -> new IngestionPipeline().run("data/no-such-file.txt", site -> {
+        }));
+  }
+
+  @Test
+  void emptyDirectory() throws IOException {
+    Path directory = Files.createTempDirectory("test");
+    try {
+      Files.write(directory.resolve("notes.md"), "*PAGE:ignored".getBytes());
+      assertThrows(FileNotFoundException.class,
+          () -> new IngestionPipeline().run(directory.toString(), site -> {
+          }));
+      assertThrows(FileNotFoundException.class,
+          () -> FileHelper.listDatabaseFiles(directory.toString()));
+      assertTrue(FileHelper.parseFile(directory.toString()).isEmpty());
+    } finally {
+      Files.deleteIfExists(directory.resolve("notes.md"));
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  void compressedFilesInDirectory() throws IOException {
+    Path directory = Files.createTempDirectory("test");
+    try {
+      Files.copy(Paths.get("data/test-file.txt"), directory.resolve("a.txt"));
+      try (OutputStream out =
+          new GZIPOutputStream(Files.newOutputStream(directory.resolve("b.txt.gz")))) {
+        Files.copy(Paths.get("data/enwiki-tiny.txt"), out);
+      }
+      Files.write(directory.resolve("notes.md"), "*PAGE:ignored".getBytes());
+
+      Set<Website> expected = new HashSet<>();
+      expected.addAll(FileHelper.parseFile("data/test-file.txt"));
+      expected.addAll(FileHelper.parseFile("data/enwiki-tiny.txt"));
+
+      IngestionPipeline pipeline = new IngestionPipeline(2, 2, 4);
+      Set<Website> sites = new HashSet<>();
+      pipeline.run(directory.toString(), sites::add);
+      assertEquals(expected, sites);
+      assertEquals(2, pipeline.getFilesRead());
+
+      assertEquals(expected, FileHelper.parseFile(directory.toString()));
+      assertEquals(FileHelper.parseFile("data/enwiki-tiny.txt"),
+          FileHelper.parseFile(directory.resolve("*.gz").toString()));
+    } finally {
+      for (String name : new String[] {"a.txt", "b.txt.gz", "notes.md"}) {
+        Files.deleteIfExists(directory.resolve(name));
+      }
+      Files.delete(directory);
+    }
+  }
+}
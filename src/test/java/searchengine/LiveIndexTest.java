@@ -0,0 +1,252 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LiveIndexTest {
+
+  private Set<Website> sites;
+  private LiveIndex liveIndex;
+
+  @BeforeEach
+  void setUp() {
+    sites = new LinkedHashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("word1", "word2")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("word2", "word3", "word2")));
+    sites.add(new Website("3.com", "example3", Arrays.asList("word3", "word4")));
+    liveIndex = live(sites, Integer.MAX_VALUE);
+  }
+
+  @AfterEach
+  void tearDown() {
+    liveIndex.close();
+  }
+
+  /** Creates a live index of some websites, which is only refreshed on demand. */
+  private static LiveIndex live(Set<Website> sites, int maxSegments) {
+    PostingListIndex index = new PostingListIndex();
+    index.build(sites);
+    Corpus corpus = new Corpus(sites);
+    corpus.build();
+    corpus.build2GramIndex();
+    return new LiveIndex(index, corpus, 0, maxSegments);
+  }
+
+  /** Creates a website of random words from a small vocabulary. */
+  private static Website randomSite(Random random, int i) {
+    String[] words = new String[1 + random.nextInt(8)];
+    for (int j = 0; j < words.length; j++) {
+      words[j] = "w" + random.nextInt(30);
+    }
+    return new Website(i + ".com", "title" + (i % 3), Arrays.asList(words));
+  }
+
+  /** Asserts that the view of a live index matches an index and corpus built from scratch. */
+  private static void assertSameAsRebuilt(Set<Website> expected, LiveIndex liveIndex) {
+    assertSameAsRebuilt(expected, liveIndex.getView());
+  }
+
+  /** Asserts that a view matches an index and corpus built from scratch. */
+  private static void assertSameAsRebuilt(Set<Website> expected, LiveIndex.View view) {
+    PostingListIndex index = new PostingListIndex();
+    index.build(expected);
+    Corpus corpus = new Corpus(expected);
+    corpus.build();
+
+    for (int i = 0; i < 30; i++) {
+      String word = "w" + i;
+      assertEquals(index.lookup(word), view.getIndex().lookup(word), word);
+      assertEquals(index.getPostings(word).size(), view.getIndex().getPostings(word).size());
+    }
+    assertEquals(corpus.getTotalNumberOfSites(), view.getCorpus().getTotalNumberOfSites());
+    assertEquals(corpus.getWordCountTotal(), view.getCorpus().getWordCountTotal());
+    assertEquals(corpus.getWordsToOccurences(), view.getCorpus().getWordsToOccurences());
+    assertEquals(corpus.getWordsToInSiteOccurences(),
+        view.getCorpus().getWordsToInSiteOccurences());
+  }
+
+  @Test
+  void addIsVisibleAfterRefresh() {
+    Website site = new Website("4.com", "example4", Arrays.asList("word4", "word5"));
+    Corpus before = liveIndex.getView().getCorpus();
+    liveIndex.addDocument(site);
+    assertEquals(1, liveIndex.getBufferedCount());
+    assertEquals(0, liveIndex.lookup("word5").size());
+
+    assertTrue(liveIndex.refresh());
+    assertEquals(0, liveIndex.getBufferedCount());
+    assertEquals(2, liveIndex.getSegmentCount());
+    assertTrue(liveIndex.lookup("word5").contains(site));
+    assertEquals(2, liveIndex.lookup("word4").size());
+    Corpus corpus = liveIndex.getView().getCorpus();
+    assertEquals(4, corpus.getTotalNumberOfSites());
+    assertEquals(2, (int) corpus.getWordsToInSiteOccurences().get("word4"));
+
+    // the published corpus is copied, never changed.
+    assertEquals(3, before.getTotalNumberOfSites());
+    assertFalse(before.containsWord("word5"));
+    assertFalse(liveIndex.refresh());
+  }
+
+  @Test
+  void deleteAndReplace() {
+    liveIndex.deleteDocument(new Website("2.com", "example2", Arrays.asList("word2")));
+    liveIndex.addDocument(new Website("3.com", "example3", Arrays.asList("word6")));
+    assertEquals(2, liveIndex.lookup("word3").size());
+    liveIndex.refresh();
+
+    SearchableIndex index = liveIndex.getView().getIndex();
+    assertEquals(1, index.getPostings("word2").size());
+    assertFalse(index.hasImpacts());
+    assertNull(index.getChampions("word2"));
+    assertEquals(0, liveIndex.lookup("word3").size());
+    assertEquals(0, liveIndex.lookup("word4").size());
+    assertEquals("3.com", liveIndex.lookup("word6").iterator().next().getUrl());
+    assertFalse(liveIndex.getView().getCorpus().containsWord("word3"));
+    assertEquals(2, liveIndex.getView().getCorpus().getTotalNumberOfSites());
+
+    // deleting an unknown website changes nothing.
+    liveIndex.deleteDocument(new Website("9.com", "example9", Arrays.asList("word1")));
+    liveIndex.refresh();
+    assertEquals(1, liveIndex.lookup("word1").size());
+  }
+
+  @Test
+  void postingsSkipDeleted() {
+    Set<Website> expected = new LinkedHashSet<>(sites);
+    for (int i = 0; i < 200; i++) {
+      Website site = new Website(i + ".org", "even", Arrays.asList("word1", "word" + (i % 2)));
+      liveIndex.addDocument(site);
+      expected.add(site);
+      if (i % 50 == 49) {
+        liveIndex.refresh();
+      }
+    }
+    for (int i = 0; i < 200; i += 3) {
+      Website site = new Website(i + ".org", "even", Arrays.asList("word1"));
+      liveIndex.deleteDocument(site);
+      expected.remove(site);
+    }
+    liveIndex.refresh();
+
+    PostingList postings = liveIndex.getView().getIndex().getPostings("word1");
+    int[] docIds = postings.toArray();
+    assertEquals(expected.size() - 2, docIds.length);
+    for (int i = 1; i < docIds.length; i++) {
+      assertTrue(docIds[i - 1] < docIds[i], "posting lists must be sorted");
+    }
+
+    // advance must land on the first live document at or after the target.
+    for (int target = 0; target <= docIds[docIds.length - 1]; target += 7) {
+      PostingIterator iterator = postings.iterator();
+      int expectedDoc = PostingIterator.NO_MORE_DOCS;
+      for (int docId : docIds) {
+        if (docId >= target) {
+          expectedDoc = docId;
+          break;
+        }
+      }
+      assertEquals(expectedDoc, iterator.advance(target));
+    }
+  }
+
+  @Test
+  void sameAsRebuilt() {
+    Random random = new Random(42);
+    Set<Website> expected = new LinkedHashSet<>(sites);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 30; i++) {
+        Website site = randomSite(random, random.nextInt(100));
+        if (random.nextInt(4) == 0) {
+          liveIndex.deleteDocument(site);
+          expected.remove(site);
+        } else {
+          liveIndex.addDocument(site);
+          expected.remove(site);
+          expected.add(site);
+        }
+      }
+      liveIndex.refresh();
+      assertSameAsRebuilt(expected, liveIndex);
+    }
+  }
+
+  @Test
+  void earlierViewsUnchanged() {
+    Random random = new Random(3);
+    Set<Website> expected = new LinkedHashSet<>(sites);
+    List<Set<Website>> expectedViews = new ArrayList<>();
+    List<LiveIndex.View> views = new ArrayList<>();
+    for (int round = 0; round < 12; round++) {
+      // the rounds grow, so the changes of the corpus are kept in layers of different sizes.
+      for (int i = 0; i <= round * round; i++) {
+        Website site = randomSite(random, random.nextInt(100));
+        if (random.nextInt(3) == 0) {
+          liveIndex.deleteDocument(site);
+          expected.remove(site);
+        } else {
+          liveIndex.addDocument(site);
+          expected.remove(site);
+          expected.add(site);
+        }
+      }
+      liveIndex.refresh();
+      expectedViews.add(new LinkedHashSet<>(expected));
+      views.add(liveIndex.getView());
+    }
+    for (int i = 0; i < views.size(); i++) {
+      assertSameAsRebuilt(expectedViews.get(i), views.get(i));
+    }
+  }
+
+  @Test
+  void mergeSegments() throws InterruptedException {
+    liveIndex.close();
+    liveIndex = live(sites, 2);
+    Random random = new Random(7);
+    Set<Website> expected = new LinkedHashSet<>(sites);
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10; i++) {
+        Website site = randomSite(random, random.nextInt(60));
+        if (random.nextInt(5) == 0) {
+          liveIndex.deleteDocument(site);
+          expected.remove(site);
+        } else {
+          liveIndex.addDocument(site);
+          expected.remove(site);
+          expected.add(site);
+        }
+      }
+      liveIndex.refresh();
+    }
+    while (liveIndex.isMerging()) {
+      Thread.sleep(10);
+    }
+    assertTrue(liveIndex.getSegmentCount() <= 2, liveIndex.toString());
+    assertSameAsRebuilt(expected, liveIndex);
+  }
+
+  @Test
+  void periodicRefresh() throws InterruptedException {
+    PostingListIndex index = new PostingListIndex();
+    index.build(sites);
+    Corpus corpus = new Corpus(sites);
+    corpus.build();
+    try (LiveIndex periodic = new LiveIndex(index, corpus, 10, 8)) {
+      periodic.addDocument(new Website("4.com", "example4", Arrays.asList("word5")));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (periodic.lookup("word5").isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, periodic.lookup("word5").size());
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LruCacheTest {
+
+  @Test
+  void computesOnlyOnMiss() {
+    LruCache<String, Integer> cache = new LruCache<>(10);
+    AtomicInteger computed = new AtomicInteger();
+    assertEquals(5, (int) cache.computeIfAbsent("hello", key -> {
+      computed.incrementAndGet();
+      return key.length();
+    }));
+    assertEquals(5, (int) cache.computeIfAbsent("hello", key -> computed.incrementAndGet()));
+    assertEquals(1, computed.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.size());
+    assertThrows(IllegalArgumentException.class, () -> new LruCache<String, Integer>(0));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    // 16 segments of 2 entries, and multiples of 16 all fall in the first segment.
+    LruCache<Integer, Integer> cache = new LruCache<>(32);
+    cache.computeIfAbsent(0, key -> key);
+    cache.computeIfAbsent(16, key -> key);
+    cache.computeIfAbsent(0, key -> key);
+    cache.computeIfAbsent(32, key -> key);
+    assertEquals(2, cache.size());
+
+    // 0 was used more recently than 16, so 16 was evicted.
+    assertEquals(0, (int) cache.computeIfAbsent(0, key -> -1));
+    assertEquals(-1, (int) cache.computeIfAbsent(16, key -> -1));
+  }
+
+  @Test
+  void boundedByWeight() {
+    AtomicLong time = new AtomicLong();
+    LruCache<String, String> cache =
+        new LruCache<>(16 * 20, (key, value) -> value.length(), 10, time::get);
+    cache.put("a", "0123456789");
+    assertEquals(10, cache.weight());
+    cache.put("a", "01234");
+    assertEquals(5, cache.weight());
+
+    // an entry heavier than its segment, of 20, is not cached.
+    cache.put("b", "0123456789012345678901234");
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.size());
+
+    time.addAndGet(10_000_000L);
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.getExpirations());
+    assertEquals(0, cache.weight());
+  }
+
+  @Test
+  void boundedUnderConcurrentUse() throws InterruptedException {
+    LruCache<Integer, Integer> cache = new LruCache<>(100);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int offset = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          int key = (i * 7 + offset) % 300;
+          assertEquals(key * 2, (int) cache.computeIfAbsent(key, k -> k * 2));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(cache.size() <= 100, cache.toString());
+    assertEquals(40000, cache.getHits() + cache.getMisses());
+  }
+}
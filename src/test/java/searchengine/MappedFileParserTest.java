@@ -0,0 +1,79 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class MappedFileParserTest {
+
+  /** Checks that the parser finds the same websites as {@code FileHelper.readFile}. */
+  private void assertSameAsScanner(String filename) throws IOException {
+    List<Website> expected = new ArrayList<>();
+    FileHelper.readFile(filename, expected::add);
+    for (int ranges : new int[] {1, 2, 3, 50}) {
+      List<Website> actual = new MappedFileParser(ForkJoinPool.commonPool(), ranges)
+          .parseList(filename);
+      assertEquals(expected, actual);
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getWords(), actual.get(i).getWords());
+      }
+
+      // streamed through a pool of one thread, so few ranges are parsed ahead.
+      List<Website> streamed = new ArrayList<>();
+      new MappedFileParser(new ForkJoinPool(1), ranges).parse(filename, streamed::add);
+      assertEquals(actual, streamed);
+    }
+  }
+
+  @Test
+  void parseGoodFile() throws IOException {
+    assertSameAsScanner("data/test-file.txt");
+    assertSameAsScanner("data/enwiki-tiny.txt");
+  }
+
+  @Test
+  void parseBadFile() throws IOException {
+    assertSameAsScanner("data/test-file-errors.txt");
+  }
+
+  @Test
+  void lineSeparators() throws IOException {
+    Path file = Files.createTempFile("test", ".txt");
+    try {
+      String content = "junk\n*PAGE:a\r\ntitle\r\nword1\r\n\r\nword2 word3\r*PAGE:b\n"
+          + "title2\n  word4 \n\n  \n\t\n";
+      Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+      assertSameAsScanner(file.toString());
+
+      List<Website> sites = new MappedFileParser().parseList(file.toString());
+      assertEquals(2, sites.size());
+      assertEquals(4, sites.get(0).getWordCount());
+      assertEquals(1, sites.get(1).getWordCount());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  void internWords() {
+    MappedFileParser.WordTable table = new MappedFileParser.WordTable();
+    ByteBuffer buffer = ByteBuffer.wrap(
+        "word\nword\nwörd".getBytes(StandardCharsets.UTF_8));
+    String first = table.intern(buffer, 0, 4);
+    assertSame(first, table.intern(buffer, 5, 9));
+    assertEquals("wörd", table.intern(buffer, 10, buffer.limit()));
+    assertEquals(2, table.size());
+  }
+
+  @Test
+  void missingFile() {
+    assertThrows(IOException.class, () -> new MappedFileParser().parse("data/no-such-file.txt"));
+  }
+}
@@ -0,0 +1,139 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MaxScoreRetrieverTest {
+
+  private PostingListIndex idx;
+  private Corpus corpus;
+  private QueryHandler queryHandler;
+
+  @BeforeEach
+  void setUp() {
+    // websites with random words, so the words have different frequencies and upper bounds.
+    String[] vocabulary = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+    Random random = new Random(42);
+    Set<Website> sites = new LinkedHashSet<>();
+    for (int i = 0; i < 300; i++) {
+      List<String> words = new ArrayList<>();
+      int length = 1 + random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        // skewed, so the first words of the vocabulary are the most common.
+        int word = (int) (vocabulary.length * Math.pow(random.nextDouble(), 2));
+        words.add(vocabulary[word]);
+      }
+      sites.add(new Website(i + ".com", "example" + i, words));
+    }
+
+    idx = new PostingListIndex();
+    idx.build(sites);
+    corpus = new Corpus(sites);
+    corpus.build();
+    corpus.build2GramIndex();
+    queryHandler = new QueryHandler(idx, corpus, new Fuzzy(corpus));
+  }
+
+  @Test
+  void testSameAsRankingEveryMatch() {
+    List<String> queries = Arrays.asList("alpha", "alpha beta", "alpha OR theta",
+        "alpha OR beta OR gamma OR delta", "beta gamma OR eta", "alpha -beta OR zeta",
+        "site:1 alpha OR beta", "nothing");
+    for (TermWeightedScore score : Arrays.asList(new TFIDFScore(), new TFICFScore(),
+        new TFScore())) {
+      MaxScoreRetriever retriever = new MaxScoreRetriever(queryHandler, idx, corpus, score);
+      for (String query : queries) {
+        CompiledQuery compiledQuery = queryHandler.compile(query);
+
+        // the matching websites are in document ID order, which breaks the ties of the sort.
+        List<Website> expected = queryHandler.getMatchingWebsites(compiledQuery);
+        expected.sort(Comparator.comparing(
+            (Website site) -> score.rank(site, corpus, compiledQuery)).reversed());
+
+        for (int k : new int[] {0, 1, 3, 10, 1000}) {
+          assertEquals(expected.subList(0, Math.min(k, expected.size())),
+              retriever.search(compiledQuery, k), score + " " + query + " " + k);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testImpacts() {
+    TFIDFScore score = new TFIDFScore();
+    idx.buildImpacts(corpus, score);
+    assertTrue(idx.hasImpacts());
+    double scale = idx.getImpactScale();
+    MaxScoreRetriever retriever = new MaxScoreRetriever(queryHandler, idx, corpus, score);
+
+    for (String query : Arrays.asList("alpha", "alpha OR theta", "beta gamma OR eta OR zeta")) {
+      CompiledQuery compiledQuery = queryHandler.compile(query);
+
+      // the rank of a website is the highest sum of quantized impacts of a subquery.
+      List<Website> expected = queryHandler.getMatchingWebsites(compiledQuery);
+      expected.sort(Comparator.comparing((Website site) -> {
+        int max = 0;
+        for (List<String> subQuery : compiledQuery.getStructuredQuery()) {
+          int sum = 0;
+          for (String word : subQuery) {
+            if (site.getWords().contains(word)) {
+              sum += ImpactPostingList.quantize(score.rankSingle(site, corpus, word), scale);
+            }
+          }
+          max = Math.max(max, sum);
+        }
+        return max;
+      }).reversed());
+
+      assertEquals(expected.subList(0, 10), retriever.search(compiledQuery, 10), query);
+    }
+  }
+
+  /**
+   * The champion list of a word must be the start of the best ranked websites of a query of the
+   * word, with and without impacts.
+   */
+  @Test
+  void testChampions() {
+    TFIDFScore score = new TFIDFScore();
+    assertNull(idx.getChampions("alpha"));
+    for (boolean impacts : new boolean[] {false, true}) {
+      if (impacts) {
+        idx.buildImpacts(corpus, score);
+      }
+      idx.buildChampions(corpus, score, 20);
+      assertEquals(20, idx.getChampionCount());
+      MaxScoreRetriever retriever = new MaxScoreRetriever(queryHandler, idx, corpus, score);
+      for (String word : Arrays.asList("alpha", "delta", "theta")) {
+        List<Website> expected = retriever.search(queryHandler.compile(word), 20);
+        int[] champions = idx.getChampions(word);
+        assertEquals(expected.size(), champions.length, word);
+        for (int i = 0; i < champions.length; i++) {
+          assertEquals(expected.get(i), idx.getWebsite(champions[i]), word + " " + i);
+        }
+      }
+      assertEquals(0, idx.getChampions("nothing").length);
+    }
+    assertThrows(IllegalArgumentException.class, () -> idx.buildChampions(corpus, score, 0));
+  }
+
+  @Test
+  void testMaxTermFrequency() {
+    PostingListIndex index = new PostingListIndex();
+    Set<Website> sites = new LinkedHashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("word1", "word2")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("word1", "word1", "word1", "word2")));
+    index.build(sites);
+    assertEquals(0.75, index.getMaxTermFrequency("word1"));
+    assertEquals(0.5, index.getMaxTermFrequency("word2"));
+    assertEquals(0.0, index.getMaxTermFrequency("word3"));
+  }
+}
@@ -0,0 +1,86 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelIndexBuilderTest {
+
+  private Set<Website> sites;
+  private Website[] websites;
+  private ForkJoinPool pool;
+
+  @BeforeEach
+  void setUp() {
+    sites = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      List<String> words = new ArrayList<>();
+      for (int j = 0; j <= i % 7; j++) {
+        words.add("word" + (i * j % 11));
+      }
+      sites.add(new Website(i + ".com", "example" + i, words));
+    }
+    websites = sites.toArray(new Website[0]);
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  void sameAsOneChunk() {
+    ParallelIndexBuilder.Shard expected =
+        new ParallelIndexBuilder(pool, websites.length).build(websites);
+    ParallelIndexBuilder.Shard actual = new ParallelIndexBuilder(pool, 3).build(websites);
+
+    assertEquals(expected.getWordCount(), actual.getWordCount());
+    assertEquals(expected.getTerms().keySet(), actual.getTerms().keySet());
+    for (Map.Entry<String, ParallelIndexBuilder.TermStatistics> entry
+        : expected.getTerms().entrySet()) {
+      ParallelIndexBuilder.TermStatistics statistics = actual.getTerms().get(entry.getKey());
+      assertArrayEquals(entry.getValue().getDocIds(), statistics.getDocIds());
+      assertEquals(entry.getValue().getCorpusFrequency(), statistics.getCorpusFrequency());
+      assertEquals(entry.getValue().getMaxTermFrequency(), statistics.getMaxTermFrequency());
+    }
+  }
+
+  @Test
+  void sameAsCorpusBuild() {
+    ParallelIndexBuilder.Shard shard = new ParallelIndexBuilder(pool, 5).build(websites);
+    Corpus expected = new Corpus(sites);
+    expected.build();
+    Corpus actual = new Corpus(sites, shard);
+
+    assertEquals(expected.getWordCountTotal(), actual.getWordCountTotal());
+    assertEquals(expected.getWordsToOccurences(), actual.getWordsToOccurences());
+    assertEquals(expected.getWordsToInSiteOccurences(), actual.getWordsToInSiteOccurences());
+  }
+
+  @Test
+  void postingsAreSorted() {
+    ParallelIndexBuilder.Shard shard = new ParallelIndexBuilder(pool, 2).build(websites);
+    assertSame(websites, shard.getSites());
+    for (ParallelIndexBuilder.TermStatistics statistics : shard.getTerms().values()) {
+      int[] docIds = statistics.getDocIds();
+      int[] sorted = docIds.clone();
+      Arrays.sort(sorted);
+      assertArrayEquals(sorted, docIds);
+      assertEquals(docIds.length, statistics.getDocumentFrequency());
+    }
+  }
+
+  @Test
+  void negativeChunkSize() {
+    assertThrows(IllegalArgumentException.class, () -> new ParallelIndexBuilder(pool, -1));
+  }
+}
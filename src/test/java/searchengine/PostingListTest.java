@@ -0,0 +1,102 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class PostingListTest {
+
+  /**
+   * Creates a sorted list of document IDs with gaps of varying size, so that both one-byte and
+   * multi-byte gaps are encoded.
+   */
+  private int[] docIds(int size) {
+    int[] docIds = new int[size];
+    int docId = 0;
+    for (int i = 0; i < size; i++) {
+      docId += 1 + (i % 7 == 0 ? 300 : i % 5);
+      docIds[i] = docId;
+    }
+    return docIds;
+  }
+
+  private PostingList compress(int[] docIds) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(42); // the list should not have to start at the beginning of the buffer
+    CompressedPostingList.encode(out, docIds);
+    return new CompressedPostingList(ByteBuffer.wrap(out.toByteArray()), 1);
+  }
+
+  @Test
+  void roundTrip() {
+    for (int size : new int[] {0, 1, 127, 128, 129, 1000}) {
+      int[] docIds = docIds(size);
+      PostingList list = compress(docIds);
+      assertEquals(size, list.size());
+      assertArrayEquals(docIds, list.toArray());
+    }
+  }
+
+  /**
+   * Test that advance finds the first document ID greater than or equal to the target, also when
+   * it has to skip blocks, and when the target lies in a gap.
+   */
+  private void advance(PostingList list, int[] docIds) {
+    for (int step : new int[] {1, 3, 200}) {
+      PostingIterator iterator = list.iterator();
+      int expectedIndex = 0;
+      for (int target = 0; target <= docIds[docIds.length - 1]; target += step) {
+        while (expectedIndex < docIds.length && docIds[expectedIndex] < target) {
+          expectedIndex++;
+        }
+        if (target <= iterator.docId()) {
+          continue; // advance may only be called with targets beyond the current document
+        }
+        assertEquals(docIds[expectedIndex], iterator.advance(target));
+      }
+      assertEquals(PostingIterator.NO_MORE_DOCS, iterator.advance(Integer.MAX_VALUE - 1));
+    }
+  }
+
+  @Test
+  void advanceCompressed() {
+    int[] docIds = docIds(1000);
+    advance(compress(docIds), docIds);
+  }
+
+  @Test
+  void advanceArray() {
+    int[] docIds = docIds(1000);
+    advance(new ArrayPostingList(docIds), docIds);
+  }
+
+  @Test
+  void iteratorStates() {
+    PostingIterator iterator = compress(new int[] {5}).iterator();
+    assertEquals(-1, iterator.docId());
+    assertEquals(5, iterator.nextDoc());
+    assertEquals(PostingIterator.NO_MORE_DOCS, iterator.nextDoc());
+    assertEquals(PostingIterator.NO_MORE_DOCS, iterator.docId());
+  }
+
+  @Test
+  void impactsFollowDocuments() {
+    int[] docIds = docIds(1000);
+    char[] impacts = new char[docIds.length];
+    for (int i = 0; i < impacts.length; i++) {
+      impacts[i] = (char) (docIds[i] % 1000);
+    }
+    ImpactPostingList list = new ImpactPostingList(docIds, impacts);
+    advance(list, docIds);
+
+    ImpactPostingList.ImpactIterator iterator = list.iterator();
+    for (int docId = iterator.advance(500); docId != PostingIterator.NO_MORE_DOCS;
+        docId = iterator.advance(docId + 7)) {
+      assertEquals(docId % 1000, iterator.impact());
+    }
+    assertEquals(999, list.getMaxImpact());
+    assertEquals(1, ImpactPostingList.quantize(0.001, 1));
+    assertEquals(ImpactPostingList.MAX_IMPACT, ImpactPostingList.quantize(1e9, 1));
+  }
+}
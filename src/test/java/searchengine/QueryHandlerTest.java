@@ -5,6 +5,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -89,4 +92,159 @@ class QueryHandlerTest {
     // Check against existing site with nonexistent word
     assertEquals(0, queryHandler.getMatchingWebsites("site:2.com wordWoRD").size());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testExclusion() {
+    assertEquals(1, queryHandler.getMatchingWebsites("word2 -word1").size());
+    assertEquals("example2", queryHandler.getMatchingWebsites("word2 -word1").get(0).getTitle());
+    assertEquals(2, queryHandler.getMatchingWebsites("word3 -word1").size());
+    assertEquals(2, queryHandler.getMatchingWebsites("word2 -word1 OR word4").size());
+    // A query with only excluded words matches nothing
+    assertEquals(0, queryHandler.getMatchingWebsites("-word1").size());
+  }
+
+  /**
+   * The bitmap evaluation of a {@code PostingListIndex} must give the same results as the
+   * evaluation on sets of websites.
+   */
+  @Test
+  void testBitmapEvaluation() {
+    PostingListIndex postingIndex = new CompressedPostingListIndex();
+    postingIndex.build(new HashSet<Website>(sites));
+    QueryHandler bitmapHandler = new QueryHandler(postingIndex, corpus, fuzzy);
+    String[] queries = {"word1", "word2 word3", "word2 OR word3", "word2 -word1 OR word4",
+        "word1 OR word1", "OR", "site:3.co word3", "word4 WORD3 word5?"};
+    for (String query : queries) {
+      assertEquals(new HashSet<>(queryHandler.getMatchingWebsites(query)),
+          new HashSet<>(bitmapHandler.getMatchingWebsites(query)), query);
+    }
+  }
+
+  /**
+   * The words of a subquery must be intersected in order of increasing document frequency.
+   */
+  @Test
+  void testQueryPlanOrder() {
+    PostingListIndex postingIndex = new PostingListIndex();
+    postingIndex.build(new HashSet<Website>(sites));
+    QueryHandler planHandler = new QueryHandler(postingIndex, corpus, fuzzy);
+    assertEquals("AND[word1:1, word2:2]",
+        planHandler.getQueryPlan(planHandler.compile("word2 word1"), postingIndex).toString());
+    assertEquals("OR[AND[word4:1, word3:2], word1:1]",
+        planHandler.getQueryPlan(planHandler.compile("word3 word4 OR word1"),
+            postingIndex).toString());
+    // an empty intermediate result gives an empty result
+    assertEquals(0, planHandler.getMatchingWebsites("word1 word3 word2").size());
+    // an intersection of nothing is rejected, instead of failing when it is evaluated
+    assertThrows(IllegalArgumentException.class,
+        () -> QueryPlan.intersection(new ArrayList<QueryPlan>()));
+  }
+
+  /**
+   * A pair of words seen often enough must be cached, and reused by later queries containing both
+   * words, without changing their results.
+   */
+  @Test
+  void testIntersectionCache() {
+    PostingListIndex postingIndex = new CompressedPostingListIndex();
+    postingIndex.build(new HashSet<Website>(sites));
+    IntersectionCache cache = new IntersectionCache(1 << 20, 2, 0);
+    QueryHandler cachingHandler = new QueryHandler(postingIndex, corpus, fuzzy, cache);
+    String[] queries = {"word3 word4 word5", "word4 word3", "word3 word4 -word5",
+        "word2 word3 word4", "word5 word4 word3 OR word1"};
+    for (int round = 0; round < 3; round++) {
+      for (String query : queries) {
+        assertEquals(new HashSet<>(queryHandler.getMatchingWebsites(query)),
+            new HashSet<>(cachingHandler.getMatchingWebsites(query)), query);
+      }
+    }
+    assertTrue(cache.getAdmissions() > 0);
+    assertTrue(cache.getHits() > 0);
+    assertTrue(cachingHandler.getQueryPlan(cachingHandler.compile("word4 word3 word5"),
+        postingIndex).toString().contains("(word3 word4):1"));
+  }
+
+  /**
+   * Pairs of rare words must not be cached, however often they are seen.
+   */
+  @Test
+  void testIntersectionCacheAdmission() {
+    PostingListIndex postingIndex = new CompressedPostingListIndex();
+    postingIndex.build(new HashSet<Website>(sites));
+    QueryHandler cachingHandler = new QueryHandler(postingIndex, corpus, fuzzy);
+    for (int round = 0; round < 10; round++) {
+      assertEquals(1, cachingHandler.getMatchingWebsites("word2 word3").size());
+    }
+    assertEquals(0, cachingHandler.getIntersectionCache().getSize());
+    assertEquals("IntersectionCache{size=0, bytes=0, hits=0, misses=10, admissions=0}",
+        cachingHandler.getIntersectionCache().toString());
+  }
+
+  /**
+   * An intersection too large to be cached must not be admitted again.
+   */
+  @Test
+  void testIntersectionCacheRejectsLarge() {
+    IntersectionCache cache = new IntersectionCache(16, 1, 0);
+    String key = IntersectionCache.key("word3", "word4");
+    assertTrue(cache.record(key, 100, 100));
+    RoaringBitmap intersection = new RoaringBitmap();
+    intersection.add(1);
+    cache.put(key, intersection);
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getAdmissions());
+    assertFalse(cache.record(key, 100, 100));
+  }
+
+  @Test
+  void testCompile() {
+    CompiledQuery query = queryHandler.compile("site:3.CO Word3 -word4 OR word1 word2 OR -word5");
+    assertEquals("3.co", query.getSiteFilter());
+    assertEquals(2, query.getSubQueries().size());
+    assertEquals(new HashSet<>(Arrays.asList("word4")),
+        query.getSubQueries().get(0).getExcluded());
+    // neither the "site:" filter nor the excluded words are part of the structured query
+    assertEquals(Arrays.asList(Arrays.asList("word3"), Arrays.asList("word1", "word2")),
+        query.getStructuredQuery());
+    assertEquals(queryHandler.getMatchingWebsites("site:3.CO Word3 -word4 OR word1 word2"),
+        queryHandler.getMatchingWebsites(query));
+  }
+
+  /**
+   * Many threads sharing one {@code QueryHandler} must get the same results as a single thread.
+   */
+  @Test
+  void testConcurrentQueries() throws Exception {
+    PostingListIndex postingIndex = new CompressedPostingListIndex();
+    postingIndex.build(new HashSet<Website>(sites));
+    QueryHandler sharedHandler = new QueryHandler(postingIndex, corpus, fuzzy);
+    String[] queries = {"word1", "word2 word3", "site:3.co word3", "word2 -word1 OR word4"};
+
+    List<List<Website>> expected = new ArrayList<>();
+    for (String query : queries) {
+      expected.add(sharedHandler.getMatchingWebsites(query));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int task = 0; task < 64; task++) {
+        futures.add(executor.submit(() -> {
+          for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < queries.length; i++) {
+              if (!expected.get(i).equals(sharedHandler.getMatchingWebsites(queries[i]))) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
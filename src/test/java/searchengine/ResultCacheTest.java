@@ -0,0 +1,131 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResultCacheTest {
+
+  private final AtomicLong time = new AtomicLong();
+  private ResultCache cache;
+  private List<Website> sites;
+
+  @BeforeEach
+  void setUp() {
+    cache = new ResultCache(ResultCache.DEFAULT_MAX_BYTES, 1000, time::get);
+    sites = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      sites.add(new Website(i + ".com", "example" + i, Arrays.asList("word" + i)));
+    }
+  }
+
+  /** Compiles a query of subqueries of words, where "-" marks excluded words. */
+  private static CompiledQuery query(String siteFilter, String... subQueries) {
+    List<CompiledQuery.SubQuery> compiled = new ArrayList<>();
+    for (String subQuery : subQueries) {
+      List<Set<String>> words = new ArrayList<>();
+      Set<String> excluded = new HashSet<>();
+      for (String word : subQuery.split(" ")) {
+        if (word.startsWith("-")) {
+          excluded.add(word.substring(1));
+        } else {
+          words.add(new HashSet<>(Arrays.asList(word.split("\\|"))));
+        }
+      }
+      compiled.add(new CompiledQuery.SubQuery(words, excluded));
+    }
+    return new CompiledQuery(siteFilter, compiled);
+  }
+
+  @Test
+  void normalizedKey() {
+    String key = query(null, "a b|c").getNormalizedKey();
+    assertEquals(key, query(null, "c|b a a").getNormalizedKey());
+    assertEquals(key, query(null, "a b|c", "b|c a").getNormalizedKey());
+    assertNotEquals(key, query(null, "a b c").getNormalizedKey());
+    assertNotEquals(key, query(null, "a b|c -d").getNormalizedKey());
+    assertNotEquals(key, query("wiki", "a b|c").getNormalizedKey());
+    assertNotEquals(key, query(null, "a", "b|c").getNormalizedKey());
+    assertNotEquals(query(null, "ab").getNormalizedKey(), query(null, "a b").getNormalizedKey());
+  }
+
+  @Test
+  void answersShallowerPages() {
+    CompiledQuery query = query(null, "word");
+    assertNull(cache.get(1, query, 0, 5));
+    cache.put(1, query, 5, sites.subList(0, 5));
+
+    assertEquals(sites.subList(0, 5), cache.get(1, query(null, "word word"), 0, 5));
+    assertEquals(sites.subList(2, 4), cache.get(1, query, 2, 2));
+    assertNull(cache.get(1, query, 3, 5));
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    // a result with fewer websites than asked for holds all of them.
+    cache.put(1, query, 20, sites);
+    assertEquals(sites.subList(8, 10), cache.get(1, query, 8, 100));
+    assertEquals(Collections.emptyList(), cache.get(1, query, 50, 10));
+  }
+
+  @Test
+  void boundedWebsitesPerEntry() {
+    List<Website> many = new ArrayList<>();
+    for (int i = 0; i < ResultCache.MAX_CACHED_WEBSITES + 10; i++) {
+      many.add(new Website(i + ".com", "example" + i, Arrays.asList("word")));
+    }
+    CompiledQuery query = query(null, "word");
+    cache.put(1, query, Integer.MAX_VALUE, many);
+
+    // the best websites answer the pages within them, but not the whole result.
+    assertEquals(many.subList(0, 10), cache.get(1, query, 0, 10));
+    assertEquals(many.subList(990, 1000), cache.get(1, query, 990, 10));
+    assertNull(cache.get(1, query, 995, 10));
+    assertNull(cache.get(1, query, 0, Integer.MAX_VALUE));
+  }
+
+  @Test
+  void invalidatedByNewGeneration() {
+    CompiledQuery query = query(null, "word");
+    cache.put(1, query, 5, sites.subList(0, 5));
+    assertNotNull(cache.get(1, query, 0, 5));
+    assertNull(cache.get(2, query, 0, 5));
+    assertEquals(1, cache.getInvalidations());
+    assertEquals(0, cache.getSize());
+
+    // results of an older generation are neither cached nor answered.
+    cache.put(1, query, 5, sites.subList(0, 5));
+    assertEquals(0, cache.getSize());
+    cache.put(2, query, 5, sites.subList(0, 5));
+    assertNull(cache.get(1, query, 0, 5));
+    assertNotNull(cache.get(2, query, 0, 5));
+  }
+
+  @Test
+  void expires() {
+    CompiledQuery query = query(null, "word");
+    cache.put(1, query, 5, sites.subList(0, 5));
+    time.addAndGet(999_000_000L);
+    assertNotNull(cache.get(1, query, 0, 5));
+    time.addAndGet(1_000_000L);
+    assertNull(cache.get(1, query, 0, 5));
+    assertEquals(1, cache.getExpirations());
+  }
+
+  @Test
+  void boundedByBytes() {
+    ResultCache small = new ResultCache(16 * 1024, 0);
+    for (int i = 0; i < 1000; i++) {
+      small.put(1, query(null, "word" + i), 10, sites);
+    }
+    assertTrue(small.getBytes() <= 16 * 1024, small.toString());
+    assertTrue(small.getEvictions() > 0);
+    assertNotNull(small.get(1, query(null, "word999"), 0, 10));
+  }
+}
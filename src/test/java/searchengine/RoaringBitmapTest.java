@@ -0,0 +1,93 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class RoaringBitmapTest {
+
+  /**
+   * Creates a random set of document IDs, spread over several chunks. With a high density some
+   * chunks become bitmap containers, with a low density they stay array containers.
+   */
+  private TreeSet<Integer> randomSet(Random random, double density) {
+    TreeSet<Integer> set = new TreeSet<>();
+    for (int docId = 0; docId < 200000; docId++) {
+      if (random.nextDouble() < density) {
+        set.add(docId);
+      }
+    }
+    return set;
+  }
+
+  private RoaringBitmap toBitmap(TreeSet<Integer> set) {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    for (int docId : set) {
+      bitmap.add(docId);
+    }
+    return bitmap;
+  }
+
+  private void assertSameDocIds(TreeSet<Integer> expected, RoaringBitmap bitmap) {
+    assertEquals(expected.size(), bitmap.getCardinality());
+    int[] docIds = bitmap.toArray();
+    int i = 0;
+    for (int docId : expected) {
+      assertEquals(docId, docIds[i++]);
+    }
+  }
+
+  @Test
+  void booleanOperations() {
+    Random random = new Random(42);
+    double[] densities = {0.001, 0.05, 0.5};
+    for (double densityA : densities) {
+      for (double densityB : densities) {
+        TreeSet<Integer> a = randomSet(random, densityA);
+        TreeSet<Integer> b = randomSet(random, densityB);
+        RoaringBitmap bitmapA = toBitmap(a);
+        RoaringBitmap bitmapB = toBitmap(b);
+
+        TreeSet<Integer> and = new TreeSet<>(a);
+        and.retainAll(b);
+        assertSameDocIds(and, RoaringBitmap.and(bitmapA, bitmapB));
+
+        TreeSet<Integer> or = new TreeSet<>(a);
+        or.addAll(b);
+        assertSameDocIds(or, RoaringBitmap.or(bitmapA, bitmapB));
+
+        TreeSet<Integer> andNot = new TreeSet<>(a);
+        andNot.removeAll(b);
+        assertSameDocIds(andNot, RoaringBitmap.andNot(bitmapA, bitmapB));
+
+        // the operations must leave their arguments untouched
+        assertSameDocIds(a, bitmapA);
+        assertSameDocIds(b, bitmapB);
+      }
+    }
+  }
+
+  @Test
+  void containsAndAdvance() {
+    TreeSet<Integer> set = randomSet(new Random(7), 0.02);
+    RoaringBitmap bitmap = toBitmap(set);
+    for (int docId = 0; docId < 200000; docId += 97) {
+      assertEquals(set.contains(docId), bitmap.contains(docId));
+      Integer expected = set.ceiling(docId);
+      assertEquals(expected == null ? PostingIterator.NO_MORE_DOCS : (int) expected,
+          bitmap.iterator().advance(docId));
+    }
+  }
+
+  @Test
+  void unorderedAdd() {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    bitmap.add(70000);
+    bitmap.add(3);
+    bitmap.add(70000);
+    bitmap.add(1);
+    assertArrayEquals(new int[] {1, 3, 70000}, bitmap.toArray());
+    assertTrue(new RoaringBitmap().isEmpty());
+  }
+}
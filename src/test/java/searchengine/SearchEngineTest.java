@@ -0,0 +1,228 @@
+package searchengine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchEngineTest {
+
+  private SearchEngine searchEngine;
+
+  @BeforeEach
+  void setUp() {
+    Set<Website> sites = new HashSet<>();
+    sites.add(new Website("1.com", "example1", Arrays.asList("word1", "word2")));
+    sites.add(new Website("2.com", "example2", Arrays.asList("word1", "word1", "word3")));
+    sites.add(new Website("3.com", "example3", Arrays.asList("word1", "word1", "word1")));
+    sites.add(new Website("4.com", "example4", Arrays.asList("word2", "word3", "word4")));
+    sites.add(new Website("5.com", "example5", Arrays.asList("word1", "word4", "word4", "word5")));
+
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    searchEngine = new SearchEngine(sites, config);
+  }
+
+  @Test
+  void testRankedOrder() {
+    List<Website> results = searchEngine.search("word1");
+    assertEquals(4, results.size());
+    assertEquals("example3", results.get(0).getTitle());
+    assertEquals("example2", results.get(1).getTitle());
+  }
+
+  @Test
+  void testAddAndDeleteDocument() {
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    config.setProperty("refresh.interval", "0");
+    searchEngine = new SearchEngine(new HashSet<>(Arrays.asList(
+        new Website("1.com", "example1", Arrays.asList("word1", "denmark")))), config);
+
+    Website site = new Website("2.com", "example2", Arrays.asList("word1", "word1", "word6"));
+    searchEngine.addDocument(site);
+    assertEquals(1, searchEngine.search("word1").size());
+    assertTrue(searchEngine.refresh());
+    assertEquals(Arrays.asList(site), searchEngine.search("word6"));
+    assertEquals(2, searchEngine.search("word1").size());
+
+    searchEngine.deleteDocument(new Website("1.com", "example1", Arrays.asList("word1")));
+    assertTrue(searchEngine.refresh());
+    assertEquals(Arrays.asList(site), searchEngine.search("word1"));
+    assertEquals(0, searchEngine.search("denmark").size());
+    assertFalse(searchEngine.refresh());
+  }
+
+  @Test
+  void testTypoOfDeletedWord() {
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    config.setProperty("refresh.interval", "0");
+    searchEngine = new SearchEngine(new HashSet<>(Arrays.asList(
+        new Website("1.com", "example1", Arrays.asList("word1", "denmark")),
+        new Website("2.com", "example2", Arrays.asList("word1", "word2")))), config);
+    searchEngine.deleteDocument(new Website("1.com", "example1", Arrays.asList("word1")));
+    assertTrue(searchEngine.refresh());
+
+    // the word of the deleted website is still in the fuzzy search tables, but is not offered.
+    assertTrue(searchEngine.getSnapshot().getFuzzy().expand("denmarc").isEmpty());
+    assertEquals(1, searchEngine.search("denmarc OR word2", 0, 10).size());
+    assertEquals(1, searchEngine.search("denmarc OR word2").size());
+  }
+
+  @Test
+  void testReload() {
+    Snapshot old = searchEngine.getSnapshot();
+    Snapshot reloaded = searchEngine.reload("data/test-file.txt").join();
+    assertTrue(reloaded.getGeneration() > old.getGeneration());
+    assertSame(reloaded, searchEngine.getSnapshot());
+    assertFalse(reloaded.getCorpus().containsWord("word4"));
+    assertEquals(2, searchEngine.search("word1").size());
+
+    // the old snapshot still answers queries from the old websites.
+    assertEquals(4, old.getQueryHandler().getMatchingWebsites("word1").size());
+
+    // a refresh publishes the next generation, a failed reload publishes nothing.
+    searchEngine.addDocument(new Website("6.com", "example6", Arrays.asList("word1")));
+    searchEngine.refresh();
+    assertEquals(reloaded.getGeneration() + 1, searchEngine.getSnapshot().getGeneration());
+    assertEquals(3, searchEngine.search("word1").size());
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> searchEngine.reload("data/missing-file.txt").join());
+    assertTrue(e.getCause() instanceof UncheckedIOException);
+    assertEquals(reloaded.getGeneration() + 1, searchEngine.getSnapshot().getGeneration());
+  }
+
+  @Test
+  void testPagination() {
+    List<Website> all = searchEngine.search("word1 OR word2");
+    assertEquals(5, all.size());
+
+    List<Website> pages = new ArrayList<>();
+    pages.addAll(searchEngine.search("word1 OR word2", 0, 2));
+    pages.addAll(searchEngine.search("word1 OR word2", 2, 2));
+    pages.addAll(searchEngine.search("word1 OR word2", 4, 2));
+    assertEquals(all, pages);
+
+    assertEquals(0, searchEngine.search("word1 OR word2", 5, 2).size());
+    assertEquals(0, searchEngine.search("word1 OR word2", 0, 0).size());
+    assertEquals(all.subList(1, 5), searchEngine.search("word1 OR word2", 1, Integer.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class, () -> searchEngine.search("word1", -1, 10));
+  }
+
+  @Test
+  void testResultCache() {
+    ResultCache cache = searchEngine.getResultCache();
+    List<Website> first = searchEngine.search("word1 word4", 0, 10);
+    assertEquals(first, searchEngine.search("word4 word1 word4", 0, 10));
+    assertEquals(first.subList(0, 1), searchEngine.search("WORD4 word1", 0, 1));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    // a refresh invalidates the cached results.
+    Website site = new Website("6.com", "example6", Arrays.asList("word1", "word4"));
+    searchEngine.addDocument(site);
+    searchEngine.refresh();
+    assertTrue(searchEngine.search("word1 word4", 0, 10).contains(site));
+    assertEquals(1, cache.getInvalidations());
+
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    config.setProperty("cache.results.bytes", "0");
+    assertNull(new SearchEngine(new HashSet<>(Arrays.asList(site)), config).getResultCache());
+  }
+
+  /**
+   * Single-word queries answered from the champion lists must give the same pages as without
+   * them, also for pages beyond the champion lists.
+   */
+  @Test
+  void testChampions() {
+    Set<Website> sites = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      List<String> words = new ArrayList<>();
+      for (int j = 0; j <= i % 7; j++) {
+        words.add("word" + (j % 3));
+      }
+      words.add("site" + i);
+      sites.add(new Website(i + ".com", "example" + i, words));
+    }
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    config.setProperty("cache.results.bytes", "0");
+    SearchEngine plain = new SearchEngine(sites, config);
+    config.setProperty("champions", "5");
+    SearchEngine champions = new SearchEngine(sites, config);
+    assertEquals(5, champions.getSnapshot().getIndex().getChampionCount());
+
+    for (String query : Arrays.asList("word0", "word1", "word2", "site7", "word0 word1",
+        "word1 OR word2", "word2 -site3", "site:1 word0", "nothing")) {
+      for (int[] page : new int[][] {{0, 1}, {0, 5}, {2, 3}, {3, 10}, {0, 100}}) {
+        assertEquals(plain.search(query, page[0], page[1]),
+            champions.search(query, page[0], page[1]), query + " " + Arrays.toString(page));
+      }
+    }
+  }
+
+  /**
+   * The champion lists must still be used, and give the same pages as without them, after
+   * websites have been added and deleted.
+   */
+  @Test
+  void testChampionsAfterChanges() {
+    // the websites rank differently, so the champion lists are not cut short by ties.
+    Set<Website> sites = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      List<String> words = new ArrayList<>(Arrays.asList("word0", "word" + (1 + i % 2)));
+      words.addAll(Collections.nCopies(i, "pad"));
+      sites.add(new Website(i + ".com", "example" + i, words));
+    }
+    Properties config = new Properties();
+    config.setProperty("kmeans", "false");
+    config.setProperty("cache.results.bytes", "0");
+    config.setProperty("refresh.interval", "0");
+    SearchEngine plain = new SearchEngine(sites, config);
+    config.setProperty("champions", "5");
+    SearchEngine champions = new SearchEngine(sites, config);
+
+    for (int round = 0; round < 12; round++) {
+      for (SearchEngine engine : Arrays.asList(plain, champions)) {
+        List<String> words = new ArrayList<>(Arrays.asList("word" + (1 + round % 2)));
+        words.addAll(Collections.nCopies(50 + round, "pad"));
+        engine.addDocument(new Website("new" + round + ".com", "new" + round, words));
+        engine.deleteDocument(new Website((round * 7) + ".com", "example" + (round * 7),
+            Arrays.asList("word0")));
+        engine.refresh();
+      }
+      assertEquals(5, champions.getSnapshot().getIndex().getChampionCount());
+      assertTrue(champions.getSnapshot().getIndex().getChampions("word1").length > 0);
+      for (String query : Arrays.asList("word1", "word2", "pad")) {
+        for (int[] page : new int[][] {{0, 1}, {0, 5}, {2, 3}, {3, 10}}) {
+          assertEquals(plain.search(query, page[0], page[1]),
+              champions.search(query, page[0], page[1]), query + " " + Arrays.toString(page));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testTopKCollector() {
+    TopKCollector collector = new TopKCollector(3);
+    double[] scores = {0.5, 2.0, 1.0, 2.0, 0.1, 1.5};
+    for (int i = 0; i < scores.length; i++) {
+      collector.collect(i, scores[i]);
+    }
+    assertEquals(1.5, collector.threshold());
+    // equal scores are ordered by increasing id.
+    assertArrayEquals(new int[] {1, 3, 5}, collector.drainIds());
+    assertEquals(0, collector.size());
+  }
+}